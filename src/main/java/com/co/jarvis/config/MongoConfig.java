@@ -3,10 +3,14 @@ package com.co.jarvis.config;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.mongodb.MongoException;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.jackson.Jackson2ObjectMapperBuilderCustomizer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.convert.converter.Converter;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.data.mongodb.MongoTransactionManager;
 import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
 import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
 import org.springframework.lang.NonNull;
@@ -60,6 +64,53 @@ public class MongoConfig {
         return mapper;
     }
 
+    /**
+     * Registra el MongoTransactionManager para que los métodos @Transactional
+     * (checkout de venta, cuentas de cliente, lotes, inventario físico) se ejecuten
+     * realmente como transacciones multi-documento en el replica set de Atlas.
+     */
+    @Bean
+    public MongoTransactionManager transactionManager(MongoDatabaseFactory databaseFactory,
+                                                      @Value("${jarvis.transactions.commit-attempts:3}") int commitAttempts) {
+        return new CommitRetryingTransactionManager(databaseFactory, commitAttempts);
+    }
+
+    /**
+     * Si el commit termina con UnknownTransactionCommitResult no se sabe si se aplicó: se
+     * reintenta solo el commit sobre la misma sesión, que el servidor aplica una única vez.
+     * Volver a ejecutar la transacción completa podría duplicar la venta.
+     */
+    static class CommitRetryingTransactionManager extends MongoTransactionManager {
+
+        private final int maxCommitAttempts;
+
+        CommitRetryingTransactionManager(MongoDatabaseFactory databaseFactory, int maxCommitAttempts) {
+            super(databaseFactory);
+            this.maxCommitAttempts = Math.max(1, maxCommitAttempts);
+        }
+
+        @Override
+        protected void doCommit(MongoTransactionObject transactionObject) throws Exception {
+            commitWithRetry(transactionObject::commitTransaction, maxCommitAttempts);
+        }
+
+        static void commitWithRetry(Runnable commit, int maxAttempts) {
+            int attempt = 1;
+            while (true) {
+                try {
+                    commit.run();
+                    return;
+                } catch (MongoException e) {
+                    if (!e.hasErrorLabel(MongoException.UNKNOWN_TRANSACTION_COMMIT_RESULT_LABEL)
+                            || attempt >= maxAttempts) {
+                        throw e;
+                    }
+                    attempt++;
+                }
+            }
+        }
+    }
+
     /**
      * Configura convertidores personalizados para MongoDB
      */
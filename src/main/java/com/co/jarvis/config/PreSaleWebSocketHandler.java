@@ -2,91 +2,413 @@ package com.co.jarvis.config;
 
 import com.co.jarvis.config.security.JwtProvider;
 import com.co.jarvis.dto.presale.WsMessage;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.websocket.Session;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.adapter.NativeWebSocketSession;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
 
 import java.net.URI;
 import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
-import java.util.Arrays;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Notificaciones de preventas a los facturadores.
+ * El broadcast no envía en el hilo de la petición: serializa una vez y encola el mensaje en la
+ * cola de cada sesión; un pool dedicado (jarvis.ws.send-threads) vacía cada cola en orden, de a
+ * un hilo por sesión, así una tableta lenta no frena al vendedor ni a las demás sesiones.
+ * Cada envío es asíncrono y el hilo espera su Future como máximo jarvis.ws.send-time-limit-ms:
+ * una tableta que deja de leer no retiene un hilo del pool. Si el envío vence, o si la cola
+ * de la sesión pasa de jarvis.ws.max-pending-messages mensajes o jarvis.ws.buffer-size-limit
+ * bytes, la sesión se descarta, se cuenta en "jarvis.ws.dropped" y se cierra en el pool de
+ * envío, nunca en el hilo de la petición ni bajo replayLock (el cliente se reconecta).
+ * Tópicos: una sesión puede suscribirse (query param topics=seller:123 o mensaje SUBSCRIBE)
+ * y desde entonces solo recibe los eventos de esos tópicos; sin suscripciones recibe todos.
+ * Reconexión: cada evento lleva una secuencia creciente (seq) y los últimos
+ * jarvis.ws.replay-buffer-size eventos quedan en memoria. Un cliente que se reconecta con
+ * lastSeq=N recibe solo los eventos posteriores a N; si ya no están en el buffer (o el
+ * servidor se reinició) recibe RESYNC y debe volver a consultar la lista de preventas.
+ */
 @Slf4j
 public class PreSaleWebSocketHandler extends TextWebSocketHandler {
 
-    private final Set<WebSocketSession> sessions = ConcurrentHashMap.newKeySet();
+    public static final String SELLER_TOPIC = "seller:";
+
+    private static final String SUBSCRIBE = "SUBSCRIBE";
+    private static final String UNSUBSCRIBE = "UNSUBSCRIBE";
+    private static final String RESYNC = "RESYNC";
+    // Tomcat: tope de los envíos bloqueantes de la sesión, incluido el frame de cierre
+    private static final String BLOCKING_SEND_TIMEOUT = "org.apache.tomcat.websocket.BLOCKING_SEND_TIMEOUT";
+
+    private final Map<String, ClientSession> sessions = new ConcurrentHashMap<>();
     private final JwtProvider jwtProvider;
     private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final ThreadPoolExecutor sendExecutor;
+    private final int sendTimeLimitMs;
+    private final int bufferSizeLimit;
+    private final int maxPendingMessages;
+
+    // Secuencia y buffer de reemplazo; se modifican bajo replayLock junto con el encolado para
+    // que ninguna sesión vea los eventos fuera de orden ni quede un hueco entre replay y vivo
+    private final Object replayLock = new Object();
+    private final Deque<SequencedEvent> replayBuffer = new ArrayDeque<>();
+    private final int replayBufferSize;
+    // Arranca en el reloj (µs) para que un lastSeq de antes de un reinicio nunca parezca futuro
+    private long lastSeq = System.currentTimeMillis() * 1000;
 
-    public PreSaleWebSocketHandler(JwtProvider jwtProvider, ObjectMapper objectMapper) {
+    public PreSaleWebSocketHandler(JwtProvider jwtProvider, ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                                   int sendThreads, int sendTimeLimitMs, int bufferSizeLimit, int maxPendingMessages,
+                                   int replayBufferSize) {
         this.jwtProvider = jwtProvider;
         this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.sendTimeLimitMs = sendTimeLimitMs;
+        this.bufferSizeLimit = bufferSizeLimit;
+        this.maxPendingMessages = Math.max(1, maxPendingMessages);
+        this.replayBufferSize = Math.max(0, replayBufferSize);
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        // Cola sin límite: como máximo hay una tarea de envío pendiente por sesión
+        this.sendExecutor = new ThreadPoolExecutor(sendThreads, sendThreads, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "ws-preventa-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.sendExecutor.allowCoreThreadTimeOut(true);
+
+        Gauge.builder("jarvis.ws.sessions", sessions, Map::size).register(meterRegistry);
+        Gauge.builder("jarvis.ws.queue.depth", sessions,
+                s -> s.values().stream().mapToInt(c -> c.pendingCount.get()).sum()).register(meterRegistry);
+        Gauge.builder("jarvis.ws.send.buffer.bytes", sessions,
+                s -> s.values().stream().mapToLong(c -> c.pendingBytes.get()).sum()).register(meterRegistry);
+        Gauge.builder("jarvis.ws.send.executor.queue", sendExecutor, e -> e.getQueue().size()).register(meterRegistry);
+        Gauge.builder("jarvis.ws.replay.buffer", replayBuffer, Deque::size).register(meterRegistry);
     }
 
     @Override
     public void afterConnectionEstablished(WebSocketSession session) {
-        String token = extractToken(session);
-        if (token == null || jwtProvider.getTokenUser(token) == null) {
+        String token = queryParam(session, "token");
+        if (jwtProvider.verify(token).isEmpty()) {
             log.warn("WebSocket connection rejected — invalid or missing token. Session: {}", session.getId());
             try {
                 session.close(CloseStatus.NOT_ACCEPTABLE);
             } catch (Exception ignored) {}
             return;
         }
-        sessions.add(session);
-        log.info("WebSocket client connected. Session: {}, total sessions: {}", session.getId(), sessions.size());
+        ClientSession client = new ClientSession(session);
+        client.topics.addAll(parseTopics(queryParam(session, "topics")));
+        Long clientLastSeq = parseSeq(queryParam(session, "lastSeq"));
+        int replayed;
+        synchronized (replayLock) {
+            replayed = clientLastSeq != null ? replay(client, clientLastSeq) : 0;
+            sessions.put(session.getId(), client);
+        }
+        log.info("WebSocket client connected. Session: {}, topics: {}, lastSeq: {}, replayed: {}, total sessions: {}",
+                session.getId(), client.topics, clientLastSeq, replayed, sessions.size());
+    }
+
+    /**
+     * Encola los eventos posteriores a clientLastSeq, o RESYNC si hay un hueco que el buffer
+     * ya no cubre. Se llama con replayLock tomado.
+     */
+    private int replay(ClientSession client, long clientLastSeq) {
+        if (clientLastSeq >= lastSeq) {
+            return 0;
+        }
+        SequencedEvent oldest = replayBuffer.peekFirst();
+        // Si el buffer no cubre el hueco, o el delta no cabe en la cola de la sesión, resync completo
+        if (oldest == null || oldest.seq() > clientLastSeq + 1 || lastSeq - clientLastSeq > maxPendingMessages) {
+            Counter.builder("jarvis.ws.replay").tag("outcome", "resync").register(meterRegistry).increment();
+            WsMessage<Void> resync = new WsMessage<>(RESYNC, null);
+            resync.setSeq(lastSeq);
+            client.enqueue(new TextMessage(toJson(resync)));
+            return 0;
+        }
+        int replayed = 0;
+        for (SequencedEvent event : replayBuffer) {
+            if (event.seq() > clientLastSeq && client.accepts(event.topics()) && client.enqueue(event.message())) {
+                replayed++;
+            }
+        }
+        Counter.builder("jarvis.ws.replay").tag("outcome", "delta").register(meterRegistry).increment();
+        return replayed;
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) {
+        ClientSession client = sessions.get(session.getId());
+        if (client == null) {
+            return;
+        }
+        try {
+            WsMessage<List<String>> request = objectMapper.readValue(message.getPayload(), new TypeReference<>() {});
+            List<String> topics = request.getPayload() != null ? request.getPayload() : List.of();
+            if (SUBSCRIBE.equals(request.getType())) {
+                client.topics.addAll(topics);
+            } else if (UNSUBSCRIBE.equals(request.getType())) {
+                topics.forEach(client.topics::remove);
+            }
+            log.info("WebSocket session {} topics: {}", session.getId(), client.topics);
+        } catch (Exception e) {
+            log.warn("WebSocket message ignored. Session: {}: {}", session.getId(), e.getMessage());
+        }
     }
 
     @Override
     public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
-        sessions.remove(session);
+        sessions.remove(session.getId());
         log.info("WebSocket client disconnected. Session: {}, total sessions: {}", session.getId(), sessions.size());
     }
 
     @Override
     public void handleTransportError(WebSocketSession session, Throwable exception) {
         log.error("WebSocket transport error. Session: {}", session.getId(), exception);
-        sessions.remove(session);
+        sessions.remove(session.getId());
     }
 
-    public void broadcast(WsMessage<?> message) {
-        String json;
+    /**
+     * Envía el mensaje a las sesiones sin suscripciones y a las suscritas a alguno de los tópicos.
+     * No bloquea: solo encola.
+     */
+    public void broadcast(WsMessage<?> message, String... topics) {
+        int queued = 0;
+        synchronized (replayLock) {
+            message.setSeq(lastSeq + 1);
+            String json = toJson(message);
+            if (json == null) {
+                return;
+            }
+            lastSeq++;
+
+            TextMessage textMessage = new TextMessage(json);
+            if (replayBufferSize > 0) {
+                replayBuffer.addLast(new SequencedEvent(lastSeq, topics, textMessage));
+                while (replayBuffer.size() > replayBufferSize) {
+                    replayBuffer.removeFirst();
+                }
+            }
+            for (ClientSession client : sessions.values()) {
+                if (client.accepts(topics) && client.enqueue(textMessage)) {
+                    queued++;
+                }
+            }
+        }
+        log.info("WebSocket broadcast {} seq={} queued for {} / {} sessions",
+                message.getType(), message.getSeq(), queued, sessions.size());
+    }
+
+    private String toJson(WsMessage<?> message) {
         try {
-            json = objectMapper.writeValueAsString(message);
+            return objectMapper.writeValueAsString(message);
         } catch (Exception e) {
             log.error("Error serializing WebSocket message", e);
+            return null;
+        }
+    }
+
+    /** Detiene el pool de envío al cerrar el contexto (destroy method inferido del @Bean) */
+    public void shutdown() {
+        sendExecutor.shutdownNow();
+    }
+
+    /**
+     * Saca la sesión del broadcast y programa su cierre en el pool de envío. Puede llamarse
+     * desde broadcast (hilo de la petición, con replayLock tomado), así que aquí no se cierra.
+     */
+    private void drop(ClientSession client, String reason, String detail) {
+        client.closed = true;
+        if (sessions.remove(client.session.getId()) == null) {
             return;
         }
+        Counter.builder("jarvis.ws.dropped").tag("reason", reason).register(meterRegistry).increment();
+        log.warn("WebSocket session {} dropped ({}): {}", client.session.getId(), reason, detail);
+        try {
+            sendExecutor.execute(client::close);
+        } catch (RejectedExecutionException e) {
+            log.debug("WebSocket session {} not closed, send pool stopped", client.session.getId());
+        }
+    }
 
-        int sent = 0;
-        for (WebSocketSession session : sessions) {
-            if (session.isOpen()) {
-                try {
-                    session.sendMessage(new TextMessage(json));
-                    sent++;
-                } catch (Exception e) {
-                    log.warn("Error sending WebSocket message to session {}: {}", session.getId(), e.getMessage());
-                }
+    private static Long parseSeq(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static Set<String> parseTopics(String topics) {
+        if (topics == null || topics.isBlank()) {
+            return Set.of();
+        }
+        Set<String> result = new HashSet<>();
+        for (String topic : topics.split(",")) {
+            if (!topic.isBlank()) {
+                result.add(topic.trim());
             }
         }
-        log.info("WebSocket broadcast sent to {} / {} sessions", sent, sessions.size());
+        return result;
     }
 
-    private String extractToken(WebSocketSession session) {
+    private String queryParam(WebSocketSession session, String name) {
         URI uri = session.getUri();
         if (uri == null) return null;
         String query = uri.getQuery();
         if (query == null) return null;
+        String prefix = name + "=";
         return Arrays.stream(query.split("&"))
-                .filter(p -> p.startsWith("token="))
-                .map(p -> p.substring(6))
+                .filter(p -> p.startsWith(prefix))
+                .map(p -> p.substring(prefix.length()))
                 .findFirst()
                 .map(t -> URLDecoder.decode(t, StandardCharsets.UTF_8))
                 .orElse(null);
     }
+
+    private record SequencedEvent(long seq, String[] topics, TextMessage message) {
+    }
+
+    /**
+     * Sesión con su cola de envío. Solo un hilo del pool la vacía a la vez, lo que conserva
+     * el orden de los eventos para esa sesión y garantiza un único envío asíncrono en curso.
+     */
+    private final class ClientSession {
+
+        private final WebSocketSession session;
+        // Null si el contenedor no expone la sesión de Jakarta WebSocket: se envía en bloqueo
+        private final Session nativeSession;
+        private final Set<String> topics = ConcurrentHashMap.newKeySet();
+        private final Queue<TextMessage> pending = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger pendingCount = new AtomicInteger();
+        private final AtomicLong pendingBytes = new AtomicLong();
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private volatile boolean closed;
+
+        private ClientSession(WebSocketSession session) {
+            this.session = session;
+            this.nativeSession = session instanceof NativeWebSocketSession nativeWs
+                    ? nativeWs.getNativeSession(Session.class) : null;
+            if (nativeSession != null) {
+                nativeSession.getUserProperties().put(BLOCKING_SEND_TIMEOUT, (long) sendTimeLimitMs);
+            }
+        }
+
+        private boolean accepts(String... eventTopics) {
+            if (topics.isEmpty()) {
+                return true;
+            }
+            for (String topic : eventTopics) {
+                if (topics.contains(topic)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean enqueue(TextMessage message) {
+            if (closed || !session.isOpen()) {
+                return false;
+            }
+            int bytes = message.getPayloadLength();
+            if (pendingCount.incrementAndGet() > maxPendingMessages) {
+                pendingCount.decrementAndGet();
+                drop(this, "queue_full", maxPendingMessages + " mensajes pendientes");
+                return false;
+            }
+            if (pendingBytes.addAndGet(bytes) > bufferSizeLimit) {
+                pendingCount.decrementAndGet();
+                pendingBytes.addAndGet(-bytes);
+                drop(this, "buffer_full", bufferSizeLimit + " bytes pendientes");
+                return false;
+            }
+            pending.add(message);
+            scheduleDrain();
+            return true;
+        }
+
+        private void scheduleDrain() {
+            if (draining.compareAndSet(false, true)) {
+                try {
+                    sendExecutor.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    draining.set(false);
+                }
+            }
+        }
+
+        private void drain() {
+            try {
+                TextMessage message;
+                while ((message = pending.poll()) != null) {
+                    pendingCount.decrementAndGet();
+                    pendingBytes.addAndGet(-message.getPayloadLength());
+                    if (closed || !session.isOpen()) {
+                        continue;
+                    }
+                    try {
+                        send(message);
+                        Counter.builder("jarvis.ws.messages.sent").register(meterRegistry).increment();
+                    } catch (TimeoutException e) {
+                        drop(this, "slow_consumer", "envío sin completar en " + sendTimeLimitMs + " ms");
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    } catch (Exception e) {
+                        drop(this, "send_error", e.getMessage());
+                    }
+                }
+            } finally {
+                draining.set(false);
+            }
+            // Un mensaje encolado justo después del último poll necesita otra pasada
+            if (!pending.isEmpty()) {
+                scheduleDrain();
+            }
+        }
+
+        /**
+         * Envío asíncrono con plazo: el hilo deja de esperar a los sendTimeLimitMs aunque el
+         * socket siga sin drenar, y la sesión se descarta.
+         */
+        private void send(TextMessage message) throws Exception {
+            if (nativeSession == null) {
+                session.sendMessage(message);
+                return;
+            }
+            Future<Void> result = nativeSession.getAsyncRemote().sendText(message.getPayload());
+            try {
+                result.get(sendTimeLimitMs, TimeUnit.MILLISECONDS);
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof Exception cause ? cause : e;
+            }
+        }
+
+        private void close() {
+            pending.clear();
+            pendingCount.set(0);
+            pendingBytes.set(0);
+            try {
+                session.close(CloseStatus.SESSION_NOT_RELIABLE);
+            } catch (Exception e) {
+                log.debug("WebSocket session {} close failed: {}", session.getId(), e.getMessage());
+            }
+        }
+    }
 }
@@ -2,7 +2,9 @@ package com.co.jarvis.config;
 
 import com.co.jarvis.config.security.JwtProvider;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.socket.config.annotation.EnableWebSocket;
@@ -19,9 +21,28 @@ public class WebSocketConfig implements WebSocketConfigurer {
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${jarvis.ws.send-threads:4}")
+    private int sendThreads;
+
+    @Value("${jarvis.ws.send-time-limit-ms:10000}")
+    private int sendTimeLimitMs;
+
+    @Value("${jarvis.ws.buffer-size-limit:524288}")
+    private int bufferSizeLimit;
+
+    @Value("${jarvis.ws.max-pending-messages:200}")
+    private int maxPendingMessages;
+
+    @Value("${jarvis.ws.replay-buffer-size:1000}")
+    private int replayBufferSize;
+
     @Bean
     public PreSaleWebSocketHandler preSaleWebSocketHandler() {
-        return new PreSaleWebSocketHandler(jwtProvider, objectMapper);
+        return new PreSaleWebSocketHandler(jwtProvider, objectMapper, meterRegistry,
+                sendThreads, sendTimeLimitMs, bufferSizeLimit, maxPendingMessages, replayBufferSize);
     }
 
     @Override
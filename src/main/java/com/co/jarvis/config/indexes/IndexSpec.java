@@ -0,0 +1,57 @@
+package com.co.jarvis.config.indexes;
+
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.index.Index;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Índice declarado para una colección. Los nombres de campo son los guardados en MongoDB (p. ej. invoice_number, client._id).
+ */
+public record IndexSpec(String collection, String name, Map<String, Sort.Direction> keys) {
+
+    public static Builder on(String collection, String name) {
+        return new Builder(collection, name);
+    }
+
+    public Index toIndex() {
+        Index index = new Index().named(name);
+        keys.forEach(index::on);
+        return index;
+    }
+
+    public Document keyDocument() {
+        Document document = new Document();
+        keys.forEach((field, direction) -> document.append(field, direction == Sort.Direction.ASC ? 1 : -1));
+        return document;
+    }
+
+    public static final class Builder {
+
+        private final String collection;
+        private final String name;
+        private final Map<String, Sort.Direction> keys = new LinkedHashMap<>();
+
+        private Builder(String collection, String name) {
+            this.collection = collection;
+            this.name = name;
+        }
+
+        public Builder asc(String field) {
+            keys.put(field, Sort.Direction.ASC);
+            return this;
+        }
+
+        public Builder desc(String field) {
+            keys.put(field, Sort.Direction.DESC);
+            return this;
+        }
+
+        public IndexSpec build() {
+            return new IndexSpec(collection, name, Collections.unmodifiableMap(new LinkedHashMap<>(keys)));
+        }
+    }
+}
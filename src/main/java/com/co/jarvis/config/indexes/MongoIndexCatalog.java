@@ -0,0 +1,73 @@
+package com.co.jarvis.config.indexes;
+
+import java.util.List;
+
+/**
+ * Índices que necesitan las consultas de los repositorios y servicios. Se siguen la regla
+ * igualdad → rango: primero los campos que se filtran por igualdad y al final la fecha.
+ * Al agregar una consulta nueva sobre estas colecciones, declarar aquí su índice.
+ */
+public final class MongoIndexCatalog {
+
+    private MongoIndexCatalog() {
+    }
+
+    public static List<IndexSpec> indexes() {
+        return List.of(
+                // SALES_BILLING: findByBillNumber en cada venta y reportes por rango de fechas
+                IndexSpec.on("SALES_BILLING", "billNumber_idx").asc("billNumber").build(),
+                IndexSpec.on("SALES_BILLING", "dateTimeRecord_idx").desc("dateTimeRecord").build(),
+                IndexSpec.on("SALES_BILLING", "client_dateTimeRecord_idx").asc("client._id").desc("dateTimeRecord").build(),
+                IndexSpec.on("SALES_BILLING", "product_dateTimeRecord_idx").asc("saleDetails.product._id").desc("dateTimeRecord").build(),
+                IndexSpec.on("SALES_BILLING", "saleType_dateTimeRecord_idx").asc("saleType").desc("dateTimeRecord").build(),
+                IndexSpec.on("SALES_BILLING", "paymentMethod_dateTimeRecord_idx").asc("payments.method").desc("dateTimeRecord").build(),
+                IndexSpec.on("SALES_BILLING", "seller_dateTimeRecord_idx").asc("order.creationUser.numberIdentity").desc("dateTimeRecord").build(),
+
+                // PRODUCTS: búsqueda por código de barras al escanear (fallos del catálogo en memoria)
+                IndexSpec.on("PRODUCTS", "presentations_barcode_idx").asc("presentations.barcode").build(),
+                // PRODUCTS: ítems de compras y devoluciones que llegan solo con el código de producto
+                IndexSpec.on("PRODUCTS", "product_code_idx").asc("product_code").build(),
+
+                // PURCHASE_INVOICES
+                IndexSpec.on("PURCHASE_INVOICES", "invoice_number_idx").asc("invoice_number").build(),
+                IndexSpec.on("PURCHASE_INVOICES", "date_idx").desc("date").build(),
+                IndexSpec.on("PURCHASE_INVOICES", "supplier_date_idx").asc("supplier._id").desc("date").build(),
+                IndexSpec.on("PURCHASE_INVOICES", "items_barcode_invoice_date_idx").asc("items.presentationBarcode").desc("invoice_date").build(),
+
+                // PRESENTATION_COSTS: retirar una factura editada o eliminada (el _id ya es el código de barras)
+                IndexSpec.on("PRESENTATION_COSTS", "history_invoiceId_idx").asc("history.invoiceId").build(),
+
+                // AUDIT_LOG: bloque del mes con espacio al agregar e historia de una entidad en orden
+                IndexSpec.on("AUDIT_LOG", "entityType_entityId_period_idx").asc("entityType").asc("entityId").asc("period").build(),
+
+                // EXPENSES: arqueo diario, conciliación bancaria y retiros del propietario
+                IndexSpec.on("EXPENSES", "dateTimeRecord_idx").desc("dateTimeRecord").build(),
+                IndexSpec.on("EXPENSES", "category_dateTimeRecord_idx").asc("category").desc("dateTimeRecord").build(),
+
+                // SUPPLIER_PAYMENTS
+                IndexSpec.on("SUPPLIER_PAYMENTS", "paymentDate_idx").desc("paymentDate").build(),
+                IndexSpec.on("SUPPLIER_PAYMENTS", "supplierId_paymentDate_idx").asc("supplierId").desc("paymentDate").build(),
+
+                // CASH_LOANS
+                IndexSpec.on("CASH_LOANS", "loanDate_idx").desc("loanDate").build(),
+                IndexSpec.on("CASH_LOANS", "status_loanDate_idx").asc("status").desc("loanDate").build(),
+                // Devoluciones del día para el libro de caja
+                IndexSpec.on("CASH_LOANS", "returnDate_status_idx").asc("returnDate").asc("status").build(),
+
+                // INTERNAL_TRANSFERS
+                IndexSpec.on("INTERNAL_TRANSFERS", "transfer_date_idx").desc("transfer_date").build(),
+                IndexSpec.on("INTERNAL_TRANSFERS", "status_transfer_date_idx").asc("status").desc("transfer_date").build(),
+
+                // CLIENT_ACCOUNT_PAYMENTS / CLIENT_ACCOUNT_TRANSACTIONS / CLIENT_CREDIT_TRANSACTIONS:
+                // historial de un cliente y movimientos del día para arqueo y conciliación
+                IndexSpec.on("CLIENT_ACCOUNT_PAYMENTS", "clientId_paymentDate_idx").asc("clientId").asc("paymentDate").build(),
+                IndexSpec.on("CLIENT_ACCOUNT_PAYMENTS", "paymentDate_idx").desc("paymentDate").build(),
+                IndexSpec.on("CLIENT_ACCOUNT_TRANSACTIONS", "clientId_createdAt_idx").asc("clientId").asc("createdAt").build(),
+                IndexSpec.on("CLIENT_CREDIT_TRANSACTIONS", "clientId_createdAt_idx").asc("clientId").asc("createdAt").build(),
+                IndexSpec.on("CLIENT_CREDIT_TRANSACTIONS", "transactionDate_idx").desc("transactionDate").build(),
+
+                // CASH_LEDGER_DAYS: al registrar un documento se retiran sus movimientos anteriores
+                IndexSpec.on("CASH_LEDGER_DAYS", "entries_sourceKey_idx").asc("entries.sourceKey").build()
+        );
+    }
+}
@@ -0,0 +1,93 @@
+package com.co.jarvis.config.indexes;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Reconciliación de índices al arrancar:
+ * 1. Crea los índices declarados en {@link MongoIndexCatalog} que no existan.
+ * 2. Verifica que queden creados y reporta con $indexStats los índices no declarados sin uso.
+ * No verifica los planes de las consultas: algunas búsquedas (regex sin ancla o con 'i')
+ * recorren la colección aunque el índice exista.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MongoIndexReconciler {
+
+    private final MongoTemplate mongoTemplate;
+
+    @Value("${jarvis.indexes.reconcile:true}")
+    private boolean reconcile;
+
+    @Value("${jarvis.indexes.report-usage:true}")
+    private boolean reportUsage;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconcileIndexes() {
+        if (!reconcile) {
+            return;
+        }
+        log.info("MongoIndexReconciler -> reconcileIndexes");
+        Map<String, List<IndexSpec>> byCollection = MongoIndexCatalog.indexes().stream()
+                .collect(Collectors.groupingBy(IndexSpec::collection, LinkedHashMap::new, Collectors.toList()));
+        byCollection.forEach((collection, specs) -> {
+            specs.forEach(this::ensureIndex);
+            verifyIndexes(collection, specs);
+            if (reportUsage) {
+                reportUnusedIndexes(collection, specs);
+            }
+        });
+    }
+
+    private void ensureIndex(IndexSpec spec) {
+        try {
+            mongoTemplate.indexOps(spec.collection()).ensureIndex(spec.toIndex());
+        } catch (RuntimeException e) {
+            // Un índice con las mismas llaves y otro nombre/opciones no se reemplaza automáticamente
+            log.error("MongoIndexReconciler -> no se pudo crear {}.{}: {}", spec.collection(), spec.name(), e.getMessage());
+        }
+    }
+
+    private void verifyIndexes(String collection, List<IndexSpec> specs) {
+        List<IndexInfo> existing = mongoTemplate.indexOps(collection).getIndexInfo();
+        Set<String> existingNames = existing.stream().map(IndexInfo::getName).collect(Collectors.toSet());
+        for (IndexSpec spec : specs) {
+            if (!existingNames.contains(spec.name())) {
+                log.warn("MongoIndexReconciler -> falta el índice {}.{} {}", collection, spec.name(), spec.keyDocument().toJson());
+            }
+        }
+    }
+
+    private void reportUnusedIndexes(String collection, List<IndexSpec> specs) {
+        Set<String> declared = specs.stream().map(IndexSpec::name).collect(Collectors.toSet());
+        try {
+            for (Document stats : mongoTemplate.getCollection(collection)
+                    .aggregate(List.of(new Document("$indexStats", new Document())))) {
+                String name = stats.getString("name");
+                Document accesses = stats.get("accesses", Document.class);
+                long ops = accesses != null && accesses.get("ops") instanceof Number n ? n.longValue() : 0L;
+                if (!"_id_".equals(name) && !declared.contains(name) && ops == 0) {
+                    // Los contadores de $indexStats se reinician con el servidor: solo es una pista
+                    log.info("MongoIndexReconciler -> índice no declarado y sin uso {}.{} (desde {})",
+                            collection, name, accesses != null ? accesses.get("since") : null);
+                }
+            }
+        } catch (RuntimeException e) {
+            log.warn("MongoIndexReconciler -> $indexStats no disponible en {}: {}", collection, e.getMessage());
+        }
+    }
+}
@@ -1,24 +1,95 @@
 package com.co.jarvis.config.security;
 
 import com.co.jarvis.dto.UserDto;
+import com.co.jarvis.entity.User;
+import com.co.jarvis.repository.UserRepository;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Date;
-import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
 import java.util.function.Function;
 
+/**
+ * Emite y verifica los JWT de sesión. El token lleva el usuario en el claim "user", así que
+ * la verificación no depende de estado en memoria: sigue funcionando tras un reinicio y en
+ * varias instancias que compartan jarvis.security.jwt.secret.
+ * La llave se toma de JARVIS_JWT_SECRET, sin valor por defecto: el arranque falla si falta o
+ * tiene menos de 256 bits. Además de la firma, el usuario debe seguir existiendo con el mismo
+ * rol; esa comprobación se repite cada jarvis.security.jwt.recheck-ms, así que borrar un
+ * usuario o cambiarle el rol invalida sus tokens sin esperar las 10 horas de expiración.
+ * La llave y el parser se crean una sola vez; los tokens ya verificados se guardan en un LRU
+ * acotado (jarvis.security.jwt.cache-size, 0 lo desactiva).
+ */
+@Slf4j
 @Component
 public class JwtProvider {
 
-    private String SECRET_KEY = "u6Z9Dr5cQWyPm5TVbXsGQJLfzK5fdN8JeVXlD6P7gB8=";
+    private static final String USER_CLAIM = "user";
+    private static final long EXPIRATION_MS = 1000L * 60 * 60 * 10;
+    private static final int MIN_SECRET_BYTES = 32;
+    /**
+     * SHA-256 de la llave que estuvo como valor por defecto en el repositorio. Es pública, así
+     * que se rechaza aunque llegue por JARVIS_JWT_SECRET.
+     */
+    private static final String LEAKED_SECRET_SHA256 = "9da6fe5a41f6700d6cb3c5cc5d58fa92d3bc0c2a3ceddfd118ae50f723a8d84f";
 
-    private HashMap<String, UserDto> listTokens = new HashMap<>();
+    private final SecretKey secretKey;
+    private final JwtParser parser;
+    private final ObjectMapper claimsMapper;
+    private final VerifiedTokenCache cache;
+    private final UserRepository userRepository;
+    private final long recheckMs;
+
+    public JwtProvider(@Value("${jarvis.security.jwt.secret}") String secret,
+                       @Value("${jarvis.security.jwt.cache-size:1000}") int cacheSize,
+                       @Value("${jarvis.security.jwt.recheck-ms:60000}") long recheckMs,
+                       ObjectMapper objectMapper,
+                       UserRepository userRepository) {
+        validateSecret(secret);
+        this.secretKey = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+        this.parser = Jwts.parser().verifyWith(secretKey).build();
+        this.claimsMapper = objectMapper.copy().disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        this.cache = cacheSize > 0 ? new VerifiedTokenCache(cacheSize) : null;
+        this.userRepository = userRepository;
+        this.recheckMs = recheckMs;
+    }
+
+    private static void validateSecret(String secret) {
+        if (secret == null || secret.isBlank()) {
+            throw new IllegalStateException("JwtProvider -> falta JARVIS_JWT_SECRET; no se puede firmar tokens");
+        }
+        byte[] bytes = secret.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length < MIN_SECRET_BYTES) {
+            throw new IllegalStateException("JwtProvider -> JARVIS_JWT_SECRET debe tener al menos 256 bits ("
+                    + MIN_SECRET_BYTES + " bytes), tiene " + bytes.length);
+        }
+        try {
+            String fingerprint = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+            if (LEAKED_SECRET_SHA256.equals(fingerprint)) {
+                throw new IllegalStateException("JwtProvider -> JARVIS_JWT_SECRET es la llave publicada en el "
+                        + "repositorio; genere una nueva");
+            }
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
 
     public String extractUsername(String token) {
         return extractClaim(token, Claims::getSubject);
@@ -34,43 +105,134 @@ public class JwtProvider {
     }
 
     private Claims extractAllClaims(String token) {
-        return Jwts.parser().verifyWith(getSecretKey()).build().parseSignedClaims(token).getPayload();
+        return parser.parseSignedClaims(token).getPayload();
     }
 
-    private Boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+    public String generateToken(String numberIdentity, UserDto user) {
+        Date now = new Date();
+        return Jwts.builder()
+                .claim(USER_CLAIM, user)
+                .subject(numberIdentity)
+                .issuedAt(now)
+                .expiration(new Date(now.getTime() + EXPIRATION_MS))
+                .signWith(secretKey)
+                .compact();
     }
 
-    public String generateToken(String numberIdentity, UserDto user) {
-        Map<String, UserDto> claims = new HashMap<>();
-        claims.put(numberIdentity, user);
-        return createToken(claims, user);
+    /**
+     * Verifica firma y expiración del token y que el usuario siga registrado con el mismo rol.
+     * Vacío si el token es inválido, está vencido o el usuario ya no coincide.
+     */
+    public Optional<UserDto> verify(String token) {
+        if (token == null || token.isBlank()) {
+            return Optional.empty();
+        }
+        long now = System.currentTimeMillis();
+        if (cache != null) {
+            UserDto cached = cache.get(token, now);
+            if (cached != null) {
+                return Optional.of(cached);
+            }
+        }
+
+        Claims claims;
+        try {
+            claims = extractAllClaims(token);
+        } catch (JwtException | IllegalArgumentException e) {
+            log.debug("JwtProvider -> verify: token rechazado: {}", e.getMessage());
+            return Optional.empty();
+        }
+
+        UserDto user = toUser(claims);
+        if (user == null || claims.getExpiration() == null || !isCurrent(user)) {
+            return Optional.empty();
+        }
+        if (cache != null) {
+            cache.put(token, user, Math.min(claims.getExpiration().getTime(), now + recheckMs));
+        }
+        return Optional.of(user);
     }
 
-    private String createToken(Map<String, UserDto> claims, UserDto user) {
-        Date expiration = new Date(System.currentTimeMillis() + 1000 * 60 * 60 * 10);
-        SecretKey secretKey = getSecretKey();
-        String tokenCreated = Jwts.builder()
-                .claims(claims)
-                .subject(user.getNumberIdentity())
-                .issuedAt(new Date(System.currentTimeMillis()))
-                .expiration(expiration)
-                .signWith(secretKey)
-                .compact();
-        listTokens.put(tokenCreated, user);
-        return tokenCreated;
+    /**
+     * Quita del caché los tokens del usuario para que la siguiente petición vuelva a consultarlo.
+     * En otras instancias el cambio se nota a más tardar en jarvis.security.jwt.recheck-ms.
+     */
+    public void evictUser(String numberIdentity) {
+        if (cache != null && numberIdentity != null) {
+            cache.removeUser(numberIdentity);
+        }
     }
 
-    private SecretKey getSecretKey() {
-        return Keys.hmacShaKeyFor(SECRET_KEY.getBytes(StandardCharsets.UTF_8));
+    private boolean isCurrent(UserDto user) {
+        Optional<User> current = userRepository.findByNumberIdentity(user.getNumberIdentity());
+        if (current.isEmpty()) {
+            log.info("JwtProvider -> verify: usuario {} ya no existe", user.getNumberIdentity());
+            return false;
+        }
+        if (!Objects.equals(current.get().getRol(), user.getRol())) {
+            log.info("JwtProvider -> verify: el rol de {} cambió", user.getNumberIdentity());
+            return false;
+        }
+        return true;
     }
 
-    public Boolean validateToken(String token, String numberIdentity) {
-        final String extractedUsername = extractUsername(token);
-        return (extractedUsername.equals(numberIdentity) && !isTokenExpired(token));
+    /**
+     * Tokens emitidos antes del claim "user" guardaban el usuario bajo un claim con el nombre
+     * de su identificación (el subject); se aceptan ambos.
+     */
+    private UserDto toUser(Claims claims) {
+        Object raw = claims.get(USER_CLAIM);
+        if (raw == null && claims.getSubject() != null) {
+            raw = claims.get(claims.getSubject());
+        }
+        if (!(raw instanceof Map<?, ?>)) {
+            return null;
+        }
+        UserDto user = claimsMapper.convertValue(raw, UserDto.class);
+        if (user.getNumberIdentity() == null) {
+            user.setNumberIdentity(claims.getSubject());
+        }
+        return claims.getSubject() != null && claims.getSubject().equals(user.getNumberIdentity()) ? user : null;
     }
 
-    public UserDto getTokenUser(String token) {
-        return listTokens.get(token);
+    /**
+     * LRU de tokens verificados. Cada entrada vence con el token o al tocar volver a consultar
+     * el usuario, lo que ocurra primero; un token expirado nunca se acepta desde el caché.
+     */
+    private static final class VerifiedTokenCache {
+
+        private record Entry(UserDto user, long expiresAt) {
+        }
+
+        private final Map<String, Entry> entries;
+
+        VerifiedTokenCache(int maxSize) {
+            this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                    return size() > maxSize;
+                }
+            };
+        }
+
+        synchronized UserDto get(String token, long now) {
+            Entry entry = entries.get(token);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.expiresAt() <= now) {
+                entries.remove(token);
+                return null;
+            }
+            return entry.user();
+        }
+
+        synchronized void put(String token, UserDto user, long expiresAt) {
+            entries.put(token, new Entry(user, expiresAt));
+        }
+
+        synchronized void removeUser(String numberIdentity) {
+            entries.values().removeIf(entry -> numberIdentity.equals(entry.user().getNumberIdentity()));
+        }
     }
 }
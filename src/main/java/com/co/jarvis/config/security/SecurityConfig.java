@@ -85,6 +85,9 @@ public class SecurityConfig {
                             .requestMatchers(HttpMethod.PATCH, "/api/preventas/*/cancel").hasAnyRole("ADMIN", "FACTURADOR")
                             .requestMatchers(HttpMethod.PATCH, "/api/preventas/*/billed").hasAnyRole("ADMIN", "FACTURADOR")
                             .requestMatchers(HttpMethod.PATCH, "/api/preventas/**").hasAnyRole("ADMIN", "FACTURADOR")
+                            // Reconstrucciones completas: recorren colecciones enteras y reescriben proyecciones
+                            .requestMatchers(HttpMethod.POST, "/api/purchases/invoices/last-cost/rebuild").hasRole("ADMIN")
+                            .requestMatchers(HttpMethod.POST, "/api/cash-register/ledger/rebuild").hasRole("ADMIN")
                             .anyRequest().authenticated();
                 });
 
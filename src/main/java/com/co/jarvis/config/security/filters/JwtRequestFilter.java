@@ -15,7 +15,6 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import com.co.jarvis.config.security.JwtProvider;
-import com.co.jarvis.dto.UserDto;
 import com.co.jarvis.service.impl.LoginUserService;
 
 import jakarta.servlet.FilterChain;
@@ -37,17 +36,11 @@ public class JwtRequestFilter extends OncePerRequestFilter {
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
             throws ServletException, IOException {
         String authorizationHeader = request.getHeader(HttpHeaders.AUTHORIZATION);
-        String jwt = null;
-        UserDto userDto = null;
 
-        if (authorizationHeader != null && authorizationHeader.startsWith("Bearer ")) {
-            jwt = authorizationHeader.substring(7);
-            userDto = jwtProvider.getTokenUser(jwt);
-        }
-
-        if (userDto != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-
-            if (jwtProvider.validateToken(jwt, userDto.getNumberIdentity())) {
+        if (authorizationHeader != null && authorizationHeader.startsWith("Bearer ")
+                && SecurityContextHolder.getContext().getAuthentication() == null) {
+            // Un solo parseo del token: firma, expiración y usuario salen de los mismos claims
+            jwtProvider.verify(authorizationHeader.substring(7)).ifPresent(userDto -> {
                 List<SimpleGrantedAuthority> authorities = (userDto.getRol() != null)
                         ? List.of(new SimpleGrantedAuthority(userDto.getRol().name()))
                         : Collections.emptyList();
@@ -57,7 +50,7 @@ public class JwtRequestFilter extends OncePerRequestFilter {
                 authenticationToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
 
                 SecurityContextHolder.getContext().setAuthentication(authenticationToken);
-            }
+            });
         }
 
         filterChain.doFilter(request, response);
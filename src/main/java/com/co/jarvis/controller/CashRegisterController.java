@@ -3,6 +3,7 @@ package com.co.jarvis.controller;
 import com.co.jarvis.dto.UserDto;
 import com.co.jarvis.dto.cashregister.*;
 import com.co.jarvis.enums.ECashCountStatus;
+import com.co.jarvis.service.CashLedgerService;
 import com.co.jarvis.service.CashRegisterService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -24,6 +25,7 @@ import java.util.Map;
 public class CashRegisterController {
 
     private final CashRegisterService cashRegisterService;
+    private final CashLedgerService cashLedgerService;
 
     /**
      * GET /api/cash-register/daily-summary?date=2026-02-07
@@ -37,6 +39,17 @@ public class CashRegisterController {
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * POST /api/cash-register/ledger/rebuild?date=2026-02-07
+     * Reconstruye el libro diario de caja de una fecha desde los documentos origen. Solo ADMIN
+     */
+    @PostMapping("/ledger/rebuild")
+    public ResponseEntity<List<CashTransactionDto>> rebuildLedgerDay(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+        log.info("CashRegisterController -> rebuildLedgerDay: {}", date);
+        return ResponseEntity.ok(cashLedgerService.rebuildDay(date));
+    }
+
     /**
      * POST /api/cash-register
      * Crea o actualiza un arqueo de caja
@@ -30,7 +30,7 @@ public class PreSaleController {
         log.info("PreSaleController -> create");
         UserDto actor = (UserDto) auth.getPrincipal();
         PreSale saved = preSaleService.create(request, actor.getNumberIdentity());
-        webSocketHandler.broadcast(new WsMessage<>("PREVENTA_READY", toNotification(saved)));
+        webSocketHandler.broadcast(new WsMessage<>("PREVENTA_READY", toNotification(saved)), topics(saved));
         return ResponseEntity.ok(toDto(saved));
     }
 
@@ -55,7 +55,7 @@ public class PreSaleController {
         UserDto actor = (UserDto) auth.getPrincipal();
         PreSale cancelled = preSaleService.cancel(id, actor.getFullName());
         // Notificar a todos los facturadores que esta preventa fue cancelada
-        webSocketHandler.broadcast(new WsMessage<>("PREVENTA_CANCELLED", toNotification(cancelled)));
+        webSocketHandler.broadcast(new WsMessage<>("PREVENTA_CANCELLED", toNotification(cancelled)), topics(cancelled));
         return ResponseEntity.ok(toDto(cancelled));
     }
 
@@ -68,7 +68,7 @@ public class PreSaleController {
         PreSale billed = preSaleService.markAsBilled(
                 id, body.getBillingId(), body.getBillNumber(), actor.getFullName());
         // Notificar a todos los facturadores que esta preventa fue facturada
-        webSocketHandler.broadcast(new WsMessage<>("PREVENTA_BILLED", toNotification(billed)));
+        webSocketHandler.broadcast(new WsMessage<>("PREVENTA_BILLED", toNotification(billed)), topics(billed));
         return ResponseEntity.ok(toDto(billed));
     }
 
@@ -79,7 +79,7 @@ public class PreSaleController {
         if (ps.getStatus() != PreSaleStatus.PENDING) {
             return ResponseEntity.badRequest().build();
         }
-        webSocketHandler.broadcast(new WsMessage<>("PREVENTA_READY", toNotification(ps)));
+        webSocketHandler.broadcast(new WsMessage<>("PREVENTA_READY", toNotification(ps)), topics(ps));
         return ResponseEntity.ok(toDto(ps));
     }
 
@@ -122,6 +122,13 @@ public class PreSaleController {
                 .build();
     }
 
+    /** Tópicos del evento: el vendedor que creó la preventa */
+    private String[] topics(PreSale preSale) {
+        return preSale.getCreatedBy() != null
+                ? new String[]{PreSaleWebSocketHandler.SELLER_TOPIC + preSale.getCreatedBy()}
+                : new String[0];
+    }
+
     private PreSaleNotification toNotification(PreSale preSale) {
         return PreSaleNotification.builder()
                 .preSaleId(preSale.getId())
@@ -8,6 +8,7 @@ import com.co.jarvis.dto.UserDto;
 import com.co.jarvis.service.CatalogService;
 import com.co.jarvis.service.ProductService;
 import com.co.jarvis.service.impl.LoginUserService;
+import com.co.jarvis.util.exception.ResourceNotFoundException;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -92,6 +93,23 @@ public class ProductController extends GenericController<ProductDto, ProductServ
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * GET /api/product/{productId}/audit-trail
+     * Historial de auditoría completo; el producto solo trae las últimas entradas.
+     */
+    @GetMapping("/{productId}/audit-trail")
+    public ResponseEntity<?> findAuditTrail(@PathVariable String productId) {
+        logger.info("ProductController -> findAuditTrail: productId={}", productId);
+        try {
+            return ResponseEntity.ok(service.findAuditTrail(productId));
+        } catch (ResourceNotFoundException e) {
+            return ResponseEntity.status(404).body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Error consultando auditoría del producto: {}", e.getMessage());
+            return ResponseEntity.status(500).body(Map.of("error", e.getMessage()));
+        }
+    }
+
     /**
      * PATCH /api/product/{productId}/presentations/{presentationId}
      * Actualiza cualquier campo de una presentación específica identificada por su UUID.
@@ -106,7 +124,7 @@ public class ProductController extends GenericController<ProductDto, ProductServ
         try {
             com.co.jarvis.dto.ProductDto updated = service.updatePresentation(productId, presentationId, patch);
             return ResponseEntity.ok(updated);
-        } catch (com.co.jarvis.util.exception.ResourceNotFoundException e) {
+        } catch (ResourceNotFoundException e) {
             return ResponseEntity.status(404).body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             logger.error("Error updating presentation: {}", e.getMessage());
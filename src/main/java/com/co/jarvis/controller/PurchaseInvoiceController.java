@@ -10,6 +10,7 @@ import com.co.jarvis.dto.PurchaseInvoiceDto;
 import com.co.jarvis.dto.PurchaseLastCostInfo;
 import com.co.jarvis.dto.PurchasePaymentDetailResponse;
 import com.co.jarvis.dto.SupplierRefDto;
+import com.co.jarvis.service.PresentationCostService;
 import com.co.jarvis.service.PurchaseInvoiceService;
 import com.co.jarvis.service.PurchasePaymentService;
 import jakarta.validation.Valid;
@@ -37,6 +38,9 @@ public class PurchaseInvoiceController {
     @Autowired
     private PurchasePaymentService purchasePaymentService;
 
+    @Autowired
+    private PresentationCostService presentationCostService;
+
     /**
      * GET /api/purchases/invoices
      * Lista todas las facturas de compra con filtros opcionales
@@ -231,4 +235,14 @@ public class PurchaseInvoiceController {
         logger.info("PurchaseInvoiceController -> bulkLastCost: {} barcodes", request.barcodes().size());
         return ResponseEntity.ok(service.bulkGetLastCost(request.barcodes()));
     }
+
+    /**
+     * POST /api/purchases/invoices/last-cost/rebuild
+     * Reconstruye los costos por presentación (PRESENTATION_COSTS) desde todas las facturas. Solo ADMIN
+     */
+    @PostMapping("/last-cost/rebuild")
+    public ResponseEntity<Integer> rebuildLastCosts() {
+        logger.info("PurchaseInvoiceController -> rebuildLastCosts");
+        return ResponseEntity.ok(presentationCostService.rebuild());
+    }
 }
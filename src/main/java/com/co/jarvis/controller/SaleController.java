@@ -7,15 +7,18 @@ import com.co.jarvis.dto.ProductSalesSummary;
 import com.co.jarvis.dto.SalesTotalsResponse;
 import com.co.jarvis.service.SaleService;
 import com.co.jarvis.util.exception.FieldsException;
+import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -52,16 +55,21 @@ public class SaleController extends GenericController<BillingDto, SaleService> {
     }
 
     @PostMapping(value = "/print/ticket-billing", produces = MediaType.APPLICATION_PDF_VALUE)
-    public ResponseEntity<byte[]> printTicketBilling(@RequestBody BillingDto dto) {
+    public void printTicketBilling(@RequestBody BillingDto dto, HttpServletResponse response) throws IOException {
         String fileName = format("factura_venta_%s.pdf", dto.getBillNumber());
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_PDF);
-        headers.setContentDispositionFormData(fileName, fileName);
-        byte[] billingTicket = service.printTicketBilling(dto);
+        response.setContentType(MediaType.APPLICATION_PDF_VALUE);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                ContentDisposition.formData().name(fileName).filename(fileName).build().toString());
+        // El PDF se escribe directo en la respuesta, sin armar el byte[] completo
+        service.printTicketBilling(dto, response.getOutputStream());
+    }
+
+    @PostMapping(value = "/print/ticket-billing/escpos", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<byte[]> printTicketBillingEscPos(@RequestBody BillingDto dto) {
+        logger.info("SaleController -> printTicketBillingEscPos");
         return ResponseEntity.ok()
-                .contentType(MediaType.APPLICATION_PDF)
-                .headers(headers)
-                .body(billingTicket);
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .body(service.printTicketBillingEscPos(dto));
     }
 
     @GetMapping(value = "/find-billing/{billingNumber}", produces = MediaType.APPLICATION_JSON_VALUE)
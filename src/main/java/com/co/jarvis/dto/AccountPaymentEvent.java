@@ -0,0 +1,29 @@
+package com.co.jarvis.dto;
+
+import com.co.jarvis.enums.EPaymentMethod;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Abono de CLIENT_ACCOUNT_PAYMENTS proyectado por agregación, con el id de la cuenta y del cliente
+ */
+@Builder
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AccountPaymentEvent {
+    private String accountId;
+    private String clientId;
+    private String paymentId;
+    private BigDecimal amount;
+    private EPaymentMethod paymentMethod;
+    private String bankAccountId;
+    private String bankAccountName;
+    private String reference;
+    private LocalDateTime paymentDate;
+}
@@ -0,0 +1,31 @@
+package com.co.jarvis.dto;
+
+import com.co.jarvis.enums.ECreditTransactionType;
+import com.co.jarvis.enums.EPaymentMethod;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Movimiento de CLIENT_CREDIT_TRANSACTIONS proyectado por agregación, con el id del saldo y del cliente
+ */
+@Builder
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CreditTransactionEvent {
+    private String creditId;
+    private String clientId;
+    private String transactionId;
+    private ECreditTransactionType type;
+    private BigDecimal amount;
+    private EPaymentMethod paymentMethod;
+    private String bankAccountId;
+    private String bankAccountName;
+    private String reference;
+    private LocalDateTime transactionDate;
+}
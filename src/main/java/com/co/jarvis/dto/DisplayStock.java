@@ -12,7 +12,7 @@ import java.math.BigDecimal;
  * DTO para representar el stock en formato legible (bultos/rollos + sobrante)
  */
 @Data
-@Builder
+@Builder(toBuilder = true)
 @AllArgsConstructor
 @NoArgsConstructor
 public class DisplayStock implements Serializable {
@@ -0,0 +1,16 @@
+package com.co.jarvis.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductUnitsSold {
+    private String id; // productId
+    private String barcode; // presentación vendida
+    private BigDecimal unitsSold; // en unidades de la presentación
+}
@@ -0,0 +1,37 @@
+package com.co.jarvis.dto;
+
+import com.co.jarvis.entity.Product;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * Resultado de una mutación atómica de stock: producto (proyección sin auditoría)
+ * junto con la cantidad antes y después del cambio.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class StockChange {
+
+    private Product product;
+    private BigDecimal previousQuantity;
+    private BigDecimal newQuantity;
+
+    public Double previousAsDouble() {
+        return previousQuantity != null ? previousQuantity.doubleValue() : null;
+    }
+
+    public Double newAsDouble() {
+        return newQuantity != null ? newQuantity.doubleValue() : null;
+    }
+
+    public String unitMeasureName() {
+        return product != null && product.getStock() != null && product.getStock().getUnitMeasure() != null
+                ? product.getStock().getUnitMeasure().name() : null;
+    }
+}
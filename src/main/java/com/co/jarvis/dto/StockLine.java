@@ -0,0 +1,23 @@
+package com.co.jarvis.dto;
+
+import com.co.jarvis.entity.Product;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Línea de movimiento de stock para registros en lote (ej. todas las líneas de una factura).
+ * Lleva la proyección del producto ya cargada para no volver a consultarlo.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class StockLine {
+
+    private Product product;
+    private String presentationBarcode;
+    /** Cantidad en unidad base del stock (siempre positiva). */
+    private Double quantity;
+}
@@ -13,4 +13,11 @@ public class WsMessage<T> {
 
     private String type;
     private T payload;
+    /** Secuencia del evento en el canal; el cliente la envía como lastSeq al reconectarse */
+    private Long seq;
+
+    public WsMessage(String type, T payload) {
+        this.type = type;
+        this.payload = payload;
+    }
 }
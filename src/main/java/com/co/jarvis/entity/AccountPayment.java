@@ -5,6 +5,7 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
@@ -13,9 +14,12 @@ import java.time.LocalDateTime;
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
+@Document(collection = "CLIENT_ACCOUNT_PAYMENTS")
 public class AccountPayment {
 
     private String id;
+    private String accountId;       // _id de la ClientAccount
+    private String clientId;
     private BigDecimal amount;
     private EPaymentMethod paymentMethod;
     private String bankAccountId;
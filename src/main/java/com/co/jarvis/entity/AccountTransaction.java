@@ -5,6 +5,7 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
@@ -14,9 +15,12 @@ import java.time.LocalDateTime;
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
+@Document(collection = "CLIENT_ACCOUNT_TRANSACTIONS")
 public class AccountTransaction {
 
     private String id;
+    private String accountId;       // _id de la ClientAccount
+    private String clientId;
     private EAccountTransactionType type;
     private BigDecimal amount;
     private BigDecimal balanceAfter;
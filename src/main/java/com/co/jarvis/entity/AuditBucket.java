@@ -0,0 +1,44 @@
+package com.co.jarvis.entity;
+
+import com.co.jarvis.enums.EAuditEntityType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bloque de la bitácora de auditoría: entradas y snapshots de una entidad en un mes (period,
+ * "yyyy-MM"), en orden de llegada. Solo se agrega con $push a un bloque del mes que tenga
+ * espacio (count menor a jarvis.audit.bucket-size); si no hay, el upsert abre otro. Los
+ * bloques nunca se reescriben, así la entidad auditada no crece con su historia.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "AUDIT_LOG")
+public class AuditBucket {
+
+    @Id
+    private String id;
+
+    private EAuditEntityType entityType;
+    private String entityId;
+    private String period;
+
+    private int count;                  // Entradas + snapshots guardados en el bloque
+    private LocalDateTime firstAt;
+    private LocalDateTime lastAt;
+
+    @Builder.Default
+    private List<AuditEntry> entries = new ArrayList<>();
+
+    @Builder.Default
+    private List<SessionSnapshot> snapshots = new ArrayList<>();
+}
@@ -8,6 +8,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
@@ -59,9 +60,14 @@ public class CashCountSession {
     private String notes;                       // Notas del arqueo
     private String cancelReason;                // Razón de anulación (si aplica)
 
-    @Builder.Default
-    private List<AuditEntry> auditTrail = new ArrayList<>();  // Historial de operaciones
+    /**
+     * Historial y fotos embebidos antes de la bitácora de auditoría (AUDIT_LOG). Solo existen en
+     * sesiones aún no migradas; se mapean para que un save() no los borre antes de que
+     * CashRegisterServiceImpl los pase a la bitácora. Las operaciones nuevas van solo a AUDIT_LOG.
+     */
+    @Field("auditTrail")
+    private List<AuditEntry> legacyAuditTrail;
 
-    @Builder.Default
-    private List<SessionSnapshot> snapshots = new ArrayList<>();  // Fotos previas a reaperturas
+    @Field("snapshots")
+    private List<SessionSnapshot> legacySnapshots;
 }
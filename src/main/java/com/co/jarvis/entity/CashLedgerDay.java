@@ -0,0 +1,41 @@
+package com.co.jarvis.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Libro de caja materializado de un día (_id = yyyy-MM-dd). Los servicios que generan
+ * movimientos de efectivo lo actualizan al guardar; el resumen diario lo lee con un findById.
+ * complete = false indica que el día aún no se ha reconstruido desde las colecciones origen
+ * (días anteriores al libro), y version detecta escrituras concurrentes durante esa reconstrucción.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "CASH_LEDGER_DAYS")
+public class CashLedgerDay {
+
+    @Id
+    private String id;
+
+    private LocalDate date;
+
+    @Builder.Default
+    private List<CashLedgerEntry> entries = new ArrayList<>();
+
+    private boolean complete;
+
+    private long version;
+
+    private OffsetDateTime rebuiltAt;
+}
@@ -0,0 +1,40 @@
+package com.co.jarvis.entity;
+
+import com.co.jarvis.enums.EPaymentMethod;
+import com.co.jarvis.enums.ETransactionCategory;
+import com.co.jarvis.enums.ETransactionType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.mongodb.core.mapping.Field;
+import org.springframework.data.mongodb.core.mapping.FieldType;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Movimiento de efectivo dentro del libro diario de caja.
+ * sourceKey identifica el documento que lo originó (p. ej. BILLING:&lt;id&gt;) para poder
+ * reemplazar sus movimientos cuando ese documento cambia o se anula.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CashLedgerEntry {
+
+    private String id;
+    private String sourceKey;
+    private LocalDate ledgerDate;               // Día de caja al que pertenece
+    private ETransactionType type;
+    private ETransactionCategory category;
+    private String description;
+    @Field(targetType = FieldType.DECIMAL128)
+    private BigDecimal amount;
+    private EPaymentMethod paymentMethod;
+    private String reference;
+    private LocalDateTime transactionDate;
+    private String relatedDocumentId;
+}
@@ -0,0 +1,36 @@
+package com.co.jarvis.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Movimientos de un documento origen (_id = sourceKey) pendientes de pasar al libro de caja.
+ * Se escribe dentro de la misma transacción que el documento y se borra cuando el libro ya
+ * los tiene; si el proceso cae entre el commit y esa escritura, el reconciliador los aplica.
+ * token distingue una versión de otra para no borrar la que dejó una transacción posterior.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "CASH_LEDGER_PENDING")
+public class CashLedgerPending {
+
+    @Id
+    private String id;
+
+    private String token;
+
+    @Builder.Default
+    private List<CashLedgerEntry> entries = new ArrayList<>();
+
+    private OffsetDateTime createdAt;
+}
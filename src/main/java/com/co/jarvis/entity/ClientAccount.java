@@ -6,6 +6,7 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Transient;
 import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.DBRef;
 import org.springframework.data.mongodb.core.mapping.Document;
@@ -17,6 +18,12 @@ import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * Cuenta por cobrar de un cliente. El documento solo guarda los saldos, que se actualizan con
+ * $inc (por eso son Decimal128); los abonos y movimientos van cada uno en su propio documento
+ * (CLIENT_ACCOUNT_PAYMENTS y CLIENT_ACCOUNT_TRANSACTIONS), así registrar un abono cuesta lo
+ * mismo sin importar la historia del cliente.
+ */
 @Data
 @Builder
 @NoArgsConstructor
@@ -35,21 +42,29 @@ public class ClientAccount {
     private Client client;
 
     @Builder.Default
+    @Field(targetType = FieldType.DECIMAL128)
     private BigDecimal totalDebt = BigDecimal.ZERO;
 
     @Builder.Default
+    @Field(targetType = FieldType.DECIMAL128)
     private BigDecimal totalPaid = BigDecimal.ZERO;
 
     @Builder.Default
+    @Field(targetType = FieldType.DECIMAL128)
     private BigDecimal currentBalance = BigDecimal.ZERO;
 
     private LocalDateTime lastPaymentDate;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
 
+    /**
+     * No se guardan en la cuenta: ClientAccountService.getByClientId los llena desde sus colecciones.
+     */
+    @Transient
     @Builder.Default
     private List<AccountPayment> payments = new ArrayList<>();
 
+    @Transient
     @Builder.Default
     private List<AccountTransaction> transactions = new ArrayList<>();
 
@@ -6,6 +6,7 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Transient;
 import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.DBRef;
 import org.springframework.data.mongodb.core.mapping.Document;
@@ -17,6 +18,10 @@ import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * Saldo a favor de un cliente. Los saldos se actualizan con $inc (Decimal128) y cada movimiento
+ * es un documento de CLIENT_CREDIT_TRANSACTIONS.
+ */
 @Data
 @Builder
 @NoArgsConstructor
@@ -35,18 +40,26 @@ public class ClientCredit {
     private Client client;
 
     @Builder.Default
+    @Field(targetType = FieldType.DECIMAL128)
     private BigDecimal currentBalance = BigDecimal.ZERO;
 
     @Builder.Default
+    @Field(targetType = FieldType.DECIMAL128)
     private BigDecimal totalDeposited = BigDecimal.ZERO;
 
     @Builder.Default
+    @Field(targetType = FieldType.DECIMAL128)
     private BigDecimal totalUsed = BigDecimal.ZERO;
 
     private LocalDateTime lastTransactionDate;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
 
+    /**
+     * No se guardan en el documento: ClientCreditService.getByClientId los llena desde
+     * CLIENT_CREDIT_TRANSACTIONS.
+     */
+    @Transient
     @Builder.Default
     private List<CreditTransaction> transactions = new ArrayList<>();
 
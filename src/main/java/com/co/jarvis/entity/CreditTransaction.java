@@ -6,6 +6,7 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
@@ -14,9 +15,12 @@ import java.time.LocalDateTime;
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
+@Document(collection = "CLIENT_CREDIT_TRANSACTIONS")
 public class CreditTransaction {
 
     private String id;
+    private String creditId;        // _id del ClientCredit
+    private String clientId;
     private ECreditTransactionType type;
     private BigDecimal amount;
     private BigDecimal balanceAfter;
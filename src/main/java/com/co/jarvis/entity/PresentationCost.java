@@ -0,0 +1,42 @@
+package com.co.jarvis.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Costos de compra materializados de una presentación (_id = código de barras). history guarda
+ * las compras más recientes, de la más nueva a la más antigua y acotadas a
+ * jarvis.purchase.cost-history.size; la primera es el último costo. Las facturas de compra lo
+ * actualizan al crearse, editarse o agregar ítems, y la reconstrucción lo recalcula desde
+ * PURCHASE_INVOICES.
+ * <p>
+ * truncatedThrough queda en null mientras history tenga todas las compras; cuando el límite
+ * deja compras por fuera, guarda una fecha igual o posterior a la de todas ellas. Retirar
+ * ítems de una factura no lo limpia: lo que salió de la ventana no vuelve a entrar.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "PRESENTATION_COSTS")
+public class PresentationCost {
+
+    @Id
+    private String id;
+
+    @Builder.Default
+    private List<PresentationCostEntry> history = new ArrayList<>();
+
+    private LocalDate truncatedThrough;
+
+    private OffsetDateTime updatedAt;
+}
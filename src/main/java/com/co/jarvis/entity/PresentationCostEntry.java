@@ -0,0 +1,56 @@
+package com.co.jarvis.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+
+/**
+ * Ítem de una factura de compra dentro de {@link PresentationCost}, con los datos de la
+ * factura que necesitan las pantallas de costos. line es la posición del ítem en la factura
+ * y desempata el orden cuando una factura trae la misma presentación más de una vez.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PresentationCostEntry {
+
+    private String invoiceId;
+    private String invoiceNumber;
+    private LocalDate invoiceDate;
+    private OffsetDateTime createdAt;
+    private String supplierId;
+    private String supplierName;
+    private int line;
+    private String description;
+    private BigDecimal quantity;
+    private BigDecimal unitCost;
+    private BigDecimal vatRate;
+    private BigDecimal vatAmount;
+    private BigDecimal freightAmount;
+    private BigDecimal unitTotalCost;
+
+    public static PresentationCostEntry of(PurchaseInvoice invoice, PurchaseInvoiceItem item, int line) {
+        return PresentationCostEntry.builder()
+                .invoiceId(invoice.getId())
+                .invoiceNumber(invoice.getInvoiceNumber())
+                .invoiceDate(invoice.getInvoiceDate())
+                .createdAt(invoice.getCreatedAt())
+                .supplierId(invoice.getSupplier() != null ? invoice.getSupplier().getId() : null)
+                .supplierName(invoice.getSupplier() != null ? invoice.getSupplier().getName() : null)
+                .line(line)
+                .description(item.getDescription())
+                .quantity(item.getQuantity())
+                .unitCost(item.getUnitCost())
+                .vatRate(item.getVatRate())
+                .vatAmount(item.getVatAmount())
+                .freightAmount(item.getFreightAmount())
+                .unitTotalCost(item.getUnitTotalCost())
+                .build();
+    }
+}
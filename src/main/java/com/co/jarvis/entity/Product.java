@@ -1,7 +1,9 @@
 package com.co.jarvis.entity;
 
+import com.co.jarvis.dto.DisplayStock;
 import com.co.jarvis.enums.ESale;
 import com.co.jarvis.enums.EVat;
+import com.co.jarvis.util.DisplayStockCalculator;
 import com.co.jarvis.util.mensajes.MessageConstants;
 import jakarta.persistence.Id;
 import lombok.AllArgsConstructor;
@@ -18,7 +20,7 @@ import java.util.List;
 @NoArgsConstructor
 @AllArgsConstructor
 @Data
-@Builder
+@Builder(toBuilder = true)
 @Document(collection = "PRODUCTS")
 public class Product {
 
@@ -38,13 +40,29 @@ public class Product {
     private Stock stock;
 
     /**
-     * Historial de auditoría con el detalle de los cambios realizados sobre
-     * el producto (ej. actualizaciones de precios por presentación).
+     * Forma del stock legible (tipo, tamaño del bulto y unidad), guardada cuando cambian el tipo
+     * de venta o las presentaciones. Bultos, sobrante y etiqueta se derivan de stock.quantity
+     * al leer con DisplayStockCalculator.withQuantity.
      */
-    @Field("audit_trail")
+    @Field("display_stock")
+    private DisplayStock displayStock;
+
+    /**
+     * Últimos cambios realizados sobre el producto (ej. actualizaciones de precios por
+     * presentación), acotados a jarvis.audit.product.recent-size. La historia completa está
+     * en la bitácora de auditoría (AUDIT_LOG).
+     */
+    @Field("recent_audit")
     @Builder.Default
     private List<AuditEntry> auditTrail = new ArrayList<>();
 
+    /**
+     * Historial embebido anterior a la bitácora. Solo existe en documentos aún no migrados;
+     * se mapea para que un save() no lo borre antes de que ProductServiceImpl lo pase a AUDIT_LOG.
+     */
+    @Field("audit_trail")
+    private List<AuditEntry> legacyAuditTrail;
+
     public boolean hasStock(BigDecimal amount) {
         return stock.getQuantity().compareTo(amount) >= 0;
     }
@@ -56,11 +74,17 @@ public class Product {
                     .warn(MessageConstants.STOCK_NOT_AVAILABLE + this.description);
         }
         stock.setQuantity(stock.getQuantity().subtract(amount));
+        refreshDisplayStock();
     }
 
     // Aumenta el stock
     public void increaseStock(BigDecimal amount) {
         stock.setQuantity(stock.getQuantity().add(amount));
+        refreshDisplayStock();
+    }
+
+    public void refreshDisplayStock() {
+        this.displayStock = DisplayStockCalculator.shape(this);
     }
 
     /**
@@ -10,7 +10,8 @@ import java.time.LocalDateTime;
 
 /**
  * Snapshot (foto) del estado de una sesión ANTES de ser reabierta.
- * Se almacena como lista embebida en CashCountSession y BankReconciliationSession.
+ * Se almacena en la bitácora de auditoría (AUDIT_LOG) para CashCountSession y como lista
+ * embebida en BankReconciliationSession.
  * Permite auditar cuántas veces y en qué condiciones se reabrió un cierre.
  */
 @Data
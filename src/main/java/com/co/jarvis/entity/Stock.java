@@ -5,14 +5,20 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.springframework.data.mongodb.core.mapping.Field;
+import org.springframework.data.mongodb.core.mapping.FieldType;
 
 import java.math.BigDecimal;
 
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
-@Builder
+@Builder(toBuilder = true)
 public class Stock {
+    /**
+     * Se persiste como Decimal128 para permitir $inc atómicos desde StockService.
+     */
+    @Field(targetType = FieldType.DECIMAL128)
     private BigDecimal quantity;
     private UnitMeasure unitMeasure;
 }
@@ -0,0 +1,6 @@
+package com.co.jarvis.enums;
+
+public enum EAuditEntityType {
+    PRODUCTO,
+    ARQUEO_CAJA
+}
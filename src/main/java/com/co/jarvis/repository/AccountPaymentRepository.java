@@ -0,0 +1,59 @@
+package com.co.jarvis.repository;
+
+import com.co.jarvis.dto.AccountPaymentEvent;
+import com.co.jarvis.entity.AccountPayment;
+import com.co.jarvis.enums.EPaymentMethod;
+import org.springframework.data.mongodb.repository.Aggregation;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface AccountPaymentRepository extends MongoRepository<AccountPayment, String> {
+
+    List<AccountPayment> findByClientIdOrderByPaymentDateAsc(String clientId);
+
+    List<AccountPayment> findByClientIdInOrderByPaymentDateAsc(Collection<String> clientIds);
+
+    /**
+     * Abonos con fecha en [from, to) cuyo método está en methods (null = sin método, se trata
+     * como EFECTIVO). Usa el índice de paymentDate.
+     */
+    @Aggregation(pipeline = {
+            "{ '$match': { 'paymentDate': { '$gte': ?0, '$lt': ?1 }, 'paymentMethod': { '$in': ?2 } } }",
+            "{ '$project': { " +
+                    "  '_id': 0, " +
+                    "  'accountId': 1, " +
+                    "  'clientId': 1, " +
+                    "  'paymentId': '$_id', " +
+                    "  'amount': 1, " +
+                    "  'paymentMethod': 1, " +
+                    "  'bankAccountId': 1, " +
+                    "  'bankAccountName': 1, " +
+                    "  'reference': 1, " +
+                    "  'paymentDate': 1 " +
+                    "} }"
+    })
+    List<AccountPaymentEvent> findPaymentEvents(LocalDateTime from, LocalDateTime to, Collection<EPaymentMethod> methods);
+
+    /**
+     * Igual que {@link #findPaymentEvents} pero con los métodos que NO están en methods
+     */
+    @Aggregation(pipeline = {
+            "{ '$match': { 'paymentDate': { '$gte': ?0, '$lt': ?1 }, 'paymentMethod': { '$nin': ?2 } } }",
+            "{ '$project': { " +
+                    "  '_id': 0, " +
+                    "  'accountId': 1, " +
+                    "  'clientId': 1, " +
+                    "  'paymentId': '$_id', " +
+                    "  'amount': 1, " +
+                    "  'paymentMethod': 1, " +
+                    "  'bankAccountId': 1, " +
+                    "  'bankAccountName': 1, " +
+                    "  'reference': 1, " +
+                    "  'paymentDate': 1 " +
+                    "} }"
+    })
+    List<AccountPaymentEvent> findPaymentEventsExcludingMethods(LocalDateTime from, LocalDateTime to, Collection<EPaymentMethod> methods);
+}
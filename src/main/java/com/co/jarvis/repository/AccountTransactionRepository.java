@@ -0,0 +1,11 @@
+package com.co.jarvis.repository;
+
+import com.co.jarvis.entity.AccountTransaction;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+import java.util.List;
+
+public interface AccountTransactionRepository extends MongoRepository<AccountTransaction, String> {
+
+    List<AccountTransaction> findByClientIdOrderByCreatedAtAsc(String clientId);
+}
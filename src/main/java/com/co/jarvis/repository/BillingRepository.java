@@ -1,6 +1,7 @@
 package com.co.jarvis.repository;
 
 import com.co.jarvis.dto.ProductSalesSummary;
+import com.co.jarvis.dto.ProductUnitsSold;
 import com.co.jarvis.entity.Billing;
 import org.springframework.data.mongodb.repository.Aggregation;
 import org.springframework.data.mongodb.repository.MongoRepository;
@@ -90,4 +91,23 @@ public interface BillingRepository extends MongoRepository<Billing, String> {
     })
     List<ProductSalesSummary> getProductSalesSummaryByDateAndProduct(OffsetDateTime from, OffsetDateTime to, String productBarcode);
 
+    /**
+     * Cantidad vendida por producto y presentación en el rango; alimenta los más vendidos y los
+     * de baja rotación del tablero de inventario. Las cantidades están en unidades de cada
+     * presentación: quien las sume debe pasarlas antes a la unidad base del producto.
+     */
+    @Aggregation(pipeline = {
+            "{ '$match': { 'dateTimeRecord': { '$gte': ?0, '$lte': ?1 } } }",
+            "{ '$unwind': '$saleDetails' }",
+            "{ '$match': { 'saleDetails.product._id': { '$exists': true, '$ne': null } } }",
+            "{ '$group': { " +
+                    "  '_id': { 'product': '$saleDetails.product._id', 'barcode': '$saleDetails.product.barcode' }, " +
+                    "  'unitsSold': { '$sum': { '$convert': { " +
+                    "    'input': '$saleDetails.amount', 'to': 'decimal', 'onError': 0, 'onNull': 0 " +
+                    "  } } } " +
+                    "} }",
+            "{ '$project': { '_id': '$_id.product', 'barcode': '$_id.barcode', 'unitsSold': 1 } }"
+    })
+    List<ProductUnitsSold> sumUnitsSoldByProduct(OffsetDateTime from, OffsetDateTime to);
+
 }
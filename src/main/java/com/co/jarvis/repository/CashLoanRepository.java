@@ -12,6 +12,7 @@ import java.util.List;
 public interface CashLoanRepository extends MongoRepository<CashLoan, String> {
     List<CashLoan> findByLoanDate(LocalDate loanDate);
     List<CashLoan> findByStatus(ECashLoanStatus status);
+    List<CashLoan> findByReturnDateAndStatus(LocalDate returnDate, ECashLoanStatus status);
     List<CashLoan> findByLoanDateBetween(LocalDate from, LocalDate to);
     List<CashLoan> findByLoanDateBetweenAndStatus(LocalDate from, LocalDate to, ECashLoanStatus status);
 }
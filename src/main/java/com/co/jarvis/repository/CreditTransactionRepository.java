@@ -0,0 +1,66 @@
+package com.co.jarvis.repository;
+
+import com.co.jarvis.dto.CreditTransactionEvent;
+import com.co.jarvis.entity.CreditTransaction;
+import com.co.jarvis.enums.ECreditTransactionType;
+import com.co.jarvis.enums.EPaymentMethod;
+import org.springframework.data.mongodb.repository.Aggregation;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface CreditTransactionRepository extends MongoRepository<CreditTransaction, String> {
+
+    List<CreditTransaction> findByClientIdOrderByCreatedAtAsc(String clientId);
+
+    List<CreditTransaction> findByClientIdAndTypeAndBillingId(String clientId, ECreditTransactionType type, String billingId);
+
+    /**
+     * Movimientos de los tipos indicados con fecha en [from, to) cuyo método está en methods
+     * (null = sin método, se trata como EFECTIVO). Usa el índice de transactionDate.
+     */
+    @Aggregation(pipeline = {
+            "{ '$match': { 'transactionDate': { '$gte': ?0, '$lt': ?1 }, 'type': { '$in': ?2 }, 'paymentMethod': { '$in': ?3 } } }",
+            "{ '$project': { " +
+                    "  '_id': 0, " +
+                    "  'creditId': 1, " +
+                    "  'clientId': 1, " +
+                    "  'transactionId': '$_id', " +
+                    "  'type': 1, " +
+                    "  'amount': 1, " +
+                    "  'paymentMethod': 1, " +
+                    "  'bankAccountId': 1, " +
+                    "  'bankAccountName': 1, " +
+                    "  'reference': 1, " +
+                    "  'transactionDate': 1 " +
+                    "} }"
+    })
+    List<CreditTransactionEvent> findTransactionEvents(LocalDateTime from, LocalDateTime to,
+                                                       Collection<ECreditTransactionType> types,
+                                                       Collection<EPaymentMethod> methods);
+
+    /**
+     * Igual que {@link #findTransactionEvents} pero con los métodos que NO están en methods
+     */
+    @Aggregation(pipeline = {
+            "{ '$match': { 'transactionDate': { '$gte': ?0, '$lt': ?1 }, 'type': { '$in': ?2 }, 'paymentMethod': { '$nin': ?3 } } }",
+            "{ '$project': { " +
+                    "  '_id': 0, " +
+                    "  'creditId': 1, " +
+                    "  'clientId': 1, " +
+                    "  'transactionId': '$_id', " +
+                    "  'type': 1, " +
+                    "  'amount': 1, " +
+                    "  'paymentMethod': 1, " +
+                    "  'bankAccountId': 1, " +
+                    "  'bankAccountName': 1, " +
+                    "  'reference': 1, " +
+                    "  'transactionDate': 1 " +
+                    "} }"
+    })
+    List<CreditTransactionEvent> findTransactionEventsExcludingMethods(LocalDateTime from, LocalDateTime to,
+                                                                       Collection<ECreditTransactionType> types,
+                                                                       Collection<EPaymentMethod> methods);
+}
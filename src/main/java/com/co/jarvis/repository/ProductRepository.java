@@ -7,6 +7,7 @@ import org.springframework.data.mongodb.repository.Aggregation;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.mongodb.repository.Query;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface ProductRepository extends MongoRepository<Product, String> {
@@ -21,6 +22,10 @@ public interface ProductRepository extends MongoRepository<Product, String> {
 
     Product findByPresentationsBarcode(String barcode);
 
+    Product findFirstByProductCode(String productCode);
+
+    List<Product> findByProductCodeIn(Collection<String> productCodes);
+
     @Aggregation(pipeline = {
             "{ $unwind: '$presentations' }",
             "{ $match: { 'presentations.barcode': { $regex: '^[0-9]{4}$' } } }", // Solo barcodes numéricos de 4 dígitos para códigos internos
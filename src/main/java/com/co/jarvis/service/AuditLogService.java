@@ -0,0 +1,42 @@
+package com.co.jarvis.service;
+
+import com.co.jarvis.entity.AuditEntry;
+import com.co.jarvis.entity.SessionSnapshot;
+import com.co.jarvis.enums.EAuditEntityType;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bitácora de auditoría fuera de los documentos auditados (AUDIT_LOG, ver AuditBucket).
+ * Solo agrega; las lecturas devuelven la historia completa en orden cronológico.
+ */
+public interface AuditLogService {
+
+    void append(EAuditEntityType entityType, String entityId, List<AuditEntry> entries);
+
+    /**
+     * Agrega las entradas de varias entidades en una sola escritura por lotes.
+     */
+    void appendAll(EAuditEntityType entityType, Map<String, List<AuditEntry>> entriesByEntity);
+
+    void appendSnapshot(EAuditEntityType entityType, String entityId, SessionSnapshot snapshot);
+
+    /**
+     * Copia el historial que la entidad tenía embebido antes de la bitácora. Los bloques tienen
+     * _id estable por entidad, así una migración interrumpida se puede repetir sin duplicar.
+     */
+    void appendLegacy(EAuditEntityType entityType, String entityId, List<AuditEntry> entries,
+                      List<SessionSnapshot> snapshots);
+
+    List<AuditEntry> findEntries(EAuditEntityType entityType, String entityId);
+
+    /**
+     * Historia de varias entidades en una sola consulta. Las entidades sin entradas no
+     * aparecen en el mapa.
+     */
+    Map<String, List<AuditEntry>> findEntries(EAuditEntityType entityType, Collection<String> entityIds);
+
+    List<SessionSnapshot> findSnapshots(EAuditEntityType entityType, String entityId);
+}
@@ -0,0 +1,19 @@
+package com.co.jarvis.service;
+
+/**
+ * Consecutivos de factura de la resolución de facturación activa.
+ */
+public interface BillingNumberService {
+
+    /**
+     * Número que recibirá la próxima factura, sin consumirlo (pantalla de nueva venta).
+     */
+    String peekNext();
+
+    /**
+     * Consume y devuelve el siguiente número de factura. Se llama como último write de la
+     * transacción del checkout: si la venta falla o se reintenta, el número vuelve al contador,
+     * y el contador queda bloqueado solo entre esta llamada y el commit.
+     */
+    String allocate();
+}
@@ -0,0 +1,48 @@
+package com.co.jarvis.service;
+
+import com.co.jarvis.dto.cashregister.CashTransactionDto;
+import com.co.jarvis.entity.*;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Libro diario de caja materializado (CASH_LEDGER_DAYS).
+ * Cada servicio que genera un movimiento de efectivo registra aquí el documento al guardarlo;
+ * el libro calcula qué movimientos en EFECTIVO le corresponden y en qué día. Dentro de una
+ * transacción se guarda un pendiente en ella y el día se escribe después del commit; los
+ * pendientes que no llegaron al día los aplica un reconciliador periódico.
+ */
+public interface CashLedgerService {
+
+    /**
+     * Movimientos en efectivo del día. Si el día no está materializado se reconstruye una vez
+     * desde las colecciones origen.
+     */
+    List<CashTransactionDto> getDayTransactions(LocalDate date);
+
+    /**
+     * Reconstruye el día desde las colecciones origen (reparación manual o días previos al libro)
+     */
+    List<CashTransactionDto> rebuildDay(LocalDate date);
+
+    void recordBilling(Billing billing);
+
+    void removeBilling(String billingId);
+
+    void recordAccountPayment(ClientAccount account, AccountPayment payment);
+
+    void recordCreditTransaction(ClientCredit credit, CreditTransaction transaction);
+
+    void recordMerchandiseReturn(MerchandiseReturn merchandiseReturn);
+
+    void recordExpense(Expense expense);
+
+    void removeExpense(String expenseId);
+
+    void recordSupplierPayment(SupplierPayment payment);
+
+    void recordCashLoan(CashLoan loan);
+
+    void recordInternalTransfer(InternalTransfer transfer);
+}
@@ -3,6 +3,7 @@ package com.co.jarvis.service;
 import com.co.jarvis.dto.InventoryDashboardDto;
 import com.co.jarvis.dto.PhysicalInventoryRequestDto;
 import com.co.jarvis.dto.StockAlertDto;
+import com.co.jarvis.dto.StockLine;
 import com.co.jarvis.entity.InventoryAdjustment;
 import com.co.jarvis.entity.InventoryMovement;
 import com.co.jarvis.entity.PhysicalInventory;
@@ -64,6 +65,8 @@ public interface InventoryService {
     void registerSaleMovement(String billingId, String productId, Double quantity, 
                                String presentationBarcode, String userId);
 
+    void registerSaleMovements(String billingId, List<StockLine> lines, String userId);
+
     void registerSaleReturnMovement(String returnId, String productId, Double quantity,
                                     String presentationBarcode, String userId);
 
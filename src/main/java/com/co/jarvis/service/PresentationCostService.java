@@ -0,0 +1,46 @@
+package com.co.jarvis.service;
+
+import com.co.jarvis.entity.PresentationCost;
+import com.co.jarvis.entity.PresentationCostEntry;
+import com.co.jarvis.entity.PurchaseInvoice;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Costos de compra por presentación materializados (PRESENTATION_COSTS).
+ * Las facturas de compra se registran aquí al guardarse; las pantallas de costos leen el último
+ * costo y el historial reciente sin recorrer PURCHASE_INVOICES.
+ */
+public interface PresentationCostService {
+
+    /**
+     * Reemplaza los ítems de la factura en las presentaciones que compra (y los quita de las
+     * que ya no compra).
+     */
+    void recordInvoice(PurchaseInvoice invoice);
+
+    void removeInvoice(String invoiceId);
+
+    PresentationCost findByBarcode(String barcode);
+
+    /**
+     * Compra más reciente de cada código de barras, en una sola consulta. Los códigos sin
+     * compras no aparecen en el mapa.
+     */
+    Map<String, PresentationCostEntry> findLatest(Collection<String> barcodes);
+
+    /**
+     * Indica si el historial guardado tiene todas las compras desde fromDate (null = todas),
+     * según lo que la ventana haya recortado (truncatedThrough), no según su tamaño actual.
+     * Si no, las más antiguas quedaron fuera de la ventana y hay que leer las facturas.
+     */
+    boolean covers(PresentationCost cost, LocalDate fromDate);
+
+    /**
+     * Recalcula la proyección desde todas las facturas de compra (carga inicial o reparación
+     * manual) reemplazando cada documento completo. Devuelve el número de facturas procesadas.
+     */
+    int rebuild();
+}
@@ -0,0 +1,25 @@
+package com.co.jarvis.service;
+
+import com.co.jarvis.entity.Product;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Resuelve productos por clave, que puede ser el id o el código de producto (los ítems de
+ * compras y devoluciones pueden traer cualquiera de los dos). Las lecturas van directo a Mongo
+ * por índice: los productos devueltos se pueden modificar y guardar.
+ */
+public interface ProductLookupService {
+
+    /**
+     * Producto cuyo id o, si no hay ninguno, cuyo código de producto es key. Null si no existe.
+     */
+    Product findByKey(String key);
+
+    /**
+     * Igual que {@link #findByKey} para varias claves, con una consulta por id y otra por
+     * código. Las claves sin producto no aparecen en el mapa.
+     */
+    Map<String, Product> findByKeys(Collection<String> keys);
+}
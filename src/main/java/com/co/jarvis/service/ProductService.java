@@ -1,6 +1,7 @@
 package com.co.jarvis.service;
 
 import java.math.BigDecimal;
+import java.util.List;
 
 import com.co.jarvis.dto.BulkPresentationPriceUpdateRequest;
 import com.co.jarvis.dto.BulkPresentationPriceUpdateResponse;
@@ -8,6 +9,7 @@ import com.co.jarvis.dto.DisplayStock;
 import com.co.jarvis.dto.PaginationDto;
 import com.co.jarvis.dto.ProductDto;
 import com.co.jarvis.dto.UserDto;
+import com.co.jarvis.entity.AuditEntry;
 import com.co.jarvis.entity.Product;
 
 public interface ProductService extends BaseService<ProductDto> {
@@ -24,6 +26,12 @@ public interface ProductService extends BaseService<ProductDto> {
     BulkPresentationPriceUpdateResponse bulkUpdatePresentationPrices(
             BulkPresentationPriceUpdateRequest request, UserDto user);
 
+    /**
+     * Historial de auditoría completo del producto, del más antiguo al más reciente. El
+     * producto solo guarda las últimas entradas; el resto se lee de la bitácora.
+     */
+    List<AuditEntry> findAuditTrail(String productId);
+
     ProductDto findByPresentationsBarcode(String barcode);
 
     void decreaseStock(Product product, BigDecimal amount);
@@ -52,7 +52,7 @@ public interface PurchaseInvoiceService {
 
     /**
      * Devuelve el último costo de compra para múltiples presentaciones (barcodes).
-     * Usa agregación MongoDB para optimización. Fallback a Product.costPrice si no hay historial.
+     * Lee PRESENTATION_COSTS en una sola consulta. Fallback a Product.costPrice si no hay historial.
      * @param barcodes Lista de códigos de barras de presentaciones
      * @return Lista de BulkLastCostItem (solo para barcodes encontrados)
      */
@@ -8,6 +8,7 @@ import com.co.jarvis.dto.SalesTotalsResponse;
 import com.co.jarvis.util.exception.FieldsException;
 import org.springframework.data.domain.Page;
 
+import java.io.OutputStream;
 import java.util.List;
 
 public interface SaleService extends BaseService<BillingDto> {
@@ -18,7 +19,9 @@ public interface SaleService extends BaseService<BillingDto> {
 
     String getLastBillingNumber();
 
-    byte[] printTicketBilling(BillingDto dto);
+    void printTicketBilling(BillingDto dto, OutputStream outputStream);
+
+    byte[] printTicketBillingEscPos(BillingDto dto);
 
     List<BillingDto> findAllBilling(BillingReportFilterDto dto);
 
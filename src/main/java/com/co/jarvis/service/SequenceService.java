@@ -0,0 +1,30 @@
+package com.co.jarvis.service;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Contadores con nombre sobre la colección "sequences" (findAndModify + $inc).
+ * Reemplaza los cálculos "max + 1" que ordenaban colecciones completas.
+ */
+public interface SequenceService {
+
+    /**
+     * Crea el contador la primera vez con el último valor emitido (ej. el máximo histórico).
+     * El proveedor solo se evalúa si el contador aún no existe. Corre fuera de la transacción
+     * del llamador: dos nodos que lo crean a la vez chocan con un duplicate key, y dentro de una
+     * transacción ese error la aborta.
+     */
+    void initialize(String name, LongSupplier lastIssued);
+
+    /** Consume y devuelve el siguiente valor del contador. */
+    long next(String name);
+
+    /** Consume el siguiente valor y lo formatea con la plantilla (ej. "PRV-%04d"). */
+    String next(String name, String template);
+
+    /** Valor que devolverá el próximo next, sin consumirlo. */
+    long peek(String name);
+
+    /** Marca value como emitido si el contador va por detrás ($max), en una sola escritura. */
+    void advanceTo(String name, long value);
+}
@@ -0,0 +1,41 @@
+package com.co.jarvis.service;
+
+import com.co.jarvis.dto.StockChange;
+
+import com.co.jarvis.entity.Product;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Map;
+
+public interface StockService {
+
+    /**
+     * Aplica un delta ($inc) sobre stock.quantity en un solo round trip.
+     * Positivo incrementa, negativo descuenta.
+     */
+    StockChange applyDelta(String productId, BigDecimal delta);
+
+    /**
+     * Igual que applyDelta pero solo descuenta si el stock resultante no queda negativo.
+     * Lanza IllegalArgumentException si no hay stock suficiente.
+     */
+    StockChange applyDeltaIfAvailable(String productId, BigDecimal delta);
+
+    /**
+     * Fija stock.quantity a un valor absoluto (inventario físico) sin reescribir el documento.
+     */
+    StockChange setQuantity(String productId, BigDecimal quantity);
+
+    /**
+     * Carga con una sola consulta $in la proyección (sin auditoría) de los productos indicados.
+     */
+    Map<String, Product> findProducts(Collection<String> productIds);
+
+    /**
+     * Aplica varios deltas en un único BulkOperations no ordenado (un $inc por producto).
+     * Devuelve stock.quantity de cada producto leído después de la escritura; dentro de una
+     * transacción es exactamente el resultado de estos $inc.
+     */
+    Map<String, BigDecimal> applyDeltas(Map<String, BigDecimal> deltasByProduct);
+}
@@ -0,0 +1,231 @@
+package com.co.jarvis.service.impl;
+
+import com.co.jarvis.entity.AuditBucket;
+import com.co.jarvis.entity.AuditEntry;
+import com.co.jarvis.entity.SessionSnapshot;
+import com.co.jarvis.enums.EAuditEntityType;
+import com.co.jarvis.service.AuditLogService;
+import com.co.jarvis.util.MongoMigrationSupport;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AuditLogServiceImpl implements AuditLogService {
+
+    private static final String ENTRIES = "entries";
+    private static final String SNAPSHOTS = "snapshots";
+    private static final DateTimeFormatter PERIOD_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM");
+
+    // Bloques en el orden en que se abrieron: por mes y, dentro del mes, por _id
+    private static final Sort BUCKET_ORDER = Sort.by(Sort.Order.asc("period"), Sort.Order.asc("_id"));
+
+    private final MongoTemplate mongoTemplate;
+
+    @Value("${jarvis.audit.bucket-size:200}")
+    private int bucketSize;
+
+    @Override
+    public void append(EAuditEntityType entityType, String entityId, List<AuditEntry> entries) {
+        if (entityId == null || entries == null || entries.isEmpty()) {
+            return;
+        }
+        byPeriod(entries, AuditEntry::getTimestamp).forEach((period, items) ->
+                mongoTemplate.upsert(bucketWithRoom(entityType, entityId, period),
+                        push(ENTRIES, items, AuditEntry::getTimestamp), AuditBucket.class));
+    }
+
+    @Override
+    public void appendAll(EAuditEntityType entityType, Map<String, List<AuditEntry>> entriesByEntity) {
+        if (entriesByEntity == null || entriesByEntity.isEmpty()) {
+            return;
+        }
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, AuditBucket.class);
+        int operations = 0;
+        for (Map.Entry<String, List<AuditEntry>> entity : entriesByEntity.entrySet()) {
+            if (entity.getKey() == null || entity.getValue() == null || entity.getValue().isEmpty()) {
+                continue;
+            }
+            for (Map.Entry<String, List<AuditEntry>> period : byPeriod(entity.getValue(), AuditEntry::getTimestamp).entrySet()) {
+                bulk.upsert(bucketWithRoom(entityType, entity.getKey(), period.getKey()),
+                        push(ENTRIES, period.getValue(), AuditEntry::getTimestamp));
+                operations++;
+            }
+        }
+        if (operations > 0) {
+            bulk.execute();
+        }
+    }
+
+    @Override
+    public void appendSnapshot(EAuditEntityType entityType, String entityId, SessionSnapshot snapshot) {
+        if (entityId == null || snapshot == null) {
+            return;
+        }
+        byPeriod(List.of(snapshot), SessionSnapshot::getSnapshotAt).forEach((period, items) ->
+                mongoTemplate.upsert(bucketWithRoom(entityType, entityId, period),
+                        push(SNAPSHOTS, items, SessionSnapshot::getSnapshotAt), AuditBucket.class));
+    }
+
+    @Override
+    public void appendLegacy(EAuditEntityType entityType, String entityId, List<AuditEntry> entries,
+                             List<SessionSnapshot> snapshots) {
+        if (entityId == null) {
+            return;
+        }
+        List<AuditBucket> buckets = new ArrayList<>();
+        buckets.addAll(legacyBuckets(entityType, entityId, ENTRIES, entries, AuditEntry::getTimestamp,
+                AuditBucket::setEntries));
+        buckets.addAll(legacyBuckets(entityType, entityId, SNAPSHOTS, snapshots, SessionSnapshot::getSnapshotAt,
+                AuditBucket::setSnapshots));
+        MongoMigrationSupport.insertIgnoringDuplicates(mongoTemplate, AuditBucket.class, buckets);
+    }
+
+    @Override
+    public List<AuditEntry> findEntries(EAuditEntityType entityType, String entityId) {
+        List<AuditEntry> entries = new ArrayList<>();
+        for (AuditBucket bucket : findBuckets(entityType, List.of(entityId), ENTRIES)) {
+            if (bucket.getEntries() != null) {
+                entries.addAll(bucket.getEntries());
+            }
+        }
+        return entries;
+    }
+
+    @Override
+    public Map<String, List<AuditEntry>> findEntries(EAuditEntityType entityType, Collection<String> entityIds) {
+        Map<String, List<AuditEntry>> entriesByEntity = new HashMap<>();
+        if (entityIds == null || entityIds.isEmpty()) {
+            return entriesByEntity;
+        }
+        for (AuditBucket bucket : findBuckets(entityType, entityIds, ENTRIES)) {
+            if (bucket.getEntries() != null && !bucket.getEntries().isEmpty()) {
+                entriesByEntity.computeIfAbsent(bucket.getEntityId(), id -> new ArrayList<>())
+                        .addAll(bucket.getEntries());
+            }
+        }
+        return entriesByEntity;
+    }
+
+    @Override
+    public List<SessionSnapshot> findSnapshots(EAuditEntityType entityType, String entityId) {
+        List<SessionSnapshot> snapshots = new ArrayList<>();
+        for (AuditBucket bucket : findBuckets(entityType, List.of(entityId), SNAPSHOTS)) {
+            if (bucket.getSnapshots() != null) {
+                snapshots.addAll(bucket.getSnapshots());
+            }
+        }
+        return snapshots;
+    }
+
+    private List<AuditBucket> findBuckets(EAuditEntityType entityType, Collection<String> entityIds, String field) {
+        Query query = new Query(Criteria.where("entityType").is(entityType)
+                .and("entityId").in(entityIds)
+                .and(field + ".0").exists(true))
+                .with(BUCKET_ORDER);
+        query.fields().include("entityId", field);
+        return mongoTemplate.find(query, AuditBucket.class);
+    }
+
+    /**
+     * Bloque del mes con espacio para una entrada más. Si no existe, el upsert crea uno nuevo
+     * con entityType, entityId y period tomados del filtro.
+     */
+    private Query bucketWithRoom(EAuditEntityType entityType, String entityId, String period) {
+        return new Query(Criteria.where("entityType").is(entityType)
+                .and("entityId").is(entityId)
+                .and("period").is(period)
+                .and("count").lt(bucketSize));
+    }
+
+    /**
+     * Historial previo en bloques de bucket-size con _id "legacy:tipo:entidad:campo:nnnn". El _id
+     * string ordena antes que los ObjectId de los bloques normales del mismo mes, y el índice
+     * con ceros conserva el orden entre los bloques de la copia.
+     */
+    <T> List<AuditBucket> legacyBuckets(EAuditEntityType entityType, String entityId, String field,
+                                        List<T> items, Function<T, LocalDateTime> timestamp,
+                                        BiConsumer<AuditBucket, List<T>> content) {
+        List<AuditBucket> buckets = new ArrayList<>();
+        if (items == null || items.isEmpty()) {
+            return buckets;
+        }
+        int size = Math.max(1, bucketSize);
+        for (int from = 0, index = 0; from < items.size(); from += size, index++) {
+            List<T> chunk = new ArrayList<>(items.subList(from, Math.min(items.size(), from + size)));
+            LocalDateTime first = chunk.stream().map(timestamp).filter(Objects::nonNull)
+                    .min(Comparator.naturalOrder()).orElse(null);
+            LocalDateTime last = chunk.stream().map(timestamp).filter(Objects::nonNull)
+                    .max(Comparator.naturalOrder()).orElse(null);
+            AuditBucket bucket = AuditBucket.builder()
+                    .id(String.format("legacy:%s:%s:%s:%04d", entityType, entityId, field, index))
+                    .entityType(entityType)
+                    .entityId(entityId)
+                    .period((first != null ? first : LocalDateTime.now()).format(PERIOD_FORMAT))
+                    .count(chunk.size())
+                    .firstAt(first)
+                    .lastAt(last)
+                    .build();
+            content.accept(bucket, chunk);
+            buckets.add(bucket);
+        }
+        return buckets;
+    }
+
+    private static <T> Update push(String field, List<T> items, Function<T, LocalDateTime> timestamp) {
+        LocalDateTime first = null;
+        LocalDateTime last = null;
+        for (T item : items) {
+            LocalDateTime at = timestamp.apply(item);
+            if (at != null) {
+                first = first == null || at.isBefore(first) ? at : first;
+                last = last == null || at.isAfter(last) ? at : last;
+            }
+        }
+        Update update = new Update()
+                .push(field).each(items.toArray())
+                .inc("count", items.size());
+        if (first != null) {
+            update.min("firstAt", first).max("lastAt", last);
+        }
+        return update;
+    }
+
+    /**
+     * Agrupa por mes conservando el orden de llegada; lo que no trae fecha va al mes actual.
+     * Un grupo puede dejar el bloque algo por encima de bucket-size: el tope solo decide
+     * cuándo abrir el siguiente.
+     */
+    private static <T> Map<String, List<T>> byPeriod(List<T> items, Function<T, LocalDateTime> timestamp) {
+        Map<String, List<T>> groups = new TreeMap<>();
+        String current = LocalDateTime.now().format(PERIOD_FORMAT);
+        for (T item : items) {
+            LocalDateTime at = timestamp.apply(item);
+            groups.computeIfAbsent(at != null ? at.format(PERIOD_FORMAT) : current, period -> new ArrayList<>())
+                    .add(item);
+        }
+        return groups;
+    }
+}
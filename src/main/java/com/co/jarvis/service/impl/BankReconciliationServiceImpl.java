@@ -1,11 +1,15 @@
 package com.co.jarvis.service.impl;
 
+import com.co.jarvis.dto.AccountPaymentEvent;
+import com.co.jarvis.dto.CreditTransactionEvent;
 import com.co.jarvis.dto.UserDto;
 import com.co.jarvis.dto.cashregister.*;
 import com.co.jarvis.entity.*;
 import com.co.jarvis.enums.*;
 import com.co.jarvis.repository.*;
 import com.co.jarvis.service.BankReconciliationService;
+import com.co.jarvis.util.CashEventSource;
+import com.co.jarvis.util.CashEventSourceExecutor;
 import com.co.jarvis.util.DateTimeUtil;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -28,27 +32,33 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class BankReconciliationServiceImpl implements BankReconciliationService {
 
+    // Métodos que cuentan como efectivo (null = registros sin método); la conciliación toma el resto
+    private static final List<EPaymentMethod> CASH_METHODS = Arrays.asList(null, EPaymentMethod.EFECTIVO);
+
     private final BankReconciliationSessionRepository bankReconciliationSessionRepository;
     private final BankAccountRepository bankAccountRepository;
     private final SupplierPaymentRepository supplierPaymentRepository;
-    private final ClientCreditRepository clientCreditRepository;
-    private final ClientAccountRepository clientAccountRepository;
+    private final CreditTransactionRepository creditTransactionRepository;
+    private final AccountPaymentRepository accountPaymentRepository;
+    private final ClientRepository clientRepository;
     private final InternalTransferRepository internalTransferRepository;
     private final MongoTemplate mongoTemplate;
+    private final CashEventSourceExecutor cashEventSourceExecutor;
 
     @Override
     public DailyBankSummaryResponse getDailySummary(LocalDate date, String bankAccountId) {
         log.info("BankReconciliationServiceImpl -> getDailySummary: date={}, bankAccountId={}", date, bankAccountId);
 
-        List<CashTransactionDto> transactions = new ArrayList<>();
-
-        transactions.addAll(getSalesTransactions(date));
-        transactions.addAll(getCreditPaymentTransactions(date));
-        transactions.addAll(getDepositTransactions(date));
-        transactions.addAll(getRefundTransactions(date));
-        transactions.addAll(getExpenseTransactions(date));
-        transactions.addAll(getSupplierPaymentTransactions(date));
-        transactions.addAll(getInternalTransferTransactions(date, bankAccountId));
+        // Cada fuente es una consulta independiente: se ejecutan en paralelo
+        Map<String, CashEventSource<CashTransactionDto>> sources = new LinkedHashMap<>();
+        sources.put("sales", this::getSalesTransactions);
+        sources.put("credit_payments", this::getCreditPaymentTransactions);
+        sources.put("deposits", this::getDepositTransactions);
+        sources.put("refunds", this::getRefundTransactions);
+        sources.put("expenses", this::getExpenseTransactions);
+        sources.put("supplier_payments", this::getSupplierPaymentTransactions);
+        sources.put("internal_transfers", d -> getInternalTransferTransactions(d, bankAccountId));
+        List<CashTransactionDto> transactions = cashEventSourceExecutor.collect("bank_reconciliation", date, sources);
 
         BigDecimal totalIncome = transactions.stream()
                 .filter(t -> t.getType() == ETransactionType.INGRESO)
@@ -60,7 +70,8 @@ public class BankReconciliationServiceImpl implements BankReconciliationService
                 .map(CashTransactionDto::getAmount)
                 .reduce(BigDecimal.ZERO, BigDecimal::add);
 
-        BigDecimal totalTransfers = getInternalTransferTransactions(date, bankAccountId).stream()
+        BigDecimal totalTransfers = transactions.stream()
+                .filter(t -> t.getCategory() == ETransactionCategory.TRASLADO_BANCO)
                 .map(CashTransactionDto::getAmount)
                 .reduce(BigDecimal.ZERO, BigDecimal::add);
 
@@ -430,113 +441,67 @@ public class BankReconciliationServiceImpl implements BankReconciliationService
     }
 
     private List<CashTransactionDto> getCreditPaymentTransactions(LocalDate date) {
-        List<CashTransactionDto> transactions = new ArrayList<>();
-
-        List<ClientAccount> allAccounts = clientAccountRepository.findAll();
-        for (ClientAccount account : allAccounts) {
-            if (account.getPayments() != null) {
-                for (AccountPayment payment : account.getPayments()) {
-                    EPaymentMethod method = payment.getPaymentMethod() != null ?
-                            payment.getPaymentMethod() : EPaymentMethod.EFECTIVO;
-                    if (method == EPaymentMethod.EFECTIVO) continue;
-
-                    if (payment.getPaymentDate() != null &&
-                            payment.getPaymentDate().toLocalDate().equals(date)) {
-
-                        String clientName = account.getClient() != null ?
-                                account.getClient().getFullName() : "Cliente";
-
-                        transactions.add(CashTransactionDto.builder()
-                                .id(payment.getId())
-                                .type(ETransactionType.INGRESO)
-                                .category(ETransactionCategory.PAGO_CREDITO)
-                                .description("Abono crédito - " + clientName)
-                                .amount(payment.getAmount())
-                                .paymentMethod(method)
-                                .reference(payment.getReference())
-                                .transactionDate(payment.getPaymentDate())
-                                .relatedDocumentId(account.getId())
-                                .build());
-                    }
-                }
-            }
-        }
+        // Solo los abonos NO efectivo del día
+        List<AccountPaymentEvent> payments = accountPaymentRepository.findPaymentEventsExcludingMethods(
+                date.atStartOfDay(), date.plusDays(1).atStartOfDay(), CASH_METHODS);
+        Map<String, String> clientNames = clientNames(payments.stream().map(AccountPaymentEvent::getClientId).toList());
 
-        return transactions;
+        return payments.stream()
+                .map(payment -> CashTransactionDto.builder()
+                        .id(payment.getPaymentId())
+                        .type(ETransactionType.INGRESO)
+                        .category(ETransactionCategory.PAGO_CREDITO)
+                        .description("Abono crédito - " + clientNames.getOrDefault(payment.getClientId(), "Cliente"))
+                        .amount(payment.getAmount())
+                        .paymentMethod(payment.getPaymentMethod())
+                        .reference(payment.getReference())
+                        .transactionDate(payment.getPaymentDate())
+                        .relatedDocumentId(payment.getAccountId())
+                        .build())
+                .collect(Collectors.toList());
     }
 
     private List<CashTransactionDto> getDepositTransactions(LocalDate date) {
-        List<CashTransactionDto> transactions = new ArrayList<>();
-
-        List<ClientCredit> allCredits = clientCreditRepository.findAll();
-        for (ClientCredit credit : allCredits) {
-            if (credit.getTransactions() != null) {
-                for (CreditTransaction ct : credit.getTransactions()) {
-                    EPaymentMethod method = ct.getPaymentMethod() != null ?
-                            ct.getPaymentMethod() : EPaymentMethod.EFECTIVO;
-                    if (method == EPaymentMethod.EFECTIVO) continue;
-
-                    if (ct.getType() == ECreditTransactionType.DEPOSIT &&
-                            ct.getTransactionDate() != null &&
-                            ct.getTransactionDate().toLocalDate().equals(date)) {
-
-                        String clientName = credit.getClient() != null ?
-                                credit.getClient().getFullName() : "Cliente";
-
-                        transactions.add(CashTransactionDto.builder()
-                                .id(ct.getId())
-                                .type(ETransactionType.INGRESO)
-                                .category(ETransactionCategory.DEPOSITO_ANTICIPO)
-                                .description("Depósito saldo a favor - " + clientName)
-                                .amount(ct.getAmount())
-                                .paymentMethod(method)
-                                .reference(ct.getReference())
-                                .transactionDate(ct.getTransactionDate())
-                                .relatedDocumentId(credit.getId())
-                                .build());
-                    }
-                }
-            }
-        }
-
-        return transactions;
+        return getCreditTransactions(date, ECreditTransactionType.DEPOSIT, ETransactionType.INGRESO,
+                ETransactionCategory.DEPOSITO_ANTICIPO, "Depósito saldo a favor - ");
     }
 
     private List<CashTransactionDto> getRefundTransactions(LocalDate date) {
-        List<CashTransactionDto> transactions = new ArrayList<>();
-
-        List<ClientCredit> allCredits = clientCreditRepository.findAll();
-        for (ClientCredit credit : allCredits) {
-            if (credit.getTransactions() != null) {
-                for (CreditTransaction ct : credit.getTransactions()) {
-                    EPaymentMethod method = ct.getPaymentMethod() != null ?
-                            ct.getPaymentMethod() : EPaymentMethod.EFECTIVO;
-                    if (method == EPaymentMethod.EFECTIVO) continue;
-
-                    if (ct.getType() == ECreditTransactionType.REFUND &&
-                            ct.getTransactionDate() != null &&
-                            ct.getTransactionDate().toLocalDate().equals(date)) {
+        return getCreditTransactions(date, ECreditTransactionType.REFUND, ETransactionType.EGRESO,
+                ETransactionCategory.DEVOLUCION_ANTICIPO, "Devolución saldo a favor - ");
+    }
 
-                        String clientName = credit.getClient() != null ?
-                                credit.getClient().getFullName() : "Cliente";
+    private List<CashTransactionDto> getCreditTransactions(LocalDate date, ECreditTransactionType creditType,
+                                                           ETransactionType type, ETransactionCategory category,
+                                                           String descriptionPrefix) {
+        // Solo los movimientos NO efectivo del día
+        List<CreditTransactionEvent> events = creditTransactionRepository.findTransactionEventsExcludingMethods(
+                date.atStartOfDay(), date.plusDays(1).atStartOfDay(), List.of(creditType), CASH_METHODS);
+        Map<String, String> clientNames = clientNames(events.stream().map(CreditTransactionEvent::getClientId).toList());
+
+        return events.stream()
+                .map(ct -> CashTransactionDto.builder()
+                        .id(ct.getTransactionId())
+                        .type(type)
+                        .category(category)
+                        .description(descriptionPrefix + clientNames.getOrDefault(ct.getClientId(), "Cliente"))
+                        .amount(ct.getAmount())
+                        .paymentMethod(ct.getPaymentMethod())
+                        .reference(ct.getReference())
+                        .transactionDate(ct.getTransactionDate())
+                        .relatedDocumentId(ct.getCreditId())
+                        .build())
+                .collect(Collectors.toList());
+    }
 
-                        transactions.add(CashTransactionDto.builder()
-                                .id(ct.getId())
-                                .type(ETransactionType.EGRESO)
-                                .category(ETransactionCategory.DEVOLUCION_ANTICIPO)
-                                .description("Devolución saldo a favor - " + clientName)
-                                .amount(ct.getAmount())
-                                .paymentMethod(method)
-                                .reference(ct.getReference())
-                                .transactionDate(ct.getTransactionDate())
-                                .relatedDocumentId(credit.getId())
-                                .build());
-                    }
-                }
-            }
+    private Map<String, String> clientNames(Collection<String> clientIds) {
+        Set<String> ids = clientIds.stream().filter(Objects::nonNull).collect(Collectors.toSet());
+        if (ids.isEmpty()) {
+            return Map.of();
         }
-
-        return transactions;
+        Map<String, String> names = new HashMap<>();
+        clientRepository.findAllById(ids).forEach(client -> names.put(client.getId(), client.getFullName()));
+        return names;
     }
 
     private List<CashTransactionDto> getExpenseTransactions(LocalDate date) {
@@ -0,0 +1,102 @@
+package com.co.jarvis.service.impl;
+
+import com.co.jarvis.dto.BillingConfigDto;
+import com.co.jarvis.dto.CompanyDto;
+import com.co.jarvis.entity.Billing;
+import com.co.jarvis.enums.EStatus;
+import com.co.jarvis.repository.BillingRepository;
+import com.co.jarvis.service.BillingNumberService;
+import com.co.jarvis.service.CompanyService;
+import com.co.jarvis.service.SequenceService;
+import com.co.jarvis.util.exception.ResourceNotFoundException;
+import com.co.jarvis.util.mensajes.MessageConstants;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.Optional;
+
+/**
+ * Asigna los números de factura desde un contador de SequenceService, en lugar de
+ * ordenar SALES_BILLING por dateTimeRecord en cada venta.
+ * El contador es por prefijo, así una nueva resolución DIAN arranca en su billFrom.
+ * El $inc del contador va dentro de la transacción del checkout, así una venta abortada o
+ * reintentada no deja huecos en la numeración; a cambio, dos ventas simultáneas chocan en
+ * el contador y una de ellas se reintenta (TransientTransactionError). Por eso el checkout
+ * lo pide al final, justo antes del commit.
+ */
+@Service
+@Slf4j
+public class BillingNumberServiceImpl implements BillingNumberService {
+
+    private static final String SEQUENCE_PREFIX = "billing_number:";
+
+    @Autowired
+    private SequenceService sequenceService;
+
+    @Autowired
+    private CompanyService companyService;
+
+    @Autowired
+    private BillingRepository billingRepository;
+
+    @Override
+    public String peekNext() {
+        BillingConfigDto config = activeBillingConfig();
+        String key = sequenceKey(config);
+        sequenceService.initialize(key, () -> lastConsecutive(config));
+        return format(config, sequenceService.peek(key));
+    }
+
+    /**
+     * O(1) sin importar el histórico. Sin reservar bloques de números por nodo: la
+     * numeración de facturas debe ser continua, y un bloque reservado se pierde al reiniciar
+     * o queda en memoria con números que el contador devolvió si la transacción aborta.
+     */
+    @Override
+    public String allocate() {
+        BillingConfigDto config = activeBillingConfig();
+        String key = sequenceKey(config);
+        sequenceService.initialize(key, () -> lastConsecutive(config));
+        return format(config, sequenceService.next(key));
+    }
+
+    /**
+     * Último consecutivo emitido con el prefijo actual, usado solo para crear el contador
+     * la primera vez y continuar la numeración existente.
+     */
+    private long lastConsecutive(BillingConfigDto config) {
+        long floor = config.getBillFrom() != null ? Math.max(0L, config.getBillFrom() - 1) : 0L;
+        Billing last = billingRepository.findFirstByOrderByDateTimeRecordDesc();
+        String prefix = config.getPrefixBill() + "-";
+        if (last == null || last.getBillNumber() == null || !last.getBillNumber().startsWith(prefix)) {
+            return floor;
+        }
+        try {
+            return Math.max(floor, Long.parseLong(last.getBillNumber().substring(prefix.length())));
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException("El número de factura no es un número válido", e);
+        }
+    }
+
+    private String format(BillingConfigDto config, long consecutive) {
+        if ((config.getBillFrom() != null && consecutive < config.getBillFrom())
+                || (config.getBillUntil() != null && consecutive > config.getBillUntil())) {
+            throw new IllegalStateException("El número de factura esta por fuera del rango de facturación establecido.");
+        }
+        return config.getPrefixBill().concat("-").concat(Long.toString(consecutive));
+    }
+
+    private static String sequenceKey(BillingConfigDto config) {
+        return SEQUENCE_PREFIX + config.getPrefixBill();
+    }
+
+    private BillingConfigDto activeBillingConfig() {
+        CompanyDto companyDto = companyService.findByStatus(EStatus.ACTIVO);
+        if (companyDto == null) {
+            throw new ResourceNotFoundException(MessageConstants.RESOURCE_NOT_FOUND + " - Empresa no Encontrada");
+        }
+        return Optional.ofNullable(companyDto.getBillingConfig())
+                .orElseThrow(() -> new ResourceNotFoundException("La configuración de facturación no está disponible para la companyDto"));
+    }
+}
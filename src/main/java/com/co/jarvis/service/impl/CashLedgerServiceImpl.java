@@ -0,0 +1,652 @@
+package com.co.jarvis.service.impl;
+
+import com.co.jarvis.dto.AccountPaymentEvent;
+import com.co.jarvis.dto.CreditTransactionEvent;
+import com.co.jarvis.dto.cashregister.CashTransactionDto;
+import com.co.jarvis.entity.*;
+import com.co.jarvis.enums.*;
+import com.co.jarvis.repository.*;
+import com.co.jarvis.service.CashLedgerService;
+import com.co.jarvis.util.CashEventSource;
+import com.co.jarvis.util.CashEventSourceExecutor;
+import com.co.jarvis.util.DateTimeUtil;
+import com.mongodb.client.result.UpdateResult;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CashLedgerServiceImpl implements CashLedgerService {
+
+    // Métodos que cuentan como efectivo en el arqueo (null = registros sin método)
+    private static final List<EPaymentMethod> CASH_METHODS = Arrays.asList(null, EPaymentMethod.EFECTIVO);
+
+    private static final String BILLING = "BILLING:";
+    private static final String ACCOUNT_PAYMENT = "ACCOUNT_PAYMENT:";
+    private static final String CREDIT_TRANSACTION = "CREDIT_TRANSACTION:";
+    private static final String MERCHANDISE_RETURN = "MERCHANDISE_RETURN:";
+    private static final String EXPENSE = "EXPENSE:";
+    private static final String SUPPLIER_PAYMENT = "SUPPLIER_PAYMENT:";
+    private static final String CASH_LOAN = "CASH_LOAN:";
+    private static final String INTERNAL_TRANSFER = "INTERNAL_TRANSFER:";
+
+    private final SupplierPaymentRepository supplierPaymentRepository;
+    private final CreditTransactionRepository creditTransactionRepository;
+    private final AccountPaymentRepository accountPaymentRepository;
+    private final ClientRepository clientRepository;
+    private final CashLoanRepository cashLoanRepository;
+    private final InternalTransferRepository internalTransferRepository;
+    private final MerchandiseReturnRepository merchandiseReturnRepository;
+    private final MongoTemplate mongoTemplate;
+    private final CashEventSourceExecutor cashEventSourceExecutor;
+
+    @Value("${jarvis.cash-ledger.pending-grace-ms:60000}")
+    private long pendingGraceMs;
+
+    // ==================== Lectura ====================
+
+    @Override
+    public List<CashTransactionDto> getDayTransactions(LocalDate date) {
+        log.info("CashLedgerServiceImpl -> getDayTransactions: {}", date);
+        CashLedgerDay day = mongoTemplate.findById(dayId(date), CashLedgerDay.class);
+        List<CashLedgerEntry> entries = day != null && day.isComplete()
+                ? day.getEntries()
+                : rebuild(date, day);
+        return toDtos(entries);
+    }
+
+    @Override
+    public List<CashTransactionDto> rebuildDay(LocalDate date) {
+        log.info("CashLedgerServiceImpl -> rebuildDay: {}", date);
+        return toDtos(rebuild(date, mongoTemplate.findById(dayId(date), CashLedgerDay.class)));
+    }
+
+    /**
+     * Recalcula el día desde las colecciones origen y lo guarda como completo, solo si nadie
+     * escribió el día mientras tanto (version); si hubo una escritura concurrente se devuelve
+     * el cálculo sin guardarlo y la siguiente lectura vuelve a reconstruir.
+     */
+    private List<CashLedgerEntry> rebuild(LocalDate date, CashLedgerDay existing) {
+        List<CashLedgerEntry> entries = collectFromSources(date);
+
+        if (existing == null) {
+            try {
+                mongoTemplate.insert(CashLedgerDay.builder()
+                        .id(dayId(date))
+                        .date(date)
+                        .entries(entries)
+                        .complete(true)
+                        .rebuiltAt(DateTimeUtil.nowOffsetDateTime())
+                        .build());
+            } catch (DuplicateKeyException e) {
+                log.info("CashLedgerServiceImpl -> rebuild: el día {} se creó en paralelo, se reconstruirá en la próxima lectura", date);
+            }
+        } else {
+            Query query = new Query(Criteria.where("_id").is(dayId(date)).and("version").is(existing.getVersion()));
+            Update update = new Update()
+                    .set("entries", entries)
+                    .set("complete", true)
+                    .set("rebuiltAt", DateTimeUtil.nowOffsetDateTime())
+                    .inc("version", 1);
+            UpdateResult result = mongoTemplate.updateFirst(query, update, CashLedgerDay.class);
+            if (result.getModifiedCount() == 0) {
+                log.info("CashLedgerServiceImpl -> rebuild: el día {} cambió durante la reconstrucción", date);
+            }
+        }
+        log.info("CashLedgerServiceImpl -> rebuild: día {} con {} movimientos", date, entries.size());
+        return entries;
+    }
+
+    /**
+     * Carga los movimientos del día desde las colecciones origen. Las fuentes son consultas
+     * independientes y se ejecutan en paralelo con {@link CashEventSourceExecutor}.
+     */
+    private List<CashLedgerEntry> collectFromSources(LocalDate date) {
+        Map<String, CashEventSource<CashLedgerEntry>> sources = new LinkedHashMap<>();
+        sources.put("sales", this::loadSales);
+        sources.put("credit_payments", this::loadAccountPayments);
+        sources.put("credit_transactions", this::loadCreditTransactions);
+        sources.put("expenses", this::loadExpenses);
+        sources.put("supplier_payments", this::loadSupplierPayments);
+        sources.put("cash_loans", this::loadCashLoans);
+        sources.put("internal_transfers", this::loadInternalTransfers);
+        sources.put("sale_returns", this::loadSaleReturns);
+
+        // Se indexa por id para no duplicar movimientos que aparecen en dos consultas (préstamos)
+        Map<String, CashLedgerEntry> entries = new LinkedHashMap<>();
+        cashEventSourceExecutor.collect("cash_ledger", date, sources).stream()
+                .filter(e -> date.equals(e.getLedgerDate()))
+                .forEach(e -> entries.put(e.getId(), e));
+        return new ArrayList<>(entries.values());
+    }
+
+    // 1. Ventas de CONTADO del día
+    private List<CashLedgerEntry> loadSales(LocalDate date) {
+        Query query = new Query(Criteria.where("dateTimeRecord").gte(startOfDay(date)).lte(endOfDay(date))
+                .and("saleType").is(EPaymentType.CONTADO));
+        List<CashLedgerEntry> entries = new ArrayList<>();
+        mongoTemplate.find(query, Billing.class)
+                .forEach(b -> entries.addAll(keyed(BILLING + b.getId(), billingEntries(b))));
+        return entries;
+    }
+
+    // 2. Abonos a cuentas por cobrar (solo los del día)
+    private List<CashLedgerEntry> loadAccountPayments(LocalDate date) {
+        List<AccountPaymentEvent> events = accountPaymentRepository.findPaymentEvents(
+                date.atStartOfDay(), date.plusDays(1).atStartOfDay(), CASH_METHODS);
+        Map<String, Client> clients = clientsById(events.stream().map(AccountPaymentEvent::getClientId).toList());
+
+        List<CashLedgerEntry> entries = new ArrayList<>();
+        for (AccountPaymentEvent event : events) {
+            ClientAccount account = ClientAccount.builder()
+                    .id(event.getAccountId())
+                    .client(clients.get(event.getClientId()))
+                    .build();
+            AccountPayment payment = AccountPayment.builder()
+                    .id(event.getPaymentId())
+                    .amount(event.getAmount())
+                    .paymentMethod(event.getPaymentMethod())
+                    .reference(event.getReference())
+                    .paymentDate(event.getPaymentDate())
+                    .build();
+            entries.addAll(keyed(ACCOUNT_PAYMENT + payment.getId(), accountPaymentEntries(account, payment)));
+        }
+        return entries;
+    }
+
+    // 3. Depósitos y devoluciones de saldo a favor
+    private List<CashLedgerEntry> loadCreditTransactions(LocalDate date) {
+        List<CreditTransactionEvent> events = creditTransactionRepository.findTransactionEvents(
+                date.atStartOfDay(), date.plusDays(1).atStartOfDay(),
+                List.of(ECreditTransactionType.DEPOSIT, ECreditTransactionType.REFUND), CASH_METHODS);
+        Map<String, Client> clients = clientsById(events.stream().map(CreditTransactionEvent::getClientId).toList());
+
+        List<CashLedgerEntry> entries = new ArrayList<>();
+        for (CreditTransactionEvent event : events) {
+            ClientCredit credit = ClientCredit.builder()
+                    .id(event.getCreditId())
+                    .client(clients.get(event.getClientId()))
+                    .build();
+            CreditTransaction transaction = CreditTransaction.builder()
+                    .id(event.getTransactionId())
+                    .type(event.getType())
+                    .amount(event.getAmount())
+                    .paymentMethod(event.getPaymentMethod())
+                    .reference(event.getReference())
+                    .transactionDate(event.getTransactionDate())
+                    .build();
+            entries.addAll(keyed(CREDIT_TRANSACTION + transaction.getId(), creditTransactionEntries(credit, transaction)));
+        }
+        return entries;
+    }
+
+    // 4. Gastos
+    private List<CashLedgerEntry> loadExpenses(LocalDate date) {
+        Query query = new Query(Criteria.where("dateTimeRecord").gte(startOfDay(date)).lte(endOfDay(date)));
+        List<CashLedgerEntry> entries = new ArrayList<>();
+        mongoTemplate.find(query, Expense.class)
+                .forEach(e -> entries.addAll(keyed(EXPENSE + e.getId(), expenseEntries(e))));
+        return entries;
+    }
+
+    // 5. Pagos a proveedores
+    private List<CashLedgerEntry> loadSupplierPayments(LocalDate date) {
+        List<CashLedgerEntry> entries = new ArrayList<>();
+        supplierPaymentRepository.findByPaymentDate(date)
+                .forEach(p -> entries.addAll(keyed(SUPPLIER_PAYMENT + p.getId(), supplierPaymentEntries(p))));
+        return entries;
+    }
+
+    // 6. Préstamos tomados en el día y devoluciones recibidas en el día
+    private List<CashLedgerEntry> loadCashLoans(LocalDate date) {
+        List<CashLedgerEntry> entries = new ArrayList<>();
+        cashLoanRepository.findByLoanDate(date)
+                .forEach(l -> entries.addAll(keyed(CASH_LOAN + l.getId(), cashLoanEntries(l))));
+        cashLoanRepository.findByReturnDateAndStatus(date, ECashLoanStatus.DEVUELTO)
+                .forEach(l -> entries.addAll(keyed(CASH_LOAN + l.getId(), cashLoanEntries(l))));
+        return entries;
+    }
+
+    // 7. Traslados de efectivo a banco
+    private List<CashLedgerEntry> loadInternalTransfers(LocalDate date) {
+        List<CashLedgerEntry> entries = new ArrayList<>();
+        internalTransferRepository.findByTransferDateAndStatus(date, EInternalTransferStatus.ACTIVO)
+                .forEach(t -> entries.addAll(keyed(INTERNAL_TRANSFER + t.getId(), internalTransferEntries(t))));
+        return entries;
+    }
+
+    // 8. Devoluciones de venta con salida de efectivo
+    private List<CashLedgerEntry> loadSaleReturns(LocalDate date) {
+        List<CashLedgerEntry> entries = new ArrayList<>();
+        merchandiseReturnRepository.findByReturnDateBetweenOrderByReturnDateDesc(startOfDay(date), endOfDay(date))
+                .forEach(r -> entries.addAll(keyed(MERCHANDISE_RETURN + r.getId(), merchandiseReturnEntries(r))));
+        return entries;
+    }
+
+    // ==================== Registro incremental ====================
+
+    @Override
+    public void recordBilling(Billing billing) {
+        sync(BILLING + billing.getId(), billingEntries(billing));
+    }
+
+    @Override
+    public void removeBilling(String billingId) {
+        sync(BILLING + billingId, List.of());
+    }
+
+    @Override
+    public void recordAccountPayment(ClientAccount account, AccountPayment payment) {
+        sync(ACCOUNT_PAYMENT + payment.getId(), accountPaymentEntries(account, payment));
+    }
+
+    @Override
+    public void recordCreditTransaction(ClientCredit credit, CreditTransaction transaction) {
+        sync(CREDIT_TRANSACTION + transaction.getId(), creditTransactionEntries(credit, transaction));
+    }
+
+    @Override
+    public void recordMerchandiseReturn(MerchandiseReturn merchandiseReturn) {
+        sync(MERCHANDISE_RETURN + merchandiseReturn.getId(), merchandiseReturnEntries(merchandiseReturn));
+    }
+
+    @Override
+    public void recordExpense(Expense expense) {
+        sync(EXPENSE + expense.getId(), expenseEntries(expense));
+    }
+
+    @Override
+    public void removeExpense(String expenseId) {
+        sync(EXPENSE + expenseId, List.of());
+    }
+
+    @Override
+    public void recordSupplierPayment(SupplierPayment payment) {
+        sync(SUPPLIER_PAYMENT + payment.getId(), supplierPaymentEntries(payment));
+    }
+
+    @Override
+    public void recordCashLoan(CashLoan loan) {
+        sync(CASH_LOAN + loan.getId(), cashLoanEntries(loan));
+    }
+
+    @Override
+    public void recordInternalTransfer(InternalTransfer transfer) {
+        sync(INTERNAL_TRANSFER + transfer.getId(), internalTransferEntries(transfer));
+    }
+
+    /**
+     * Reemplaza los movimientos de un documento origen. Dentro de una transacción (checkout,
+     * etc.) el día no se escribe en ella: es un solo documento y escribirlo en cada transacción
+     * haría chocar las ventas concurrentes. En su lugar se guarda un pendiente por sourceKey en
+     * la misma transacción, que no choca con nadie, y el día se actualiza después del commit.
+     * Si el proceso cae antes, o la escritura falla, el pendiente sigue ahí y replayPending lo
+     * aplica; mientras tanto el día queda incompleto y su lectura lo reconstruye desde el origen.
+     */
+    private void sync(String sourceKey, List<CashLedgerEntry> entries) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            apply(sourceKey, entries);
+            return;
+        }
+        CashLedgerPending pending = CashLedgerPending.builder()
+                .id(sourceKey)
+                .token(UUID.randomUUID().toString())
+                .entries(entries)
+                .createdAt(DateTimeUtil.nowOffsetDateTime())
+                .build();
+        mongoTemplate.save(pending);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                try {
+                    applyPending(pending);
+                } catch (RuntimeException e) {
+                    log.error("CashLedgerServiceImpl -> sync {}: {}", sourceKey, e.getMessage(), e);
+                    markIncomplete(sourceKey, entries);
+                }
+            }
+        });
+    }
+
+    /**
+     * Aplica los pendientes que quedaron de transacciones ya confirmadas (caída entre el commit
+     * y la escritura del día, o error al escribirlo). Solo toma los que tienen más de
+     * jarvis.cash-ledger.pending-grace-ms, para no adelantarse al afterCommit en curso.
+     */
+    @Scheduled(initialDelayString = "${jarvis.cash-ledger.reconcile-initial-delay-ms:30000}",
+            fixedDelayString = "${jarvis.cash-ledger.reconcile-interval-ms:60000}")
+    public void replayPending() {
+        OffsetDateTime cutoff = DateTimeUtil.nowOffsetDateTime().minus(Duration.ofMillis(pendingGraceMs));
+        List<CashLedgerPending> pending = mongoTemplate.find(
+                new Query(Criteria.where("createdAt").lt(cutoff)), CashLedgerPending.class);
+        int applied = 0;
+        for (CashLedgerPending item : pending) {
+            try {
+                applyPending(item);
+                applied++;
+            } catch (RuntimeException e) {
+                log.error("CashLedgerServiceImpl -> replayPending {}: {}", item.getId(), e.getMessage(), e);
+                markIncomplete(item.getId(), item.getEntries());
+            }
+        }
+        if (applied > 0) {
+            log.info("CashLedgerServiceImpl -> replayPending: {} documentos aplicados al libro", applied);
+        }
+    }
+
+    /**
+     * Escribe el día y borra el pendiente solo si sigue siendo la misma versión: una
+     * transacción posterior sobre el mismo documento deja su propio pendiente.
+     */
+    private void applyPending(CashLedgerPending pending) {
+        apply(pending.getId(), pending.getEntries());
+        mongoTemplate.remove(new Query(Criteria.where("_id").is(pending.getId()).and("token").is(pending.getToken())),
+                CashLedgerPending.class);
+    }
+
+    /**
+     * Quita los movimientos del documento de cualquier día donde estuvieran (pudo cambiar la
+     * fecha o anularse) y agrega los actuales a su día. Repetirlo no duplica: el $push solo se
+     * aplica a un día que aún no tenga movimientos de ese sourceKey.
+     */
+    private void apply(String sourceKey, List<CashLedgerEntry> entries) {
+        mongoTemplate.updateMulti(
+                new Query(Criteria.where("entries.sourceKey").is(sourceKey)),
+                new Update().pull("entries", new Document("sourceKey", sourceKey)).inc("version", 1),
+                CashLedgerDay.class);
+
+        Map<LocalDate, List<CashLedgerEntry>> byDay = new LinkedHashMap<>();
+        for (CashLedgerEntry entry : entries) {
+            entry.setSourceKey(sourceKey);
+            byDay.computeIfAbsent(entry.getLedgerDate(), d -> new ArrayList<>()).add(entry);
+        }
+        for (Map.Entry<LocalDate, List<CashLedgerEntry>> day : byDay.entrySet()) {
+            try {
+                mongoTemplate.upsert(
+                        new Query(Criteria.where("_id").is(dayId(day.getKey())).and("entries.sourceKey").ne(sourceKey)),
+                        new Update()
+                                .push("entries").each(day.getValue().toArray())
+                                .setOnInsert("date", day.getKey())
+                                .setOnInsert("complete", false)
+                                .inc("version", 1),
+                        CashLedgerDay.class);
+            } catch (DuplicateKeyException e) {
+                // El día existe y ya tiene los movimientos de este sourceKey
+                log.debug("CashLedgerServiceImpl -> apply: {} ya registrado en {}", sourceKey, day.getKey());
+            }
+        }
+    }
+
+    private void markIncomplete(String sourceKey, List<CashLedgerEntry> entries) {
+        try {
+            List<String> days = entries.stream().map(e -> dayId(e.getLedgerDate())).distinct().toList();
+            mongoTemplate.updateMulti(
+                    new Query(new Criteria().orOperator(
+                            Criteria.where("entries.sourceKey").is(sourceKey),
+                            Criteria.where("_id").in(days))),
+                    new Update().set("complete", false).inc("version", 1),
+                    CashLedgerDay.class);
+        } catch (RuntimeException e) {
+            log.error("CashLedgerServiceImpl -> markIncomplete {}: {}", sourceKey, e.getMessage(), e);
+        }
+    }
+
+    // ==================== Movimientos por documento origen ====================
+
+    private List<CashLedgerEntry> billingEntries(Billing billing) {
+        // Solo ventas de CONTADO - las ventas a crédito se registran cuando el cliente paga
+        if (billing.getSaleType() != EPaymentType.CONTADO || billing.getDateTimeRecord() == null
+                || billing.getTotalBilling() == null) {
+            return List.of();
+        }
+        LocalDateTime saleDate = billing.getDateTimeRecord().atZoneSameInstant(DateTimeUtil.getBogotaZone()).toLocalDateTime();
+
+        // Solo incluir pagos en EFECTIVO para el arqueo de caja
+        if (billing.getPayments() != null && !billing.getPayments().isEmpty()) {
+            // Calcular cuánto se pagó por métodos NO efectivo
+            BigDecimal nonCashTotal = billing.getPayments().stream()
+                    .filter(p -> parsePaymentMethod(p.getMethod()) != EPaymentMethod.EFECTIVO)
+                    .map(PaymentEntry::getAmount)
+                    .filter(Objects::nonNull)
+                    .reduce(BigDecimal.ZERO, BigDecimal::add);
+
+            // El efectivo real que queda en caja = total venta - pagos no efectivo
+            BigDecimal effectiveCash = billing.getTotalBilling().subtract(nonCashTotal);
+
+            boolean hasCashPayment = billing.getPayments().stream()
+                    .anyMatch(p -> parsePaymentMethod(p.getMethod()) == EPaymentMethod.EFECTIVO);
+
+            if (!hasCashPayment || effectiveCash.compareTo(BigDecimal.ZERO) <= 0) {
+                return List.of();
+            }
+            return List.of(entry(billing.getId() + "-EFECTIVO", saleDate.toLocalDate(),
+                    ETransactionType.INGRESO, ETransactionCategory.VENTA, "Venta #" + billing.getBillNumber(),
+                    effectiveCash, null, saleDate, billing.getId()));
+        }
+
+        // Fallback: usar paymentMethods array — solo si es EFECTIVO
+        EPaymentMethod paymentMethod = billing.getPaymentMethods() != null && !billing.getPaymentMethods().isEmpty()
+                ? billing.getPaymentMethods().get(0)
+                : EPaymentMethod.EFECTIVO;
+        if (paymentMethod != EPaymentMethod.EFECTIVO) {
+            return List.of();
+        }
+        return List.of(entry(billing.getId(), saleDate.toLocalDate(),
+                ETransactionType.INGRESO, ETransactionCategory.VENTA, "Venta #" + billing.getBillNumber(),
+                billing.getTotalBilling(), null, saleDate, billing.getId()));
+    }
+
+    private List<CashLedgerEntry> accountPaymentEntries(ClientAccount account, AccountPayment payment) {
+        // Solo pagos en EFECTIVO para el arqueo
+        if (!isCash(payment.getPaymentMethod()) || payment.getPaymentDate() == null) {
+            return List.of();
+        }
+        String clientName = account.getClient() != null ? account.getClient().getFullName() : "Cliente";
+        return List.of(entry(payment.getId(), payment.getPaymentDate().toLocalDate(),
+                ETransactionType.INGRESO, ETransactionCategory.PAGO_CREDITO, "Abono crédito - " + clientName,
+                payment.getAmount(), payment.getReference(), payment.getPaymentDate(), account.getId()));
+    }
+
+    private List<CashLedgerEntry> creditTransactionEntries(ClientCredit credit, CreditTransaction ct) {
+        // Solo depósitos y devoluciones en EFECTIVO para el arqueo
+        if (!isCash(ct.getPaymentMethod()) || ct.getTransactionDate() == null) {
+            return List.of();
+        }
+        String clientName = credit.getClient() != null ? credit.getClient().getFullName() : "Cliente";
+        if (ct.getType() == ECreditTransactionType.DEPOSIT) {
+            return List.of(entry(ct.getId(), ct.getTransactionDate().toLocalDate(),
+                    ETransactionType.INGRESO, ETransactionCategory.DEPOSITO_ANTICIPO, "Depósito saldo a favor - " + clientName,
+                    ct.getAmount(), ct.getReference(), ct.getTransactionDate(), credit.getId()));
+        }
+        if (ct.getType() == ECreditTransactionType.REFUND) {
+            return List.of(entry(ct.getId(), ct.getTransactionDate().toLocalDate(),
+                    ETransactionType.EGRESO, ETransactionCategory.DEVOLUCION_ANTICIPO, "Devolución saldo a favor - " + clientName,
+                    ct.getAmount(), ct.getReference(), ct.getTransactionDate(), credit.getId()));
+        }
+        return List.of();
+    }
+
+    private List<CashLedgerEntry> merchandiseReturnEntries(MerchandiseReturn ret) {
+        // Solo devoluciones de venta procesadas (no anuladas)
+        if (ret.getReturnType() != EReturnType.DEVOLUCION_VENTA || ret.getStatus() == EReturnStatus.ANULADA
+                || ret.getResolution() == null || ret.getReturnDate() == null) {
+            return List.of();
+        }
+        // Solo las resoluciones que implican efectivo saliendo de la caja
+        boolean hasCashOut = ret.getResolution() == EReturnResolution.REEMBOLSO_EFECTIVO
+                || ret.getResolution() == EReturnResolution.CAMBIO_PRODUCTO;
+        BigDecimal cashOut = ret.getCashRefundAmount() != null ? ret.getCashRefundAmount() : BigDecimal.ZERO;
+        if (!hasCashOut || cashOut.compareTo(BigDecimal.ZERO) <= 0) {
+            return List.of();
+        }
+        String clientName = ret.getClientName() != null ? ret.getClientName() : "Cliente";
+        LocalDateTime returnDate = ret.getReturnDate().atZoneSameInstant(DateTimeUtil.getBogotaZone()).toLocalDateTime();
+        return List.of(entry(ret.getId(), returnDate.toLocalDate(),
+                ETransactionType.EGRESO, ETransactionCategory.DEVOLUCION_VENTA,
+                "Devolución venta " + ret.getReturnNumber() + " - " + clientName,
+                cashOut, ret.getOriginalDocumentNumber(), returnDate, ret.getId()));
+    }
+
+    private List<CashLedgerEntry> expenseEntries(Expense expense) {
+        // Solo gastos pagados en EFECTIVO para el arqueo
+        if (!isCash(expense.getPaymentMethod()) || expense.getDateTimeRecord() == null) {
+            return List.of();
+        }
+        LocalDateTime expenseDate = expense.getDateTimeRecord().atZoneSameInstant(DateTimeUtil.getBogotaZone()).toLocalDateTime();
+        return List.of(entry(expense.getId(), expenseDate.toLocalDate(),
+                ETransactionType.EGRESO, ETransactionCategory.GASTO, expense.getDescription(),
+                expense.getAmount(), expense.getReference(), expenseDate, expense.getId()));
+    }
+
+    private List<CashLedgerEntry> supplierPaymentEntries(SupplierPayment payment) {
+        // Solo pagos a proveedores en EFECTIVO para el arqueo
+        if (!isCash(payment.getMethod()) || payment.getPaymentDate() == null) {
+            return List.of();
+        }
+        return List.of(entry(payment.getId(), payment.getPaymentDate(),
+                ETransactionType.EGRESO, ETransactionCategory.PAGO_PROVEEDOR, "Pago a " + payment.getSupplierName(),
+                payment.getAmount(), payment.getReference(), payment.getPaymentDate().atStartOfDay(), payment.getId()));
+    }
+
+    private List<CashLedgerEntry> cashLoanEntries(CashLoan loan) {
+        List<CashLedgerEntry> entries = new ArrayList<>();
+        // Préstamo: egreso de efectivo el día que se tomó
+        if (loan.getStatus() != ECashLoanStatus.ANULADO && loan.getLoanDate() != null) {
+            entries.add(entry(loan.getId() + "-prestamo", loan.getLoanDate(),
+                    ETransactionType.EGRESO, ETransactionCategory.AJUSTE,
+                    "Préstamo caja - " + loan.getBorrower() + (loan.getReason() != null ? " (" + loan.getReason() + ")" : ""),
+                    loan.getAmount(), null, loan.getLoanDate().atStartOfDay(), loan.getId()));
+        }
+        // Devolución: ingreso de efectivo el día en que se devolvió
+        if (loan.getStatus() == ECashLoanStatus.DEVUELTO && loan.getReturnDate() != null
+                && loan.getReturnedAmount() != null) {
+            entries.add(entry(loan.getId() + "-devolucion", loan.getReturnDate(),
+                    ETransactionType.INGRESO, ETransactionCategory.AJUSTE, "Devolución préstamo - " + loan.getBorrower(),
+                    loan.getReturnedAmount(), null, loan.getReturnDate().atStartOfDay(), loan.getId()));
+        }
+        return entries;
+    }
+
+    private List<CashLedgerEntry> internalTransferEntries(InternalTransfer transfer) {
+        if (transfer.getStatus() != EInternalTransferStatus.ACTIVO || transfer.getTransferDate() == null) {
+            return List.of();
+        }
+        return List.of(entry(transfer.getId(), transfer.getTransferDate(),
+                ETransactionType.EGRESO, ETransactionCategory.TRASLADO_BANCO, buildTransferDescription(transfer),
+                transfer.getAmount(), transfer.getReference(),
+                transfer.getTransferDateTime() != null ? transfer.getTransferDateTime() : transfer.getTransferDate().atStartOfDay(),
+                transfer.getId()));
+    }
+
+    private String buildTransferDescription(InternalTransfer t) {
+        StringBuilder sb = new StringBuilder("Traslado a banco");
+        if (t.getDestinationBankName() != null && !t.getDestinationBankName().isBlank()) {
+            sb.append(" - ").append(t.getDestinationBankName());
+        }
+        if (t.getDestinationAccountNumber() != null && !t.getDestinationAccountNumber().isBlank()) {
+            sb.append(" (").append(t.getDestinationAccountNumber()).append(")");
+        }
+        return sb.toString();
+    }
+
+    // ==================== Utilidades ====================
+
+    private static CashLedgerEntry entry(String id, LocalDate ledgerDate, ETransactionType type,
+                                         ETransactionCategory category, String description, BigDecimal amount,
+                                         String reference, LocalDateTime transactionDate, String relatedDocumentId) {
+        return CashLedgerEntry.builder()
+                .id(id)
+                .ledgerDate(ledgerDate)
+                .type(type)
+                .category(category)
+                .description(description)
+                .amount(amount != null ? amount : BigDecimal.ZERO)
+                .paymentMethod(EPaymentMethod.EFECTIVO)
+                .reference(reference)
+                .transactionDate(transactionDate)
+                .relatedDocumentId(relatedDocumentId)
+                .build();
+    }
+
+    private List<CashTransactionDto> toDtos(List<CashLedgerEntry> entries) {
+        if (entries == null) {
+            return new ArrayList<>();
+        }
+        return entries.stream()
+                .sorted(Comparator.comparing(CashLedgerEntry::getTransactionDate,
+                        Comparator.nullsLast(Comparator.naturalOrder())))
+                .map(e -> CashTransactionDto.builder()
+                        .id(e.getId())
+                        .type(e.getType())
+                        .category(e.getCategory())
+                        .description(e.getDescription())
+                        .amount(e.getAmount())
+                        .paymentMethod(e.getPaymentMethod())
+                        .reference(e.getReference())
+                        .transactionDate(e.getTransactionDate())
+                        .relatedDocumentId(e.getRelatedDocumentId())
+                        .build())
+                .collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    private static boolean isCash(EPaymentMethod method) {
+        return method == null || method == EPaymentMethod.EFECTIVO;
+    }
+
+    private static EPaymentMethod parsePaymentMethod(String method) {
+        if (method == null) return EPaymentMethod.EFECTIVO;
+        try {
+            return EPaymentMethod.valueOf(method);
+        } catch (IllegalArgumentException e) {
+            return EPaymentMethod.EFECTIVO;
+        }
+    }
+
+    private Map<String, Client> clientsById(Collection<String> clientIds) {
+        Set<String> ids = clientIds.stream().filter(Objects::nonNull).collect(Collectors.toSet());
+        if (ids.isEmpty()) {
+            return Map.of();
+        }
+        return clientRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Client::getId, Function.identity(), (a, b) -> a));
+    }
+
+    private static List<CashLedgerEntry> keyed(String sourceKey, List<CashLedgerEntry> entries) {
+        entries.forEach(e -> e.setSourceKey(sourceKey));
+        return entries;
+    }
+
+    private static OffsetDateTime startOfDay(LocalDate date) {
+        return date.atStartOfDay().atZone(DateTimeUtil.getBogotaZone()).toOffsetDateTime();
+    }
+
+    private static OffsetDateTime endOfDay(LocalDate date) {
+        return date.atTime(LocalTime.MAX).atZone(DateTimeUtil.getBogotaZone()).toOffsetDateTime();
+    }
+
+    private static String dayId(LocalDate date) {
+        return date.toString();
+    }
+}
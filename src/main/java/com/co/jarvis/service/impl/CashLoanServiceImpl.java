@@ -6,6 +6,7 @@ import com.co.jarvis.dto.cashregister.ReturnCashLoanRequest;
 import com.co.jarvis.entity.CashLoan;
 import com.co.jarvis.enums.ECashLoanStatus;
 import com.co.jarvis.repository.CashLoanRepository;
+import com.co.jarvis.service.CashLedgerService;
 import com.co.jarvis.service.CashLoanService;
 import com.co.jarvis.util.DateTimeUtil;
 import lombok.RequiredArgsConstructor;
@@ -22,6 +23,7 @@ import java.util.stream.Collectors;
 public class CashLoanServiceImpl implements CashLoanService {
 
     private final CashLoanRepository cashLoanRepository;
+    private final CashLedgerService cashLedgerService;
 
     @Override
     public CashLoanDto create(CreateCashLoanRequest request, String createdBy) {
@@ -49,6 +51,7 @@ public class CashLoanServiceImpl implements CashLoanService {
                 .build();
 
         loan = cashLoanRepository.save(loan);
+        cashLedgerService.recordCashLoan(loan);
         log.info("CashLoanServiceImpl -> create -> Préstamo creado con ID: {}", loan.getId());
         return mapToDto(loan);
     }
@@ -78,6 +81,7 @@ public class CashLoanServiceImpl implements CashLoanService {
         loan.setUpdatedAt(DateTimeUtil.nowLocalDateTime());
 
         loan = cashLoanRepository.save(loan);
+        cashLedgerService.recordCashLoan(loan);
         log.info("CashLoanServiceImpl -> registerReturn -> Devolución registrada para préstamo: {}", id);
         return mapToDto(loan);
     }
@@ -101,6 +105,7 @@ public class CashLoanServiceImpl implements CashLoanService {
         loan.setUpdatedAt(DateTimeUtil.nowLocalDateTime());
 
         loan = cashLoanRepository.save(loan);
+        cashLedgerService.recordCashLoan(loan);
         log.info("CashLoanServiceImpl -> cancel -> Préstamo anulado: {}", id);
         return mapToDto(loan);
     }
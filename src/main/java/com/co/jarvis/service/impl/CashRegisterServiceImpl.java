@@ -5,13 +5,18 @@ import com.co.jarvis.dto.cashregister.*;
 import com.co.jarvis.entity.*;
 import com.co.jarvis.enums.*;
 import com.co.jarvis.repository.*;
+import com.co.jarvis.service.AuditLogService;
+import com.co.jarvis.service.CashLedgerService;
 import com.co.jarvis.service.CashRegisterService;
 import com.co.jarvis.util.DateTimeUtil;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -22,6 +27,7 @@ import java.time.LocalTime;
 import java.time.OffsetDateTime;
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Slf4j
 @Service
@@ -29,13 +35,9 @@ import java.util.stream.Collectors;
 public class CashRegisterServiceImpl implements CashRegisterService {
 
     private final CashCountSessionRepository cashCountSessionRepository;
-    private final SupplierPaymentRepository supplierPaymentRepository;
-    private final ClientCreditRepository clientCreditRepository;
-    private final ClientAccountRepository clientAccountRepository;
-    private final CashLoanRepository cashLoanRepository;
-    private final InternalTransferRepository internalTransferRepository;
     private final ExpenseRepository expenseRepository;
-    private final MerchandiseReturnRepository merchandiseReturnRepository;
+    private final CashLedgerService cashLedgerService;
+    private final AuditLogService auditLogService;
     private final MongoTemplate mongoTemplate;
 
     // Denominaciones colombianas
@@ -60,34 +62,8 @@ public class CashRegisterServiceImpl implements CashRegisterService {
     public DailySummaryResponse getDailySummary(LocalDate date) {
         log.info("CashRegisterServiceImpl -> getDailySummary: {}", date);
 
-        List<CashTransactionDto> transactions = new ArrayList<>();
-
-        // 1. Obtener ventas del día
-        transactions.addAll(getSalesTransactions(date));
-
-        // 2. Obtener pagos de crédito (abonos a cuentas por cobrar)
-        transactions.addAll(getCreditPaymentTransactions(date));
-
-        // 3. Obtener depósitos/anticipos (saldos a favor)
-        transactions.addAll(getDepositTransactions(date));
-
-        // 3.5. Obtener devoluciones de anticipos (saldos a favor)
-        transactions.addAll(getRefundTransactions(date));
-
-        // 4. Obtener gastos
-        transactions.addAll(getExpenseTransactions(date));
-
-        // 5. Obtener pagos a proveedores
-        transactions.addAll(getSupplierPaymentTransactions(date));
-
-        // 6. Obtener préstamos de caja del día
-        transactions.addAll(getCashLoanTransactions(date));
-
-        // 7. Obtener traslados de efectivo a banco del día (salidas justificadas)
-        transactions.addAll(getInternalTransferTransactions(date));
-
-        // 8. Obtener devoluciones de venta con reembolso en efectivo
-        transactions.addAll(getSaleReturnTransactions(date));
+        // Movimientos en efectivo del día desde el libro diario de caja (CASH_LEDGER_DAYS)
+        List<CashTransactionDto> transactions = cashLedgerService.getDayTransactions(date);
 
         // Calcular totales — todas las transacciones son solo EFECTIVO
         BigDecimal totalIncome = transactions.stream()
@@ -154,6 +130,7 @@ public class CashRegisterServiceImpl implements CashRegisterService {
                 .findBySessionDate(request.getSessionDate());
 
         CashCountSession session;
+        AuditEntry auditEntry;
 
         if (existingSession.isPresent()) {
             session = existingSession.get();
@@ -171,27 +148,25 @@ public class CashRegisterServiceImpl implements CashRegisterService {
             // Actualizar el existente
             session.setOpeningBalance(request.getOpeningBalance());
             session.setNotes(request.getNotes());
-            ensureAuditTrail(session).add(AuditEntry.builder()
+            auditEntry = AuditEntry.builder()
                     .userId(userId)
                     .userName(userName)
                     .action(EAuditAction.ACTUALIZACION)
                     .timestamp(LocalDateTime.now())
-                    .build());
+                    .build();
         } else {
             // Crear nuevo
-            List<AuditEntry> auditTrail = new ArrayList<>();
-            auditTrail.add(AuditEntry.builder()
+            auditEntry = AuditEntry.builder()
                     .userId(userId)
                     .userName(userName)
                     .action(EAuditAction.APERTURA)
                     .timestamp(LocalDateTime.now())
-                    .build());
+                    .build();
             session = CashCountSession.builder()
                     .sessionDate(request.getSessionDate())
                     .openingBalance(request.getOpeningBalance())
                     .notes(request.getNotes())
                     .status(ECashCountStatus.EN_PROGRESO)
-                    .auditTrail(auditTrail)
                     .build();
         }
 
@@ -238,6 +213,7 @@ public class CashRegisterServiceImpl implements CashRegisterService {
 
         // Guardar
         session = cashCountSessionRepository.save(session);
+        auditLogService.append(EAuditEntityType.ARQUEO_CAJA, session.getId(), List.of(auditEntry));
         log.info("Cash count session saved with ID: {}", session.getId());
 
         return mapToDto(session);
@@ -276,12 +252,12 @@ public class CashRegisterServiceImpl implements CashRegisterService {
         }
 
         session.setStatus(ECashCountStatus.CERRADO);
-        ensureAuditTrail(session).add(AuditEntry.builder()
+        AuditEntry auditEntry = AuditEntry.builder()
                 .userId(userId)
                 .userName(userName)
                 .action(EAuditAction.CIERRE)
                 .timestamp(LocalDateTime.now())
-                .build());
+                .build();
 
         if (request.getNotes() != null && !request.getNotes().isEmpty()) {
             String existingNotes = session.getNotes() != null ? session.getNotes() + " | " : "";
@@ -309,6 +285,7 @@ public class CashRegisterServiceImpl implements CashRegisterService {
         }
 
         session = cashCountSessionRepository.save(session);
+        auditLogService.append(EAuditEntityType.ARQUEO_CAJA, session.getId(), List.of(auditEntry));
         log.info("Cash count session closed: {}", id);
 
         return mapToDto(session);
@@ -337,19 +314,18 @@ public class CashRegisterServiceImpl implements CashRegisterService {
                 .reason(reason)
                 .build();
 
-        if (session.getSnapshots() == null) session.setSnapshots(new ArrayList<>());
-        session.getSnapshots().add(snapshot);
-
         session.setStatus(ECashCountStatus.EN_PROGRESO);
-        ensureAuditTrail(session).add(AuditEntry.builder()
+        AuditEntry auditEntry = AuditEntry.builder()
                 .userId(user != null ? user.getNumberIdentity() : null)
                 .userName(user != null ? user.getFullName() : null)
                 .action(EAuditAction.REAPERTURA)
                 .timestamp(LocalDateTime.now())
                 .details(reason)
-                .build());
+                .build();
 
         session = cashCountSessionRepository.save(session);
+        auditLogService.appendSnapshot(EAuditEntityType.ARQUEO_CAJA, session.getId(), snapshot);
+        auditLogService.append(EAuditEntityType.ARQUEO_CAJA, session.getId(), List.of(auditEntry));
         log.info("Cash count session reopened: {}", id);
         return mapToDto(session);
     }
@@ -372,15 +348,16 @@ public class CashRegisterServiceImpl implements CashRegisterService {
 
         session.setStatus(ECashCountStatus.ANULADO);
         session.setCancelReason(request.getReason());
-        ensureAuditTrail(session).add(AuditEntry.builder()
+        AuditEntry auditEntry = AuditEntry.builder()
                 .userId(userId)
                 .userName(userName)
                 .action(EAuditAction.ANULACION)
                 .timestamp(LocalDateTime.now())
                 .details(request.getReason())
-                .build());
+                .build();
 
         session = cashCountSessionRepository.save(session);
+        auditLogService.append(EAuditEntityType.ARQUEO_CAJA, session.getId(), List.of(auditEntry));
         log.info("Cash count session cancelled: {}", id);
 
         return mapToDto(session);
@@ -402,8 +379,13 @@ public class CashRegisterServiceImpl implements CashRegisterService {
             sessions = cashCountSessionRepository.findAll();
         }
 
+        // Historial de todas las sesiones listadas en una sola consulta a la bitácora
+        Map<String, List<AuditEntry>> auditTrails = auditLogService.findEntries(EAuditEntityType.ARQUEO_CAJA,
+                sessions.stream().map(CashCountSession::getId).toList());
+
         return sessions.stream()
-                .map(this::mapToSummaryDto)
+                .map(session -> mapToSummaryDto(session,
+                        auditTrail(session, auditTrails.getOrDefault(session.getId(), List.of()))))
                 .sorted(Comparator.comparing(CashCountSummaryDto::getDate).reversed())
                 .collect(Collectors.toList());
     }
@@ -490,370 +472,11 @@ public class CashRegisterServiceImpl implements CashRegisterService {
                 .build();
 
         Expense saved = expenseRepository.save(expense);
+        cashLedgerService.recordExpense(saved);
         log.info("Retiro propietario registrado con ID: {}", saved.getId());
         return saved.getId();
     }
 
-    // ==================== Métodos privados ====================
-
-    private List<CashTransactionDto> getSalesTransactions(LocalDate date) {
-        OffsetDateTime startOfDay = date.atStartOfDay().atZone(DateTimeUtil.getBogotaZone()).toOffsetDateTime();
-        OffsetDateTime endOfDay = date.atTime(LocalTime.MAX).atZone(DateTimeUtil.getBogotaZone()).toOffsetDateTime();
-
-        // Solo ventas de CONTADO - las ventas a crédito se registran cuando el cliente paga
-        Query query = new Query(Criteria.where("dateTimeRecord").gte(startOfDay).lte(endOfDay)
-                .and("saleType").is(EPaymentType.CONTADO));
-        List<Billing> billings = mongoTemplate.find(query, Billing.class);
-
-        List<CashTransactionDto> transactions = new ArrayList<>();
-        
-        for (Billing billing : billings) {
-            // Solo incluir pagos en EFECTIVO para el arqueo de caja
-            if (billing.getPayments() != null && !billing.getPayments().isEmpty()) {
-                // Calcular cuánto se pagó por métodos NO efectivo
-                BigDecimal nonCashTotal = billing.getPayments().stream()
-                        .filter(p -> parsePaymentMethod(p.getMethod()) != EPaymentMethod.EFECTIVO)
-                        .map(PaymentEntry::getAmount)
-                        .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-                // El efectivo real que queda en caja = total venta - pagos no efectivo
-                BigDecimal effectiveCash = billing.getTotalBilling().subtract(nonCashTotal);
-
-                boolean hasCashPayment = billing.getPayments().stream()
-                        .anyMatch(p -> parsePaymentMethod(p.getMethod()) == EPaymentMethod.EFECTIVO);
-
-                if (hasCashPayment && effectiveCash.compareTo(BigDecimal.ZERO) > 0) {
-                    transactions.add(CashTransactionDto.builder()
-                            .id(billing.getId() + "-EFECTIVO")
-                            .type(ETransactionType.INGRESO)
-                            .category(ETransactionCategory.VENTA)
-                            .description("Venta #" + billing.getBillNumber())
-                            .amount(effectiveCash)
-                            .paymentMethod(EPaymentMethod.EFECTIVO)
-                            .transactionDate(billing.getDateTimeRecord().atZoneSameInstant(DateTimeUtil.getBogotaZone()).toLocalDateTime())
-                            .relatedDocumentId(billing.getId())
-                            .build());
-                }
-            } else {
-                // Fallback: usar paymentMethods array — solo si es EFECTIVO
-                EPaymentMethod paymentMethod = billing.getPaymentMethods() != null && 
-                        !billing.getPaymentMethods().isEmpty() 
-                        ? billing.getPaymentMethods().get(0) 
-                        : EPaymentMethod.EFECTIVO;
-
-                if (paymentMethod == EPaymentMethod.EFECTIVO) {
-                    transactions.add(CashTransactionDto.builder()
-                            .id(billing.getId())
-                            .type(ETransactionType.INGRESO)
-                            .category(ETransactionCategory.VENTA)
-                            .description("Venta #" + billing.getBillNumber())
-                            .amount(billing.getTotalBilling())
-                            .paymentMethod(EPaymentMethod.EFECTIVO)
-                            .transactionDate(billing.getDateTimeRecord().atZoneSameInstant(DateTimeUtil.getBogotaZone()).toLocalDateTime())
-                            .relatedDocumentId(billing.getId())
-                            .build());
-                }
-            }
-
-        }
-        
-        return transactions;
-    }
-    
-    private EPaymentMethod parsePaymentMethod(String method) {
-        if (method == null) return EPaymentMethod.EFECTIVO;
-        try {
-            return EPaymentMethod.valueOf(method);
-        } catch (IllegalArgumentException e) {
-            return EPaymentMethod.EFECTIVO;
-        }
-    }
-
-    private List<CashTransactionDto> getCreditPaymentTransactions(LocalDate date) {
-        // Buscar pagos de crédito (abonos a cuentas por cobrar) desde ClientAccount.payments[]
-        List<CashTransactionDto> transactions = new ArrayList<>();
-        
-        List<ClientAccount> allAccounts = clientAccountRepository.findAll();
-        for (ClientAccount account : allAccounts) {
-            if (account.getPayments() != null) {
-                for (AccountPayment payment : account.getPayments()) {
-                    // Solo pagos en EFECTIVO para el arqueo
-                    EPaymentMethod method = payment.getPaymentMethod() != null ? 
-                            payment.getPaymentMethod() : EPaymentMethod.EFECTIVO;
-                    if (method != EPaymentMethod.EFECTIVO) continue;
-
-                    if (payment.getPaymentDate() != null &&
-                        payment.getPaymentDate().toLocalDate().equals(date)) {
-                        
-                        String clientName = account.getClient() != null ? 
-                                account.getClient().getFullName() : "Cliente";
-                        
-                        transactions.add(CashTransactionDto.builder()
-                                .id(payment.getId())
-                                .type(ETransactionType.INGRESO)
-                                .category(ETransactionCategory.PAGO_CREDITO)
-                                .description("Abono crédito - " + clientName)
-                                .amount(payment.getAmount())
-                                .paymentMethod(EPaymentMethod.EFECTIVO)
-                                .reference(payment.getReference())
-                                .transactionDate(payment.getPaymentDate())
-                                .relatedDocumentId(account.getId())
-                                .build());
-                    }
-                }
-            }
-        }
-        
-        return transactions;
-    }
-
-    private List<CashTransactionDto> getDepositTransactions(LocalDate date) {
-        // Depósitos/anticipos (saldos a favor) desde ClientCredit.transactions[]
-        List<CashTransactionDto> transactions = new ArrayList<>();
-        
-        List<ClientCredit> allCredits = clientCreditRepository.findAll();
-        for (ClientCredit credit : allCredits) {
-            if (credit.getTransactions() != null) {
-                for (CreditTransaction ct : credit.getTransactions()) {
-                    // Solo depósitos en EFECTIVO para el arqueo
-                    EPaymentMethod method = ct.getPaymentMethod() != null ? 
-                            ct.getPaymentMethod() : EPaymentMethod.EFECTIVO;
-                    if (method != EPaymentMethod.EFECTIVO) continue;
-
-                    if (ct.getType() == ECreditTransactionType.DEPOSIT &&
-                        ct.getTransactionDate() != null &&
-                        ct.getTransactionDate().toLocalDate().equals(date)) {
-                        
-                        String clientName = credit.getClient() != null ? 
-                                credit.getClient().getFullName() : "Cliente";
-                        
-                        transactions.add(CashTransactionDto.builder()
-                                .id(ct.getId())
-                                .type(ETransactionType.INGRESO)
-                                .category(ETransactionCategory.DEPOSITO_ANTICIPO)
-                                .description("Depósito saldo a favor - " + clientName)
-                                .amount(ct.getAmount())
-                                .paymentMethod(EPaymentMethod.EFECTIVO)
-                                .reference(ct.getReference())
-                                .transactionDate(ct.getTransactionDate())
-                                .relatedDocumentId(credit.getId())
-                                .build());
-                    }
-                }
-            }
-        }
-        
-        return transactions;
-    }
-
-    private List<CashTransactionDto> getRefundTransactions(LocalDate date) {
-        // Devoluciones de anticipos (saldos a favor) desde ClientCredit.transactions[]
-        List<CashTransactionDto> transactions = new ArrayList<>();
-
-        List<ClientCredit> allCredits = clientCreditRepository.findAll();
-        for (ClientCredit credit : allCredits) {
-            if (credit.getTransactions() != null) {
-                for (CreditTransaction ct : credit.getTransactions()) {
-                    // Solo reembolsos en EFECTIVO para el arqueo
-                    EPaymentMethod method = ct.getPaymentMethod() != null ?
-                            ct.getPaymentMethod() : EPaymentMethod.EFECTIVO;
-                    if (method != EPaymentMethod.EFECTIVO) continue;
-
-                    if (ct.getType() == ECreditTransactionType.REFUND &&
-                        ct.getTransactionDate() != null &&
-                        ct.getTransactionDate().toLocalDate().equals(date)) {
-
-                        String clientName = credit.getClient() != null ?
-                                credit.getClient().getFullName() : "Cliente";
-
-                        transactions.add(CashTransactionDto.builder()
-                                .id(ct.getId())
-                                .type(ETransactionType.EGRESO)
-                                .category(ETransactionCategory.DEVOLUCION_ANTICIPO)
-                                .description("Devolución saldo a favor - " + clientName)
-                                .amount(ct.getAmount())
-                                .paymentMethod(EPaymentMethod.EFECTIVO)
-                                .reference(ct.getReference())
-                                .transactionDate(ct.getTransactionDate())
-                                .relatedDocumentId(credit.getId())
-                                .build());
-                    }
-                }
-            }
-        }
-
-        return transactions;
-    }
-
-    private List<CashTransactionDto> getSaleReturnTransactions(LocalDate date) {
-        List<CashTransactionDto> transactions = new ArrayList<>();
-
-        OffsetDateTime startOfDay = date.atStartOfDay().atZone(DateTimeUtil.getBogotaZone()).toOffsetDateTime();
-        OffsetDateTime endOfDay = date.atTime(LocalTime.MAX).atZone(DateTimeUtil.getBogotaZone()).toOffsetDateTime();
-
-        List<MerchandiseReturn> returns = merchandiseReturnRepository
-                .findByReturnDateBetweenOrderByReturnDateDesc(startOfDay, endOfDay);
-
-        for (MerchandiseReturn ret : returns) {
-            // Solo devoluciones de venta procesadas (no anuladas)
-            if (ret.getReturnType() != EReturnType.DEVOLUCION_VENTA) continue;
-            if (ret.getStatus() == EReturnStatus.ANULADA) continue;
-            if (ret.getResolution() == null) continue;
-
-            // Solo las resoluciones que implican efectivo saliendo de la caja
-            boolean hasCashOut = ret.getResolution() == EReturnResolution.REEMBOLSO_EFECTIVO
-                    || ret.getResolution() == EReturnResolution.CAMBIO_PRODUCTO;
-            if (!hasCashOut) continue;
-
-            BigDecimal cashOut = ret.getCashRefundAmount() != null ? ret.getCashRefundAmount() : BigDecimal.ZERO;
-            if (cashOut.compareTo(BigDecimal.ZERO) <= 0) continue;
-
-            String clientName = ret.getClientName() != null ? ret.getClientName() : "Cliente";
-            String desc = "Devolución venta " + ret.getReturnNumber() + " - " + clientName;
-
-            transactions.add(CashTransactionDto.builder()
-                    .id(ret.getId())
-                    .type(ETransactionType.EGRESO)
-                    .category(ETransactionCategory.DEVOLUCION_VENTA)
-                    .description(desc)
-                    .amount(cashOut)
-                    .paymentMethod(EPaymentMethod.EFECTIVO)
-                    .reference(ret.getOriginalDocumentNumber())
-                    .transactionDate(ret.getReturnDate()
-                            .atZoneSameInstant(DateTimeUtil.getBogotaZone()).toLocalDateTime())
-                    .relatedDocumentId(ret.getId())
-                    .build());
-        }
-
-        return transactions;
-    }
-
-    private List<CashTransactionDto> getExpenseTransactions(LocalDate date) {
-        OffsetDateTime startOfDay = date.atStartOfDay().atZone(DateTimeUtil.getBogotaZone()).toOffsetDateTime();
-        OffsetDateTime endOfDay = date.atTime(LocalTime.MAX).atZone(DateTimeUtil.getBogotaZone()).toOffsetDateTime();
-
-        Query query = new Query(Criteria.where("dateTimeRecord").gte(startOfDay).lte(endOfDay));
-        List<Expense> expenses = mongoTemplate.find(query, Expense.class);
-
-        // Solo gastos pagados en EFECTIVO para el arqueo
-        return expenses.stream()
-                .filter(expense -> {
-                    EPaymentMethod method = expense.getPaymentMethod() != null ? 
-                            expense.getPaymentMethod() : EPaymentMethod.EFECTIVO;
-                    return method == EPaymentMethod.EFECTIVO;
-                })
-                .map(expense -> CashTransactionDto.builder()
-                        .id(expense.getId())
-                        .type(ETransactionType.EGRESO)
-                        .category(ETransactionCategory.GASTO)
-                        .description(expense.getDescription())
-                        .amount(expense.getAmount())
-                        .paymentMethod(EPaymentMethod.EFECTIVO)
-                        .reference(expense.getReference())
-                        .transactionDate(expense.getDateTimeRecord().atZoneSameInstant(DateTimeUtil.getBogotaZone()).toLocalDateTime())
-                        .relatedDocumentId(expense.getId())
-                        .build())
-                .collect(Collectors.toList());
-    }
-
-    private List<CashTransactionDto> getSupplierPaymentTransactions(LocalDate date) {
-        List<SupplierPayment> payments = supplierPaymentRepository.findByPaymentDate(date);
-
-        // Solo pagos a proveedores en EFECTIVO para el arqueo
-        return payments.stream()
-                .filter(payment -> {
-                    EPaymentMethod method = payment.getMethod() != null ? 
-                            payment.getMethod() : EPaymentMethod.EFECTIVO;
-                    return method == EPaymentMethod.EFECTIVO;
-                })
-                .map(payment -> CashTransactionDto.builder()
-                        .id(payment.getId())
-                        .type(ETransactionType.EGRESO)
-                        .category(ETransactionCategory.PAGO_PROVEEDOR)
-                        .description("Pago a " + payment.getSupplierName())
-                        .amount(payment.getAmount())
-                        .paymentMethod(EPaymentMethod.EFECTIVO)
-                        .reference(payment.getReference())
-                        .transactionDate(date.atStartOfDay())
-                        .relatedDocumentId(payment.getId())
-                        .build())
-                .collect(Collectors.toList());
-    }
-
-    private List<CashTransactionDto> getCashLoanTransactions(LocalDate date) {
-        List<CashTransactionDto> transactions = new ArrayList<>();
-        List<CashLoan> loans = cashLoanRepository.findByLoanDate(date);
-
-        for (CashLoan loan : loans) {
-            if (loan.getStatus() == ECashLoanStatus.ANULADO) {
-                continue;
-            }
-            // Préstamo: egreso de efectivo el día que se tomó
-            transactions.add(CashTransactionDto.builder()
-                    .id(loan.getId() + "-prestamo")
-                    .type(ETransactionType.EGRESO)
-                    .category(ETransactionCategory.AJUSTE)
-                    .description("Préstamo caja - " + loan.getBorrower()
-                            + (loan.getReason() != null ? " (" + loan.getReason() + ")" : ""))
-                    .amount(loan.getAmount())
-                    .paymentMethod(EPaymentMethod.EFECTIVO)
-                    .transactionDate(date.atStartOfDay())
-                    .relatedDocumentId(loan.getId())
-                    .build());
-        }
-
-        // Devoluciones: ingreso de efectivo el día en que se devolvió
-        List<CashLoan> returned = cashLoanRepository.findByStatus(ECashLoanStatus.DEVUELTO);
-        for (CashLoan loan : returned) {
-            if (loan.getReturnDate() != null && loan.getReturnDate().equals(date)
-                    && loan.getReturnedAmount() != null) {
-                transactions.add(CashTransactionDto.builder()
-                        .id(loan.getId() + "-devolucion")
-                        .type(ETransactionType.INGRESO)
-                        .category(ETransactionCategory.AJUSTE)
-                        .description("Devolución préstamo - " + loan.getBorrower())
-                        .amount(loan.getReturnedAmount())
-                        .paymentMethod(EPaymentMethod.EFECTIVO)
-                        .transactionDate(date.atStartOfDay())
-                        .relatedDocumentId(loan.getId())
-                        .build());
-            }
-        }
-
-        return transactions;
-    }
-
-    private List<CashTransactionDto> getInternalTransferTransactions(LocalDate date) {
-        List<InternalTransfer> transfers = internalTransferRepository
-                .findByTransferDateAndStatus(date, EInternalTransferStatus.ACTIVO);
-
-        return transfers.stream()
-                .map(t -> CashTransactionDto.builder()
-                        .id(t.getId())
-                        .type(ETransactionType.EGRESO)
-                        .category(ETransactionCategory.TRASLADO_BANCO)
-                        .description(buildTransferDescription(t))
-                        .amount(t.getAmount())
-                        .paymentMethod(EPaymentMethod.EFECTIVO)
-                        .reference(t.getReference())
-                        .transactionDate(t.getTransferDateTime() != null
-                                ? t.getTransferDateTime() : date.atStartOfDay())
-                        .relatedDocumentId(t.getId())
-                        .build())
-                .collect(Collectors.toList());
-    }
-
-    private String buildTransferDescription(InternalTransfer t) {
-        StringBuilder sb = new StringBuilder("Traslado a banco");
-        if (t.getDestinationBankName() != null && !t.getDestinationBankName().isBlank()) {
-            sb.append(" - ").append(t.getDestinationBankName());
-        }
-        if (t.getDestinationAccountNumber() != null && !t.getDestinationAccountNumber().isBlank()) {
-            sb.append(" (").append(t.getDestinationAccountNumber()).append(")");
-        }
-        return sb.toString();
-    }
-
     @Override
     public BigDecimal getCurrentCashBalance(LocalDate date) {
         log.info("CashRegisterServiceImpl -> getCurrentCashBalance: {}", date);
@@ -880,6 +503,40 @@ public class CashRegisterServiceImpl implements CashRegisterService {
         return balance;
     }
 
+    /**
+     * Las sesiones guardadas antes de la bitácora tienen historial y fotos embebidos: se copian
+     * a AUDIT_LOG y se quitan del documento. Mientras tanto las lecturas combinan ambos, y si
+     * se interrumpe entre la copia y el $unset la sesión se vuelve a copiar en el siguiente
+     * arranque; los bloques ya copiados se reconocen por su _id y no se duplican.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void archiveLegacyAudit() {
+        try {
+            Query query = new Query(new Criteria().orOperator(
+                    Criteria.where("legacyAuditTrail").exists(true),
+                    Criteria.where("legacySnapshots").exists(true)));
+            query.fields().include("legacyAuditTrail", "legacySnapshots");
+            int[] archived = {0};
+            try (Stream<CashCountSession> sessions = mongoTemplate.stream(query, CashCountSession.class)) {
+                sessions.forEach(session -> {
+                    auditLogService.appendLegacy(EAuditEntityType.ARQUEO_CAJA, session.getId(),
+                            session.getLegacyAuditTrail(), session.getLegacySnapshots());
+                    mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(session.getId())),
+                            new Update().unset("legacyAuditTrail").unset("legacySnapshots"),
+                            CashCountSession.class);
+                    archived[0]++;
+                });
+            }
+            if (archived[0] > 0) {
+                log.info("CashRegisterServiceImpl -> archiveLegacyAudit: {} sesiones", archived[0]);
+            }
+        } catch (RuntimeException e) {
+            log.error("CashRegisterServiceImpl -> archiveLegacyAudit -> ERROR: {}", e.getMessage(), e);
+        }
+    }
+
+    // ==================== Métodos privados ====================
+
     private List<PaymentMethodSummaryDto> calculatePaymentMethodSummaries(List<CashTransactionDto> transactions) {
         Map<EPaymentMethod, PaymentMethodSummaryDto> summaryMap = new HashMap<>();
 
@@ -939,29 +596,22 @@ public class CashRegisterServiceImpl implements CashRegisterService {
                                 .build())
                         .collect(Collectors.toList()) : new ArrayList<>();
 
-        List<AuditEntryDto> auditDtos = session.getAuditTrail() != null ?
-                session.getAuditTrail().stream()
-                        .map(a -> AuditEntryDto.builder()
-                                .userId(a.getUserId())
-                                .userName(a.getUserName())
-                                .action(a.getAction())
-                                .timestamp(a.getTimestamp())
-                                .details(a.getDetails())
-                                .build())
-                        .collect(Collectors.toList()) : new ArrayList<>();
+        List<AuditEntryDto> auditDtos = auditTrail(session,
+                auditLogService.findEntries(EAuditEntityType.ARQUEO_CAJA, session.getId())).stream()
+                .map(this::mapAuditEntry)
+                .collect(Collectors.toList());
 
-        List<SessionSnapshotDto> snapshotDtos = session.getSnapshots() != null ?
-                session.getSnapshots().stream()
-                        .map(s -> SessionSnapshotDto.builder()
-                                .snapshotAt(s.getSnapshotAt())
-                                .userId(s.getUserId())
-                                .userName(s.getUserName())
-                                .totalCounted(s.getTotalCounted())
-                                .expectedTotal(s.getExpectedTotal())
-                                .difference(s.getDifference())
-                                .reason(s.getReason())
-                                .build())
-                        .collect(Collectors.toList()) : new ArrayList<>();
+        List<SessionSnapshotDto> snapshotDtos = snapshots(session).stream()
+                .map(s -> SessionSnapshotDto.builder()
+                        .snapshotAt(s.getSnapshotAt())
+                        .userId(s.getUserId())
+                        .userName(s.getUserName())
+                        .totalCounted(s.getTotalCounted())
+                        .expectedTotal(s.getExpectedTotal())
+                        .difference(s.getDifference())
+                        .reason(s.getReason())
+                        .build())
+                .collect(Collectors.toList());
 
         return CashCountSessionDto.builder()
                 .id(session.getId())
@@ -986,24 +636,42 @@ public class CashRegisterServiceImpl implements CashRegisterService {
                 .build();
     }
 
-    private List<AuditEntry> ensureAuditTrail(CashCountSession session) {
-        if (session.getAuditTrail() == null) {
-            session.setAuditTrail(new ArrayList<>());
+    /**
+     * Historial de la sesión: lo que aún tenga embebido (sesiones no migradas) seguido de la
+     * bitácora.
+     */
+    private List<AuditEntry> auditTrail(CashCountSession session, List<AuditEntry> logged) {
+        if (session.getLegacyAuditTrail() == null || session.getLegacyAuditTrail().isEmpty()) {
+            return logged;
         }
-        return session.getAuditTrail();
+        List<AuditEntry> auditTrail = new ArrayList<>(session.getLegacyAuditTrail());
+        auditTrail.addAll(logged);
+        return auditTrail;
     }
 
-    private CashCountSummaryDto mapToSummaryDto(CashCountSession session) {
-        List<AuditEntryDto> auditDtos = session.getAuditTrail() != null ?
-                session.getAuditTrail().stream()
-                        .map(a -> AuditEntryDto.builder()
-                                .userId(a.getUserId())
-                                .userName(a.getUserName())
-                                .action(a.getAction())
-                                .timestamp(a.getTimestamp())
-                                .details(a.getDetails())
-                                .build())
-                        .collect(Collectors.toList()) : new ArrayList<>();
+    private List<SessionSnapshot> snapshots(CashCountSession session) {
+        List<SessionSnapshot> snapshots = new ArrayList<>();
+        if (session.getLegacySnapshots() != null) {
+            snapshots.addAll(session.getLegacySnapshots());
+        }
+        snapshots.addAll(auditLogService.findSnapshots(EAuditEntityType.ARQUEO_CAJA, session.getId()));
+        return snapshots;
+    }
+
+    private AuditEntryDto mapAuditEntry(AuditEntry a) {
+        return AuditEntryDto.builder()
+                .userId(a.getUserId())
+                .userName(a.getUserName())
+                .action(a.getAction())
+                .timestamp(a.getTimestamp())
+                .details(a.getDetails())
+                .build();
+    }
+
+    private CashCountSummaryDto mapToSummaryDto(CashCountSession session, List<AuditEntry> auditTrail) {
+        List<AuditEntryDto> auditDtos = auditTrail.stream()
+                .map(this::mapAuditEntry)
+                .collect(Collectors.toList());
 
         return CashCountSummaryDto.builder()
                 .date(session.getSessionDate())
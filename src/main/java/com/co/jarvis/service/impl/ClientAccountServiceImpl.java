@@ -12,16 +12,25 @@ import com.co.jarvis.entity.Client;
 import com.co.jarvis.entity.ClientAccount;
 import com.co.jarvis.enums.EAccountTransactionType;
 import com.co.jarvis.enums.EPaymentType;
+import com.co.jarvis.repository.AccountPaymentRepository;
+import com.co.jarvis.repository.AccountTransactionRepository;
 import com.co.jarvis.repository.ClientAccountRepository;
 import com.co.jarvis.repository.ClientRepository;
+import com.co.jarvis.service.CashLedgerService;
 import com.co.jarvis.service.ClientAccountService;
 import com.co.jarvis.util.BankAccountHelper;
+import com.co.jarvis.util.MongoMigrationSupport;
+import com.co.jarvis.util.StartupMigration;
 import com.co.jarvis.util.mappers.GenericMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.Decimal128;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -30,20 +39,28 @@ import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
-public class ClientAccountServiceImpl implements ClientAccountService {
+public class ClientAccountServiceImpl implements ClientAccountService, StartupMigration {
 
     private final ClientAccountRepository clientAccountRepository;
+    private final AccountPaymentRepository accountPaymentRepository;
+    private final AccountTransactionRepository accountTransactionRepository;
     private final ClientRepository clientRepository;
     private final MongoTemplate mongoTemplate;
     private final BankAccountHelper bankAccountHelper;
+    private final CashLedgerService cashLedgerService;
 
     private final GenericMapper<Billing, BillingDto> billingMapper = 
             new GenericMapper<>(Billing.class, BillingDto.class);
@@ -51,7 +68,12 @@ public class ClientAccountServiceImpl implements ClientAccountService {
     @Override
     public ClientAccount getByClientId(String clientId) {
         log.info("ClientAccountServiceImpl -> getByClientId: {}", clientId);
-        return clientAccountRepository.findByClientId(clientId).orElse(null);
+        ClientAccount account = clientAccountRepository.findByClientId(clientId).orElse(null);
+        if (account != null) {
+            account.setPayments(accountPaymentRepository.findByClientIdOrderByPaymentDateAsc(clientId));
+            account.setTransactions(accountTransactionRepository.findByClientIdOrderByCreatedAtAsc(clientId));
+        }
+        return account;
     }
 
     @Override
@@ -71,9 +93,7 @@ public class ClientAccountServiceImpl implements ClientAccountService {
     @Override
     public List<AccountPayment> getPaymentsByClientId(String clientId) {
         log.info("ClientAccountServiceImpl -> getPaymentsByClientId: {}", clientId);
-        return clientAccountRepository.findByClientId(clientId)
-                .map(ClientAccount::getPayments)
-                .orElse(Collections.emptyList());
+        return accountPaymentRepository.findByClientIdOrderByPaymentDateAsc(clientId);
     }
 
     @Override
@@ -92,14 +112,10 @@ public class ClientAccountServiceImpl implements ClientAccountService {
     public void addDebt(String clientId, BigDecimal amount) {
         log.info("ClientAccountServiceImpl -> addDebt: clientId={}, amount={}", clientId, amount);
         
-        ClientAccount account = clientAccountRepository.findByClientId(clientId)
-                .orElseGet(() -> createNewAccount(clientId));
-
-        account.setTotalDebt(account.getTotalDebt().add(amount));
-        account.setCurrentBalance(account.getTotalDebt().subtract(account.getTotalPaid()));
-        account.setUpdatedAt(LocalDateTime.now());
-
-        clientAccountRepository.save(account);
+        ensureAccount(clientId);
+        ClientAccount account = updateBalances(clientId, null, new Update()
+                .inc("totalDebt", new Decimal128(amount))
+                .inc("currentBalance", new Decimal128(amount)));
         log.info("Debt added successfully. New balance: {}", account.getCurrentBalance());
     }
 
@@ -109,14 +125,7 @@ public class ClientAccountServiceImpl implements ClientAccountService {
         log.info("ClientAccountServiceImpl -> registerPayment: clientId={}, amount={}", 
                 request.getClientAccountId(), request.getAmount());
 
-        ClientAccount account = clientAccountRepository.findByClientId(request.getClientAccountId())
-                .orElseThrow(() -> new RuntimeException("Cuenta no encontrada para el cliente"));
-
-        if (request.getAmount().compareTo(account.getCurrentBalance()) > 0) {
-            throw new RuntimeException("El monto del pago excede el saldo pendiente");
-        }
-
-        if (request.getAmount().compareTo(BigDecimal.ZERO) <= 0) {
+        if (request.getAmount() == null || request.getAmount().compareTo(BigDecimal.ZERO) <= 0) {
             throw new RuntimeException("El monto del pago debe ser mayor a cero");
         }
 
@@ -125,8 +134,25 @@ public class ClientAccountServiceImpl implements ClientAccountService {
         String bankAccountName = bankAccountHelper.resolveBankAccountName(
                 request.getBankAccountId(), request.getBankAccountName());
 
+        // El saldo se valida en la misma actualización: dos abonos simultáneos no lo dejan negativo
+        String clientId = request.getClientAccountId();
+        ClientAccount account = updateBalances(clientId,
+                Criteria.where("currentBalance").gte(new Decimal128(request.getAmount())),
+                new Update()
+                        .inc("totalPaid", new Decimal128(request.getAmount()))
+                        .inc("currentBalance", new Decimal128(request.getAmount().negate()))
+                        .set("lastPaymentDate", LocalDateTime.now()));
+        if (account == null) {
+            if (!clientAccountRepository.existsByClientId(clientId)) {
+                throw new RuntimeException("Cuenta no encontrada para el cliente");
+            }
+            throw new RuntimeException("El monto del pago excede el saldo pendiente");
+        }
+
         AccountPayment payment = AccountPayment.builder()
                 .id(UUID.randomUUID().toString())
+                .accountId(account.getId())
+                .clientId(clientId)
                 .amount(request.getAmount())
                 .paymentMethod(request.getPaymentMethod())
                 .bankAccountId(request.getBankAccountId())
@@ -138,13 +164,8 @@ public class ClientAccountServiceImpl implements ClientAccountService {
                 .createdAt(LocalDateTime.now())
                 .build();
 
-        account.getPayments().add(payment);
-        account.setTotalPaid(account.getTotalPaid().add(request.getAmount()));
-        account.setCurrentBalance(account.getTotalDebt().subtract(account.getTotalPaid()));
-        account.setLastPaymentDate(LocalDateTime.now());
-        account.setUpdatedAt(LocalDateTime.now());
-
-        clientAccountRepository.save(account);
+        accountPaymentRepository.insert(payment);
+        cashLedgerService.recordAccountPayment(account, payment);
         log.info("Payment registered successfully. New balance: {}", account.getCurrentBalance());
         
         return payment;
@@ -170,21 +191,55 @@ public class ClientAccountServiceImpl implements ClientAccountService {
         }
 
         List<ClientAccount> accounts = mongoTemplate.find(query, ClientAccount.class);
+        Set<String> paidInRange = clientIdsWithPaymentsInRange(filter);
+        List<ClientAccount> selected = accounts.stream()
+                .filter(account -> filterByDateRange(account, filter, paidInRange))
+                .collect(Collectors.toList());
+        if (selected.isEmpty()) {
+            return new ArrayList<>();
+        }
 
-        return accounts.stream()
-                .filter(account -> filterByDateRange(account, filter))
-                .map(this::mapToAccountSummary)
+        // Abonos de todas las cuentas del reporte en una sola consulta
+        List<String> clientIds = selected.stream().map(ClientAccount::getClientId).collect(Collectors.toList());
+        Map<String, List<AccountPayment>> paymentsByClient = accountPaymentRepository
+                .findByClientIdInOrderByPaymentDateAsc(clientIds).stream()
+                .collect(Collectors.groupingBy(AccountPayment::getClientId));
+
+        return selected.stream()
+                .map(account -> mapToAccountSummary(account,
+                        paymentsByClient.getOrDefault(account.getClientId(), List.of())))
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Clientes con algún abono dentro del rango del filtro, o vacío si el filtro no tiene fechas.
+     */
+    private Set<String> clientIdsWithPaymentsInRange(AccountReportFilter filter) {
+        if (filter.getFromDate() == null && filter.getToDate() == null) {
+            return Set.of();
+        }
+        Criteria criteria = Criteria.where("paymentDate");
+        if (filter.getFromDate() != null) {
+            criteria = criteria.gte(filter.getFromDate().atStartOfDay());
+        }
+        if (filter.getToDate() != null) {
+            criteria = criteria.lte(filter.getToDate().atTime(LocalTime.MAX));
+        }
+        Query query = new Query(criteria);
+        if (filter.getClientId() != null && !filter.getClientId().isEmpty()) {
+            query.addCriteria(Criteria.where("clientId").is(filter.getClientId()));
+        }
+        return new HashSet<>(mongoTemplate.findDistinct(query, "clientId", AccountPayment.class, String.class));
+    }
+
     /**
      * Filtra cuentas por rango de fechas basándose en actividad real:
-     * - Si la cuenta tiene pagos, se incluye si algún pago cae dentro del rango
+     * - Si la cuenta tiene pagos, se incluye si algún pago cae dentro del rango (paidInRange)
      * - Si la cuenta no tiene pagos pero tiene deuda, se incluye si fue creada dentro del rango
      * El filtro de fecha NO excluye cuentas con saldo pendiente y sin pagos recientes
      * (esas se muestran siempre para no perder deudas de vista).
      */
-    private boolean filterByDateRange(ClientAccount account, AccountReportFilter filter) {
+    private boolean filterByDateRange(ClientAccount account, AccountReportFilter filter, Set<String> paidInRange) {
         if (filter.getFromDate() == null && filter.getToDate() == null) {
             return true;
         }
@@ -193,21 +248,15 @@ public class ClientAccountServiceImpl implements ClientAccountService {
         LocalDateTime to   = filter.getToDate()   != null ? filter.getToDate().atTime(LocalTime.MAX) : null;
 
         // Si tiene pagos, verificar si alguno cae en el rango
-        if (account.getPayments() != null && !account.getPayments().isEmpty()) {
-            boolean hasPaymentInRange = account.getPayments().stream()
-                    .filter(p -> p.getPaymentDate() != null)
-                    .anyMatch(p -> {
-                        LocalDateTime pd = p.getPaymentDate();
-                        return (from == null || !pd.isBefore(from))
-                            && (to   == null || !pd.isAfter(to));
-                    });
-            if (hasPaymentInRange) return true;
+        if (paidInRange.contains(account.getClientId())) {
+            return true;
         }
 
-        // Si tiene saldo pendiente y no tiene pagos, incluir siempre (deuda sin abonar)
+        // Si tiene saldo pendiente y no tiene pagos, incluir siempre (deuda sin abonar).
+        // lastPaymentDate solo queda vacío en las cuentas que nunca recibieron un abono.
         if (account.getCurrentBalance() != null
                 && account.getCurrentBalance().compareTo(java.math.BigDecimal.ZERO) > 0
-                && (account.getPayments() == null || account.getPayments().isEmpty())) {
+                && account.getLastPaymentDate() == null) {
             return true;
         }
 
@@ -221,7 +270,7 @@ public class ClientAccountServiceImpl implements ClientAccountService {
         return false;
     }
 
-    private AccountSummary mapToAccountSummary(ClientAccount account) {
+    private AccountSummary mapToAccountSummary(ClientAccount account, List<AccountPayment> payments) {
         Long daysSinceLastPayment = null;
         if (account.getLastPaymentDate() != null) {
             daysSinceLastPayment = ChronoUnit.DAYS.between(account.getLastPaymentDate(), LocalDateTime.now());
@@ -234,8 +283,8 @@ public class ClientAccountServiceImpl implements ClientAccountService {
         // Calcular historial de pagos con saldo antes/después de cada abono.
         // Los pagos se ordenan por fecha ascendente para calcular el balance corrido.
         List<AccountSummary.PaymentWithBalance> paymentsWithBalance = new ArrayList<>();
-        if (account.getPayments() != null && !account.getPayments().isEmpty()) {
-            List<AccountPayment> sorted = account.getPayments().stream()
+        if (!payments.isEmpty()) {
+            List<AccountPayment> sorted = payments.stream()
                     .filter(p -> p.getPaymentDate() != null)
                     .sorted(java.util.Comparator.comparing(AccountPayment::getPaymentDate))
                     .collect(Collectors.toList());
@@ -291,8 +340,6 @@ public class ClientAccountServiceImpl implements ClientAccountService {
                 .totalDebt(BigDecimal.ZERO)
                 .totalPaid(BigDecimal.ZERO)
                 .currentBalance(BigDecimal.ZERO)
-                .payments(new ArrayList<>())
-                .transactions(new ArrayList<>())
                 .createdAt(LocalDateTime.now())
                 .updatedAt(LocalDateTime.now())
                 .build();
@@ -300,6 +347,26 @@ public class ClientAccountServiceImpl implements ClientAccountService {
         return clientAccountRepository.save(account);
     }
 
+    private void ensureAccount(String clientId) {
+        if (!clientAccountRepository.existsByClientId(clientId)) {
+            createNewAccount(clientId);
+        }
+    }
+
+    /**
+     * Aplica el $inc de saldos sobre la cuenta del cliente, solo si cumple condition (si no es
+     * null), y devuelve la cuenta ya actualizada; null si no hay cuenta o no cumple la condición.
+     */
+    private ClientAccount updateBalances(String clientId, Criteria condition, Update update) {
+        Query query = new Query(Criteria.where("clientId").is(clientId));
+        if (condition != null) {
+            query.addCriteria(condition);
+        }
+        update.set("updatedAt", LocalDateTime.now());
+        return mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().returnNew(true),
+                ClientAccount.class);
+    }
+
     @Override
     @Transactional
     public AccountTransaction registerManualDebt(ManualDebtRequest request, String createdBy) {
@@ -322,15 +389,15 @@ public class ClientAccountServiceImpl implements ClientAccountService {
             throw new IllegalArgumentException("La descripción es requerida");
         }
 
-        ClientAccount account = clientAccountRepository.findByClientId(request.getClientId())
-                .orElseGet(() -> createNewAccount(request.getClientId()));
-
-        account.setTotalDebt(account.getTotalDebt().add(request.getAmount()));
-        account.setCurrentBalance(account.getTotalDebt().subtract(account.getTotalPaid()));
-        account.setUpdatedAt(LocalDateTime.now());
+        ensureAccount(request.getClientId());
+        ClientAccount account = updateBalances(request.getClientId(), null, new Update()
+                .inc("totalDebt", new Decimal128(request.getAmount()))
+                .inc("currentBalance", new Decimal128(request.getAmount())));
 
         AccountTransaction transaction = AccountTransaction.builder()
                 .id(UUID.randomUUID().toString())
+                .accountId(account.getId())
+                .clientId(request.getClientId())
                 .type(EAccountTransactionType.MANUAL_DEBT)
                 .amount(request.getAmount())
                 .balanceAfter(account.getCurrentBalance())
@@ -341,8 +408,7 @@ public class ClientAccountServiceImpl implements ClientAccountService {
                 .createdAt(LocalDateTime.now())
                 .build();
 
-        account.getTransactions().add(transaction);
-        clientAccountRepository.save(account);
+        accountTransactionRepository.insert(transaction);
         
         log.info("Manual debt registered successfully. New balance: {}", account.getCurrentBalance());
         return transaction;
@@ -358,13 +424,21 @@ public class ClientAccountServiceImpl implements ClientAccountService {
         ClientAccount account = clientAccountRepository.findByClientId(clientId)
                 .orElseThrow(() -> new RuntimeException("Cuenta no encontrada para el cliente: " + clientId));
 
+        // La condición evita que dos ajustes simultáneos dejen la deuda total en negativo
         BigDecimal reduction = amount.min(account.getTotalDebt());
-        account.setTotalDebt(account.getTotalDebt().subtract(reduction));
-        account.setCurrentBalance(account.getTotalDebt().subtract(account.getTotalPaid()));
-        account.setUpdatedAt(LocalDateTime.now());
+        account = updateBalances(clientId,
+                Criteria.where("totalDebt").gte(new Decimal128(reduction)),
+                new Update()
+                        .inc("totalDebt", new Decimal128(reduction.negate()))
+                        .inc("currentBalance", new Decimal128(reduction.negate())));
+        if (account == null) {
+            throw new RuntimeException("La deuda del cliente cambió durante el ajuste, intente de nuevo: " + clientId);
+        }
 
         AccountTransaction transaction = AccountTransaction.builder()
                 .id(UUID.randomUUID().toString())
+                .accountId(account.getId())
+                .clientId(clientId)
                 .type(EAccountTransactionType.RETURN_ADJUSTMENT)
                 .amount(reduction.negate())
                 .balanceAfter(account.getCurrentBalance())
@@ -376,10 +450,88 @@ public class ClientAccountServiceImpl implements ClientAccountService {
                 .createdAt(LocalDateTime.now())
                 .build();
 
-        account.getTransactions().add(transaction);
-        clientAccountRepository.save(account);
+        accountTransactionRepository.insert(transaction);
 
         log.info("Debt reduced for return. New balance: {}", account.getCurrentBalance());
         return transaction;
     }
+
+    /**
+     * Las cuentas antiguas guardan los saldos como String y los abonos y movimientos dentro del
+     * documento. Al arrancar, antes de abrir el servidor web, se convierten los saldos a
+     * Decimal128 y cada abono o movimiento se pasa a su colección con el mismo id (o uno
+     * derivado de la cuenta si no lo tenía), así repetir la migración no lo duplica; al final
+     * se quitan los arreglos de la cuenta.
+     */
+    @Override
+    public void migrate() {
+        try {
+            long converted = MongoMigrationSupport.toDecimal128(mongoTemplate, ClientAccount.class,
+                    "totalDebt", "totalPaid", "currentBalance");
+            if (converted > 0) {
+                log.info("ClientAccountServiceImpl -> {} cuentas migradas a saldos Decimal128", converted);
+            }
+
+            Query legacy = new Query(new Criteria().orOperator(
+                    Criteria.where("payments").exists(true), Criteria.where("transactions").exists(true)));
+            int[] migrated = {0};
+            try (Stream<Document> accounts = mongoTemplate.stream(legacy, Document.class,
+                    mongoTemplate.getCollectionName(ClientAccount.class))) {
+                accounts.forEach(account -> {
+                    migrateEmbeddedHistory(account);
+                    migrated[0]++;
+                });
+            }
+            if (migrated[0] > 0) {
+                log.info("ClientAccountServiceImpl -> migrate: {} cuentas", migrated[0]);
+            }
+        } catch (RuntimeException e) {
+            log.error("ClientAccountServiceImpl -> migrate -> ERROR: {}", e.getMessage(), e);
+        }
+    }
+
+    private void migrateEmbeddedHistory(Document account) {
+        String accountId = String.valueOf(account.get("_id"));
+        String clientId = account.getString("clientId");
+
+        List<AccountPayment> payments = new ArrayList<>();
+        List<Document> legacyPayments = account.getList("payments", Document.class, List.of());
+        for (int i = 0; i < legacyPayments.size(); i++) {
+            AccountPayment payment = mongoTemplate.getConverter().read(AccountPayment.class, legacyPayments.get(i));
+            if (payment.getId() == null) {
+                payment.setId(accountId + "-P" + i);
+            }
+            payment.setAccountId(accountId);
+            payment.setClientId(clientId);
+            payments.add(payment);
+        }
+
+        List<AccountTransaction> transactions = new ArrayList<>();
+        List<Document> legacyTransactions = account.getList("transactions", Document.class, List.of());
+        for (int i = 0; i < legacyTransactions.size(); i++) {
+            AccountTransaction transaction = mongoTemplate.getConverter()
+                    .read(AccountTransaction.class, legacyTransactions.get(i));
+            if (transaction.getId() == null) {
+                transaction.setId(accountId + "-T" + i);
+            }
+            transaction.setAccountId(accountId);
+            transaction.setClientId(clientId);
+            transactions.add(transaction);
+        }
+
+        MongoMigrationSupport.insertIgnoringDuplicates(mongoTemplate, AccountPayment.class, payments);
+        MongoMigrationSupport.insertIgnoringDuplicates(mongoTemplate, AccountTransaction.class, transactions);
+
+        Update update = new Update().unset("payments").unset("transactions");
+        // El reporte usa lastPaymentDate para saber si la cuenta tuvo abonos
+        if (account.get("lastPaymentDate") == null) {
+            payments.stream()
+                    .map(AccountPayment::getPaymentDate)
+                    .filter(Objects::nonNull)
+                    .max(Comparator.naturalOrder())
+                    .ifPresent(lastPaymentDate -> update.set("lastPaymentDate", lastPaymentDate));
+        }
+        mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(account.get("_id"))), update,
+                mongoTemplate.getCollectionName(ClientAccount.class));
+    }
 }
@@ -13,13 +13,21 @@ import com.co.jarvis.entity.CreditTransaction;
 import com.co.jarvis.enums.ECreditTransactionType;
 import com.co.jarvis.repository.ClientCreditRepository;
 import com.co.jarvis.repository.ClientRepository;
+import com.co.jarvis.repository.CreditTransactionRepository;
+import com.co.jarvis.service.CashLedgerService;
 import com.co.jarvis.service.ClientCreditService;
 import com.co.jarvis.util.BankAccountHelper;
+import com.co.jarvis.util.MongoMigrationSupport;
+import com.co.jarvis.util.StartupMigration;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.Decimal128;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -27,25 +35,33 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
-public class ClientCreditServiceImpl implements ClientCreditService {
+public class ClientCreditServiceImpl implements ClientCreditService, StartupMigration {
 
     private final ClientCreditRepository clientCreditRepository;
+    private final CreditTransactionRepository creditTransactionRepository;
     private final ClientRepository clientRepository;
     private final MongoTemplate mongoTemplate;
     private final BankAccountHelper bankAccountHelper;
+    private final CashLedgerService cashLedgerService;
 
     @Override
     public ClientCredit getByClientId(String clientId) {
         log.info("ClientCreditServiceImpl -> getByClientId: {}", clientId);
-        return clientCreditRepository.findByClientId(clientId).orElse(null);
+        ClientCredit credit = clientCreditRepository.findByClientId(clientId).orElse(null);
+        if (credit != null) {
+            credit.setTransactions(creditTransactionRepository.findByClientIdOrderByCreatedAtAsc(clientId));
+        }
+        return credit;
     }
 
     @Override
@@ -65,9 +81,7 @@ public class ClientCreditServiceImpl implements ClientCreditService {
     @Override
     public List<CreditTransaction> getTransactionsByClientId(String clientId) {
         log.info("ClientCreditServiceImpl -> getTransactionsByClientId: {}", clientId);
-        return clientCreditRepository.findByClientId(clientId)
-                .map(ClientCredit::getTransactions)
-                .orElse(Collections.emptyList());
+        return creditTransactionRepository.findByClientIdOrderByCreatedAtAsc(clientId);
     }
 
     @Override
@@ -85,16 +99,19 @@ public class ClientCreditServiceImpl implements ClientCreditService {
         String bankAccountName = bankAccountHelper.resolveBankAccountName(
                 request.getBankAccountId(), request.getBankAccountName());
 
-        ClientCredit credit = clientCreditRepository.findByClientId(request.getClientId())
-                .orElseGet(() -> createNewCredit(request.getClientId()));
-
-        BigDecimal newBalance = credit.getCurrentBalance().add(request.getAmount());
+        ensureCredit(request.getClientId());
+        ClientCredit credit = updateBalances(request.getClientId(), null, new Update()
+                .inc("currentBalance", new Decimal128(request.getAmount()))
+                .inc("totalDeposited", new Decimal128(request.getAmount()))
+                .set("lastTransactionDate", LocalDateTime.now()));
 
         CreditTransaction transaction = CreditTransaction.builder()
                 .id(UUID.randomUUID().toString())
+                .creditId(credit.getId())
+                .clientId(request.getClientId())
                 .type(ECreditTransactionType.DEPOSIT)
                 .amount(request.getAmount())
-                .balanceAfter(newBalance)
+                .balanceAfter(credit.getCurrentBalance())
                 .paymentMethod(request.getPaymentMethod())
                 .bankAccountId(request.getBankAccountId())
                 .bankAccountName(bankAccountName)
@@ -105,13 +122,8 @@ public class ClientCreditServiceImpl implements ClientCreditService {
                 .createdAt(LocalDateTime.now())
                 .build();
 
-        credit.getTransactions().add(transaction);
-        credit.setTotalDeposited(credit.getTotalDeposited().add(request.getAmount()));
-        credit.setCurrentBalance(newBalance);
-        credit.setLastTransactionDate(LocalDateTime.now());
-        credit.setUpdatedAt(LocalDateTime.now());
-
-        clientCreditRepository.save(credit);
+        creditTransactionRepository.insert(transaction);
+        cashLedgerService.recordCreditTransaction(credit, transaction);
         log.info("Deposit registered successfully. New balance: {}", credit.getCurrentBalance());
 
         return transaction;
@@ -127,20 +139,22 @@ public class ClientCreditServiceImpl implements ClientCreditService {
             throw new RuntimeException("El monto a usar debe ser mayor a cero");
         }
 
-        ClientCredit credit = clientCreditRepository.findByClientId(request.getClientId())
-                .orElseThrow(() -> new RuntimeException("El cliente no tiene saldo a favor"));
-
-        if (request.getAmount().compareTo(credit.getCurrentBalance()) > 0) {
+        // El saldo se valida en la misma actualización: dos consumos simultáneos no lo dejan negativo
+        ClientCredit credit = withdraw(request.getClientId(), request.getAmount());
+        if (credit == null) {
+            if (!clientCreditRepository.existsByClientId(request.getClientId())) {
+                throw new RuntimeException("El cliente no tiene saldo a favor");
+            }
             throw new RuntimeException("El monto excede el saldo a favor disponible");
         }
 
-        BigDecimal newBalance = credit.getCurrentBalance().subtract(request.getAmount());
-
         CreditTransaction transaction = CreditTransaction.builder()
                 .id(UUID.randomUUID().toString())
+                .creditId(credit.getId())
+                .clientId(request.getClientId())
                 .type(ECreditTransactionType.CONSUMPTION)
                 .amount(request.getAmount())
-                .balanceAfter(newBalance)
+                .balanceAfter(credit.getCurrentBalance())
                 .billingId(request.getBillingId())
                 .notes(request.getNotes())
                 .transactionDate(LocalDateTime.now())
@@ -148,13 +162,7 @@ public class ClientCreditServiceImpl implements ClientCreditService {
                 .createdAt(LocalDateTime.now())
                 .build();
 
-        credit.getTransactions().add(transaction);
-        credit.setTotalUsed(credit.getTotalUsed().add(request.getAmount()));
-        credit.setCurrentBalance(newBalance);
-        credit.setLastTransactionDate(LocalDateTime.now());
-        credit.setUpdatedAt(LocalDateTime.now());
-
-        clientCreditRepository.save(credit);
+        creditTransactionRepository.insert(transaction);
         log.info("Credit used successfully. New balance: {}", credit.getCurrentBalance());
 
         return transaction;
@@ -170,12 +178,18 @@ public class ClientCreditServiceImpl implements ClientCreditService {
             throw new RuntimeException("El monto del ajuste no puede ser cero");
         }
 
-        ClientCredit credit = clientCreditRepository.findByClientId(request.getClientId())
-                .orElseGet(() -> createNewCredit(request.getClientId()));
-
-        BigDecimal newBalance = credit.getCurrentBalance().add(request.getAmount());
+        ensureCredit(request.getClientId());
+        ClientCredit credit;
+        if (request.getAmount().compareTo(BigDecimal.ZERO) > 0) {
+            credit = updateBalances(request.getClientId(), null, new Update()
+                    .inc("currentBalance", new Decimal128(request.getAmount()))
+                    .inc("totalDeposited", new Decimal128(request.getAmount()))
+                    .set("lastTransactionDate", LocalDateTime.now()));
+        } else {
+            credit = withdraw(request.getClientId(), request.getAmount().abs());
+        }
 
-        if (newBalance.compareTo(BigDecimal.ZERO) < 0) {
+        if (credit == null) {
             throw new RuntimeException("El ajuste resultaría en un saldo negativo");
         }
 
@@ -185,28 +199,19 @@ public class ClientCreditServiceImpl implements ClientCreditService {
 
         CreditTransaction transaction = CreditTransaction.builder()
                 .id(UUID.randomUUID().toString())
+                .creditId(credit.getId())
+                .clientId(request.getClientId())
                 .type(type)
                 .amount(request.getAmount().abs())
-                .balanceAfter(newBalance)
+                .balanceAfter(credit.getCurrentBalance())
                 .notes(request.getNotes())
                 .transactionDate(LocalDateTime.now())
                 .createdBy(createdBy)
                 .createdAt(LocalDateTime.now())
                 .build();
 
-        credit.getTransactions().add(transaction);
-        
-        if (request.getAmount().compareTo(BigDecimal.ZERO) > 0) {
-            credit.setTotalDeposited(credit.getTotalDeposited().add(request.getAmount()));
-        } else {
-            credit.setTotalUsed(credit.getTotalUsed().add(request.getAmount().abs()));
-        }
-        
-        credit.setCurrentBalance(newBalance);
-        credit.setLastTransactionDate(LocalDateTime.now());
-        credit.setUpdatedAt(LocalDateTime.now());
-
-        clientCreditRepository.save(credit);
+        creditTransactionRepository.insert(transaction);
+        cashLedgerService.recordCreditTransaction(credit, transaction);
         log.info("Credit adjusted successfully. New balance: {}", credit.getCurrentBalance());
 
         return transaction;
@@ -233,9 +238,17 @@ public class ClientCreditServiceImpl implements ClientCreditService {
 
         List<ClientCredit> credits = mongoTemplate.find(query, ClientCredit.class);
 
-        return credits.stream()
+        List<ClientCredit> selected = credits.stream()
                 .filter(credit -> filterByDateRange(credit, filter))
-                .filter(credit -> filterByTransactionType(credit, filter))
+                .collect(Collectors.toList());
+        if (filter.getTransactionType() != null && !selected.isEmpty()) {
+            Set<String> withType = clientIdsWithTransactionType(selected, filter.getTransactionType());
+            selected = selected.stream()
+                    .filter(credit -> withType.contains(credit.getClientId()))
+                    .collect(Collectors.toList());
+        }
+
+        return selected.stream()
                 .map(this::mapToCreditSummary)
                 .collect(Collectors.toList());
     }
@@ -261,13 +274,13 @@ public class ClientCreditServiceImpl implements ClientCreditService {
         return true;
     }
 
-    private boolean filterByTransactionType(ClientCredit credit, CreditReportFilter filter) {
-        if (filter.getTransactionType() == null) {
-            return true;
-        }
-
-        return credit.getTransactions().stream()
-                .anyMatch(t -> t.getType() == filter.getTransactionType());
+    /**
+     * Clientes de credits con al menos un movimiento del tipo, en una sola consulta.
+     */
+    private Set<String> clientIdsWithTransactionType(List<ClientCredit> credits, ECreditTransactionType type) {
+        List<String> clientIds = credits.stream().map(ClientCredit::getClientId).collect(Collectors.toList());
+        Query query = new Query(Criteria.where("clientId").in(clientIds).and("type").is(type));
+        return new HashSet<>(mongoTemplate.findDistinct(query, "clientId", CreditTransaction.class, String.class));
     }
 
     private CreditSummary mapToCreditSummary(ClientCredit credit) {
@@ -298,7 +311,6 @@ public class ClientCreditServiceImpl implements ClientCreditService {
                 .currentBalance(BigDecimal.ZERO)
                 .totalDeposited(BigDecimal.ZERO)
                 .totalUsed(BigDecimal.ZERO)
-                .transactions(new ArrayList<>())
                 .createdAt(LocalDateTime.now())
                 .updatedAt(LocalDateTime.now())
                 .build();
@@ -306,6 +318,38 @@ public class ClientCreditServiceImpl implements ClientCreditService {
         return clientCreditRepository.save(credit);
     }
 
+    private void ensureCredit(String clientId) {
+        if (!clientCreditRepository.existsByClientId(clientId)) {
+            createNewCredit(clientId);
+        }
+    }
+
+    /**
+     * Aplica el $inc de saldos sobre el crédito del cliente, solo si cumple condition (si no es
+     * null), y devuelve el crédito ya actualizado; null si no existe o no cumple la condición.
+     */
+    private ClientCredit updateBalances(String clientId, Criteria condition, Update update) {
+        Query query = new Query(Criteria.where("clientId").is(clientId));
+        if (condition != null) {
+            query.addCriteria(condition);
+        }
+        update.set("updatedAt", LocalDateTime.now());
+        return mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().returnNew(true),
+                ClientCredit.class);
+    }
+
+    /**
+     * Descuenta amount del saldo a favor solo si alcanza; null si no hay crédito o no alcanza.
+     */
+    private ClientCredit withdraw(String clientId, BigDecimal amount) {
+        return updateBalances(clientId,
+                Criteria.where("currentBalance").gte(new Decimal128(amount)),
+                new Update()
+                        .inc("currentBalance", new Decimal128(amount.negate()))
+                        .inc("totalUsed", new Decimal128(amount))
+                        .set("lastTransactionDate", LocalDateTime.now()));
+    }
+
     @Override
     @Transactional
     public CreditTransaction registerManualCredit(ManualCreditRequest request, String createdBy) {
@@ -337,13 +381,6 @@ public class ClientCreditServiceImpl implements ClientCreditService {
             throw new RuntimeException("Cliente no encontrado");
         }
 
-        // Buscar o crear el registro ClientCredit del cliente
-        ClientCredit credit = clientCreditRepository.findByClientId(request.getClientId())
-                .orElseGet(() -> createNewCredit(request.getClientId()));
-
-        // Calcular nuevo saldo
-        BigDecimal newBalance = credit.getCurrentBalance().add(request.getAmount());
-
         // Determinar el source (default: MIGRACION_CUADERNO)
         String source = request.getSource() != null && !request.getSource().trim().isEmpty() 
                 ? request.getSource() 
@@ -351,26 +388,29 @@ public class ClientCreditServiceImpl implements ClientCreditService {
 
         // Crear la transacción con la fecha del cuaderno (no la fecha actual)
         LocalDateTime transactionDateTime = request.getTransactionDate().atStartOfDay();
+
+        // Buscar o crear el registro ClientCredit del cliente y actualizar saldos
+        ensureCredit(request.getClientId());
+        ClientCredit credit = updateBalances(request.getClientId(), null, new Update()
+                .inc("currentBalance", new Decimal128(request.getAmount()))
+                .inc("totalDeposited", new Decimal128(request.getAmount()))
+                .set("lastTransactionDate", transactionDateTime));
         
         CreditTransaction transaction = CreditTransaction.builder()
                 .id(UUID.randomUUID().toString())
+                .creditId(credit.getId())
+                .clientId(request.getClientId())
                 .type(ECreditTransactionType.DEPOSIT)
                 .amount(request.getAmount())
-                .balanceAfter(newBalance)
+                .balanceAfter(credit.getCurrentBalance())
                 .notes("[" + source + "] " + request.getNotes())
                 .transactionDate(transactionDateTime)
                 .createdBy(createdBy)
                 .createdAt(LocalDateTime.now())
                 .build();
 
-        // Agregar transacción y actualizar saldos
-        credit.getTransactions().add(transaction);
-        credit.setCurrentBalance(newBalance);
-        credit.setTotalDeposited(credit.getTotalDeposited().add(request.getAmount()));
-        credit.setLastTransactionDate(transactionDateTime);
-        credit.setUpdatedAt(LocalDateTime.now());
-
-        clientCreditRepository.save(credit);
+        creditTransactionRepository.insert(transaction);
+        cashLedgerService.recordCreditTransaction(credit, transaction);
         log.info("Manual credit registered successfully. New balance: {}", credit.getCurrentBalance());
 
         return transaction;
@@ -402,24 +442,22 @@ public class ClientCreditServiceImpl implements ClientCreditService {
         String bankAccountName = bankAccountHelper.resolveBankAccountName(
                 request.getBankAccountId(), request.getBankAccountName());
 
-        // Buscar el crédito del cliente
-        ClientCredit credit = clientCreditRepository.findByClientId(request.getClientId())
-                .orElseThrow(() -> new RuntimeException("CLIENT_CREDIT_NOT_FOUND: El cliente no tiene registro de saldo a favor"));
-
-        // Validar saldo suficiente
-        if (request.getAmount().compareTo(credit.getCurrentBalance()) > 0) {
-            throw new RuntimeException("INSUFFICIENT_BALANCE: El monto excede el saldo disponible. Saldo actual: " + credit.getCurrentBalance());
+        // Descontar del crédito del cliente solo si el saldo alcanza
+        ClientCredit credit = withdraw(request.getClientId(), request.getAmount());
+        if (credit == null) {
+            ClientCredit current = clientCreditRepository.findByClientId(request.getClientId())
+                    .orElseThrow(() -> new RuntimeException("CLIENT_CREDIT_NOT_FOUND: El cliente no tiene registro de saldo a favor"));
+            throw new RuntimeException("INSUFFICIENT_BALANCE: El monto excede el saldo disponible. Saldo actual: " + current.getCurrentBalance());
         }
 
-        // Calcular nuevo saldo
-        BigDecimal newBalance = credit.getCurrentBalance().subtract(request.getAmount());
-
         // Crear la transacción de devolución
         CreditTransaction transaction = CreditTransaction.builder()
                 .id(UUID.randomUUID().toString())
+                .creditId(credit.getId())
+                .clientId(request.getClientId())
                 .type(ECreditTransactionType.REFUND)
                 .amount(request.getAmount())
-                .balanceAfter(newBalance)
+                .balanceAfter(credit.getCurrentBalance())
                 .paymentMethod(request.getPaymentMethod())
                 .bankAccountId(request.getBankAccountId())
                 .bankAccountName(bankAccountName)
@@ -430,14 +468,8 @@ public class ClientCreditServiceImpl implements ClientCreditService {
                 .createdAt(LocalDateTime.now())
                 .build();
 
-        // Actualizar el crédito del cliente
-        credit.getTransactions().add(transaction);
-        credit.setTotalUsed(credit.getTotalUsed().add(request.getAmount()));
-        credit.setCurrentBalance(newBalance);
-        credit.setLastTransactionDate(LocalDateTime.now());
-        credit.setUpdatedAt(LocalDateTime.now());
-
-        clientCreditRepository.save(credit);
+        creditTransactionRepository.insert(transaction);
+        cashLedgerService.recordCreditTransaction(credit, transaction);
         log.info("Refund processed successfully. New balance: {}", credit.getCurrentBalance());
 
         return transaction;
@@ -446,13 +478,64 @@ public class ClientCreditServiceImpl implements ClientCreditService {
     @Override
     public BigDecimal getCreditUsedForBilling(String clientId, String billingId) {
         log.info("ClientCreditServiceImpl -> getCreditUsedForBilling: clientId={}, billingId={}", clientId, billingId);
-        return clientCreditRepository.findByClientId(clientId)
-                .map(ClientCredit::getTransactions)
-                .orElse(Collections.emptyList())
+        return creditTransactionRepository
+                .findByClientIdAndTypeAndBillingId(clientId, ECreditTransactionType.CONSUMPTION, billingId)
                 .stream()
-                .filter(t -> ECreditTransactionType.CONSUMPTION == t.getType()
-                        && billingId.equals(t.getBillingId()))
                 .map(CreditTransaction::getAmount)
                 .reduce(BigDecimal.ZERO, BigDecimal::add);
     }
+
+    /**
+     * Los créditos antiguos guardan los saldos como String y los movimientos dentro del
+     * documento. Al arrancar, antes de abrir el servidor web, se convierten los saldos a
+     * Decimal128 y cada movimiento se pasa a CLIENT_CREDIT_TRANSACTIONS con el mismo id (o uno
+     * derivado del crédito si no lo tenía), así repetir la migración no lo duplica; al final se
+     * quita el arreglo del crédito.
+     */
+    @Override
+    public void migrate() {
+        try {
+            long converted = MongoMigrationSupport.toDecimal128(mongoTemplate, ClientCredit.class,
+                    "currentBalance", "totalDeposited", "totalUsed");
+            if (converted > 0) {
+                log.info("ClientCreditServiceImpl -> {} créditos migrados a saldos Decimal128", converted);
+            }
+
+            String collection = mongoTemplate.getCollectionName(ClientCredit.class);
+            int[] migrated = {0};
+            try (Stream<Document> credits = mongoTemplate.stream(
+                    new Query(Criteria.where("transactions").exists(true)), Document.class, collection)) {
+                credits.forEach(credit -> {
+                    migrateEmbeddedTransactions(credit, collection);
+                    migrated[0]++;
+                });
+            }
+            if (migrated[0] > 0) {
+                log.info("ClientCreditServiceImpl -> migrate: {} créditos", migrated[0]);
+            }
+        } catch (RuntimeException e) {
+            log.error("ClientCreditServiceImpl -> migrate -> ERROR: {}", e.getMessage(), e);
+        }
+    }
+
+    private void migrateEmbeddedTransactions(Document credit, String collection) {
+        String creditId = String.valueOf(credit.get("_id"));
+        String clientId = credit.getString("clientId");
+
+        List<CreditTransaction> transactions = new ArrayList<>();
+        List<Document> legacy = credit.getList("transactions", Document.class, List.of());
+        for (int i = 0; i < legacy.size(); i++) {
+            CreditTransaction transaction = mongoTemplate.getConverter().read(CreditTransaction.class, legacy.get(i));
+            if (transaction.getId() == null) {
+                transaction.setId(creditId + "-T" + i);
+            }
+            transaction.setCreditId(creditId);
+            transaction.setClientId(clientId);
+            transactions.add(transaction);
+        }
+
+        MongoMigrationSupport.insertIgnoringDuplicates(mongoTemplate, CreditTransaction.class, transactions);
+        mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(credit.get("_id"))),
+                new Update().unset("transactions"), collection);
+    }
 }
@@ -4,6 +4,7 @@ import com.co.jarvis.dto.ExpenseDto;
 import com.co.jarvis.dto.ExpensePageDto;
 import com.co.jarvis.entity.Expense;
 import com.co.jarvis.repository.ExpenseRepository;
+import com.co.jarvis.service.CashLedgerService;
 import com.co.jarvis.service.ExpenseService;
 import com.co.jarvis.util.BankAccountHelper;
 import com.co.jarvis.util.exception.FieldsException;
@@ -40,6 +41,9 @@ public class ExpenseServiceImpl implements ExpenseService {
     @Autowired
     private BankAccountHelper bankAccountHelper;
 
+    @Autowired
+    private CashLedgerService cashLedgerService;
+
     @Override
     public ExpenseDto create(ExpenseDto dto) {
         validate(dto);
@@ -58,6 +62,7 @@ public class ExpenseServiceImpl implements ExpenseService {
         entity.setId(null);
         entity.setDateTimeRecord(dateTime);
         Expense saved = expenseRepository.save(entity);
+        cashLedgerService.recordExpense(saved);
         return toDto(saved);
     }
 
@@ -86,6 +91,7 @@ public class ExpenseServiceImpl implements ExpenseService {
         }
 
         Expense saved = expenseRepository.save(existing);
+        cashLedgerService.recordExpense(saved);
         return toDto(saved);
     }
 
@@ -94,6 +100,7 @@ public class ExpenseServiceImpl implements ExpenseService {
         Expense existing = expenseRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Expense not found: " + id));
         expenseRepository.deleteById(existing.getId());
+        cashLedgerService.removeExpense(existing.getId());
     }
 
     @Override
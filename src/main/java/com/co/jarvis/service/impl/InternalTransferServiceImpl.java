@@ -9,6 +9,7 @@ import com.co.jarvis.enums.EInternalTransferStatus;
 import com.co.jarvis.enums.EInternalTransferType;
 import com.co.jarvis.repository.BankAccountRepository;
 import com.co.jarvis.repository.InternalTransferRepository;
+import com.co.jarvis.service.CashLedgerService;
 import com.co.jarvis.service.CashRegisterService;
 import com.co.jarvis.service.InternalTransferService;
 import com.co.jarvis.util.DateTimeUtil;
@@ -35,6 +36,7 @@ public class InternalTransferServiceImpl implements InternalTransferService {
     private final InternalTransferRepository internalTransferRepository;
     private final BankAccountRepository bankAccountRepository;
     private final CashRegisterService cashRegisterService;
+    private final CashLedgerService cashLedgerService;
 
     /**
      * Registra una consignación de efectivo desde la caja hacia un banco.
@@ -94,6 +96,7 @@ public class InternalTransferServiceImpl implements InternalTransferService {
                 .build();
 
         transfer = internalTransferRepository.save(transfer);
+        cashLedgerService.recordInternalTransfer(transfer);
         log.info("Traslado efectivo a banco registrado. id={}, monto={}, banco={}, snapshot={}",
                 transfer.getId(), transfer.getAmount(), transfer.getDestinationBankName(),
                 transfer.getSystemCashSnapshot());
@@ -141,6 +144,7 @@ public class InternalTransferServiceImpl implements InternalTransferService {
         transfer.setCancelledAt(DateTimeUtil.nowLocalDateTime());
 
         transfer = internalTransferRepository.save(transfer);
+        cashLedgerService.recordInternalTransfer(transfer);
         log.info("Traslado anulado. id={}, usuario={}",
                 transfer.getId(), user != null ? user.getFullName() : "desconocido");
 
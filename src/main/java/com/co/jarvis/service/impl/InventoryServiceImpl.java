@@ -3,25 +3,36 @@ package com.co.jarvis.service.impl;
 import com.co.jarvis.dto.InventoryDashboardDto;
 import com.co.jarvis.dto.PhysicalInventoryRequestDto;
 import com.co.jarvis.dto.PresentationCountDto;
+import com.co.jarvis.dto.ProductSummaryDto;
+import com.co.jarvis.dto.ProductUnitsSold;
 import com.co.jarvis.dto.StockAlertDto;
+import com.co.jarvis.dto.StockChange;
+import com.co.jarvis.dto.StockLine;
 import com.co.jarvis.entity.*;
 import com.co.jarvis.enums.*;
 import com.co.jarvis.repository.*;
 import com.co.jarvis.service.InventoryService;
+import com.co.jarvis.service.StockService;
 import com.co.jarvis.util.DateTimeUtil;
+import com.co.jarvis.util.InventoryDashboardCache;
 import com.co.jarvis.util.exception.ResourceNotFoundException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.Objects;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @Slf4j
@@ -39,8 +50,36 @@ public class InventoryServiceImpl implements InventoryService {
     @Autowired
     private ProductRepository productRepository;
 
+    @Autowired
+    private StockService stockService;
+
+    @Autowired
+    private BillingRepository billingRepository;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private InventoryDashboardCache dashboardCache;
+
+    @Value("${jarvis.inventory.dashboard.rotation-days:30}")
+    private int rotationDays;
+
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
 
+    private static final double MINIMUM_STOCK = 10.0;
+    private static final double CRITICAL_STOCK = 5.0;
+    private static final int DASHBOARD_RANKING_SIZE = 10;
+
+    /** Más vendido primero. */
+    private static final Comparator<ProductSummaryDto> TOP_SELLING_ORDER =
+            Comparator.comparing(ProductSummaryDto::getTotalSold).reversed();
+
+    /** Menos vendido primero y, a igual venta, el que más stock inmoviliza. */
+    private static final Comparator<ProductSummaryDto> LOW_ROTATION_ORDER =
+            Comparator.comparing(ProductSummaryDto::getTotalSold)
+                    .thenComparing(ProductSummaryDto::getCurrentStock, Comparator.reverseOrder());
+
     // ========== MOVIMIENTOS ==========
 
     @Override
@@ -99,26 +138,18 @@ public class InventoryServiceImpl implements InventoryService {
     public InventoryMovement createMovement(InventoryMovement movement) {
         log.info("InventoryService -> createMovement");
         
-        Product product = productRepository.findById(Objects.requireNonNull(movement.getProductId()))
-                .orElseThrow(() -> new ResourceNotFoundException("Producto no encontrado"));
-        
-        // Establecer referencia del producto
-        movement.setProduct(buildProductReference(product));
-        
-        // Establecer stock anterior
-        movement.setPreviousStock(product.getStock().getQuantity().doubleValue());
+        // Calcular delta según tipo de movimiento y aplicarlo atómicamente ($inc)
+        BigDecimal delta = calculateStockDelta(movement.getQuantity(), movement.getMovementType());
+        StockChange change = stockService.applyDelta(movement.getProductId(), delta);
         
-        // Calcular nuevo stock según tipo de movimiento
-        Double newStock = calculateNewStock(movement.getPreviousStock(), movement.getQuantity(), movement.getMovementType());
-        movement.setNewStock(newStock);
-        
-        // Actualizar stock del producto
-        product.getStock().setQuantity(BigDecimal.valueOf(newStock));
-        productRepository.save(product);
+        // Establecer referencia del producto y stock anterior/nuevo
+        movement.setProduct(buildProductReference(change.getProduct()));
+        movement.setPreviousStock(change.previousAsDouble());
+        movement.setNewStock(change.newAsDouble());
         
         // Establecer unidad de medida
-        if (movement.getUnitMeasure() == null && product.getStock().getUnitMeasure() != null) {
-            movement.setUnitMeasure(product.getStock().getUnitMeasure().name());
+        if (movement.getUnitMeasure() == null) {
+            movement.setUnitMeasure(change.unitMeasureName());
         }
         
         movement.setCreatedAt(DateTimeUtil.nowLocalDateTime());
@@ -235,9 +266,8 @@ public class InventoryServiceImpl implements InventoryService {
         log.info("Producto {} - Stock físico: {}, Vendido: {}, Comprado: {}, Stock ajustado: {}, Diferencia: {}",
             product.getProductCode(), physicalStock, totalSold, totalPurchased, adjustedStock, difference);
         
-        // 7. Actualizar stock del producto con el valor ajustado
-        product.getStock().setQuantity(BigDecimal.valueOf(adjustedStock));
-        productRepository.save(product);
+        // 7. Actualizar stock del producto con el valor ajustado ($set sobre stock.quantity)
+        stockService.setQuantity(product.getId(), BigDecimal.valueOf(adjustedStock));
         
         // 8. Guardar inventario físico
         inventory.setCreatedAt(DateTimeUtil.nowLocalDateTime());
@@ -399,9 +429,8 @@ public class InventoryServiceImpl implements InventoryService {
         log.info("Producto {} - Stock sistema: {}, Stock físico: {}, Vendido: {}, Comprado: {}, Stock ajustado: {}, Diferencia: {}",
             product.getProductCode(), systemStock, totalPhysicalStock, totalSold, totalPurchased, adjustedStock, difference);
         
-        // 7. Actualizar stock del producto con el valor ajustado
-        product.getStock().setQuantity(BigDecimal.valueOf(adjustedStock));
-        productRepository.save(product);
+        // 7. Actualizar stock del producto con el valor ajustado ($set sobre stock.quantity)
+        stockService.setQuantity(product.getId(), BigDecimal.valueOf(adjustedStock));
         
         // 8. Construir notas detalladas con el desglose por presentación
         String detailedNotes = buildPresentationCountNotes(request, product);
@@ -609,49 +638,35 @@ public class InventoryServiceImpl implements InventoryService {
     public InventoryAdjustment createAdjustment(InventoryAdjustment adjustment) {
         log.info("InventoryService -> createAdjustment");
         
-        // 1. Obtener producto
-        Product product = productRepository.findById(Objects.requireNonNull(adjustment.getProductId()))
-                .orElseThrow(() -> new ResourceNotFoundException("Producto no encontrado"));
-        
-        // 2. Establecer referencia del producto
-        adjustment.setProduct(buildProductReference(product));
-        
-        // 3. Validar que la cantidad sea positiva
+        // 1. Validar que la cantidad sea positiva
         if (adjustment.getQuantity() == null || adjustment.getQuantity() <= 0) {
             throw new IllegalArgumentException("La cantidad debe ser mayor a cero");
         }
         
-        // 4. Obtener stock anterior
-        Double previousStock = product.getStock().getQuantity().doubleValue();
-        adjustment.setPreviousStock(previousStock);
-        
-        // 5. Calcular nuevo stock según tipo
-        Double newStock;
-        if (adjustment.getAdjustmentType() == EAdjustmentType.INCREMENT) {
-            newStock = previousStock + adjustment.getQuantity();
-        } else {
-            newStock = previousStock - adjustment.getQuantity();
+        // 2. Calcular delta según tipo
+        BigDecimal delta = BigDecimal.valueOf(adjustment.getQuantity());
+        if (adjustment.getAdjustmentType() != EAdjustmentType.INCREMENT) {
+            delta = delta.negate();
         }
         
-        // 6. Validar que el nuevo stock no sea negativo
-        if (newStock < 0) {
-            throw new IllegalArgumentException("El ajuste resultaría en stock negativo");
-        }
+        // 3. Aplicar el delta atómicamente; falla si el stock resultante sería negativo
+        StockChange change = stockService.applyDeltaIfAvailable(adjustment.getProductId(), delta);
+        Double previousStock = change.previousAsDouble();
+        Double newStock = change.newAsDouble();
         
+        // 4. Establecer referencia del producto y stock anterior/nuevo
+        adjustment.setProduct(buildProductReference(change.getProduct()));
+        adjustment.setPreviousStock(previousStock);
         adjustment.setNewStock(newStock);
         
-        // 7. Actualizar stock del producto
-        product.getStock().setQuantity(BigDecimal.valueOf(newStock));
-        productRepository.save(product);
-        
-        // 8. Guardar ajuste
+        // 5. Guardar ajuste
         adjustment.setCreatedAt(DateTimeUtil.nowLocalDateTime());
         if (adjustment.getDate() == null) {
             adjustment.setDate(DateTimeUtil.nowLocalDateTime());
         }
         InventoryAdjustment saved = adjustmentRepository.save(adjustment);
         
-        // 9. Crear movimiento de inventario tipo AJUSTE_MANUAL
+        // 6. Crear movimiento de inventario tipo AJUSTE_MANUAL
         InventoryMovement movement = InventoryMovement.builder()
                 .date(adjustment.getDate())
                 .productId(adjustment.getProductId())
@@ -662,8 +677,7 @@ public class InventoryServiceImpl implements InventoryService {
                         adjustment.getQuantity() : -adjustment.getQuantity())
                 .previousStock(previousStock)
                 .newStock(newStock)
-                .unitMeasure(product.getStock().getUnitMeasure() != null ? 
-                        product.getStock().getUnitMeasure().name() : null)
+                .unitMeasure(change.unitMeasureName())
                 .reference("AJUSTE-" + saved.getId())
                 .userId(adjustment.getUserId())
                 .user(adjustment.getUser())
@@ -694,39 +708,87 @@ public class InventoryServiceImpl implements InventoryService {
     @Override
     public InventoryDashboardDto getDashboard() {
         log.info("InventoryService -> getDashboard");
-        
-        List<Product> allProducts = productRepository.findAll();
-        
-        // Total de productos
-        int totalProducts = allProducts.size();
-        
-        // Calcular valor total del inventario
-        BigDecimal totalValue = allProducts.stream()
-                .filter(p -> p.getStock() != null && p.getPresentations() != null && !p.getPresentations().isEmpty())
-                .map(this::calculateProductInventoryValue)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-        
-        // Contar productos por nivel de stock
+        return dashboardCache.get(this::buildDashboard);
+    }
+
+    @Override
+    public List<StockAlertDto> getStockAlerts() {
+        log.info("InventoryService -> getStockAlerts");
+        return getDashboard().getStockAlerts();
+    }
+
+    /**
+     * Calcula el tablero en una sola pasada sobre el catálogo (solo los campos necesarios):
+     * total, valorización, conteo por nivel de stock, alertas y, con las cantidades vendidas
+     * en los últimos jarvis.inventory.dashboard.rotation-days días, los más vendidos y los de
+     * baja rotación.
+     */
+    private InventoryDashboardDto buildDashboard() {
+        long start = System.currentTimeMillis();
+        OffsetDateTime to = DateTimeUtil.nowOffsetDateTime();
+        // Vendido por producto y presentación; se pasa a unidad base al recorrer el catálogo
+        Map<String, Map<String, BigDecimal>> unitsSold = billingRepository.sumUnitsSoldByProduct(to.minusDays(rotationDays), to)
+                .stream()
+                .filter(sold -> sold.getId() != null && sold.getUnitsSold() != null)
+                .collect(Collectors.groupingBy(ProductUnitsSold::getId, Collectors.toMap(
+                        sold -> Objects.toString(sold.getBarcode(), ""), ProductUnitsSold::getUnitsSold, BigDecimal::add)));
+
+        int totalProducts = 0;
         int outOfStock = 0;
         int criticalStock = 0;
         int lowStock = 0;
-        
-        for (Product product : allProducts) {
-            if (product.getStock() != null && product.getStock().getQuantity() != null) {
-                double qty = product.getStock().getQuantity().doubleValue();
-                if (qty <= 0) {
+        BigDecimal totalValue = BigDecimal.ZERO;
+        List<StockAlertDto> alerts = new ArrayList<>();
+        PriorityQueue<ProductSummaryDto> topSelling = new PriorityQueue<>(TOP_SELLING_ORDER.reversed());
+        PriorityQueue<ProductSummaryDto> lowRotation = new PriorityQueue<>(LOW_ROTATION_ORDER.reversed());
+
+        Query query = new Query();
+        query.fields().include("description", "saleType", "stock", "presentations");
+        try (Stream<Product> products = mongoTemplate.stream(query, Product.class)) {
+            Iterator<Product> iterator = products.iterator();
+            while (iterator.hasNext()) {
+                Product product = iterator.next();
+                totalProducts++;
+
+                if (product.getStock() != null && product.getPresentations() != null
+                        && !product.getPresentations().isEmpty()) {
+                    totalValue = totalValue.add(calculateProductInventoryValue(product));
+                }
+                if (product.getStock() == null || product.getStock().getQuantity() == null) {
+                    continue;
+                }
+
+                double currentStock = product.getStock().getQuantity().doubleValue();
+                EAlertLevel alertLevel = alertLevel(currentStock);
+                if (alertLevel == EAlertLevel.OUT_OF_STOCK) {
                     outOfStock++;
-                } else if (qty <= 5) {
+                } else if (alertLevel == EAlertLevel.CRITICAL) {
                     criticalStock++;
-                } else if (qty <= 10) {
+                } else if (alertLevel == EAlertLevel.LOW) {
                     lowStock++;
                 }
+                if (alertLevel != null) {
+                    alerts.add(buildStockAlert(product, currentStock, alertLevel));
+                }
+
+                BigDecimal sold = baseUnitsSold(product, unitsSold.get(product.getId()));
+                ProductSummaryDto summary = buildProductSummary(product, currentStock, sold.doubleValue());
+                if (sold.signum() > 0) {
+                    offer(topSelling, summary);
+                }
+                if (currentStock > 0) {
+                    offer(lowRotation, summary);
+                }
             }
         }
-        
-        // Obtener alertas de stock
-        List<StockAlertDto> alerts = getStockAlerts();
-        
+
+        List<ProductSummaryDto> topSellingProducts = new ArrayList<>(topSelling);
+        topSellingProducts.sort(TOP_SELLING_ORDER);
+        List<ProductSummaryDto> lowRotationProducts = new ArrayList<>(lowRotation);
+        lowRotationProducts.sort(LOW_ROTATION_ORDER);
+
+        log.info("InventoryService -> buildDashboard: {} productos en {} ms",
+                totalProducts, System.currentTimeMillis() - start);
         return InventoryDashboardDto.builder()
                 .totalProducts(totalProducts)
                 .totalInventoryValue(totalValue)
@@ -734,57 +796,92 @@ public class InventoryServiceImpl implements InventoryService {
                 .criticalStockProducts(criticalStock)
                 .lowStockProducts(lowStock)
                 .stockAlerts(alerts)
-                .topSellingProducts(new ArrayList<>())
-                .lowRotationProducts(new ArrayList<>())
+                .topSellingProducts(topSellingProducts)
+                .lowRotationProducts(lowRotationProducts)
                 .build();
     }
 
-    @Override
-    public List<StockAlertDto> getStockAlerts() {
-        log.info("InventoryService -> getStockAlerts");
-        
-        List<Product> products = productRepository.findAll();
-        List<StockAlertDto> alerts = new ArrayList<>();
-        
-        for (Product product : products) {
-            if (product.getStock() == null || product.getStock().getQuantity() == null) {
-                continue;
-            }
-            
-            double currentStock = product.getStock().getQuantity().doubleValue();
-            double minimumStock = 10.0; // Valor por defecto
-            double criticalStock = 5.0; // Valor por defecto
-            
-            EAlertLevel alertLevel;
-            if (currentStock <= 0) {
-                alertLevel = EAlertLevel.OUT_OF_STOCK;
-            } else if (currentStock <= criticalStock) {
-                alertLevel = EAlertLevel.CRITICAL;
-            } else if (currentStock <= minimumStock) {
-                alertLevel = EAlertLevel.LOW;
-            } else {
-                continue; // No agregar alerta si el stock es normal
-            }
-            
-            String barcode = "";
-            if (product.getPresentations() != null && !product.getPresentations().isEmpty()) {
-                barcode = product.getPresentations().get(0).getBarcode();
-            }
-            
-            alerts.add(StockAlertDto.builder()
-                    .productId(product.getId())
-                    .productName(product.getDescription())
-                    .barcode(barcode)
-                    .currentStock(currentStock)
-                    .minimumStock(minimumStock)
-                    .criticalStock(criticalStock)
-                    .unitMeasure(product.getStock().getUnitMeasure() != null ? 
-                            product.getStock().getUnitMeasure().name() : null)
-                    .alertLevel(alertLevel)
-                    .build());
+    private static EAlertLevel alertLevel(double currentStock) {
+        if (currentStock <= 0) {
+            return EAlertLevel.OUT_OF_STOCK;
+        } else if (currentStock <= CRITICAL_STOCK) {
+            return EAlertLevel.CRITICAL;
+        } else if (currentStock <= MINIMUM_STOCK) {
+            return EAlertLevel.LOW;
+        }
+        return null; // Stock normal, sin alerta
+    }
+
+    private static StockAlertDto buildStockAlert(Product product, double currentStock, EAlertLevel alertLevel) {
+        return StockAlertDto.builder()
+                .productId(product.getId())
+                .productName(product.getDescription())
+                .barcode(firstBarcode(product))
+                .currentStock(currentStock)
+                .minimumStock(MINIMUM_STOCK)
+                .criticalStock(CRITICAL_STOCK)
+                .unitMeasure(product.getStock().getUnitMeasure() != null ?
+                        product.getStock().getUnitMeasure().name() : null)
+                .alertLevel(alertLevel)
+                .build();
+    }
+
+    /**
+     * Cantidad vendida en la unidad base del stock: lo vendido por una presentación de cantidad
+     * fija (bulto de 40 kg) se multiplica por su fixedAmount, igual que al descontar el stock en
+     * la venta, para no sumar bultos con kilos.
+     */
+    private BigDecimal baseUnitsSold(Product product, Map<String, BigDecimal> soldByBarcode) {
+        if (soldByBarcode == null) {
+            return BigDecimal.ZERO;
+        }
+        BigDecimal total = BigDecimal.ZERO;
+        for (Map.Entry<String, BigDecimal> sold : soldByBarcode.entrySet()) {
+            total = total.add(sold.getValue().multiply(saleFactor(product, sold.getKey())));
+        }
+        return total;
+    }
+
+    private BigDecimal saleFactor(Product product, String barcode) {
+        if (product.getSaleType() == null || product.getSaleType() == ESale.UNIT) {
+            return BigDecimal.ONE;
+        }
+        Presentation presentation = findPresentationByBarcode(product, barcode);
+        if (presentation != null && Boolean.TRUE.equals(presentation.getIsFixedAmount())
+                && presentation.getFixedAmount() != null
+                && presentation.getFixedAmount().compareTo(BigDecimal.ZERO) > 0) {
+            return presentation.getFixedAmount();
+        }
+        return BigDecimal.ONE;
+    }
+
+    private static ProductSummaryDto buildProductSummary(Product product, double currentStock, double totalSold) {
+        return ProductSummaryDto.builder()
+                .productId(product.getId())
+                .productName(product.getDescription())
+                .barcode(firstBarcode(product))
+                .currentStock(currentStock)
+                .unitMeasure(product.getStock().getUnitMeasure() != null ?
+                        product.getStock().getUnitMeasure().name() : null)
+                .totalSold(totalSold)
+                .build();
+    }
+
+    private static String firstBarcode(Product product) {
+        if (product.getPresentations() != null && !product.getPresentations().isEmpty()) {
+            return product.getPresentations().get(0).getBarcode();
+        }
+        return "";
+    }
+
+    /**
+     * Conserva solo los DASHBOARD_RANKING_SIZE mejores según el orden inverso del heap.
+     */
+    private static void offer(PriorityQueue<ProductSummaryDto> ranking, ProductSummaryDto summary) {
+        ranking.add(summary);
+        if (ranking.size() > DASHBOARD_RANKING_SIZE) {
+            ranking.poll();
         }
-        
-        return alerts;
     }
 
     // ========== REPORTES ==========
@@ -940,28 +1037,20 @@ public class InventoryServiceImpl implements InventoryService {
                                           String presentationBarcode, String userId) {
         log.info("InventoryService -> registerPurchaseMovement for product: {}", productId);
         
-        Product product = productRepository.findById(Objects.requireNonNull(productId))
-                .orElseThrow(() -> new ResourceNotFoundException("Producto no encontrado"));
-        
-        Double previousStock = product.getStock().getQuantity().doubleValue();
-        Double newStock = previousStock + quantity;
-        
-        // Actualizar stock
-        product.getStock().setQuantity(BigDecimal.valueOf(newStock));
-        productRepository.save(product);
+        // Actualizar stock con un único $inc atómico
+        StockChange change = stockService.applyDelta(productId, BigDecimal.valueOf(quantity));
         
         // Crear movimiento
         InventoryMovement movement = InventoryMovement.builder()
                 .date(DateTimeUtil.nowLocalDateTime())
                 .productId(productId)
-                .product(buildProductReference(product))
+                .product(buildProductReference(change.getProduct()))
                 .presentationBarcode(presentationBarcode)
                 .movementType(EMovementType.COMPRA)
                 .quantity(quantity)
-                .previousStock(previousStock)
-                .newStock(newStock)
-                .unitMeasure(product.getStock().getUnitMeasure() != null ? 
-                        product.getStock().getUnitMeasure().name() : null)
+                .previousStock(change.previousAsDouble())
+                .newStock(change.newAsDouble())
+                .unitMeasure(change.unitMeasureName())
                 .reference("COMPRA-" + purchaseInvoiceId)
                 .userId(userId)
                 .createdAt(DateTimeUtil.nowLocalDateTime())
@@ -976,28 +1065,20 @@ public class InventoryServiceImpl implements InventoryService {
                                       String presentationBarcode, String userId) {
         log.info("InventoryService -> registerSaleMovement for product: {}", productId);
         
-        Product product = productRepository.findById(Objects.requireNonNull(productId))
-                .orElseThrow(() -> new ResourceNotFoundException("Producto no encontrado"));
-        
-        Double previousStock = product.getStock().getQuantity().doubleValue();
-        Double newStock = previousStock - quantity;
-        
-        // Actualizar stock
-        product.getStock().setQuantity(BigDecimal.valueOf(newStock));
-        productRepository.save(product);
+        // Actualizar stock con un único $inc atómico
+        StockChange change = stockService.applyDelta(productId, BigDecimal.valueOf(quantity).negate());
         
         // Crear movimiento
         InventoryMovement movement = InventoryMovement.builder()
                 .date(DateTimeUtil.nowLocalDateTime())
                 .productId(productId)
-                .product(buildProductReference(product))
+                .product(buildProductReference(change.getProduct()))
                 .presentationBarcode(presentationBarcode)
                 .movementType(EMovementType.VENTA)
                 .quantity(-quantity)
-                .previousStock(previousStock)
-                .newStock(newStock)
-                .unitMeasure(product.getStock().getUnitMeasure() != null ? 
-                        product.getStock().getUnitMeasure().name() : null)
+                .previousStock(change.previousAsDouble())
+                .newStock(change.newAsDouble())
+                .unitMeasure(change.unitMeasureName())
                 .reference("VENTA-" + billingId)
                 .userId(userId)
                 .createdAt(DateTimeUtil.nowLocalDateTime())
@@ -1006,32 +1087,85 @@ public class InventoryServiceImpl implements InventoryService {
         movementRepository.save(movement);
     }
 
+    /**
+     * Registra todas las líneas de una venta en lote: un único BulkOperations con los $inc
+     * (agrupados por producto) y un único insertMany de INVENTORY_MOVEMENTS.
+     * El stock anterior/nuevo de cada movimiento se calcula a partir de la proyección ya
+     * cargada por el llamador, acumulando las líneas del mismo producto.
+     */
+    @Override
+    @Transactional
+    public void registerSaleMovements(String billingId, List<StockLine> lines, String userId) {
+        log.info("InventoryService -> registerSaleMovements: {} líneas", lines.size());
+        if (lines.isEmpty()) {
+            return;
+        }
+
+        Map<String, BigDecimal> deltas = new LinkedHashMap<>();
+        for (StockLine line : lines) {
+            deltas.merge(line.getProduct().getId(), BigDecimal.valueOf(line.getQuantity()).negate(), BigDecimal::add);
+        }
+        Map<String, BigDecimal> finalStock = stockService.applyDeltas(deltas);
+
+        // Stock antes/después de cada línea a partir del valor ya escrito, recorriendo las líneas
+        // de atrás hacia adelante; el producto cargado antes del $inc puede estar desactualizado
+        Map<String, Double> runningStock = new HashMap<>();
+        double[] previousStock = new double[lines.size()];
+        double[] newStock = new double[lines.size()];
+        for (int i = lines.size() - 1; i >= 0; i--) {
+            StockLine line = lines.get(i);
+            String productId = line.getProduct().getId();
+            double after = runningStock.computeIfAbsent(productId,
+                    id -> finalStock.getOrDefault(id, BigDecimal.ZERO).doubleValue());
+            newStock[i] = after;
+            previousStock[i] = after + line.getQuantity();
+            runningStock.put(productId, previousStock[i]);
+        }
+
+        List<InventoryMovement> movements = new ArrayList<>();
+        LocalDateTime now = DateTimeUtil.nowLocalDateTime();
+        for (int i = 0; i < lines.size(); i++) {
+            StockLine line = lines.get(i);
+            Product product = line.getProduct();
+            movements.add(InventoryMovement.builder()
+                    .date(now)
+                    .productId(product.getId())
+                    .product(buildProductReference(product))
+                    .presentationBarcode(line.getPresentationBarcode())
+                    .movementType(EMovementType.VENTA)
+                    .quantity(-line.getQuantity())
+                    .previousStock(previousStock[i])
+                    .newStock(newStock[i])
+                    .unitMeasure(product.getStock() != null && product.getStock().getUnitMeasure() != null ?
+                            product.getStock().getUnitMeasure().name() : null)
+                    .reference("VENTA-" + billingId)
+                    .userId(userId)
+                    .createdAt(now)
+                    .build());
+        }
+
+        movementRepository.insert(movements);
+    }
+
     @Override
     @Transactional
     public void registerSaleReturnMovement(String returnId, String productId, Double quantity,
                                            String presentationBarcode, String userId) {
         log.info("InventoryService -> registerSaleReturnMovement for product: {}", productId);
 
-        Product product = productRepository.findById(Objects.requireNonNull(productId))
-                .orElseThrow(() -> new ResourceNotFoundException("Producto no encontrado"));
-
-        Double previousStock = product.getStock().getQuantity().doubleValue();
-        Double newStock = previousStock + quantity;
-
-        product.getStock().setQuantity(BigDecimal.valueOf(newStock));
-        productRepository.save(product);
+        // Actualizar stock con un único $inc atómico
+        StockChange change = stockService.applyDelta(productId, BigDecimal.valueOf(quantity));
 
         InventoryMovement movement = InventoryMovement.builder()
                 .date(DateTimeUtil.nowLocalDateTime())
                 .productId(productId)
-                .product(buildProductReference(product))
+                .product(buildProductReference(change.getProduct()))
                 .presentationBarcode(presentationBarcode)
                 .movementType(EMovementType.DEVOLUCION_VENTA)
                 .quantity(quantity)
-                .previousStock(previousStock)
-                .newStock(newStock)
-                .unitMeasure(product.getStock().getUnitMeasure() != null ?
-                        product.getStock().getUnitMeasure().name() : null)
+                .previousStock(change.previousAsDouble())
+                .newStock(change.newAsDouble())
+                .unitMeasure(change.unitMeasureName())
                 .reference("DEV-VENTA-" + returnId)
                 .userId(userId)
                 .createdAt(DateTimeUtil.nowLocalDateTime())
@@ -1046,26 +1180,19 @@ public class InventoryServiceImpl implements InventoryService {
                                                String presentationBarcode, String userId) {
         log.info("InventoryService -> registerPurchaseReturnMovement for product: {}", productId);
 
-        Product product = productRepository.findById(Objects.requireNonNull(productId))
-                .orElseThrow(() -> new ResourceNotFoundException("Producto no encontrado"));
-
-        Double previousStock = product.getStock().getQuantity().doubleValue();
-        Double newStock = previousStock - quantity;
-
-        product.getStock().setQuantity(BigDecimal.valueOf(newStock));
-        productRepository.save(product);
+        // Actualizar stock con un único $inc atómico
+        StockChange change = stockService.applyDelta(productId, BigDecimal.valueOf(quantity).negate());
 
         InventoryMovement movement = InventoryMovement.builder()
                 .date(DateTimeUtil.nowLocalDateTime())
                 .productId(productId)
-                .product(buildProductReference(product))
+                .product(buildProductReference(change.getProduct()))
                 .presentationBarcode(presentationBarcode)
                 .movementType(EMovementType.DEVOLUCION_COMPRA)
                 .quantity(-quantity)
-                .previousStock(previousStock)
-                .newStock(newStock)
-                .unitMeasure(product.getStock().getUnitMeasure() != null ?
-                        product.getStock().getUnitMeasure().name() : null)
+                .previousStock(change.previousAsDouble())
+                .newStock(change.newAsDouble())
+                .unitMeasure(change.unitMeasureName())
                 .reference("DEV-COMPRA-" + returnId)
                 .userId(userId)
                 .createdAt(DateTimeUtil.nowLocalDateTime())
@@ -1089,19 +1216,19 @@ public class InventoryServiceImpl implements InventoryService {
                 .build();
     }
 
-    private Double calculateNewStock(Double previousStock, Double quantity, EMovementType movementType) {
+    private BigDecimal calculateStockDelta(Double quantity, EMovementType movementType) {
         switch (movementType) {
             case COMPRA:
             case DEVOLUCION_VENTA:
-                return previousStock + quantity;
+                return BigDecimal.valueOf(quantity);
             case VENTA:
             case DEVOLUCION_COMPRA:
-                return previousStock - Math.abs(quantity);
+                return BigDecimal.valueOf(Math.abs(quantity)).negate();
             case AJUSTE_FISICO:
             case AJUSTE_MANUAL:
-                return previousStock + quantity; // quantity puede ser positiva o negativa
+                return BigDecimal.valueOf(quantity); // quantity puede ser positiva o negativa
             default:
-                return previousStock;
+                return BigDecimal.ZERO;
         }
     }
 
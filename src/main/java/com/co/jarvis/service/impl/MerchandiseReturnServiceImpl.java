@@ -20,12 +20,14 @@ import com.co.jarvis.enums.EReturnType;
 import com.co.jarvis.enums.ESale;
 import com.co.jarvis.repository.BillingRepository;
 import com.co.jarvis.repository.MerchandiseReturnRepository;
-import com.co.jarvis.repository.ProductRepository;
 import com.co.jarvis.repository.PurchaseInvoiceRepository;
+import com.co.jarvis.service.CashLedgerService;
 import com.co.jarvis.service.ClientAccountService;
 import com.co.jarvis.service.ClientCreditService;
 import com.co.jarvis.service.InventoryService;
 import com.co.jarvis.service.MerchandiseReturnService;
+import com.co.jarvis.service.ProductLookupService;
+import com.co.jarvis.service.SequenceService;
 import com.co.jarvis.util.DateTimeUtil;
 import com.co.jarvis.util.exception.ResourceNotFoundException;
 import com.co.jarvis.util.exception.SaveRecordException;
@@ -42,6 +44,7 @@ import java.math.RoundingMode;
 import java.time.LocalTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -49,14 +52,18 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class MerchandiseReturnServiceImpl implements MerchandiseReturnService {
 
+    private static final String RETURN_SEQUENCE = "merchandise_return_number";
+
     private final MerchandiseReturnRepository returnRepository;
     private final BillingRepository billingRepository;
     private final PurchaseInvoiceRepository purchaseInvoiceRepository;
-    private final ProductRepository productRepository;
+    private final ProductLookupService productLookupService;
     private final InventoryService inventoryService;
     private final ClientAccountService clientAccountService;
     private final ClientCreditService clientCreditService;
     private final MongoTemplate mongoTemplate;
+    private final SequenceService sequenceService;
+    private final CashLedgerService cashLedgerService;
 
     // ========== DEVOLUCIÓN DE VENTA ==========
 
@@ -66,6 +73,7 @@ public class MerchandiseReturnServiceImpl implements MerchandiseReturnService {
         log.info("MerchandiseReturnServiceImpl -> createSaleReturn");
 
         validateReturnItems(dto.getItems());
+        resolveProductIds(dto.getItems());
 
         // Buscar factura original
         Billing billing = findOriginalBilling(dto);
@@ -76,6 +84,7 @@ public class MerchandiseReturnServiceImpl implements MerchandiseReturnService {
         // Construir y guardar la devolución
         MerchandiseReturn returnEntity = buildReturnEntity(dto, EReturnType.DEVOLUCION_VENTA, userId);
         returnEntity = returnRepository.save(returnEntity);
+        cashLedgerService.recordMerchandiseReturn(returnEntity);
 
         // Marcar la factura original con la referencia de esta devolución
         billing.setHasReturn(true);
@@ -101,6 +110,7 @@ public class MerchandiseReturnServiceImpl implements MerchandiseReturnService {
         log.info("MerchandiseReturnServiceImpl -> createPurchaseReturn");
 
         validateReturnItems(dto.getItems());
+        resolveProductIds(dto.getItems());
 
         // Buscar factura de compra original
         PurchaseInvoice invoice = findOriginalPurchaseInvoice(dto);
@@ -214,6 +224,7 @@ public class MerchandiseReturnServiceImpl implements MerchandiseReturnService {
         entity.setCancelReason(cancelReason);
         entity.setCancelledAt(DateTimeUtil.nowOffsetDateTime());
         returnRepository.save(entity);
+        cashLedgerService.recordMerchandiseReturn(entity);
 
         log.info("Devolución anulada: {}", entity.getReturnNumber());
         return mapToDto(entity);
@@ -238,6 +249,31 @@ public class MerchandiseReturnServiceImpl implements MerchandiseReturnService {
         }
     }
 
+    /**
+     * Completa el productId de los ítems que llegan solo con productCode, para que el ajuste
+     * de stock (y su anulación) no los omita.
+     */
+    private void resolveProductIds(List<MerchandiseReturnItemDto> items) {
+        List<String> codes = items.stream()
+                .filter(item -> item.getProductId() == null || item.getProductId().isBlank())
+                .map(MerchandiseReturnItemDto::getProductCode)
+                .filter(code -> code != null && !code.isBlank())
+                .toList();
+        if (codes.isEmpty()) {
+            return;
+        }
+        Map<String, Product> products = productLookupService.findByKeys(codes);
+        for (MerchandiseReturnItemDto item : items) {
+            if ((item.getProductId() == null || item.getProductId().isBlank()) && item.getProductCode() != null) {
+                Product product = products.get(item.getProductCode());
+                if (product == null) {
+                    throw new ResourceNotFoundException("Producto no encontrado: " + item.getProductCode());
+                }
+                item.setProductId(product.getId());
+            }
+        }
+    }
+
     private Billing findOriginalBilling(MerchandiseReturnDto dto) {
         Billing billing = null;
         if (dto.getOriginalDocumentId() != null && !dto.getOriginalDocumentId().isBlank()) {
@@ -269,11 +305,13 @@ public class MerchandiseReturnServiceImpl implements MerchandiseReturnService {
     // ========== STOCK ==========
 
     private void updateStockForSaleReturn(List<MerchandiseReturnItemDto> items, String returnId, String userId) {
+        Map<String, Product> products = productLookupService.findByKeys(
+                items.stream().map(MerchandiseReturnItemDto::getProductId).toList());
         for (MerchandiseReturnItemDto item : items) {
             String productId = item.getProductId();
             if (productId == null || productId.isBlank()) continue;
 
-            Product product = productRepository.findById(productId).orElse(null);
+            Product product = products.get(productId);
             if (product == null) {
                 log.warn("Producto no encontrado para devolución de venta: {}", productId);
                 continue;
@@ -285,11 +323,13 @@ public class MerchandiseReturnServiceImpl implements MerchandiseReturnService {
     }
 
     private void updateStockForPurchaseReturn(List<MerchandiseReturnItemDto> items, String returnId, String userId) {
+        Map<String, Product> products = productLookupService.findByKeys(
+                items.stream().map(MerchandiseReturnItemDto::getProductId).toList());
         for (MerchandiseReturnItemDto item : items) {
             String productId = item.getProductId();
             if (productId == null || productId.isBlank()) continue;
 
-            Product product = productRepository.findById(productId).orElse(null);
+            Product product = products.get(productId);
             if (product == null) {
                 log.warn("Producto no encontrado para devolución de compra: {}", productId);
                 continue;
@@ -302,9 +342,11 @@ public class MerchandiseReturnServiceImpl implements MerchandiseReturnService {
 
     private void reverseStockForSaleReturn(MerchandiseReturn entity, String userId) {
         if (entity.getItems() == null) return;
+        Map<String, Product> products = productLookupService.findByKeys(
+                entity.getItems().stream().map(MerchandiseReturnItem::getProductId).toList());
         for (MerchandiseReturnItem item : entity.getItems()) {
             if (item.getProductId() == null) continue;
-            Product product = productRepository.findById(item.getProductId()).orElse(null);
+            Product product = products.get(item.getProductId());
             if (product == null) continue;
             Double stockQty = calculateStockQuantityForSaleReturn(product, item.getPresentationBarcode(), item.getQuantity());
             // Revertir: descontar el stock que se había incrementado (equivalente a una venta)
@@ -319,9 +361,11 @@ public class MerchandiseReturnServiceImpl implements MerchandiseReturnService {
 
     private void reverseStockForPurchaseReturn(MerchandiseReturn entity, String userId) {
         if (entity.getItems() == null) return;
+        Map<String, Product> products = productLookupService.findByKeys(
+                entity.getItems().stream().map(MerchandiseReturnItem::getProductId).toList());
         for (MerchandiseReturnItem item : entity.getItems()) {
             if (item.getProductId() == null) continue;
-            Product product = productRepository.findById(item.getProductId()).orElse(null);
+            Product product = products.get(item.getProductId());
             if (product == null) continue;
             Double stockQty = calculateStockQuantityForPurchaseReturn(product, item.getPresentationBarcode(), item.getQuantity());
             // Revertir: incrementar el stock que se había decrementado (equivalente a una compra)
@@ -516,17 +560,22 @@ public class MerchandiseReturnServiceImpl implements MerchandiseReturnService {
 
     private String generateReturnNumber(EReturnType returnType) {
         String prefix = returnType == EReturnType.DEVOLUCION_VENTA ? "DEV-V" : "DEV-C";
+        // Un solo consecutivo compartido por ventas y compras, igual que la numeración anterior
+        sequenceService.initialize(RETURN_SEQUENCE, this::lastReturnNumber);
+        return prefix + "-" + sequenceService.next(RETURN_SEQUENCE);
+    }
+
+    private long lastReturnNumber() {
         MerchandiseReturn last = returnRepository.findFirstByOrderByCreatedAtDesc();
-        long next = 1L;
-        if (last != null && last.getReturnNumber() != null) {
-            try {
-                String[] parts = last.getReturnNumber().split("-");
-                next = Long.parseLong(parts[parts.length - 1]) + 1L;
-            } catch (NumberFormatException e) {
-                next = returnRepository.count() + 1L;
-            }
+        if (last == null || last.getReturnNumber() == null) {
+            return 0L;
+        }
+        try {
+            String[] parts = last.getReturnNumber().split("-");
+            return Long.parseLong(parts[parts.length - 1]);
+        } catch (NumberFormatException e) {
+            return returnRepository.count();
         }
-        return prefix + "-" + next;
     }
 
     // ========== CONSTRUCCIÓN DE ENTIDAD ==========
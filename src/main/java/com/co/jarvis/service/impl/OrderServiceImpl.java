@@ -8,6 +8,7 @@ import com.co.jarvis.entity.User;
 import com.co.jarvis.enums.EStatusOrder;
 import com.co.jarvis.repository.OrderRepository;
 import com.co.jarvis.service.OrderService;
+import com.co.jarvis.service.SequenceService;
 import com.co.jarvis.util.DateTimeUtil;
 import com.co.jarvis.util.exception.*;
 import com.co.jarvis.util.mappers.GenericMapper;
@@ -31,6 +32,8 @@ import java.util.Optional;
 public class OrderServiceImpl implements OrderService {
 
     private static final Logger logger = LoggerFactory.getLogger(OrderServiceImpl.class);
+
+    private static final String ORDER_SEQUENCE = "order_number";
     public static final String ND = ": El número de orden ya existe";
 
     GenericMapper<Order, OrderDto> mapper = new GenericMapper<>(Order.class, OrderDto.class);
@@ -44,6 +47,9 @@ public class OrderServiceImpl implements OrderService {
     @Autowired
     private LoginUserService loginUserService;
 
+    @Autowired
+    private SequenceService sequenceService;
+
     @Override
     public List<OrderDto> findAll() {
         logger.info("OrderServiceImpl -> findAll");
@@ -119,11 +125,11 @@ public class OrderServiceImpl implements OrderService {
     @Override
     public Long nextOrderNumber() {
         logger.info("OrderServiceImpl -> nextOrderNumber");
-        Order entity = repository.findFirstByOrderByCreationDateDesc();
-        if (entity == null) {
-            return 1L;
-        }
-        return entity.getOrderNumber() + 1L;
+        sequenceService.initialize(ORDER_SEQUENCE, () -> {
+            Order entity = repository.findFirstByOrderByCreationDateDesc();
+            return entity == null || entity.getOrderNumber() == null ? 0L : entity.getOrderNumber();
+        });
+        return sequenceService.next(ORDER_SEQUENCE);
     }
 
     @Override
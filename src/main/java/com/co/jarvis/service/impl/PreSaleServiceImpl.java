@@ -4,19 +4,17 @@ import com.co.jarvis.dto.presale.CreatePreSaleRequest;
 import com.co.jarvis.dto.presale.PreSaleFilterDto;
 import com.co.jarvis.entity.PreSale;
 import com.co.jarvis.entity.PreSaleItem;
-import com.co.jarvis.entity.SequenceDocument;
 import com.co.jarvis.enums.PreSaleStatus;
 import com.co.jarvis.repository.PreSaleRepository;
 import com.co.jarvis.service.PreSaleService;
+import com.co.jarvis.service.SequenceService;
 import com.co.jarvis.util.exception.ResourceNotFoundException;
 import com.co.jarvis.util.exception.SaveRecordException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.mongodb.core.FindAndModifyOptions;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
-import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 
@@ -34,6 +32,7 @@ public class PreSaleServiceImpl implements PreSaleService {
 
     private final PreSaleRepository preSaleRepository;
     private final MongoTemplate mongoTemplate;
+    private final SequenceService sequenceService;
 
     @Override
     public PreSale create(CreatePreSaleRequest request, String createdBy) {
@@ -129,14 +128,7 @@ public class PreSaleServiceImpl implements PreSaleService {
     }
 
     private String generateNumber() {
-        Query query = new Query(Criteria.where("_id").is("pre_sale_number"));
-        Update update = new Update().inc("seq", 1);
-        FindAndModifyOptions options = FindAndModifyOptions.options().upsert(true).returnNew(true);
-        SequenceDocument doc = mongoTemplate.findAndModify(query, update, options, SequenceDocument.class, "sequences");
-        if (doc == null) {
-            throw new SaveRecordException("Error al generar número de preventa");
-        }
-        return "PRV-" + String.format("%04d", doc.getSeq());
+        return sequenceService.next("pre_sale_number", "PRV-%04d");
     }
 
     private List<PreSaleItem> mapItems(CreatePreSaleRequest request) {
@@ -0,0 +1,310 @@
+package com.co.jarvis.service.impl;
+
+import com.co.jarvis.entity.PresentationCost;
+import com.co.jarvis.entity.PresentationCostEntry;
+import com.co.jarvis.entity.PurchaseInvoice;
+import com.co.jarvis.entity.PurchaseInvoiceItem;
+import com.co.jarvis.service.PresentationCostService;
+import com.co.jarvis.util.DateTimeUtil;
+import com.mongodb.bulk.BulkWriteError;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AccumulatorOperators;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.aggregation.ArrayOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PresentationCostServiceImpl implements PresentationCostService {
+
+    private static final String HISTORY = "history";
+    private static final String INVOICE_ID = "invoiceId";
+    private static final String UPDATED_AT = "updatedAt";
+    private static final String TRUNCATED_THROUGH = "truncatedThrough";
+    private static final int REBUILD_BATCH_SIZE = 500;
+    private static final int DUPLICATE_KEY = 11000;
+
+    // Más reciente primero; dentro de una factura, en el orden de sus ítems
+    private static final Sort HISTORY_ORDER = Sort.by(Sort.Order.desc("invoiceDate"),
+            Sort.Order.desc("createdAt"), Sort.Order.asc("line"));
+
+    // El mismo orden en memoria; como en Mongo, las fechas nulas quedan al final
+    static final Comparator<PresentationCostEntry> ENTRY_ORDER = Comparator
+            .comparing(PresentationCostEntry::getInvoiceDate, Comparator.nullsLast(Comparator.<LocalDate>reverseOrder()))
+            .thenComparing(PresentationCostEntry::getCreatedAt, Comparator.nullsLast(Comparator.<OffsetDateTime>reverseOrder()))
+            .thenComparingInt(PresentationCostEntry::getLine);
+
+    private final MongoTemplate mongoTemplate;
+
+    @Value("${jarvis.purchase.cost-history.size:20}")
+    private int historySize;
+
+    @Override
+    public void recordInvoice(PurchaseInvoice invoice) {
+        if (invoice == null || invoice.getId() == null) {
+            return;
+        }
+        Map<String, List<PresentationCostEntry>> entries = entriesByBarcode(invoice);
+
+        // Ordenado: primero se retira la versión anterior de la factura y luego se agrega la nueva.
+        // $slice no dice qué recortó: si la ventana quedó llena se asume que pudo recortar y
+        // truncatedThrough sube hasta la compra más antigua que quedó (las recortadas no son
+        // más nuevas que ella).
+        OffsetDateTime now = DateTimeUtil.nowOffsetDateTime();
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.ORDERED, PresentationCost.class);
+        bulk.updateMulti(byInvoice(invoice.getId()), pullInvoice(invoice.getId()));
+        entries.forEach((barcode, barcodeEntries) -> {
+            bulk.upsert(new Query(Criteria.where("_id").is(barcode)), new Update()
+                    .push(HISTORY).sort(HISTORY_ORDER).slice(historySize).each(barcodeEntries.toArray())
+                    .set(UPDATED_AT, now));
+            bulk.updateOne(new Query(Criteria.where("_id").is(barcode)).addCriteria(windowFull()), markTruncated());
+        });
+        bulk.execute();
+    }
+
+    @Override
+    public void removeInvoice(String invoiceId) {
+        if (invoiceId == null) {
+            return;
+        }
+        mongoTemplate.updateMulti(byInvoice(invoiceId), pullInvoice(invoiceId), PresentationCost.class);
+    }
+
+    @Override
+    public PresentationCost findByBarcode(String barcode) {
+        return barcode != null ? mongoTemplate.findById(barcode, PresentationCost.class) : null;
+    }
+
+    @Override
+    public Map<String, PresentationCostEntry> findLatest(Collection<String> barcodes) {
+        Map<String, PresentationCostEntry> latest = new HashMap<>();
+        if (barcodes == null || barcodes.isEmpty()) {
+            return latest;
+        }
+        Query query = new Query(Criteria.where("_id").in(barcodes));
+        query.fields().include(HISTORY).slice(HISTORY, 1);
+        for (PresentationCost cost : mongoTemplate.find(query, PresentationCost.class)) {
+            if (cost.getHistory() != null && !cost.getHistory().isEmpty()) {
+                latest.put(cost.getId(), cost.getHistory().get(0));
+            }
+        }
+        return latest;
+    }
+
+    @Override
+    public boolean covers(PresentationCost cost, LocalDate fromDate) {
+        if (cost.getTruncatedThrough() == null) {
+            return true;
+        }
+        // Las compras que salieron de la ventana son de truncatedThrough o antes
+        return fromDate != null && fromDate.isAfter(cost.getTruncatedThrough());
+    }
+
+    @Override
+    public int rebuild() {
+        log.info("PresentationCostServiceImpl -> rebuild");
+        long start = System.currentTimeMillis();
+        OffsetDateTime startedAt = DateTimeUtil.nowOffsetDateTime();
+        Query query = new Query();
+        query.fields().include("invoiceNumber", "supplier", "invoiceDate", "createdAt", "items");
+
+        // Cada presentación se arma completa en memoria (solo su ventana) y se reemplaza entera,
+        // así no quedan ítems de facturas eliminadas ni un truncatedThrough viejo
+        Map<String, CostWindow> windows = new HashMap<>();
+        int invoices = 0;
+        try (Stream<PurchaseInvoice> stream = mongoTemplate.stream(query, PurchaseInvoice.class)) {
+            Iterator<PurchaseInvoice> iterator = stream.iterator();
+            while (iterator.hasNext()) {
+                PurchaseInvoice invoice = iterator.next();
+                if (invoice.getId() != null) {
+                    entriesByBarcode(invoice).forEach((barcode, entries) ->
+                            windows.computeIfAbsent(barcode, key -> new CostWindow(historySize)).addAll(entries));
+                    invoices++;
+                }
+            }
+        }
+
+        // Solo se reemplaza lo que no cambió desde que empezó la lectura: un recordInvoice que
+        // corrió mientras tanto ya dejó su factura, que la lectura pudo no alcanzar a ver. Esas
+        // presentaciones quedan como están; el upsert choca con su _id y se cuentan aparte.
+        OffsetDateTime now = DateTimeUtil.nowOffsetDateTime();
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, PresentationCost.class);
+        int pending = 0;
+        int skipped = 0;
+        for (Map.Entry<String, CostWindow> window : windows.entrySet()) {
+            PresentationCost cost = window.getValue().toCost(window.getKey(), now);
+            bulk.replaceOne(unchangedSince(cost.getId(), startedAt), cost, FindAndReplaceOptions.options().upsert());
+            if (++pending == REBUILD_BATCH_SIZE) {
+                skipped += executeSkippingChanged(bulk);
+                bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, PresentationCost.class);
+                pending = 0;
+            }
+        }
+        if (pending > 0) {
+            skipped += executeSkippingChanged(bulk);
+        }
+
+        // Presentaciones que ya no aparecen en ninguna factura
+        long removed = mongoTemplate.remove(new Query(Criteria.where(UPDATED_AT).lt(startedAt)),
+                PresentationCost.class).getDeletedCount();
+        log.info("PresentationCostServiceImpl -> rebuild: {} facturas, {} presentaciones sin compras, "
+                        + "{} modificadas durante la reconstrucción en {} ms",
+                invoices, removed, skipped, System.currentTimeMillis() - start);
+        return invoices;
+    }
+
+    private static Query unchangedSince(String barcode, OffsetDateTime startedAt) {
+        return new Query(Criteria.where("_id").is(barcode).orOperator(
+                Criteria.where(UPDATED_AT).lt(startedAt),
+                Criteria.where(UPDATED_AT).exists(false)));
+    }
+
+    /** Ejecuta el bulk y devuelve cuántos reemplazos se omitieron por duplicate key. */
+    private static int executeSkippingChanged(BulkOperations bulk) {
+        try {
+            bulk.execute();
+            return 0;
+        } catch (BulkOperationException e) {
+            for (BulkWriteError error : e.getErrors()) {
+                if (error.getCode() != DUPLICATE_KEY) {
+                    throw e;
+                }
+            }
+            return e.getErrors().size();
+        }
+    }
+
+    /**
+     * Carga inicial: si la proyección está vacía y ya hay facturas de compra, se construye.
+     * Las presentaciones guardadas antes de truncatedThrough con la ventana llena lo reciben
+     * con el mismo criterio de recordInvoice.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        try {
+            if (!mongoTemplate.exists(new Query(), PresentationCost.class)
+                    && mongoTemplate.exists(new Query(), PurchaseInvoice.class)) {
+                rebuild();
+                return;
+            }
+            long marked = mongoTemplate.updateMulti(
+                    new Query(windowFull()).addCriteria(Criteria.where(TRUNCATED_THROUGH).exists(false)),
+                    markTruncated(), PresentationCost.class).getModifiedCount();
+            if (marked > 0) {
+                log.info("PresentationCostServiceImpl -> backfill: {} presentaciones con ventana llena", marked);
+            }
+        } catch (RuntimeException e) {
+            log.error("PresentationCostServiceImpl -> backfill -> ERROR: {}", e.getMessage(), e);
+        }
+    }
+
+    private static Map<String, List<PresentationCostEntry>> entriesByBarcode(PurchaseInvoice invoice) {
+        Map<String, List<PresentationCostEntry>> entries = new LinkedHashMap<>();
+        List<PurchaseInvoiceItem> items = invoice.getItems() != null ? invoice.getItems() : List.of();
+        for (int line = 0; line < items.size(); line++) {
+            PurchaseInvoiceItem item = items.get(line);
+            if (item != null && item.getPresentationBarcode() != null) {
+                entries.computeIfAbsent(item.getPresentationBarcode(), barcode -> new ArrayList<>())
+                        .add(PresentationCostEntry.of(invoice, item, line));
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Documentos con historySize compras: el último $push pudo haber recortado.
+     */
+    private Criteria windowFull() {
+        return Criteria.where(HISTORY + "." + (historySize - 1)).exists(true);
+    }
+
+    /**
+     * truncatedThrough = máx(truncatedThrough, fecha de la compra más antigua en la ventana).
+     */
+    private static AggregationUpdate markTruncated() {
+        return AggregationUpdate.update()
+                .set(TRUNCATED_THROUGH).toValue(AccumulatorOperators.Max.maxOf(TRUNCATED_THROUGH)
+                        .and(ArrayOperators.ArrayElemAt.arrayOf(HISTORY + ".invoiceDate").elementAt(-1)));
+    }
+
+    private static Query byInvoice(String invoiceId) {
+        return new Query(Criteria.where(HISTORY + "." + INVOICE_ID).is(invoiceId));
+    }
+
+    private static Update pullInvoice(String invoiceId) {
+        return new Update().pull(HISTORY, new Document(INVOICE_ID, invoiceId));
+    }
+
+    /**
+     * Ventana de una presentación durante la reconstrucción. Guarda hasta el doble del límite y
+     * recorta al pasarlo, recordando la compra más reciente que dejó por fuera.
+     */
+    static final class CostWindow {
+
+        private final int size;
+        private final List<PresentationCostEntry> entries = new ArrayList<>();
+        private LocalDate truncatedThrough;
+
+        CostWindow(int size) {
+            this.size = Math.max(1, size);
+        }
+
+        void addAll(List<PresentationCostEntry> added) {
+            entries.addAll(added);
+            if (entries.size() > 2 * size) {
+                trim();
+            }
+        }
+
+        PresentationCost toCost(String barcode, OffsetDateTime updatedAt) {
+            trim();
+            return PresentationCost.builder()
+                    .id(barcode)
+                    .history(new ArrayList<>(entries))
+                    .truncatedThrough(truncatedThrough)
+                    .updatedAt(updatedAt)
+                    .build();
+        }
+
+        private void trim() {
+            entries.sort(ENTRY_ORDER);
+            if (entries.size() <= size) {
+                return;
+            }
+            List<PresentationCostEntry> dropped = entries.subList(size, entries.size());
+            for (PresentationCostEntry entry : dropped) {
+                LocalDate date = entry.getInvoiceDate();
+                if (date != null && (truncatedThrough == null || date.isAfter(truncatedThrough))) {
+                    truncatedThrough = date;
+                }
+            }
+            dropped.clear();
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.co.jarvis.service.impl;
+
+import com.co.jarvis.entity.Product;
+import com.co.jarvis.repository.ProductRepository;
+import com.co.jarvis.service.ProductLookupService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ProductLookupServiceImpl implements ProductLookupService {
+
+    private final ProductRepository productRepository;
+
+    // Código -> id ya resueltos en este nodo; se verifica contra el producto leído por id
+    private final Map<String, String> productIdsByCode = new ConcurrentHashMap<>();
+
+    @Value("${jarvis.product.code-cache.enabled:true}")
+    private boolean codeCacheEnabled;
+
+    @Override
+    public Product findByKey(String key) {
+        if (key == null) {
+            return null;
+        }
+        return findByKeys(List.of(key)).get(key);
+    }
+
+    @Override
+    public Map<String, Product> findByKeys(Collection<String> keys) {
+        Map<String, Product> result = new HashMap<>();
+        Set<String> pending = new LinkedHashSet<>();
+        keys.stream().filter(Objects::nonNull).forEach(pending::add);
+        if (pending.isEmpty()) {
+            return result;
+        }
+
+        // 1. Por id: las claves mismas y los ids ya conocidos de los códigos
+        Set<String> ids = new LinkedHashSet<>(pending);
+        if (codeCacheEnabled) {
+            pending.stream().map(productIdsByCode::get).filter(Objects::nonNull).forEach(ids::add);
+        }
+        Map<String, Product> productsById = new HashMap<>();
+        productRepository.findAllById(ids).forEach(product -> productsById.put(product.getId(), product));
+
+        List<String> codes = new ArrayList<>();
+        for (String key : pending) {
+            Product product = productsById.get(key);
+            if (product == null && codeCacheEnabled) {
+                product = byKnownCode(key, productsById);
+            }
+            if (product != null) {
+                result.put(key, product);
+            } else {
+                codes.add(key);
+            }
+        }
+
+        // 2. Por código de producto, en una sola consulta
+        if (!codes.isEmpty()) {
+            for (Product found : productRepository.findByProductCodeIn(codes)) {
+                // Misma instancia si el producto ya llegó por id con otra clave
+                Product product = productsById.getOrDefault(found.getId(), found);
+                if (product.getProductCode() != null && result.putIfAbsent(product.getProductCode(), product) == null
+                        && codeCacheEnabled) {
+                    productIdsByCode.put(product.getProductCode(), product.getId());
+                }
+            }
+        }
+        log.debug("ProductLookupServiceImpl -> findByKeys: {} claves, {} por código, {} encontradas",
+                pending.size(), codes.size(), result.size());
+        return result;
+    }
+
+    /**
+     * Producto del id conocido para el código, si sigue teniendo ese código; si cambió o se
+     * eliminó se olvida y se vuelve a buscar por código.
+     */
+    private Product byKnownCode(String code, Map<String, Product> productsById) {
+        String productId = productIdsByCode.get(code);
+        if (productId == null) {
+            return null;
+        }
+        Product product = productsById.get(productId);
+        if (product != null && code.equals(product.getProductCode())) {
+            return product;
+        }
+        productIdsByCode.remove(code, productId);
+        return null;
+    }
+}
@@ -12,11 +12,17 @@ import com.co.jarvis.entity.AuditEntry;
 import com.co.jarvis.entity.Presentation;
 import com.co.jarvis.entity.Product;
 import com.co.jarvis.enums.EAuditAction;
-import com.co.jarvis.enums.ESale;
+import com.co.jarvis.enums.EAuditEntityType;
 import com.co.jarvis.repository.ProductRepository;
+import com.co.jarvis.service.AuditLogService;
 import com.co.jarvis.service.ProductService;
+import com.co.jarvis.service.SequenceService;
+import com.co.jarvis.service.StockService;
 import com.co.jarvis.util.DateTimeUtil;
-import com.co.jarvis.util.UnitConverter;
+import com.co.jarvis.util.DisplayStockCalculator;
+import com.co.jarvis.util.InventoryDashboardCache;
+import com.co.jarvis.util.ProductCatalogCache;
+import com.co.jarvis.util.ProductSearchIndex;
 import com.co.jarvis.util.exception.DeleteRecordException;
 import com.co.jarvis.util.exception.DuplicateRecordException;
 import com.co.jarvis.util.exception.ResourceNotFoundException;
@@ -24,28 +30,44 @@ import com.co.jarvis.util.exception.SaveRecordException;
 import com.co.jarvis.util.mappers.GenericMapper;
 import com.co.jarvis.util.mappers.PaginationMapper;
 import com.co.jarvis.util.mensajes.MessageConstants;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.time.Instant;
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static java.lang.String.format;
 
@@ -57,9 +79,45 @@ public class ProductServiceImpl implements ProductService {
 
     private static final int DEFAULT_BARCODE_START = 1000;
 
+    private static final String PRODUCT_CODE_SEQUENCE = "product_code";
+
+    private static final String BARCODE_SEQUENCE = "internal_barcode";
+
+    private static final String PRODUCT_CODE_TEMPLATE = "P%03d"; // Formato P seguido de 3 dígitos
+
+    private static final String BARCODE_TEMPLATE = "%04d";
+
+    private static final Pattern PRODUCT_CODE_PATTERN = Pattern.compile("P\\d{3,}");
+
+    private static final Pattern INTERNAL_BARCODE_PATTERN = Pattern.compile("\\d{4}");
+
+    @Autowired
+    private SequenceService sequenceService;
+
+    @Autowired
+    private StockService stockService;
+
     @Autowired
     private ProductRepository repository;
 
+    @Autowired
+    private ProductCatalogCache catalogCache;
+
+    @Autowired
+    private InventoryDashboardCache dashboardCache;
+
+    @Autowired
+    private ProductSearchIndex searchIndex;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private AuditLogService auditLogService;
+
+    @Value("${jarvis.audit.product.recent-size:10}")
+    private int recentAuditSize;
+
     GenericMapper<Product, ProductDto> mapper = new GenericMapper<>(Product.class, ProductDto.class);
     PaginationMapper<Product, ProductDto> paginationMapper = new PaginationMapper<>(Product.class, ProductDto.class);
 
@@ -68,35 +126,34 @@ public class ProductServiceImpl implements ProductService {
         log.info("ProductServiceImpl -> findAllPage");
         Pageable pageable = PageRequest.of(pageNumber, pageSize);
         Page<Product> pageProduct = repository.findAll(pageable);
-        PaginationDto<ProductDto> pagination = paginationMapper.pageToPagination(pageProduct);
-        
-        // Enriquecer cada producto con displayStock
-        if (pagination.getContent() != null) {
-            pagination.getContent().forEach(dto -> {
-                Product product = mapper.mapToEntity(dto);
-                dto.setDisplayStock(computeDisplayStock(product));
-            });
-        }
-        
-        return pagination;
+        // Enriquecer cada producto con displayStock a partir de la entidad
+        return paginationMapper.pageToPagination(pageProduct, this::enrichProductDto);
     }
 
     @Override
     public PaginationDto<ProductDto> findAllPageSearch(int pageNumber, int pageSize, String search) {
         log.info("ProductServiceImpl -> findAllPageSearch");
         Pageable pageable = PageRequest.of(pageNumber, pageSize);
-        Page<Product> pageProduct = repository.findByPresentationsBarcodeOrDescriptionContainingIgnoreCase(search, search, pageable);
-        PaginationDto<ProductDto> pagination = paginationMapper.pageToPagination(pageProduct);
-        
-        // Enriquecer cada producto con displayStock
-        if (pagination.getContent() != null) {
-            pagination.getContent().forEach(dto -> {
-                Product product = mapper.mapToEntity(dto);
-                dto.setDisplayStock(computeDisplayStock(product));
-            });
+        if (searchIndex.isReady()) {
+            ProductSearchIndex.Result result = searchIndex.search(search, pageable.getOffset(), pageable.getPageSize());
+            List<ProductDto> content = result.productIds().stream()
+                    .map(id -> catalogCache.findById(id, productId -> repository.findById(productId).orElse(null)))
+                    .filter(Objects::nonNull)
+                    .map(this::enrichProductDto)
+                    .toList();
+            return PaginationDto.<ProductDto>builder()
+                    .page(pageable.getPageNumber())
+                    .pageSize(pageable.getPageSize())
+                    .quantityPage((int) ((result.total() + pageable.getPageSize() - 1) / pageable.getPageSize()))
+                    .totalElements(result.total())
+                    .content(content)
+                    .build();
         }
-        
-        return pagination;
+
+        // El índice aún no termina de cargar: búsqueda directa en Mongo
+        Page<Product> pageProduct = repository.findByPresentationsBarcodeOrDescriptionContainingIgnoreCase(search, search, pageable);
+        // Enriquecer cada producto con displayStock a partir de la entidad
+        return paginationMapper.pageToPagination(pageProduct, this::enrichProductDto);
     }
 
     @Override
@@ -108,72 +165,69 @@ public class ProductServiceImpl implements ProductService {
 
         List<PresentationPriceUpdate> updates = request.getUpdates();
         List<BulkUpdateError> errors = new ArrayList<>();
-        int[] updatedCount = {0};
 
-        // Agrupar por productId para procesar cada producto de forma atómica
+        // Agrupar por productId: cada producto se escribe con una sola operación atómica
         Map<String, List<PresentationPriceUpdate>> grouped = updates.stream()
                 .collect(Collectors.groupingBy(PresentationPriceUpdate::getProductId,
                         LinkedHashMap::new, Collectors.toList()));
 
+        // Precios actuales de todos los productos en una sola lectura (sin auditTrail)
+        Query query = new Query(Criteria.where("_id").in(grouped.keySet()));
+        query.fields().include("presentations.barcode", "presentations.salePrice", "presentations.costPrice");
+        Map<String, Product> products = mongoTemplate.find(query, Product.class).stream()
+                .collect(Collectors.toMap(Product::getId, product -> product));
+
+        List<ProductPriceChange> changes = new ArrayList<>();
         for (Map.Entry<String, List<PresentationPriceUpdate>> entry : grouped.entrySet()) {
-            String productId = entry.getKey();
-            List<PresentationPriceUpdate> productUpdates = entry.getValue();
-            try {
-                int applied = applyUpdatesToProduct(productId, productUpdates, user, errors);
-                updatedCount[0] += applied;
-            } catch (RuntimeException ex) {
-                log.error("Error al actualizar producto {}: {}", productId, ex.getMessage(), ex);
-                for (PresentationPriceUpdate u : productUpdates) {
-                    errors.add(BulkUpdateError.builder()
-                            .productId(u.getProductId())
-                            .barcode(u.getBarcode())
-                            .message("Error al actualizar el producto: " + ex.getMessage())
-                            .build());
-                }
+            ProductPriceChange change = buildPriceChange(entry.getKey(), products.get(entry.getKey()),
+                    entry.getValue(), user, errors);
+            if (change != null) {
+                changes.add(change);
             }
         }
 
+        int updated = writePriceChanges(changes, errors);
         return BulkPresentationPriceUpdateResponse.builder()
-                .updated(updatedCount[0])
+                .updated(updated)
                 .failed(errors.size())
                 .errors(errors)
                 .build();
     }
 
     /**
-     * Aplica todas las actualizaciones de precios para un único producto de forma atómica.
-     * Si el producto no existe, cada entrada se marca con error (devuelve 0).
+     * Cambios de precio de un producto ya calculados: el update con $set solo de los precios
+     * modificados (arrayFilters por barcode) y $push de las entradas de auditoría recientes, las
+     * entradas del request que lo componen, cuántas modificaron algún precio y la auditoría que
+     * va a la bitácora.
+     */
+    private record ProductPriceChange(String productId, List<PresentationPriceUpdate> entries,
+                                      int applied, Update update, List<AuditEntry> auditEntries) {
+    }
+
+    /**
+     * Compara las actualizaciones de un producto con sus precios actuales.
+     * Si el producto no existe, cada entrada se marca con error.
      * Si una presentación no existe, solo esa entrada se marca con error; las demás se aplican.
+     * Devuelve null si no hay nada que escribir.
      */
-    @Transactional
-    protected int applyUpdatesToProduct(String productId,
-                                        List<PresentationPriceUpdate> productUpdates,
-                                        UserDto user,
-                                        List<BulkUpdateError> errors) {
-        Optional<Product> maybeProduct = repository.findById(productId);
-        if (maybeProduct.isEmpty()) {
-            for (PresentationPriceUpdate u : productUpdates) {
-                errors.add(BulkUpdateError.builder()
-                        .productId(u.getProductId())
-                        .barcode(u.getBarcode())
-                        .message("Producto no existe con ID: " + productId)
-                        .build());
-            }
-            return 0;
+    private ProductPriceChange buildPriceChange(String productId,
+                                                Product product,
+                                                List<PresentationPriceUpdate> productUpdates,
+                                                UserDto user,
+                                                List<BulkUpdateError> errors) {
+        if (product == null) {
+            addErrors(errors, productUpdates, "Producto no existe con ID: " + productId);
+            return null;
         }
-
-        Product product = maybeProduct.get();
         if (product.getPresentations() == null || product.getPresentations().isEmpty()) {
-            for (PresentationPriceUpdate u : productUpdates) {
-                errors.add(BulkUpdateError.builder()
-                        .productId(u.getProductId())
-                        .barcode(u.getBarcode())
-                        .message("El producto no tiene presentaciones registradas")
-                        .build());
-            }
-            return 0;
+            addErrors(errors, productUpdates, "El producto no tiene presentaciones registradas");
+            return null;
         }
 
+        List<PresentationPriceUpdate> entries = new ArrayList<>();
+        List<AuditEntry> auditEntries = new ArrayList<>();
+        // Barcodes modificados con los campos que cambiaron, en el orden del request
+        Map<String, Set<String>> changedFields = new LinkedHashMap<>();
         int appliedHere = 0;
         for (PresentationPriceUpdate update : productUpdates) {
             Optional<Presentation> maybePresentation = product.getPresentations().stream()
@@ -188,7 +242,9 @@ public class ProductServiceImpl implements ProductService {
                         .build());
                 continue;
             }
+            entries.add(update);
 
+            // Se modifica la copia leída para que varias entradas del mismo barcode se encadenen
             Presentation presentation = maybePresentation.get();
             BigDecimal oldSalePrice = presentation.getSalePrice();
             BigDecimal oldCostPrice = presentation.getCostPrice();
@@ -198,15 +254,17 @@ public class ProductServiceImpl implements ProductService {
             if (update.getSalePrice() != null
                     && !Objects.equals(oldSalePrice, update.getSalePrice())) {
                 presentation.setSalePrice(update.getSalePrice());
-                appendAuditEntry(product, user, EAuditAction.ACTUALIZACION_PRECIO_VENTA,
-                        update.getBarcode(), "salePrice", oldSalePrice, update.getSalePrice());
+                auditEntries.add(auditEntry(user, EAuditAction.ACTUALIZACION_PRECIO_VENTA,
+                        update.getBarcode(), "salePrice", oldSalePrice, update.getSalePrice()));
+                changedFields.computeIfAbsent(update.getBarcode(), b -> new LinkedHashSet<>()).add("salePrice");
                 changedSomething = true;
             }
             if (update.getCostPrice() != null
                     && !Objects.equals(oldCostPrice, update.getCostPrice())) {
                 presentation.setCostPrice(update.getCostPrice());
-                appendAuditEntry(product, user, EAuditAction.ACTUALIZACION_PRECIO_COSTO,
-                        update.getBarcode(), "costPrice", oldCostPrice, update.getCostPrice());
+                auditEntries.add(auditEntry(user, EAuditAction.ACTUALIZACION_PRECIO_COSTO,
+                        update.getBarcode(), "costPrice", oldCostPrice, update.getCostPrice()));
+                changedFields.computeIfAbsent(update.getBarcode(), b -> new LinkedHashSet<>()).add("costPrice");
                 changedSomething = true;
             }
 
@@ -226,19 +284,123 @@ public class ProductServiceImpl implements ProductService {
             }
         }
 
-        if (appliedHere > 0) {
-            repository.save(product);
+        if (changedFields.isEmpty()) {
+            return null;
+        }
+        Update update = new Update();
+        int filter = 0;
+        for (Map.Entry<String, Set<String>> changed : changedFields.entrySet()) {
+            Presentation presentation = product.getPresentations().stream()
+                    .filter(p -> Objects.equals(p.getBarcode(), changed.getKey()))
+                    .findFirst()
+                    .orElseThrow();
+            String identifier = "p" + filter++;
+            if (changed.getValue().contains("salePrice")) {
+                update.set("presentations.$[" + identifier + "].salePrice", presentation.getSalePrice());
+            }
+            if (changed.getValue().contains("costPrice")) {
+                update.set("presentations.$[" + identifier + "].costPrice", presentation.getCostPrice());
+            }
+            update.filterArray(Criteria.where(identifier + ".barcode").is(changed.getKey()));
+        }
+        // En el producto solo quedan las últimas entradas; la historia completa va a la bitácora
+        update.push("auditTrail").slice(-recentAuditSize).each(auditEntries.toArray());
+        return new ProductPriceChange(productId, entries, appliedHere, update, auditEntries);
+    }
+
+    /**
+     * Envía todos los cambios en un solo bulk desordenado (una operación por producto). Si una
+     * operación falla, o su producto se eliminó después de leerlo, sus entradas pasan a errores.
+     */
+    private int writePriceChanges(List<ProductPriceChange> changes, List<BulkUpdateError> errors) {
+        if (changes.isEmpty()) {
+            return 0;
+        }
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class);
+        changes.forEach(change -> bulk.updateOne(new Query(Criteria.where("_id").is(change.productId())),
+                change.update()));
+
+        Set<String> failed = new HashSet<>();
+        try {
+            BulkWriteResult result = bulk.execute();
+            if (result.getMatchedCount() < changes.size()) {
+                deletedSinceRead(changes, errors).forEach(change -> failed.add(change.productId()));
+            }
+        } catch (BulkOperationException e) {
+            for (BulkWriteError error : e.getErrors()) {
+                ProductPriceChange change = changes.get(error.getIndex());
+                log.error("Error al actualizar producto {}: {}", change.productId(), error.getMessage());
+                addErrors(errors, change.entries(), "Error al actualizar el producto: " + error.getMessage());
+                failed.add(change.productId());
+            }
+            if (e.getResult().getMatchedCount() + e.getErrors().size() < changes.size()) {
+                deletedSinceRead(changes, errors).forEach(change -> failed.add(change.productId()));
+            }
+        } catch (RuntimeException e) {
+            log.error("Error al actualizar precios: {}", e.getMessage(), e);
+            changes.forEach(change -> addErrors(errors, change.entries(),
+                    "Error al actualizar el producto: " + e.getMessage()));
+            changes.forEach(change -> failed.add(change.productId()));
+        } finally {
+            catalogCache.invalidateAll(changes.stream().map(ProductPriceChange::productId).toList());
+            dashboardCache.invalidate();
+        }
+
+        appendToAuditLog(changes, failed);
+        return changes.stream()
+                .filter(change -> !failed.contains(change.productId()))
+                .mapToInt(ProductPriceChange::applied)
+                .sum();
+    }
+
+    /**
+     * Pasa a la bitácora la auditoría de los productos que sí se actualizaron. Si falla, los
+     * precios ya quedaron escritos y las entradas siguen en la lista reciente del producto.
+     */
+    private void appendToAuditLog(List<ProductPriceChange> changes, Set<String> failed) {
+        Map<String, List<AuditEntry>> entriesByProduct = new LinkedHashMap<>();
+        changes.stream()
+                .filter(change -> !failed.contains(change.productId()))
+                .forEach(change -> entriesByProduct.put(change.productId(), change.auditEntries()));
+        try {
+            auditLogService.appendAll(EAuditEntityType.PRODUCTO, entriesByProduct);
+        } catch (RuntimeException e) {
+            log.error("ProductServiceImpl -> appendToAuditLog -> ERROR: {}", e.getMessage(), e);
         }
-        return appliedHere;
     }
 
-    private void appendAuditEntry(Product product, UserDto user, EAuditAction action,
+    /**
+     * Cambios cuyo producto ya no existe: el bulk no informa qué operación no encontró su
+     * documento, así que se consulta cuáles de los ids siguen existiendo.
+     */
+    private List<ProductPriceChange> deletedSinceRead(List<ProductPriceChange> changes, List<BulkUpdateError> errors) {
+        Query query = new Query(Criteria.where("_id").in(changes.stream().map(ProductPriceChange::productId).toList()));
+        query.fields().include("_id");
+        Set<String> existing = mongoTemplate.find(query, Product.class).stream()
+                .map(Product::getId)
+                .collect(Collectors.toSet());
+        List<ProductPriceChange> deleted = changes.stream()
+                .filter(change -> !existing.contains(change.productId()))
+                .toList();
+        deleted.forEach(change -> addErrors(errors, change.entries(),
+                "Producto no existe con ID: " + change.productId()));
+        return deleted;
+    }
+
+    private static void addErrors(List<BulkUpdateError> errors, List<PresentationPriceUpdate> entries, String message) {
+        for (PresentationPriceUpdate u : entries) {
+            errors.add(BulkUpdateError.builder()
+                    .productId(u.getProductId())
+                    .barcode(u.getBarcode())
+                    .message(message)
+                    .build());
+        }
+    }
+
+    private AuditEntry auditEntry(UserDto user, EAuditAction action,
                                   String barcode, String fieldName,
                                   BigDecimal oldValue, BigDecimal newValue) {
-        if (product.getAuditTrail() == null) {
-            product.setAuditTrail(new ArrayList<>());
-        }
-        AuditEntry entry = AuditEntry.builder()
+        return AuditEntry.builder()
                 .userId(user != null ? user.getNumberIdentity() : null)
                 .userName(user != null ? user.getFullName() : null)
                 .action(action)
@@ -252,7 +414,6 @@ public class ProductServiceImpl implements ProductService {
                         oldValue != null ? oldValue.toPlainString() : "null",
                         newValue != null ? newValue.toPlainString() : "null"))
                 .build();
-        product.getAuditTrail().add(entry);
     }
 
     private void logAuditEntry(String productId, String barcode,
@@ -269,9 +430,67 @@ public class ProductServiceImpl implements ProductService {
                 Instant.now());
     }
 
+    @Override
+    public List<AuditEntry> findAuditTrail(String productId) {
+        log.info("ProductServiceImpl -> findAuditTrail: {}", productId);
+        Query query = new Query(Criteria.where("_id").is(productId));
+        query.fields().include("legacyAuditTrail");
+        Product product = mongoTemplate.findOne(query, Product.class);
+        if (product == null) {
+            throw new ResourceNotFoundException(MessageConstants.RESOURCE_NOT_FOUND);
+        }
+        // Un producto aún no migrado conserva su historial anterior embebido
+        List<AuditEntry> auditTrail = new ArrayList<>();
+        if (product.getLegacyAuditTrail() != null) {
+            auditTrail.addAll(product.getLegacyAuditTrail());
+        }
+        auditTrail.addAll(auditLogService.findEntries(EAuditEntityType.PRODUCTO, productId));
+        return auditTrail;
+    }
+
+    /**
+     * Los productos guardados antes de la bitácora tienen el historial completo en audit_trail:
+     * se copia a AUDIT_LOG, las últimas entradas pasan a la lista reciente (antes de las que
+     * ya tenga) y se quita el campo. Si se interrumpe entre la copia y el $unset, el producto
+     * se vuelve a copiar en el siguiente arranque sin duplicar los bloques que ya se copiaron.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void archiveLegacyAuditTrail() {
+        try {
+            Query query = new Query(Criteria.where("legacyAuditTrail").exists(true));
+            query.fields().include("legacyAuditTrail");
+            int[] archived = {0};
+            try (Stream<Product> products = mongoTemplate.stream(query, Product.class)) {
+                products.forEach(product -> {
+                    archiveLegacyAuditTrail(product);
+                    archived[0]++;
+                });
+            }
+            if (archived[0] > 0) {
+                log.info("ProductServiceImpl -> archiveLegacyAuditTrail: {} productos", archived[0]);
+            }
+        } catch (RuntimeException e) {
+            log.error("ProductServiceImpl -> archiveLegacyAuditTrail -> ERROR: {}", e.getMessage(), e);
+        }
+    }
+
+    private void archiveLegacyAuditTrail(Product product) {
+        List<AuditEntry> legacy = product.getLegacyAuditTrail() != null ? product.getLegacyAuditTrail() : List.of();
+        auditLogService.appendLegacy(EAuditEntityType.PRODUCTO, product.getId(), legacy, List.of());
+
+        Update update = new Update().unset("legacyAuditTrail");
+        if (!legacy.isEmpty()) {
+            List<AuditEntry> recent = legacy.subList(Math.max(0, legacy.size() - recentAuditSize), legacy.size());
+            update.push("auditTrail").atPosition(0).slice(-recentAuditSize).each(recent.toArray());
+        }
+        mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(product.getId())
+                .and("legacyAuditTrail").exists(true)), update, Product.class);
+        catalogCache.invalidate(product.getId());
+    }
+
     @Override
     public ProductDto findByPresentationsBarcode(String barcode) {
-        Product product = repository.findByPresentationsBarcode(barcode);
+        Product product = catalogCache.findByBarcode(barcode, repository::findByPresentationsBarcode);
         return product != null ? enrichProductDto(product) : null;
     }
 
@@ -280,8 +499,8 @@ public class ProductServiceImpl implements ProductService {
         if (product == null) {
             throw new ResourceNotFoundException(MessageConstants.RESOURCE_NOT_FOUND);
         }
-        product.reduceStock(amount);
-        repository.save(product);
+        // $inc sobre stock.quantity; un save() del documento pisaría las ventas concurrentes
+        stockService.applyDelta(product.getId(), amount.negate());
     }
 
     @Override
@@ -289,8 +508,7 @@ public class ProductServiceImpl implements ProductService {
         if (product == null) {
             throw new ResourceNotFoundException(MessageConstants.RESOURCE_NOT_FOUND);
         }
-        product.increaseStock(amount);
-        repository.save(product);
+        stockService.applyDelta(product.getId(), amount);
     }
 
     @Override
@@ -323,20 +541,9 @@ public class ProductServiceImpl implements ProductService {
                 return trimmed;
             }
 
-            // Si no se envía barcode, generar el siguiente automáticamente basado en el último de la BD
-            String lastBarcode = repository.findHighestBarcodeAsString();
-            int nextNumber = DEFAULT_BARCODE_START;
-            
-            if (lastBarcode != null && !lastBarcode.isEmpty() && lastBarcode.matches("\\d{4}")) {
-                try {
-                    int currentNumber = Integer.parseInt(lastBarcode);
-                    nextNumber = currentNumber + 1;
-                } catch (NumberFormatException e) {
-                    logger.warn("El último barcode no es numérico válido: {}", lastBarcode);
-                }
-            }
-
-            return format("%04d", nextNumber);
+            // Si no se envía barcode, proponer el siguiente del consecutivo sin consumirlo: el
+            // formulario puede pedirlo varias veces. Se consume al guardar el producto.
+            return format(BARCODE_TEMPLATE, previewInternalBarcode());
         } catch (DuplicateRecordException | SaveRecordException e) {
             throw e;
         } catch (Exception e) {
@@ -347,19 +554,96 @@ public class ProductServiceImpl implements ProductService {
 
     @Override
     public String generateNextProductCode() {
-        Product product = repository.findTopByOrderByProductCodeDesc();
-        String nextCode = "P001"; // Valor inicial si no existe ninguno
-
-        if (product != null && product.getProductCode() != null) {
-            try {
-                String currentNumber = product.getProductCode().substring(1); // Elimina la 'P'
-                int nextNumber = Integer.parseInt(currentNumber) + 1;
-                nextCode = String.format("P%03d", nextNumber); // Formato P seguido de 3 dígitos
-            } catch (NumberFormatException | IndexOutOfBoundsException e) {
-                logger.warn("El código de producto no tiene el formato correcto: {}", product.getProductCode());
+        // Vista previa: el consecutivo se consume al guardar el producto
+        return format(PRODUCT_CODE_TEMPLATE, previewProductCode());
+    }
+
+    /**
+     * Siguiente código interno libre según el contador, sin consumirlo. Se saltan los que ya
+     * existan (p. ej. asignados a mano).
+     */
+    private long previewInternalBarcode() {
+        sequenceService.initialize(BARCODE_SEQUENCE, this::lastInternalBarcode);
+        long candidate = sequenceService.peek(BARCODE_SEQUENCE);
+        while (repository.findByPresentationsBarcode(format(BARCODE_TEMPLATE, candidate)) != null) {
+            candidate++;
+        }
+        return candidate;
+    }
+
+    private long previewProductCode() {
+        sequenceService.initialize(PRODUCT_CODE_SEQUENCE, this::lastProductCodeNumber);
+        long candidate = sequenceService.peek(PRODUCT_CODE_SEQUENCE);
+        while (repository.findFirstByProductCode(format(PRODUCT_CODE_TEMPLATE, candidate)) != null) {
+            candidate++;
+        }
+        return candidate;
+    }
+
+    /**
+     * Asigna los códigos del producto nuevo. Los del formato interno (P001, 1000) son del
+     * consecutivo: si es el propuesto en el formulario o ya lo guardó otro producto (dos
+     * formularios abiertos a la vez reciben la misma propuesta), se toma el siguiente valor
+     * con next, que es atómico, y el producto devuelto lleva el código real. Un código interno
+     * escrito a mano se respeta y el contador avanza hasta él; uno externo repetido se rechaza.
+     */
+    private void claimCodes(Product product) {
+        product.setProductCode(claimCode(product.getProductCode(), PRODUCT_CODE_SEQUENCE, PRODUCT_CODE_TEMPLATE,
+                PRODUCT_CODE_PATTERN, this::previewProductCode,
+                code -> repository.findFirstByProductCode(code) != null, "El código de producto %s ya existe."));
+        if (product.getPresentations() == null) {
+            return;
+        }
+        for (Presentation presentation : product.getPresentations()) {
+            presentation.setBarcode(claimCode(presentation.getBarcode(), BARCODE_SEQUENCE, BARCODE_TEMPLATE,
+                    INTERNAL_BARCODE_PATTERN, this::previewInternalBarcode,
+                    code -> repository.findByPresentationsBarcode(code) != null, "El código de barras %s ya existe."));
+        }
+    }
+
+    private String claimCode(String code, String sequence, String template, Pattern internal,
+                             LongSupplier preview, Predicate<String> taken, String duplicateMessage) {
+        if (code == null || code.isBlank()) {
+            return code;
+        }
+        boolean exists = taken.test(code);
+        if (!internal.matcher(code).matches()) {
+            if (exists) {
+                throw new DuplicateRecordException(format(duplicateMessage, code));
             }
+            return code;
+        }
+        long proposed = preview.getAsLong();
+        if (exists || code.equals(format(template, proposed))) {
+            String claimed;
+            do {
+                claimed = format(template, sequenceService.next(sequence));
+            } while (taken.test(claimed));
+            return claimed;
         }
-        return nextCode;
+        sequenceService.advanceTo(sequence, Long.parseLong(code.replaceAll("\\D", "")));
+        return code;
+    }
+
+    private long lastProductCodeNumber() {
+        Product product = repository.findTopByOrderByProductCodeDesc();
+        if (product == null || product.getProductCode() == null) {
+            return 0L; // El primer código será P001
+        }
+        try {
+            return Long.parseLong(product.getProductCode().substring(1)); // Elimina la 'P'
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            logger.warn("El código de producto no tiene el formato correcto: {}", product.getProductCode());
+            return 0L;
+        }
+    }
+
+    private long lastInternalBarcode() {
+        String lastBarcode = repository.findHighestBarcodeAsString();
+        if (lastBarcode != null && lastBarcode.matches("\\d{4}")) {
+            return Long.parseLong(lastBarcode);
+        }
+        return DEFAULT_BARCODE_START - 1L;
     }
 
 
@@ -374,8 +658,8 @@ public class ProductServiceImpl implements ProductService {
 
     @Override
     public ProductDto findById(String id) {
-        Optional<Product> producto = repository.findById(id);
-        return producto.map(this::enrichProductDto).orElse(null);
+        Product producto = catalogCache.findById(id, productId -> repository.findById(productId).orElse(null));
+        return producto != null ? enrichProductDto(producto) : null;
     }
 
     @Override
@@ -389,8 +673,14 @@ public class ProductServiceImpl implements ProductService {
             }
 
             Product product = mapper.mapToEntity(dto);
+            claimCodes(product);
             ensurePresentationIds(product);
+            product.refreshDisplayStock();
+            long stamp = catalogCache.stamp();
             product = repository.save(product);
+            catalogCache.put(product, stamp);
+            searchIndex.index(product);
+            dashboardCache.invalidate();
             return enrichProductDto(product);
         } catch (DuplicateRecordException e) {
             log.error("ProductServiceImpl -> save -> ERROR: {}", e.getMessage());
@@ -406,6 +696,9 @@ public class ProductServiceImpl implements ProductService {
         log.info("ProductServiceImpl -> deleteById");
         try {
             repository.deleteById(id);
+            catalogCache.invalidate(id);
+            searchIndex.remove(id);
+            dashboardCache.invalidate();
         } catch (EmptyResultDataAccessException e) {
             log.error("ProductServiceImpl -> deleteById -> ERROR: {}", e.getMessage());
             throw new ResourceNotFoundException(MessageConstants.RESOURCE_NOT_FOUND);
@@ -439,6 +732,7 @@ public class ProductServiceImpl implements ProductService {
         log.info("ProductServiceImpl -> updatePresent");
 
         // Cargar producto existente de la DB (fuente de verdad)
+        long stamp = catalogCache.stamp();
         Product product = repository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException(MessageConstants.RESOURCE_NOT_FOUND));
 
@@ -450,6 +744,14 @@ public class ProductServiceImpl implements ProductService {
         product.setProductCode(dto.getProductCode());
         product.setVatValue(dto.getVatValue());
         product.setVatType(dto.getVatType());
+        Update update = new Update()
+                .set("description", product.getDescription())
+                .set("saleType", product.getSaleType())
+                .set("brand", product.getBrand())
+                .set("category", product.getCategory())
+                .set("productCode", product.getProductCode())
+                .set("vatValue", product.getVatValue())
+                .set("vatType", product.getVatType());
 
         if (dto.getPresentations() != null) {
             // Reemplazar el array completo de presentaciones.
@@ -462,12 +764,17 @@ public class ProductServiceImpl implements ProductService {
                 }
             });
             product.setPresentations(presentations);
+            update.set("presentations", presentations);
             log.info("Presentaciones reemplazadas: {} en total", presentations.size());
             presentations.forEach(p ->
                     log.info("  -> id={}, barcode={}, label={}", p.getId(), p.getBarcode(), p.getLabel()));
         }
 
-        product = repository.save(product);
+        product.refreshDisplayStock();
+        update.set("displayStock", product.getDisplayStock());
+        product = updateFields(new Query(Criteria.where("_id").is(id)), update);
+        catalogCache.put(product, stamp);
+        searchIndex.index(product);
         log.info("Producto {} actualizado. Presentaciones guardadas:", product.getProductCode());
         if (product.getPresentations() != null) {
             product.getPresentations().forEach(p ->
@@ -478,7 +785,7 @@ public class ProductServiceImpl implements ProductService {
     }
 
     /**
-     * Enriquece un ProductDto con el displayStock calculado
+     * Actualiza una presentación y recalcula el displayStock guardado
      */
     @Override
     public com.co.jarvis.dto.ProductDto updatePresentation(
@@ -487,6 +794,7 @@ public class ProductServiceImpl implements ProductService {
         log.info("ProductServiceImpl -> updatePresentation: productId={}, presentationId={}",
                 productId, presentationId);
 
+        long stamp = catalogCache.stamp();
         Product product = repository.findById(productId)
                 .orElseThrow(() -> new com.co.jarvis.util.exception.ResourceNotFoundException(
                         "Producto no encontrado: " + productId));
@@ -516,10 +824,30 @@ public class ProductServiceImpl implements ProductService {
         log.info("Presentación {} actualizada: barcode={}, label={}, salePrice={}",
                 presentationId, target.getBarcode(), target.getLabel(), target.getSalePrice());
 
-        product = repository.save(product);
+        product.refreshDisplayStock();
+        Query query = new Query(Criteria.where("_id").is(productId).and("presentations.id").is(presentationId));
+        product = updateFields(query, new Update()
+                .set("presentations.$", target)
+                .set("displayStock", product.getDisplayStock()));
+        catalogCache.put(product, stamp);
+        searchIndex.index(product);
         return enrichProductDto(product);
     }
 
+    /**
+     * $set de los campos editados y devuelve el documento resultante. stock.quantity nunca se
+     * incluye: solo lo modifica StockService con $inc, y un save() del documento completo
+     * pisaría los movimientos concurrentes.
+     */
+    private Product updateFields(Query query, Update update) {
+        Product updated = mongoTemplate.findAndModify(query, update,
+                FindAndModifyOptions.options().returnNew(true), Product.class);
+        if (updated == null) {
+            throw new ResourceNotFoundException(MessageConstants.RESOURCE_NOT_FOUND);
+        }
+        return updated;
+    }
+
     /** Garantiza que cada presentación tenga un ID único antes de persistir. */
     private void ensurePresentationIds(Product product) {
         if (product.getPresentations() != null) {
@@ -531,135 +859,20 @@ public class ProductServiceImpl implements ProductService {
         }
     }
 
+    /**
+     * La forma del displayStock viene guardada en el producto y aquí se completa con la cantidad
+     * actual; solo se calcula entera para los documentos que aún no la tienen (antes del backfill).
+     */
     private ProductDto enrichProductDto(Product product) {
         ProductDto dto = mapper.mapToDto(product);
-        dto.setDisplayStock(computeDisplayStock(product));
+        dto.setDisplayStock(product.getDisplayStock() != null
+                ? DisplayStockCalculator.withQuantity(product.getDisplayStock(), product)
+                : computeDisplayStock(product));
         return dto;
     }
 
     @Override
     public DisplayStock computeDisplayStock(Product product) {
-        log.info("ProductServiceImpl -> computeDisplayStock");
-        
-        if (product == null || product.getStock() == null) {
-            return buildEmptyDisplayStock();
-        }
-
-        ESale saleType = product.getSaleType();
-        String kind = determineKind(saleType);
-        String unitBase = determineBaseUnit(kind, product.getStock().getUnitMeasure());
-        
-        // Convertir cantidad de stock a unidad base
-        BigDecimal qty = UnitConverter.toBase(
-            product.getStock().getQuantity() != null ? product.getStock().getQuantity() : BigDecimal.ZERO,
-            product.getStock().getUnitMeasure(),
-            unitBase
-        );
-        
-        // Si qty es negativo o cero, tratarlo como 0
-        if (qty.compareTo(BigDecimal.ZERO) < 0) {
-            qty = BigDecimal.ZERO;
-        }
-
-        // Si no es WEIGHT ni LONGITUDE, retornar stock simple
-        if (kind == null) {
-            return DisplayStock.builder()
-                .kind(null)
-                .packSize(null)
-                .packs(null)
-                .remainder(null)
-                .unit(unitBase)
-                .label(format("%s %s", qty.stripTrailingZeros().toPlainString(), unitBase))
-                .computedAt(Instant.now().toString())
-                .build();
-        }
-
-        // Buscar el packSize (mayor fixedAmount de presentaciones con isFixedAmount=true)
-        BigDecimal packSize = findLargestPackSize(product, unitBase);
-        
-        if (packSize == null || packSize.compareTo(BigDecimal.ZERO) <= 0) {
-            // No hay presentaciones fijas válidas
-            return DisplayStock.builder()
-                .kind(kind)
-                .packSize(null)
-                .packs(null)
-                .remainder(null)
-                .unit(unitBase)
-                .label(format("%s %s", qty.stripTrailingZeros().toPlainString(), unitBase))
-                .computedAt(Instant.now().toString())
-                .build();
-        }
-
-        // Calcular packs y remainder
-        int packs = qty.divide(packSize, 0, RoundingMode.DOWN).intValue();
-        BigDecimal remainder = qty.subtract(packSize.multiply(new BigDecimal(packs)));
-        remainder = UnitConverter.round(remainder, 3);
-
-        // Construir label
-        String noun = "WEIGHT".equals(kind) ? "bultos" : "rollos";
-        String label = format("%d %s + %s %s", 
-            packs, 
-            noun, 
-            remainder.stripTrailingZeros().toPlainString(), 
-            unitBase
-        );
-
-        return DisplayStock.builder()
-            .kind(kind)
-            .packSize(packSize)
-            .packs(packs)
-            .remainder(remainder)
-            .unit(unitBase)
-            .label(label)
-            .computedAt(Instant.now().toString())
-            .build();
-    }
-
-    private String determineKind(ESale saleType) {
-        if (saleType == null) {
-            return null;
-        }
-        return switch (saleType) {
-            case WEIGHT -> "WEIGHT";
-            case LONGITUDE -> "LONGITUDE";
-            default -> null;
-        };
-    }
-
-    private String determineBaseUnit(String kind, com.co.jarvis.enums.UnitMeasure stockUnit) {
-        if (kind == null) {
-            return stockUnit != null ? stockUnit.getSigma() : "";
-        }
-        return switch (kind) {
-            case "WEIGHT" -> "kg";
-            case "LONGITUDE" -> "cm";
-            default -> stockUnit != null ? stockUnit.getSigma() : "";
-        };
-    }
-
-    private BigDecimal findLargestPackSize(Product product, String unitBase) {
-        if (product.getPresentations() == null || product.getPresentations().isEmpty()) {
-            return null;
-        }
-
-        return product.getPresentations().stream()
-            .filter(p -> Boolean.TRUE.equals(p.getIsFixedAmount()))
-            .filter(p -> p.getFixedAmount() != null && p.getFixedAmount().compareTo(BigDecimal.ZERO) > 0)
-            .map(p -> UnitConverter.toBase(p.getFixedAmount(), p.getUnitMeasure(), unitBase))
-            .filter(v -> v.compareTo(BigDecimal.ZERO) > 0)
-            .max(Comparator.naturalOrder())
-            .orElse(null);
-    }
-
-    private DisplayStock buildEmptyDisplayStock() {
-        return DisplayStock.builder()
-            .kind(null)
-            .packSize(null)
-            .packs(null)
-            .remainder(null)
-            .unit("")
-            .label("0")
-            .computedAt(Instant.now().toString())
-            .build();
+        return DisplayStockCalculator.compute(product);
     }
 }
@@ -8,15 +8,20 @@ import com.co.jarvis.dto.PurchaseInvoiceDto;
 import com.co.jarvis.dto.PurchaseInvoiceItemDto;
 import com.co.jarvis.dto.PurchaseLastCostInfo;
 import com.co.jarvis.entity.Presentation;
+import com.co.jarvis.entity.PresentationCost;
+import com.co.jarvis.entity.PresentationCostEntry;
 import com.co.jarvis.entity.Product;
 import com.co.jarvis.entity.PurchaseInvoice;
 import com.co.jarvis.entity.PurchaseInvoiceItem;
 import com.co.jarvis.enums.ESale;
 import com.co.jarvis.enums.EPurchaseInvoiceStatus;
-import com.co.jarvis.repository.ProductRepository;
 import com.co.jarvis.repository.PurchaseInvoiceRepository;
+import com.co.jarvis.service.PresentationCostService;
+import com.co.jarvis.service.ProductLookupService;
 import com.co.jarvis.service.PurchaseInvoiceService;
+import com.co.jarvis.service.StockService;
 import com.co.jarvis.util.exception.ResourceNotFoundException;
+import com.co.jarvis.util.ProductCatalogCache;
 import com.co.jarvis.util.exception.SaveRecordException;
 import com.co.jarvis.util.exception.DeleteRecordException;
 import com.co.jarvis.util.mappers.GenericMapper;
@@ -25,13 +30,11 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
 import org.springframework.data.mongodb.core.MongoTemplate;
-import org.springframework.data.mongodb.core.aggregation.Aggregation;
-import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
-import org.springframework.data.mongodb.core.aggregation.AggregationResults;
 import org.springframework.data.mongodb.core.query.Criteria;
-import org.bson.types.Decimal128;
 import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -41,6 +44,7 @@ import java.time.LocalDate;
 import java.time.OffsetDateTime;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -55,10 +59,19 @@ public class PurchaseInvoiceServiceImpl implements PurchaseInvoiceService {
     private PurchaseInvoiceRepository purchaseInvoiceRepository;
 
     @Autowired
-    private ProductRepository productRepository;
+    private MongoTemplate mongoTemplate;
 
     @Autowired
-    private MongoTemplate mongoTemplate;
+    private ProductCatalogCache catalogCache;
+
+    @Autowired
+    private PresentationCostService presentationCostService;
+
+    @Autowired
+    private ProductLookupService productLookupService;
+
+    @Autowired
+    private StockService stockService;
 
     GenericMapper<PurchaseInvoice, PurchaseInvoiceDto> mapper = 
         new GenericMapper<>(PurchaseInvoice.class, PurchaseInvoiceDto.class);
@@ -137,6 +150,7 @@ public class PurchaseInvoiceServiceImpl implements PurchaseInvoiceService {
 
             // Guardar factura de compra
             invoice = purchaseInvoiceRepository.save(invoice);
+            presentationCostService.recordInvoice(invoice);
 
             // Actualizar stock de productos
             updateStockForCreation(invoice.getItems());
@@ -185,6 +199,7 @@ public class PurchaseInvoiceServiceImpl implements PurchaseInvoiceService {
 
             // Guardar factura actualizada
             updatedInvoice = purchaseInvoiceRepository.save(updatedInvoice);
+            presentationCostService.recordInvoice(updatedInvoice);
 
             log.info("PurchaseInvoiceServiceImpl -> update -> Factura actualizada con ID: {}", id);
             return mapper.mapToDto(updatedInvoice);
@@ -203,6 +218,7 @@ public class PurchaseInvoiceServiceImpl implements PurchaseInvoiceService {
         log.info("PurchaseInvoiceServiceImpl -> deleteById: {}", id);
         try {
             purchaseInvoiceRepository.deleteById(id);
+            presentationCostService.removeInvoice(id);
         } catch (EmptyResultDataAccessException e) {
             log.error("PurchaseInvoiceServiceImpl -> deleteById -> ERROR: {}", e.getMessage());
             throw new ResourceNotFoundException(MessageConstants.RESOURCE_NOT_FOUND);
@@ -256,6 +272,7 @@ public class PurchaseInvoiceServiceImpl implements PurchaseInvoiceService {
 
             // Guardar la factura actualizada
             invoice = purchaseInvoiceRepository.save(invoice);
+            presentationCostService.recordInvoice(invoice);
 
             // Actualizar stock de productos para los nuevos items
             updateStockForCreation(newItemEntities);
@@ -373,8 +390,16 @@ public class PurchaseInvoiceServiceImpl implements PurchaseInvoiceService {
             throw new SaveRecordException("No se proporcionaron items para actualizar el stock");
         }
 
+        Map<String, Product> products = productLookupService.findByKeys(
+            items.stream().map(PurchaseInvoiceServiceImpl::productKey).filter(Objects::nonNull).toList());
+        // Una sola instancia por producto aunque un ítem lo traiga por id y otro por código
+        Map<String, Product> touched = new LinkedHashMap<>();
+        Map<String, BigDecimal> deltas = new LinkedHashMap<>();
+        // Último costo por presentación: producto -> código de barras -> costo
+        Map<String, Map<String, BigDecimal>> costs = new LinkedHashMap<>();
+
         for (PurchaseInvoiceItem item : items) {
-            Product product = findProductByItem(item);
+            Product product = resolveProduct(item, products, touched);
             
             if (product == null) {
                 log.warn("Producto no encontrado para item: {}", item.getProductId());
@@ -384,27 +409,39 @@ public class PurchaseInvoiceServiceImpl implements PurchaseInvoiceService {
                 );
             }
 
-            // Obtener stock actual antes de incrementar
-            BigDecimal stockAntes = product.getStock() != null ? product.getStock().getQuantity() : BigDecimal.ZERO;
-            log.info("Stock ANTES para producto {}: {}", product.getProductCode(), stockAntes);
-
             // Calcular cantidad real de stock a incrementar
             BigDecimal stockQuantity = calculateStockQuantity(product, item);
+            deltas.merge(product.getId(), stockQuantity, BigDecimal::add);
 
-            // Incrementar stock
-            product.increaseStock(stockQuantity);
-            product.updatePresentationCost(item.getPresentationBarcode(), item.getUnitCost());
-            
-            // Obtener stock después de incrementar
-            BigDecimal stockDespues = product.getStock().getQuantity();
-            log.info("Stock DESPUÉS para producto {}: {} (incrementó: {})", 
-                product.getProductCode(), stockDespues, stockQuantity);
-            
-            productRepository.save(product);
+            // Valida el costo y confirma que la presentación existe antes de programar el $set
+            if (product.updatePresentationCost(item.getPresentationBarcode(), item.getUnitCost())) {
+                costs.computeIfAbsent(product.getId(), id -> new LinkedHashMap<>())
+                        .put(item.getPresentationBarcode(), item.getUnitCost());
+            }
             
-            log.info("Stock incrementado para producto {}: +{} (cantidad ingresada: {}, stock final: {})", 
-                product.getProductCode(), stockQuantity, item.getQuantity(), stockDespues);
+            log.info("Stock a incrementar para producto {}: +{} (cantidad ingresada: {})", 
+                product.getProductCode(), stockQuantity, item.getQuantity());
+        }
+
+        // Solo se escriben los campos que cambian: un save() del producto completo pisaría
+        // los $inc de stock que las cajas hagan mientras tanto
+        updatePresentationCosts(costs);
+        stockService.applyDeltas(deltas);
+    }
+
+    /**
+     * Fija el costPrice de cada presentación con un $set posicional por producto y código de barras.
+     */
+    private void updatePresentationCosts(Map<String, Map<String, BigDecimal>> costs) {
+        if (costs.isEmpty()) {
+            return;
         }
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class);
+        costs.forEach((productId, byBarcode) -> byBarcode.forEach((barcode, cost) ->
+                bulk.updateOne(new Query(Criteria.where("_id").is(productId).and("presentations.barcode").is(barcode)),
+                        new Update().set("presentations.$.costPrice", cost))));
+        bulk.execute();
+        catalogCache.invalidateAll(costs.keySet());
     }
 
     /**
@@ -502,10 +539,20 @@ public class PurchaseInvoiceServiceImpl implements PurchaseInvoiceService {
             .map(itemMapper::mapToEntity)
             .collect(Collectors.toList());
 
-        // Crear mapas para facilitar comparaciones: clave = productId o productCode
+        // Todos los productos de ambas versiones, leídos una sola vez
+        List<String> keys = new ArrayList<>();
+        if (originalItems != null) {
+            originalItems.stream().map(PurchaseInvoiceServiceImpl::productKey).forEach(keys::add);
+        }
+        newItems.stream().map(PurchaseInvoiceServiceImpl::productKey).forEach(keys::add);
+        Map<String, Product> products = productLookupService.findByKeys(keys);
+        // Productos encontrados por su id: un ítem por id y otro por código suman al mismo
+        Map<String, Product> productsById = new HashMap<>();
+
+        // Crear mapas para facilitar comparaciones: clave = id del producto (o la clave del ítem si no existe)
         // Los mapas ahora contienen las cantidades reales de stock (considerando fixedAmount)
-        Map<String, BigDecimal> originalQuantities = buildStockQuantityMap(originalItems);
-        Map<String, BigDecimal> newQuantities = buildStockQuantityMap(newItems);
+        Map<String, BigDecimal> originalQuantities = buildStockQuantityMap(originalItems, products, productsById);
+        Map<String, BigDecimal> newQuantities = buildStockQuantityMap(newItems, products, productsById);
 
         // Obtener todas las claves únicas (productos afectados)
         Map<String, BigDecimal> allKeys = new HashMap<>();
@@ -513,6 +560,7 @@ public class PurchaseInvoiceServiceImpl implements PurchaseInvoiceService {
         allKeys.putAll(newQuantities);
 
         // Procesar cada producto afectado
+        Map<String, BigDecimal> deltas = new LinkedHashMap<>();
         for (String key : allKeys.keySet()) {
             BigDecimal originalQty = originalQuantities.getOrDefault(key, BigDecimal.ZERO);
             BigDecimal newQty = newQuantities.getOrDefault(key, BigDecimal.ZERO);
@@ -524,34 +572,29 @@ public class PurchaseInvoiceServiceImpl implements PurchaseInvoiceService {
             }
 
             // Buscar el producto
-            Product product = findProductByKey(key);
+            Product product = productsById.get(key);
             if (product == null) {
                 log.warn("Producto no encontrado para clave: {}", key);
                 throw new ResourceNotFoundException("Producto no encontrado: " + key);
             }
 
-            // Ajustar stock según la diferencia (ya está calculada con fixedAmount)
-            if (difference.compareTo(BigDecimal.ZERO) > 0) {
-                // Incremento: se agregó más cantidad o es un producto nuevo
-                product.increaseStock(difference);
-                log.info("Stock incrementado para producto {}: +{}", 
-                    product.getProductCode(), difference);
-            } else {
-                // Decremento: se redujo la cantidad o se eliminó el producto
-                product.reduceStock(difference.abs());
-                log.info("Stock reducido para producto {}: -{}", 
-                    product.getProductCode(), difference.abs());
-            }
-
-            productRepository.save(product);
+            // Positiva: se agregó cantidad o un producto nuevo; negativa: se redujo o eliminó
+            deltas.put(product.getId(), difference);
+            log.info("Ajuste de stock para producto {}: {}", product.getProductCode(), difference);
         }
+
+        // $inc por producto en lugar de save() del documento completo
+        stockService.applyDeltas(deltas);
     }
 
     /**
-     * Construye un mapa de cantidades de stock reales por producto (key = productId o productCode).
+     * Construye un mapa de cantidades de stock reales por producto (key = id del producto, o
+     * productId/productCode del ítem si el producto no existe).
      * Considera el fixedAmount para productos con tipo de venta diferente a UNIT.
      */
-    private Map<String, BigDecimal> buildStockQuantityMap(List<PurchaseInvoiceItem> items) {
+    private Map<String, BigDecimal> buildStockQuantityMap(List<PurchaseInvoiceItem> items,
+                                                          Map<String, Product> products,
+                                                          Map<String, Product> productsById) {
         Map<String, BigDecimal> map = new HashMap<>();
         
         if (items == null) {
@@ -559,11 +602,9 @@ public class PurchaseInvoiceServiceImpl implements PurchaseInvoiceService {
         }
 
         for (PurchaseInvoiceItem item : items) {
-            String key = item.getProductId() != null ? 
-                item.getProductId() : item.getProductCode();
-            
             // Buscar el producto para calcular la cantidad real de stock
-            Product product = findProductByKey(key);
+            Product product = resolveProduct(item, products, productsById);
+            String key = product != null ? product.getId() : productKey(item);
             BigDecimal stockQuantity;
             
             if (product != null) {
@@ -581,20 +622,21 @@ public class PurchaseInvoiceServiceImpl implements PurchaseInvoiceService {
     }
 
     /**
-     * Busca un producto por item (primero por productId, luego por productCode)
+     * Clave del producto de un item: productId o, si no viene, productCode
      */
-    private Product findProductByItem(PurchaseInvoiceItem item) {
-        if (item.getProductId() != null) {
-            return productRepository.findById(Objects.requireNonNull(item.getProductId())).orElse(null);
-        } else if (item.getProductCode() != null) {
-            // Buscar por productCode usando query
-            List<Product> products = productRepository.findAll();
-            return products.stream()
-                .filter(p -> item.getProductCode().equals(p.getProductCode()))
-                .findFirst()
-                .orElse(null);
-        }
-        return null;
+    private static String productKey(PurchaseInvoiceItem item) {
+        return item.getProductId() != null ? item.getProductId() : item.getProductCode();
+    }
+
+    /**
+     * Producto del ítem normalizado por id: la primera instancia encontrada de cada producto se
+     * registra en productsById y se reutiliza para los demás ítems que lo referencien.
+     */
+    private static Product resolveProduct(PurchaseInvoiceItem item, Map<String, Product> products,
+                                          Map<String, Product> productsById) {
+        String key = productKey(item);
+        Product product = key != null ? products.get(key) : null;
+        return product != null ? productsById.computeIfAbsent(product.getId(), id -> product) : null;
     }
 
     /**
@@ -677,54 +719,50 @@ public class PurchaseInvoiceServiceImpl implements PurchaseInvoiceService {
     public PurchaseLastCostInfo getLastCost(String presentationId) {
         log.info("PurchaseInvoiceServiceImpl -> getLastCost: presentationId={}", presentationId);
 
-        Sort sort = Sort.by(Sort.Direction.DESC, "invoiceDate", "createdAt");
-        List<PurchaseInvoice> invoices = purchaseInvoiceRepository
-                .findByItemPresentationBarcodeWithCost(presentationId, sort);
+        PresentationCost cost = presentationCostService.findByBarcode(presentationId);
+        if (cost == null) {
+            log.info("getLastCost -> No se encontró historial de costo para presentationId={}", presentationId);
+            return null;
+        }
+        PurchaseLastCostInfo info = lastCost(presentationId, cost.getHistory());
+        if (info == null && !presentationCostService.covers(cost, null)) {
+            // Ninguna compra reciente tiene costo: se buscan las anteriores a la ventana guardada
+            info = lastCost(presentationId, entriesFromInvoices(presentationId));
+        }
+        if (info == null) {
+            log.info("getLastCost -> No se encontró historial de costo para presentationId={}", presentationId);
+        }
+        return info;
+    }
 
-        for (PurchaseInvoice invoice : invoices) {
-            for (PurchaseInvoiceItem item : invoice.getItems()) {
-                if (!presentationId.equals(item.getPresentationBarcode())) continue;
-
-                // Fallback: facturas antiguas pueden no tener unitTotalCost calculado
-                BigDecimal effectiveUnitCost = item.getUnitCost() != null
-                        ? item.getUnitCost() : BigDecimal.ZERO;
-                BigDecimal effectiveUnitTotalCost = item.getUnitTotalCost() != null
-                        ? item.getUnitTotalCost() : effectiveUnitCost;
-
-                // Ignorar ítems sin ningún costo registrado
-                if (effectiveUnitCost.compareTo(BigDecimal.ZERO) == 0
-                        && effectiveUnitTotalCost.compareTo(BigDecimal.ZERO) == 0) continue;
-
-                BigDecimal vatPerUnit = item.getVatAmount() != null
-                        && item.getQuantity() != null
-                        && item.getQuantity().compareTo(BigDecimal.ZERO) > 0
-                    ? item.getVatAmount().divide(item.getQuantity(), 2, RoundingMode.HALF_UP)
-                    : BigDecimal.ZERO;
-
-                BigDecimal freightPerUnit = item.getFreightAmount() != null
-                        && item.getQuantity() != null
-                        && item.getQuantity().compareTo(BigDecimal.ZERO) > 0
-                    ? item.getFreightAmount().divide(item.getQuantity(), 2, RoundingMode.HALF_UP)
-                    : BigDecimal.ZERO;
-
-                return PurchaseLastCostInfo.builder()
-                        .presentationId(presentationId)
-                        .presentationBarcode(item.getPresentationBarcode())
-                        .productDescription(item.getDescription())
-                        .lastUnitCost(effectiveUnitCost)
-                        .lastVatRate(item.getVatRate())
-                        .lastVatPerUnit(vatPerUnit)
-                        .lastFreightPerUnit(freightPerUnit)
-                        .lastUnitTotalCost(effectiveUnitTotalCost)
-                        .lastInvoiceId(invoice.getId())
-                        .lastInvoiceNumber(invoice.getInvoiceNumber())
-                        .lastInvoiceDate(invoice.getInvoiceDate())
-                        .lastSupplierId(invoice.getSupplier() != null ? invoice.getSupplier().getId() : null)
-                        .lastSupplierName(invoice.getSupplier() != null ? invoice.getSupplier().getName() : null)
-                        .build();
-            }
+    private PurchaseLastCostInfo lastCost(String presentationId, List<PresentationCostEntry> entries) {
+        for (PresentationCostEntry entry : entries) {
+            // Fallback: facturas antiguas pueden no tener unitTotalCost calculado
+            BigDecimal effectiveUnitCost = entry.getUnitCost() != null
+                    ? entry.getUnitCost() : BigDecimal.ZERO;
+            BigDecimal effectiveUnitTotalCost = entry.getUnitTotalCost() != null
+                    ? entry.getUnitTotalCost() : effectiveUnitCost;
+
+            // Ignorar ítems sin ningún costo registrado
+            if (effectiveUnitCost.compareTo(BigDecimal.ZERO) == 0
+                    && effectiveUnitTotalCost.compareTo(BigDecimal.ZERO) == 0) continue;
+
+            return PurchaseLastCostInfo.builder()
+                    .presentationId(presentationId)
+                    .presentationBarcode(presentationId)
+                    .productDescription(entry.getDescription())
+                    .lastUnitCost(effectiveUnitCost)
+                    .lastVatRate(entry.getVatRate())
+                    .lastVatPerUnit(perUnit(entry.getVatAmount(), entry.getQuantity()))
+                    .lastFreightPerUnit(perUnit(entry.getFreightAmount(), entry.getQuantity()))
+                    .lastUnitTotalCost(effectiveUnitTotalCost)
+                    .lastInvoiceId(entry.getInvoiceId())
+                    .lastInvoiceNumber(entry.getInvoiceNumber())
+                    .lastInvoiceDate(entry.getInvoiceDate())
+                    .lastSupplierId(entry.getSupplierId())
+                    .lastSupplierName(entry.getSupplierName())
+                    .build();
         }
-        log.info("getLastCost -> No se encontró historial de costo para presentationId={}", presentationId);
         return null;
     }
 
@@ -733,66 +771,78 @@ public class PurchaseInvoiceServiceImpl implements PurchaseInvoiceService {
         log.info("PurchaseInvoiceServiceImpl -> getCostHistory: presentationId={}, fromDate={}, toDate={}",
                 presentationId, fromDate, toDate);
 
-        Sort sort = Sort.by(Sort.Direction.DESC, "invoiceDate", "createdAt");
-        List<PurchaseInvoice> invoices = purchaseInvoiceRepository
-                .findByItemPresentationBarcodeWithCost(presentationId, sort);
+        PresentationCost cost = presentationCostService.findByBarcode(presentationId);
+        List<PresentationCostEntry> entries;
+        if (cost == null) {
+            entries = List.of();
+        } else if (presentationCostService.covers(cost, fromDate)) {
+            entries = cost.getHistory();
+        } else {
+            // El rango pide compras anteriores a la ventana guardada
+            entries = entriesFromInvoices(presentationId);
+        }
 
         List<CostHistoryEntry> result = new ArrayList<>();
-
-        for (PurchaseInvoice invoice : invoices) {
+        for (PresentationCostEntry entry : entries) {
             // Filtro por fecha
-            if (fromDate != null && invoice.getInvoiceDate() != null
-                    && invoice.getInvoiceDate().isBefore(fromDate)) {
+            if (fromDate != null && entry.getInvoiceDate() != null
+                    && entry.getInvoiceDate().isBefore(fromDate)) {
                 continue;
             }
-            if (toDate != null && invoice.getInvoiceDate() != null
-                    && invoice.getInvoiceDate().isAfter(toDate)) {
+            if (toDate != null && entry.getInvoiceDate() != null
+                    && entry.getInvoiceDate().isAfter(toDate)) {
                 continue;
             }
-
-            for (PurchaseInvoiceItem item : invoice.getItems()) {
-                if (presentationId.equals(item.getPresentationBarcode())
-                        && item.getUnitTotalCost() != null) {
-                    result.add(CostHistoryEntry.builder()
-                            .invoiceId(invoice.getId())
-                            .invoiceNumber(invoice.getInvoiceNumber())
-                            .invoiceDate(invoice.getInvoiceDate())
-                            .createdAt(invoice.getCreatedAt())
-                            .supplierId(invoice.getSupplier() != null ? invoice.getSupplier().getId() : null)
-                            .supplierName(invoice.getSupplier() != null ? invoice.getSupplier().getName() : null)
-                            .presentationId(presentationId)
-                            .presentationBarcode(item.getPresentationBarcode())
-                            .productDescription(item.getDescription())
-                            .quantity(item.getQuantity())
-                            .unitCost(item.getUnitCost())
-                            .vatRate(item.getVatRate())
-                            .vatAmount(item.getVatAmount())
-                            .freightAmount(item.getFreightAmount())
-                            .unitTotalCost(item.getUnitTotalCost())
-                            .build());
-                }
+            if (entry.getUnitTotalCost() == null) {
+                continue;
             }
+            result.add(CostHistoryEntry.builder()
+                    .invoiceId(entry.getInvoiceId())
+                    .invoiceNumber(entry.getInvoiceNumber())
+                    .invoiceDate(entry.getInvoiceDate())
+                    .createdAt(entry.getCreatedAt())
+                    .supplierId(entry.getSupplierId())
+                    .supplierName(entry.getSupplierName())
+                    .presentationId(presentationId)
+                    .presentationBarcode(presentationId)
+                    .productDescription(entry.getDescription())
+                    .quantity(entry.getQuantity())
+                    .unitCost(entry.getUnitCost())
+                    .vatRate(entry.getVatRate())
+                    .vatAmount(entry.getVatAmount())
+                    .freightAmount(entry.getFreightAmount())
+                    .unitTotalCost(entry.getUnitTotalCost())
+                    .build());
         }
         log.info("getCostHistory -> {} entradas encontradas para presentationId={}", result.size(), presentationId);
         return result;
     }
 
     /**
-     * Busca un producto por clave (puede ser productId o productCode)
+     * Historial completo de la presentación leído de las facturas, de la compra más reciente
+     * a la más antigua. Solo para consultas que van más atrás que PRESENTATION_COSTS.
      */
-    private Product findProductByKey(String key) {
-        // Intentar buscar por ID primero
-        Optional<Product> productById = productRepository.findById(key);
-        if (productById.isPresent()) {
-            return productById.get();
-        }
-
-        // Si no se encuentra por ID, buscar por productCode
-        List<Product> products = productRepository.findAll();
-        return products.stream()
-            .filter(p -> key.equals(p.getProductCode()))
-            .findFirst()
-            .orElse(null);
+    private List<PresentationCostEntry> entriesFromInvoices(String presentationId) {
+        Sort sort = Sort.by(Sort.Direction.DESC, "invoiceDate", "createdAt");
+        List<PurchaseInvoice> invoices = purchaseInvoiceRepository
+                .findByItemPresentationBarcodeWithCost(presentationId, sort);
+
+        List<PresentationCostEntry> entries = new ArrayList<>();
+        for (PurchaseInvoice invoice : invoices) {
+            List<PurchaseInvoiceItem> items = invoice.getItems();
+            for (int line = 0; line < items.size(); line++) {
+                if (presentationId.equals(items.get(line).getPresentationBarcode())) {
+                    entries.add(PresentationCostEntry.of(invoice, items.get(line), line));
+                }
+            }
+        }
+        return entries;
+    }
+
+    private static BigDecimal perUnit(BigDecimal amount, BigDecimal quantity) {
+        return amount != null && quantity != null && quantity.compareTo(BigDecimal.ZERO) > 0
+                ? amount.divide(quantity, 2, RoundingMode.HALF_UP)
+                : BigDecimal.ZERO;
     }
 
     @Override
@@ -803,98 +853,38 @@ public class PurchaseInvoiceServiceImpl implements PurchaseInvoiceService {
             return List.of();
         }
 
-        // Paso 1: Agregación para obtener último costo de facturas de compra
-        List<AggregationOperation> operations = new ArrayList<>();
-
-        // $match: filtrar facturas con items que tengan alguno de los barcodes
-        operations.add(Aggregation.match(
-            Criteria.where("items.presentationBarcode").in(barcodes)
-        ));
-
-        // $unwind: desanidar items
-        operations.add(Aggregation.unwind("items"));
-
-        // $match: filtrar solo items con barcodes en la lista
-        operations.add(Aggregation.match(
-            Criteria.where("items.presentationBarcode").in(barcodes)
-        ));
-
-        // $sort: ordenar por fecha de factura descendente
-        operations.add(Aggregation.sort(
-            Sort.by(Sort.Direction.DESC, "invoiceDate", "createdAt")
-        ));
-
-        // $group: agrupar por barcode, tomar el primero (más reciente)
-        operations.add(Aggregation.group("items.presentationBarcode")
-            .first("items.presentationBarcode").as("barcode")
-            .first("items.description").as("productDescription")
-            .first("items.unitCost").as("unitCost")
-            .first("items.vatRate").as("vatRate")
-            .first("items.vatAmount").as("vatAmount")
-            .first("items.quantity").as("quantity")
-            .first("items.freightAmount").as("freightAmount")
-            .first("items.unitTotalCost").as("unitTotalCost")
-            .first("id").as("invoiceId")
-            .first("invoiceNumber").as("invoiceNumber")
-            .first("invoiceDate").as("invoiceDate")
-            .first("supplier.id").as("supplierId")
-            .first("supplier.name").as("supplierName")
-        );
-
-        Aggregation aggregation = Aggregation.newAggregation(operations);
-        AggregationResults<Map> results = mongoTemplate.aggregate(
-            aggregation, "PURCHASE_INVOICES", Map.class
-        );
-
-        // Mapear resultados a BulkLastCostItem con source PURCHASE_INVOICE
+        // Paso 1: último costo de compra desde la proyección PRESENTATION_COSTS (una lectura por _id)
         Map<String, BulkLastCostItem> resultMap = new HashMap<>();
-        for (Map doc : results.getMappedResults()) {
-            @SuppressWarnings("unchecked")
-            Map<String, Object> map = doc;
-            String barcode = (String) map.get("barcode");
-           
-            if (barcode != null) {
-                BigDecimal unitCost = getDecimal(map.get("unitCost"));
-                BigDecimal vatRate = getDecimal(map.get("vatRate"));
-                BigDecimal vatAmount = getDecimal(map.get("vatAmount"));
-                BigDecimal quantity = getDecimal(map.get("quantity"));
-                BigDecimal freightAmount = getDecimal(map.get("freightAmount"));
-                BigDecimal unitTotalCost = getDecimal(map.get("unitTotalCost"));
-
-                BigDecimal vatPerUnit = (vatAmount != null && quantity != null && quantity.compareTo(BigDecimal.ZERO) > 0)
-                    ? vatAmount.divide(quantity, 2, RoundingMode.HALF_UP)
-                    : BigDecimal.ZERO;
-                BigDecimal freightPerUnit = (freightAmount != null && quantity != null && quantity.compareTo(BigDecimal.ZERO) > 0)
-                    ? freightAmount.divide(quantity, 2, RoundingMode.HALF_UP)
-                    : BigDecimal.ZERO;
-
-                // Fallback: si unitTotalCost no fue guardado, recalcular desde componentes
-                if (unitTotalCost == null || unitTotalCost.compareTo(BigDecimal.ZERO) == 0) {
-                    BigDecimal base = unitCost != null ? unitCost : BigDecimal.ZERO;
-                    unitTotalCost = base.add(vatPerUnit).add(freightPerUnit);
-                }
-
-                LocalDate invoiceDate = (LocalDate) map.get("invoiceDate");
-                String invoiceDateStr = invoiceDate != null ? invoiceDate.toString() : null;
-
-                resultMap.put(barcode, new BulkLastCostItem(
-                    barcode,
-                    barcode,
-                    (String) map.get("productDescription"),
-                    unitCost != null ? unitCost.doubleValue() : 0,
-                    vatRate != null ? vatRate.doubleValue() : 0,
-                    vatPerUnit.doubleValue(),
-                    freightPerUnit.doubleValue(),
-                    unitTotalCost != null ? unitTotalCost.doubleValue() : 0,
-                    (String) map.get("invoiceId"),
-                    (String) map.get("invoiceNumber"),
-                    invoiceDateStr,
-                    (String) map.get("supplierId"),
-                    (String) map.get("supplierName"),
-                    CostSource.PURCHASE_INVOICE
-                ));
+        presentationCostService.findLatest(barcodes).forEach((barcode, entry) -> {
+            BigDecimal unitCost = entry.getUnitCost();
+            BigDecimal vatRate = entry.getVatRate();
+            BigDecimal unitTotalCost = entry.getUnitTotalCost();
+            BigDecimal vatPerUnit = perUnit(entry.getVatAmount(), entry.getQuantity());
+            BigDecimal freightPerUnit = perUnit(entry.getFreightAmount(), entry.getQuantity());
+
+            // Fallback: si unitTotalCost no fue guardado, recalcular desde componentes
+            if (unitTotalCost == null || unitTotalCost.compareTo(BigDecimal.ZERO) == 0) {
+                BigDecimal base = unitCost != null ? unitCost : BigDecimal.ZERO;
+                unitTotalCost = base.add(vatPerUnit).add(freightPerUnit);
             }
-        }
+
+            resultMap.put(barcode, new BulkLastCostItem(
+                barcode,
+                barcode,
+                entry.getDescription(),
+                unitCost != null ? unitCost.doubleValue() : 0,
+                vatRate != null ? vatRate.doubleValue() : 0,
+                vatPerUnit.doubleValue(),
+                freightPerUnit.doubleValue(),
+                unitTotalCost.doubleValue(),
+                entry.getInvoiceId(),
+                entry.getInvoiceNumber(),
+                entry.getInvoiceDate() != null ? entry.getInvoiceDate().toString() : null,
+                entry.getSupplierId(),
+                entry.getSupplierName(),
+                CostSource.PURCHASE_INVOICE
+            ));
+        });
 
         // Paso 2: Fallback a Product.costPrice para barcodes sin historial
         List<String> barcodesWithoutHistory = barcodes.stream()
@@ -942,19 +932,4 @@ public class PurchaseInvoiceServiceImpl implements PurchaseInvoiceService {
         log.info("bulkGetLastCost -> {} resultados encontrados", finalResult.size());
         return finalResult;
     }
-
-    private BigDecimal getDecimal(Object value) {
-        if (value == null) return null;
-        if (value instanceof BigDecimal) return (BigDecimal) value;
-        // MongoDB devuelve Decimal128 para campos BigDecimal en agregaciones
-        if (value instanceof Decimal128) return ((Decimal128) value).bigDecimalValue();
-        if (value instanceof Double) return BigDecimal.valueOf((Double) value);
-        if (value instanceof Integer) return BigDecimal.valueOf((Integer) value);
-        if (value instanceof Long) return BigDecimal.valueOf((Long) value);
-        // Números almacenados como String en MongoDB
-        if (value instanceof String) {
-            try { return new BigDecimal((String) value); } catch (NumberFormatException e) { return null; }
-        }
-        return null;
-    }
 }
@@ -10,21 +10,26 @@ import com.co.jarvis.enums.EStatus;
 import com.co.jarvis.enums.EStatusOrder;
 import com.co.jarvis.enums.EVat;
 import com.co.jarvis.repository.BillingRepository;
-import com.co.jarvis.repository.ProductRepository;
 import com.co.jarvis.dto.UseCreditRequest;
 import com.co.jarvis.service.*;
 import com.co.jarvis.entity.Product;
 import com.co.jarvis.entity.Presentation;
 import com.co.jarvis.enums.ESale;
 import com.co.jarvis.dto.batch.BatchSaleRequest;
+import com.co.jarvis.dto.StockLine;
 import com.co.jarvis.util.DateTimeUtil;
+import com.co.jarvis.util.MongoTransactionExecutor;
 import com.co.jarvis.util.constants.BatchConstants;
 import com.co.jarvis.util.exception.*;
 import com.co.jarvis.util.mappers.GenericMapper;
 import com.co.jarvis.util.mensajes.MessageConstants;
+import com.co.jarvis.util.reports.EscPosTicketRenderer;
 import com.co.jarvis.util.reports.ReportExporter;
 import lombok.extern.slf4j.Slf4j;
 import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JasperPrint;
+import org.bson.Document;
+import org.bson.types.Decimal128;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -34,18 +39,21 @@ import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 
 import java.io.FileNotFoundException;
-import java.lang.NumberFormatException;
+import java.io.OutputStream;
 import java.math.BigDecimal;
 import java.time.LocalTime;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -76,6 +84,9 @@ public class SaleServiceImpl implements SaleService {
     @Autowired
     private ReportExporter reportExporter;
 
+    @Autowired
+    private EscPosTicketRenderer escPosTicketRenderer;
+
     @Autowired
     private MongoTemplate mongoTemplate;
 
@@ -86,10 +97,10 @@ public class SaleServiceImpl implements SaleService {
     private InventoryService inventoryService;
 
     @Autowired
-    private com.co.jarvis.repository.PreSaleRepository preSaleRepository;
+    private StockService stockService;
 
     @Autowired
-    private ProductRepository productRepository;
+    private com.co.jarvis.repository.PreSaleRepository preSaleRepository;
 
     @Autowired
     private ClientAccountService clientAccountService;
@@ -103,6 +114,15 @@ public class SaleServiceImpl implements SaleService {
     @Autowired
     private com.co.jarvis.util.BankAccountHelper bankAccountHelper;
 
+    @Autowired
+    private MongoTransactionExecutor transactionExecutor;
+
+    @Autowired
+    private BillingNumberService billingNumberService;
+
+    @Autowired
+    private CashLedgerService cashLedgerService;
+
     GenericMapper<Billing, BillingDto> mapper
             = new GenericMapper<>(Billing.class, BillingDto.class);
 
@@ -132,11 +152,6 @@ public class SaleServiceImpl implements SaleService {
     public BillingDto save(BillingDto dto) {
         log.info("SaleServiceImpl -> save");
         try {
-            Billing billing = repository.findByBillNumber(dto.getBillNumber());
-            if (billing != null) {
-                throw new DuplicateRecordException(MessageConstants.DUPLICATE_RECORD_ERROR);
-            }
-
             // Mixed payments handling
             if (dto.getSaleType() == EPaymentType.CREDITO) {
                 dto.setReceivedValue(BigDecimal.ZERO);
@@ -156,20 +171,20 @@ public class SaleServiceImpl implements SaleService {
 
                 for (PaymentEntryDto p : pays) {
                     if (p.getAmount() == null || p.getAmount().compareTo(BigDecimal.ZERO) <= 0) {
-                        throw new FieldsException("Validation failed", java.util.Map.of("payments", "Monto de pago debe ser mayor a 0"));
+                        throw new FieldsException("Validation failed", Map.of("payments", "Monto de pago debe ser mayor a 0"));
                     }
                     if (p.getMethod() == null || p.getMethod().isBlank()) {
-                        throw new FieldsException("Validation failed", java.util.Map.of("payments", "Método de pago requerido"));
+                        throw new FieldsException("Validation failed", Map.of("payments", "Método de pago requerido"));
                     }
                     EPaymentMethod m;
                     try {
                         m = EPaymentMethod.valueOf(p.getMethod().trim().toUpperCase());
                     } catch (IllegalArgumentException ex) {
-                        throw new FieldsException("Validation failed", java.util.Map.of("payments", "Método de pago inválido: " + p.getMethod()));
+                        throw new FieldsException("Validation failed", Map.of("payments", "Método de pago inválido: " + p.getMethod()));
                     }
                     // Si es TRANSFERENCIA, requerir bankAccountId
                     if (m == EPaymentMethod.TRANSFERENCIA && (p.getBankAccountId() == null || p.getBankAccountId().isBlank())) {
-                        throw new FieldsException("Validation failed", java.util.Map.of("payments", "bankAccountId requerido para pagos por transferencia"));
+                        throw new FieldsException("Validation failed", Map.of("payments", "bankAccountId requerido para pagos por transferencia"));
                     }
                     // Enriquecer nombre de cuenta bancaria si solo viene el ID
                     p.setBankAccountName(bankAccountHelper.resolveBankAccountName(
@@ -184,7 +199,7 @@ public class SaleServiceImpl implements SaleService {
                 }
 
                 if (received.compareTo(total) < 0) {
-                    throw new FieldsException("Validation failed", java.util.Map.of("payments", "Pagos insuficientes para total de contado"));
+                    throw new FieldsException("Validation failed", Map.of("payments", "Pagos insuficientes para total de contado"));
                 }
 
                 BigDecimal remaining = total.subtract(nonCash);
@@ -204,40 +219,8 @@ public class SaleServiceImpl implements SaleService {
             // Pre-validar lotes ANTES de guardar la factura
             validateBatchesForSale(dto.getSaleDetails());
 
-            Billing venta = mapper.mapToEntity(dto);
-            Long orderNumber = dto.getOrder().getOrderNumber();
-            if (orderNumber != null && orderNumber.intValue() > 0) {
-                orderService.changeStatus(orderNumber, EStatusOrder.FACTURADO);
-            }
-
-            // Guardar la factura
-            Billing savedBilling = repository.save(venta);
-            
-            // Descontar stock de los productos vendidos
-            updateStockForSale(dto.getSaleDetails(), savedBilling.getId(), 
-                    dto.getCreationUser() != null ? dto.getCreationUser().getId() : null);
-
-            // Si es venta a CRÉDITO, actualizar cuenta por cobrar del cliente
-            if (dto.getSaleType() == EPaymentType.CREDITO && dto.getClient() != null && dto.getClient().getId() != null) {
-                clientAccountService.addDebt(dto.getClient().getId(), dto.getTotalBilling());
-                logger.info("Deuda agregada a cuenta del cliente: {} por monto: {}", 
-                        dto.getClient().getId(), dto.getTotalBilling());
-            }
-
-            // Si se aplica saldo a favor del cliente
-            if (dto.getCreditToApply() != null && dto.getCreditToApply().compareTo(BigDecimal.ZERO) > 0 
-                    && dto.getClient() != null && dto.getClient().getId() != null) {
-                UseCreditRequest useCreditRequest = UseCreditRequest.builder()
-                        .clientId(dto.getClient().getId())
-                        .amount(dto.getCreditToApply())
-                        .billingId(savedBilling.getId())
-                        .notes("Aplicado en factura " + savedBilling.getBillNumber())
-                        .build();
-                clientCreditService.useCredit(useCreditRequest, 
-                        dto.getCreationUser() != null ? dto.getCreationUser().getId() : null);
-                logger.info("Saldo a favor aplicado para cliente: {} por monto: {} en factura: {}", 
-                        dto.getClient().getId(), dto.getCreditToApply(), savedBilling.getBillNumber());
-            }
+            // Consecutivo, factura, stock, lotes, deuda y saldo a favor se confirman como una sola transacción
+            Billing savedBilling = transactionExecutor.execute("sale-checkout", () -> persistSale(dto));
 
             return mapper.mapToDto(savedBilling);
         } catch (DuplicateRecordException e) {
@@ -249,10 +232,71 @@ public class SaleServiceImpl implements SaleService {
         }
     }
 
+    /**
+     * Persiste la factura y todos sus efectos (orden, stock, lotes, cuenta por cobrar
+     * y saldo a favor). Se ejecuta dentro de la transacción del checkout.
+     * El consecutivo se toma al final: el $inc deja bloqueado el documento del contador hasta
+     * el commit, así que cuanto más tarde se pida, menos tiempo esperan las otras cajas.
+     */
+    private Billing persistSale(BillingDto dto) {
+        String requestedNumber = dto.getBillNumber();
+        dto.setBillNumber(null);
+
+        Billing venta = mapper.mapToEntity(dto);
+        Long orderNumber = dto.getOrder().getOrderNumber();
+        if (orderNumber != null && orderNumber.intValue() > 0) {
+            orderService.changeStatus(orderNumber, EStatusOrder.FACTURADO);
+        }
+
+        // Guardar la factura; el número se asigna al final de la transacción
+        Billing savedBilling = repository.save(venta);
+
+        // Descontar stock de los productos vendidos
+        updateStockForSale(dto.getSaleDetails(), savedBilling.getId(), 
+                dto.getCreationUser() != null ? dto.getCreationUser().getId() : null);
+
+        // Si es venta a CRÉDITO, actualizar cuenta por cobrar del cliente
+        if (dto.getSaleType() == EPaymentType.CREDITO && dto.getClient() != null && dto.getClient().getId() != null) {
+            clientAccountService.addDebt(dto.getClient().getId(), dto.getTotalBilling());
+            logger.info("Deuda agregada a cuenta del cliente: {} por monto: {}", 
+                    dto.getClient().getId(), dto.getTotalBilling());
+        }
+
+        // Si se aplica saldo a favor del cliente
+        if (dto.getCreditToApply() != null && dto.getCreditToApply().compareTo(BigDecimal.ZERO) > 0 
+                && dto.getClient() != null && dto.getClient().getId() != null) {
+            UseCreditRequest useCreditRequest = UseCreditRequest.builder()
+                    .clientId(dto.getClient().getId())
+                    .amount(dto.getCreditToApply())
+                    .billingId(savedBilling.getId())
+                    .notes("Aplicado en factura")
+                    .build();
+            clientCreditService.useCredit(useCreditRequest, 
+                    dto.getCreationUser() != null ? dto.getCreationUser().getId() : null);
+            logger.info("Saldo a favor aplicado para cliente: {} por monto: {} en factura: {}", 
+                    dto.getClient().getId(), dto.getCreditToApply(), savedBilling.getId());
+        }
+
+        // Último write antes del commit: si la venta no se confirma, el número vuelve al
+        // contador y no queda un hueco en la numeración
+        String billNumber = billingNumberService.allocate();
+        if (requestedNumber != null && !requestedNumber.equals(billNumber)) {
+            logger.info("Número de factura {} reasignado a {}", requestedNumber, billNumber);
+        }
+        mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(savedBilling.getId())),
+                new Update().set("billNumber", billNumber), Billing.class);
+        savedBilling.setBillNumber(billNumber);
+        dto.setBillNumber(billNumber);
+        cashLedgerService.recordBilling(savedBilling);
+
+        return savedBilling;
+    }
+
     @Override
     public void deleteById(String id) {
         log.info("SaleServiceImpl -> deleteById");
         repository.deleteById(id);
+        cashLedgerService.removeBilling(id);
     }
 
     @Override
@@ -265,7 +309,9 @@ public class SaleServiceImpl implements SaleService {
             }
             dto.setId(id);
             Billing entity = mapper.mapToEntity(dto);
-            return mapper.mapToDto(repository.save(entity));
+            Billing saved = repository.save(entity);
+            cashLedgerService.recordBilling(saved);
+            return mapper.mapToDto(saved);
         } catch (ResourceNotFoundException e) {
             logger.error("SaleServiceImpl -> update -> ERROR: {}", e.getMessage());
             throw new ResourceNotFoundException(MessageConstants.RESOURCE_NOT_FOUND);
@@ -313,15 +359,23 @@ public class SaleServiceImpl implements SaleService {
     }
 
     @Override
-    public byte[] printTicketBilling(BillingDto dto) {
+    public void printTicketBilling(BillingDto dto, OutputStream outputStream) {
         logger.info("SaleServiceImpl -> printTicketBilling");
         try {
             Billing billing = mapper.mapToEntity(dto);
-            return reportExporter.exportToPdf(billing, REPORT_TICKET_BILLING);
+            // Se llena antes de escribir: si falla, la respuesta aún no se ha enviado
+            JasperPrint ticket = reportExporter.fill(billing, REPORT_TICKET_BILLING);
+            reportExporter.exportToPdf(ticket, outputStream);
         } catch (JRException | FileNotFoundException e) {
-            log.error(e.getCause().getMessage());
+            log.error("SaleServiceImpl -> printTicketBilling -> ERROR: {}", e.getMessage());
+            throw new GenericInternalException("Error generando el tiquete de la factura " + dto.getBillNumber(), e);
         }
-        return null;
+    }
+
+    @Override
+    public byte[] printTicketBillingEscPos(BillingDto dto) {
+        logger.info("SaleServiceImpl -> printTicketBillingEscPos");
+        return escPosTicketRenderer.render(mapper.mapToEntity(dto));
     }
 
     @Override
@@ -417,14 +471,14 @@ public class SaleServiceImpl implements SaleService {
                 preSaleRepository.findByBillingIdNotNull();
 
         // Mapa: billingId → lista de PreSales (una factura puede tener varias preventas)
-        java.util.Map<String, List<com.co.jarvis.entity.PreSale>> billingToPreSales =
+        Map<String, List<com.co.jarvis.entity.PreSale>> billingToPreSales =
                 billedPreSales.stream()
                         .filter(ps -> ps.getBillingId() != null)
                         .collect(java.util.stream.Collectors.groupingBy(
                                 com.co.jarvis.entity.PreSale::getBillingId));
 
         // Mapa: preSaleId → PreSale (para lookup por ID directo)
-        java.util.Map<String, com.co.jarvis.entity.PreSale> preSaleById =
+        Map<String, com.co.jarvis.entity.PreSale> preSaleById =
                 billedPreSales.stream()
                         .filter(ps -> ps.getId() != null)
                         .collect(java.util.stream.Collectors.toMap(
@@ -502,137 +556,161 @@ public class SaleServiceImpl implements SaleService {
     public SalesTotalsResponse getSalesTotals(BillingReportFilterDto dto) {
         try {
             logger.info("SaleServiceImpl -> getSalesTotals");
-            List<Criteria> criteriaList = new ArrayList<>();
-
-            if (dto.hasFilterDate()) {
-                java.time.LocalDate startDate = dto.getFromDate().isBefore(dto.getToDate()) ? dto.getFromDate() : dto.getToDate();
-                java.time.LocalDate endDate = dto.getFromDate().isAfter(dto.getToDate()) ? dto.getFromDate() : dto.getToDate();
-                criteriaList.add(Criteria.where("dateTimeRecord")
-                        .gte(startDate.atStartOfDay().atZone(DateTimeUtil.getBogotaZone()).toOffsetDateTime())
-                        .lte(endDate.atTime(LocalTime.MAX).atZone(DateTimeUtil.getBogotaZone()).toOffsetDateTime()));
-            }
-            if (dto.getBillNumber() != null && !dto.getBillNumber().isEmpty()) {
-                criteriaList.add(Criteria.where("billNumber").regex(".*" + dto.getBillNumber() + ".*", "i"));
-            }
-            if (dto.getUserSale() != null && !dto.getUserSale().isEmpty()) {
-                criteriaList.add(Criteria.where("order.creationUser.numberIdentity").is(dto.getUserSale()));
-            }
-            if (dto.getClient() != null && !dto.getClient().isEmpty()) {
-                String clientField = (dto.getClientField() != null && !dto.getClientField().isEmpty())
-                        ? "client." + dto.getClientField()
-                        : "client._id";
-                criteriaList.add(Criteria.where(clientField).is(dto.getClient()));
-            }
-            if (dto.getProduct() != null && !dto.getProduct().isEmpty()) {
-                String productField = (dto.getProductField() != null && !dto.getProductField().isEmpty())
-                        ? "saleDetails.product." + dto.getProductField()
-                        : "saleDetails.product._id";
-                criteriaList.add(Criteria.where(productField).is(dto.getProduct()));
-            }
-            if (dto.getSaleType() != null && !dto.getSaleType().isEmpty()) {
-                criteriaList.add(Criteria.where("saleType").is(dto.getSaleType()));
-            }
-            if (dto.getPaymentMethod() != null && !dto.getPaymentMethod().isEmpty()) {
-                criteriaList.add(new Criteria().orOperator(
-                        Criteria.where("payments.method").is(dto.getPaymentMethod()),
-                        Criteria.where("paymentMethods").is(dto.getPaymentMethod())));
-            }
+            List<Criteria> criteriaList = buildSalesCriteria(dto);
 
             Criteria finalCriteria = criteriaList.isEmpty()
                     ? new Criteria()
                     : new Criteria().andOperator(criteriaList.toArray(new Criteria[0]));
 
-            Query query = new Query(finalCriteria);
-            List<Billing> billings = mongoTemplate.find(query, Billing.class);
-
-            BigDecimal totalSubtotal = BigDecimal.ZERO;
-            BigDecimal totalIva = BigDecimal.ZERO;
-            BigDecimal totalGeneral = BigDecimal.ZERO;
-            BigDecimal totalContado = BigDecimal.ZERO;
-            BigDecimal totalCredito = BigDecimal.ZERO;
-            long countContado = 0;
-            long countCredito = 0;
-
-            java.util.Map<String, long[]> methodMap = new java.util.LinkedHashMap<>();
-
-            for (Billing b : billings) {
-                BigDecimal total = b.getTotalBilling() != null ? b.getTotalBilling() : BigDecimal.ZERO;
-                BigDecimal subtotal = b.getSubTotalSale() != null ? b.getSubTotalSale() : BigDecimal.ZERO;
-                BigDecimal iva = b.getTotalIVAT() != null ? b.getTotalIVAT() : BigDecimal.ZERO;
-
-                totalSubtotal = totalSubtotal.add(subtotal);
-                totalIva = totalIva.add(iva);
-                totalGeneral = totalGeneral.add(total);
-
-                if (b.getSaleType() == EPaymentType.CONTADO) {
-                    countContado++;
-                    totalContado = totalContado.add(total);
-                } else {
-                    countCredito++;
-                    totalCredito = totalCredito.add(total);
-                }
-
-                if (b.getPayments() != null && !b.getPayments().isEmpty()) {
-                    for (com.co.jarvis.entity.PaymentEntry p : b.getPayments()) {
-                        String method = p.getMethod() != null ? p.getMethod() : "EFECTIVO";
-                        methodMap.computeIfAbsent(method, k -> new long[2]);
-                        methodMap.get(method)[0]++;
-                        methodMap.get(method)[1] += p.getAmount() != null ? p.getAmount().longValue() : 0;
-                    }
-                } else if (b.getPaymentMethods() != null && !b.getPaymentMethods().isEmpty()) {
-                    String method = b.getPaymentMethods().get(0).name();
-                    methodMap.computeIfAbsent(method, k -> new long[2]);
-                    methodMap.get(method)[0]++;
-                    methodMap.get(method)[1] += total.longValue();
-                }
-            }
-
-            List<SalesTotalsResponse.PaymentMethodTotalDto> paymentMethodTotals = methodMap.entrySet().stream()
-                    .map(e -> SalesTotalsResponse.PaymentMethodTotalDto.builder()
-                            .method(e.getKey())
-                            .count(e.getValue()[0])
-                            .total(BigDecimal.valueOf(e.getValue()[1]))
-                            .build())
-                    .collect(java.util.stream.Collectors.toList());
-
-            return SalesTotalsResponse.builder()
-                    .totalInvoices(billings.size())
-                    .totalSubtotal(totalSubtotal)
-                    .totalIva(totalIva)
-                    .totalGeneral(totalGeneral)
-                    .countContado(countContado)
-                    .countCredito(countCredito)
-                    .totalContado(totalContado)
-                    .totalCredito(totalCredito)
-                    .paymentMethodTotals(paymentMethodTotals)
-                    .build();
+            // Los totales se calculan en el servidor: solo viajan los acumulados, no las facturas.
+            // Los BigDecimal se guardan como texto, por eso se suman con $toDecimal (Decimal128 exacto).
+            Aggregation aggregation = Aggregation.newAggregation(
+                    Aggregation.match(finalCriteria),
+                    context -> new Document("$facet", new Document()
+                            .append("totals", List.of(new Document("$group", new Document("_id", null)
+                                    .append("count", new Document("$sum", 1))
+                                    .append("subtotal", decimalSum("$subTotalSale"))
+                                    .append("iva", decimalSum("$totalIVAT"))
+                                    .append("general", decimalSum("$totalBilling")))))
+                            .append("bySaleType", List.of(new Document("$group", new Document("_id",
+                                    new Document("$cond", List.of(
+                                            new Document("$eq", List.of("$saleType", EPaymentType.CONTADO.name())),
+                                            EPaymentType.CONTADO.name(),
+                                            EPaymentType.CREDITO.name())))
+                                    .append("count", new Document("$sum", 1))
+                                    .append("total", decimalSum("$totalBilling")))))
+                            .append("byPayment", List.of(
+                                    new Document("$match", new Document("payments.0", new Document("$exists", true))),
+                                    new Document("$unwind", "$payments"),
+                                    new Document("$group", new Document("_id",
+                                            new Document("$ifNull", List.of("$payments.method", EPaymentMethod.EFECTIVO.name())))
+                                            .append("count", new Document("$sum", 1))
+                                            .append("total", decimalSum("$payments.amount")))))
+                            // Facturas antiguas sin payments[]: se toma el primer método y el total de la factura
+                            .append("byLegacyMethod", List.of(
+                                    new Document("$match", new Document("payments.0", new Document("$exists", false))
+                                            .append("paymentMethods.0", new Document("$exists", true))),
+                                    new Document("$group", new Document("_id",
+                                            new Document("$arrayElemAt", List.of("$paymentMethods", 0)))
+                                            .append("count", new Document("$sum", 1))
+                                            .append("total", decimalSum("$totalBilling"))))))
+            );
+
+            Document facets = mongoTemplate.aggregate(aggregation, Billing.class, Document.class).getUniqueMappedResult();
+            return toSalesTotals(facets);
         } catch (Exception e) {
             logger.error("SaleServiceImpl -> getSalesTotals -> Error {}", e.getMessage());
             throw new GenericInternalException(e.getMessage());
         }
     }
 
+    private static Document decimalSum(String field) {
+        return new Document("$sum", new Document("$toDecimal", field));
+    }
+
+    private SalesTotalsResponse toSalesTotals(Document facets) {
+        SalesTotalsResponse response = SalesTotalsResponse.builder()
+                .totalSubtotal(BigDecimal.ZERO)
+                .totalIva(BigDecimal.ZERO)
+                .totalGeneral(BigDecimal.ZERO)
+                .totalContado(BigDecimal.ZERO)
+                .totalCredito(BigDecimal.ZERO)
+                .paymentMethodTotals(new ArrayList<>())
+                .build();
+        if (facets == null) {
+            return response;
+        }
+
+        List<Document> totals = facets.getList("totals", Document.class, List.of());
+        if (!totals.isEmpty()) {
+            Document row = totals.get(0);
+            response.setTotalInvoices(toLong(row.get("count")));
+            response.setTotalSubtotal(toDecimal(row.get("subtotal")));
+            response.setTotalIva(toDecimal(row.get("iva")));
+            response.setTotalGeneral(toDecimal(row.get("general")));
+        }
+
+        for (Document row : facets.getList("bySaleType", Document.class, List.of())) {
+            if (EPaymentType.CONTADO.name().equals(row.get("_id"))) {
+                response.setCountContado(toLong(row.get("count")));
+                response.setTotalContado(toDecimal(row.get("total")));
+            } else {
+                response.setCountCredito(toLong(row.get("count")));
+                response.setTotalCredito(toDecimal(row.get("total")));
+            }
+        }
+
+        // Un mismo método puede venir de payments[] y de paymentMethods[]: se acumulan juntos
+        Map<String, SalesTotalsResponse.PaymentMethodTotalDto> methodMap = new LinkedHashMap<>();
+        List<Document> methodRows = new ArrayList<>(facets.getList("byPayment", Document.class, List.of()));
+        methodRows.addAll(facets.getList("byLegacyMethod", Document.class, List.of()));
+        for (Document row : methodRows) {
+            String method = String.valueOf(row.get("_id"));
+            SalesTotalsResponse.PaymentMethodTotalDto item = methodMap.computeIfAbsent(method,
+                    k -> SalesTotalsResponse.PaymentMethodTotalDto.builder().method(k).total(BigDecimal.ZERO).build());
+            item.setCount(item.getCount() + toLong(row.get("count")));
+            item.setTotal(item.getTotal().add(toDecimal(row.get("total"))));
+        }
+        response.setPaymentMethodTotals(methodMap.values().stream()
+                .sorted(java.util.Comparator.comparing(SalesTotalsResponse.PaymentMethodTotalDto::getTotal).reversed())
+                .collect(java.util.stream.Collectors.toList()));
+        return response;
+    }
+
+    private static BigDecimal toDecimal(Object value) {
+        if (value instanceof Decimal128 decimal) {
+            return decimal.bigDecimalValue();
+        }
+        if (value instanceof Number number) {
+            return new BigDecimal(number.toString());
+        }
+        return BigDecimal.ZERO;
+    }
+
+    private static long toLong(Object value) {
+        return value instanceof Number number ? number.longValue() : 0L;
+    }
+
     private List<Criteria> buildCriteriaFromPagedFilter(BillingReportFilterPagedDto dto) {
-        List<Criteria> criteriaList = new ArrayList<>();
+        java.time.LocalDate fromDate;
+        java.time.LocalDate toDate;
 
         // Rango de fechas — default últimos 30 días si no se especifica
         if (dto.getFromDate() != null && !dto.getFromDate().isBlank()
                 && dto.getToDate() != null && !dto.getToDate().isBlank()) {
-            java.time.LocalDate parsed1 = java.time.LocalDate.parse(dto.getFromDate());
-            java.time.LocalDate parsed2 = java.time.LocalDate.parse(dto.getToDate());
-            java.time.LocalDate startDate = parsed1.isBefore(parsed2) ? parsed1 : parsed2;
-            java.time.LocalDate endDate = parsed1.isAfter(parsed2) ? parsed1 : parsed2;
+            fromDate = java.time.LocalDate.parse(dto.getFromDate());
+            toDate = java.time.LocalDate.parse(dto.getToDate());
+        } else {
+            toDate = java.time.LocalDate.now(DateTimeUtil.getBogotaZone());
+            fromDate = toDate.minusDays(30);
+        }
+
+        return buildSalesCriteria(BillingReportFilterDto.builder()
+                .fromDate(fromDate)
+                .toDate(toDate)
+                .billNumber(dto.getBillNumber())
+                .userSale(dto.getUserSale())
+                .client(dto.getClient())
+                .product(dto.getProduct())
+                .saleType(dto.getSaleType())
+                .paymentMethod(dto.getPaymentMethod())
+                .build());
+    }
+
+    /**
+     * Filtros comunes del listado paginado y de los totales de ventas, para que ambos
+     * reportes cuenten exactamente las mismas facturas.
+     */
+    private List<Criteria> buildSalesCriteria(BillingReportFilterDto dto) {
+        List<Criteria> criteriaList = new ArrayList<>();
+
+        if (dto.hasFilterDate()) {
+            java.time.LocalDate startDate = dto.getFromDate().isBefore(dto.getToDate()) ? dto.getFromDate() : dto.getToDate();
+            java.time.LocalDate endDate = dto.getFromDate().isAfter(dto.getToDate()) ? dto.getFromDate() : dto.getToDate();
             criteriaList.add(Criteria.where("dateTimeRecord")
                     .gte(startDate.atStartOfDay().atZone(DateTimeUtil.getBogotaZone()).toOffsetDateTime())
                     .lte(endDate.atTime(LocalTime.MAX).atZone(DateTimeUtil.getBogotaZone()).toOffsetDateTime()));
-        } else {
-            java.time.LocalDate today = java.time.LocalDate.now(DateTimeUtil.getBogotaZone());
-            java.time.LocalDate thirtyDaysAgo = today.minusDays(30);
-            criteriaList.add(Criteria.where("dateTimeRecord")
-                    .gte(thirtyDaysAgo.atStartOfDay().atZone(DateTimeUtil.getBogotaZone()).toOffsetDateTime())
-                    .lte(today.atTime(LocalTime.MAX).atZone(DateTimeUtil.getBogotaZone()).toOffsetDateTime()));
         }
-
         if (dto.getBillNumber() != null && !dto.getBillNumber().isBlank()) {
             criteriaList.add(Criteria.where("billNumber").regex(".*" + dto.getBillNumber() + ".*", "i"));
         }
@@ -640,10 +718,16 @@ public class SaleServiceImpl implements SaleService {
             criteriaList.add(Criteria.where("order.creationUser.numberIdentity").is(dto.getUserSale()));
         }
         if (dto.getClient() != null && !dto.getClient().isBlank()) {
-            criteriaList.add(Criteria.where("client._id").is(dto.getClient()));
+            String clientField = (dto.getClientField() != null && !dto.getClientField().isBlank())
+                    ? "client." + dto.getClientField()
+                    : "client._id";
+            criteriaList.add(Criteria.where(clientField).is(dto.getClient()));
         }
         if (dto.getProduct() != null && !dto.getProduct().isBlank()) {
-            criteriaList.add(Criteria.where("saleDetails.product._id").is(dto.getProduct()));
+            String productField = (dto.getProductField() != null && !dto.getProductField().isBlank())
+                    ? "saleDetails.product." + dto.getProductField()
+                    : "saleDetails.product._id";
+            criteriaList.add(Criteria.where(productField).is(dto.getProduct()));
         }
         if (dto.getSaleType() != null && !dto.getSaleType().isBlank()) {
             criteriaList.add(Criteria.where("saleType").is(dto.getSaleType()));
@@ -702,46 +786,7 @@ public class SaleServiceImpl implements SaleService {
     }
 
     private String generatedBillingNumber() {
-        CompanyDto companyDto = companyService.findByStatus(EStatus.ACTIVO);
-        if (companyDto == null) {
-            throw new ResourceNotFoundException(MessageConstants.RESOURCE_NOT_FOUND + " - Empresa no Encontrada");
-        }
-
-        BillingConfigDto billingConfigDto = Optional.ofNullable(companyDto.getBillingConfig())
-                .orElseThrow(() -> new ResourceNotFoundException("La configuración de facturación no está disponible para la companyDto"));
-
-        Billing billing = repository.findFirstByOrderByDateTimeRecordDesc();
-        String prefixBilling = billingConfigDto.getPrefixBill();
-
-        if (billing == null) {
-            return prefixBilling.concat("-1");
-        }
-
-        Long consecutiveBilling = getBillingConsecutive(billing, prefixBilling);
-
-        if (consecutiveBilling.intValue() >= billingConfigDto.getBillFrom() &&
-                consecutiveBilling.intValue() <= billingConfigDto.getBillUntil()) {
-            return prefixBilling.concat("-").concat(consecutiveBilling.toString());
-        } else {
-            throw new IllegalStateException("El número de factura esta por fuera del rango de facturación establecido.");
-        }
-
-    }
-
-    private static Long getBillingConsecutive(Billing billing, String prefixBilling) {
-        String billingNumber = billing.getBillNumber();
-        if (billingNumber == null || !billingNumber.startsWith(prefixBilling)) {
-            throw new IllegalStateException("El número de factura es inválido o no tiene el prefijo esperado");
-        }
-
-        String consecutiveNumber = billingNumber.replace(prefixBilling + "-", "");
-        long consecutiveBilling;
-        try {
-            consecutiveBilling = Long.parseLong(consecutiveNumber) + 1L;
-        } catch (NumberFormatException e) {
-            throw new IllegalStateException("El número de factura no es un número válido", e);
-        }
-        return consecutiveBilling;
+        return billingNumberService.peekNext();
     }
 
     private BigDecimal ivaTotalBill(List<SaleDetailDto> saleDetailDtos) {
@@ -837,6 +882,8 @@ public class SaleServiceImpl implements SaleService {
     /**
      * Descuenta el stock de los productos vendidos.
      * Considera el fixedAmount de la presentación para productos a granel.
+     * Carga los productos con un $in y confirma todo el stock en un único lote,
+     * de modo que la latencia no crece con el número de líneas.
      */
     private void updateStockForSale(List<SaleDetailDto> saleDetails, String billingId, String userId) {
         logger.info("SaleServiceImpl -> updateStockForSale");
@@ -846,6 +893,7 @@ public class SaleServiceImpl implements SaleService {
             return;
         }
 
+        List<SaleDetailDto> validDetails = new ArrayList<>();
         for (SaleDetailDto detail : saleDetails) {
             if (detail.getProduct() == null || detail.getProduct().getId() == null) {
                 logger.warn("Detalle de venta sin producto válido, omitiendo");
@@ -857,13 +905,22 @@ public class SaleServiceImpl implements SaleService {
                     detail.getProduct().getDescription());
                 continue;
             }
+            validDetails.add(detail);
+        }
+
+        // Cargar todos los productos involucrados con una sola consulta $in
+        Map<String, Product> products = stockService.findProducts(validDetails.stream()
+                .map(detail -> detail.getProduct().getId())
+                .toList());
 
+        List<StockLine> stockLines = new ArrayList<>();
+        List<BatchSaleRequest> batchSales = new ArrayList<>();
+        for (SaleDetailDto detail : validDetails) {
             String productId = detail.getProduct().getId();
             String barcode = detail.getProduct().getBarcode();
             BigDecimal amount = detail.getAmount();
 
-            // Obtener el producto para calcular la cantidad real de stock a descontar
-            Product product = productRepository.findById(productId).orElse(null);
+            Product product = products.get(productId);
             if (product == null) {
                 logger.warn("Producto no encontrado con ID: {}", productId);
                 continue;
@@ -875,8 +932,11 @@ public class SaleServiceImpl implements SaleService {
             logger.info("Descontando stock para producto {}: cantidad vendida={}, stock a descontar={}",
                 product.getProductCode(), amount, stockQuantity);
 
-            // Registrar movimiento de venta y descontar stock
-            inventoryService.registerSaleMovement(billingId, productId, stockQuantity, barcode, userId);
+            stockLines.add(StockLine.builder()
+                    .product(product)
+                    .presentationBarcode(barcode)
+                    .quantity(stockQuantity)
+                    .build());
 
             // Si el producto es de categoría ANIMALES VIVOS y tiene batchId, descontar stock del lote
             if (detail.getBatchId() != null && !detail.getBatchId().isBlank()
@@ -884,14 +944,17 @@ public class SaleServiceImpl implements SaleService {
                 int batchQuantity = amount.intValue();
                 logger.info("Descontando lote {} para producto ANIMALES VIVOS: cantidad={}",
                         detail.getBatchId(), batchQuantity);
-                BatchSaleRequest batchSaleRequest = BatchSaleRequest.builder()
+                batchSales.add(BatchSaleRequest.builder()
                         .batchId(detail.getBatchId())
                         .quantity(batchQuantity)
                         .billingId(billingId)
-                        .build();
-                batchService.registerSale(batchSaleRequest);
+                        .build());
             }
         }
+
+        // Registrar movimientos de venta y descontar stock en un solo lote
+        inventoryService.registerSaleMovements(billingId, stockLines, userId);
+        batchSales.forEach(batchService::registerSale);
     }
 
     /**
@@ -0,0 +1,86 @@
+package com.co.jarvis.service.impl;
+
+import com.co.jarvis.entity.SequenceDocument;
+import com.co.jarvis.service.SequenceService;
+import com.co.jarvis.util.exception.SaveRecordException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class SequenceServiceImpl implements SequenceService {
+
+    private static final String SEQUENCE_COLLECTION = "sequences";
+
+    private final MongoTemplate mongoTemplate;
+
+    private final Set<String> initialized = ConcurrentHashMap.newKeySet();
+
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void initialize(String name, LongSupplier lastIssued) {
+        if (initialized.contains(name)) {
+            return;
+        }
+        Query query = byName(name);
+        if (!mongoTemplate.exists(query, SequenceDocument.class, SEQUENCE_COLLECTION)) {
+            long seed = lastIssued.getAsLong();
+            try {
+                mongoTemplate.upsert(query, new Update().setOnInsert("seq", seed), SequenceDocument.class, SEQUENCE_COLLECTION);
+                log.info("SequenceServiceImpl -> contador {} inicializado en {}", name, seed);
+            } catch (DuplicateKeyException e) {
+                log.info("SequenceServiceImpl -> contador {} ya inicializado por otro nodo", name);
+            }
+        }
+        initialized.add(name);
+    }
+
+    @Override
+    public long next(String name) {
+        return increment(name, 1);
+    }
+
+    @Override
+    public String next(String name, String template) {
+        return String.format(template, next(name));
+    }
+
+    @Override
+    public long peek(String name) {
+        SequenceDocument doc = mongoTemplate.findById(name, SequenceDocument.class, SEQUENCE_COLLECTION);
+        return (doc != null ? doc.getSeq() : 0L) + 1;
+    }
+
+    @Override
+    public void advanceTo(String name, long value) {
+        mongoTemplate.upsert(byName(name), new Update().max("seq", value), SequenceDocument.class, SEQUENCE_COLLECTION);
+    }
+
+    private long increment(String name, int amount) {
+        Update update = new Update().inc("seq", amount);
+        FindAndModifyOptions options = FindAndModifyOptions.options().upsert(true).returnNew(true);
+        SequenceDocument doc = mongoTemplate.findAndModify(byName(name), update, options, SequenceDocument.class, SEQUENCE_COLLECTION);
+        if (doc == null) {
+            throw new SaveRecordException("Error al generar el consecutivo " + name);
+        }
+        return doc.getSeq();
+    }
+
+    private static Query byName(String name) {
+        return new Query(Criteria.where("_id").is(name));
+    }
+}
@@ -0,0 +1,268 @@
+package com.co.jarvis.service.impl;
+
+import com.co.jarvis.dto.StockChange;
+import com.co.jarvis.entity.Product;
+import com.co.jarvis.service.StockService;
+import com.co.jarvis.util.InventoryDashboardCache;
+import com.co.jarvis.util.ProductCatalogCache;
+import com.co.jarvis.util.StartupMigration;
+import com.co.jarvis.util.exception.ResourceNotFoundException;
+import com.mongodb.client.result.UpdateResult;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.Decimal128;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.aggregation.ConvertOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.core.schema.JsonSchemaObject;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Mutaciones de stock atómicas del lado del servidor.
+ * En lugar de findById -> modificar -> save (que reescribe todo el Product y pierde
+ * actualizaciones concurrentes entre cajas), aplica $inc / $set sobre stock.quantity
+ * con findAndModify y devuelve los valores antes/después para el InventoryMovement.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class StockServiceImpl implements StockService, StartupMigration {
+
+    private static final String QUANTITY_FIELD = "stock.quantity";
+    private static final String DISPLAY_STOCK_FIELD = "displayStock";
+    private static final int BACKFILL_BATCH_SIZE = 500;
+
+    private final MongoTemplate mongoTemplate;
+    private final ProductCatalogCache catalogCache;
+    private final InventoryDashboardCache dashboardCache;
+
+    @Override
+    public StockChange applyDelta(String productId, BigDecimal delta) {
+        log.info("StockServiceImpl -> applyDelta: product={}, delta={}", productId, delta);
+        Product product = incrementQuantity(byId(productId), delta);
+        if (product == null) {
+            throw new ResourceNotFoundException("Producto no encontrado");
+        }
+        return toChange(product, delta);
+    }
+
+    @Override
+    public StockChange applyDeltaIfAvailable(String productId, BigDecimal delta) {
+        log.info("StockServiceImpl -> applyDeltaIfAvailable: product={}, delta={}", productId, delta);
+        Query query = byId(productId);
+        if (delta.signum() < 0) {
+            query.addCriteria(Criteria.where(QUANTITY_FIELD).gte(new Decimal128(delta.negate())));
+        }
+        Product product = incrementQuantity(query, delta);
+        if (product == null) {
+            if (!mongoTemplate.exists(byId(productId), Product.class)) {
+                throw new ResourceNotFoundException("Producto no encontrado");
+            }
+            throw new IllegalArgumentException("El ajuste resultaría en stock negativo");
+        }
+        return toChange(product, delta);
+    }
+
+    @Override
+    public StockChange setQuantity(String productId, BigDecimal quantity) {
+        log.info("StockServiceImpl -> setQuantity: product={}, quantity={}", productId, quantity);
+        Query query = withProjection(byId(productId));
+        Update update = new Update().set(QUANTITY_FIELD, new Decimal128(quantity));
+        Product previous = mongoTemplate.findAndModify(query, update,
+                FindAndModifyOptions.options().returnNew(false), Product.class);
+        if (previous == null) {
+            throw new ResourceNotFoundException("Producto no encontrado");
+        }
+        BigDecimal previousQuantity = currentQuantity(previous);
+        if (previous.getStock() != null) {
+            previous.getStock().setQuantity(quantity);
+        }
+        invalidateCaches(List.of(previous.getId()));
+        return StockChange.builder()
+                .product(previous)
+                .previousQuantity(previousQuantity)
+                .newQuantity(quantity)
+                .build();
+    }
+
+    @Override
+    public Map<String, Product> findProducts(Collection<String> productIds) {
+        log.info("StockServiceImpl -> findProducts: {} ids", productIds.size());
+        Query query = withProjection(new Query(Criteria.where("_id").in(new HashSet<>(productIds))));
+        return mongoTemplate.find(query, Product.class).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+    }
+
+    @Override
+    public Map<String, BigDecimal> applyDeltas(Map<String, BigDecimal> deltasByProduct) {
+        if (deltasByProduct.isEmpty()) {
+            return Map.of();
+        }
+        log.info("StockServiceImpl -> applyDeltas: {} productos", deltasByProduct.size());
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class);
+        deltasByProduct.forEach((productId, delta) ->
+                bulk.updateOne(byId(productId), new Update().inc(QUANTITY_FIELD, new Decimal128(delta))));
+        bulk.execute();
+
+        Query query = withProjection(new Query(Criteria.where("_id").in(deltasByProduct.keySet())));
+        List<Product> updated = mongoTemplate.find(query, Product.class);
+        invalidateCaches(deltasByProduct.keySet());
+        return updated.stream().collect(Collectors.toMap(Product::getId, StockServiceImpl::currentQuantity));
+    }
+
+    /**
+     * Corre antes de que el servidor web acepte peticiones: el primer $inc sobre un
+     * stock.quantity que aún es String fallaría.
+     */
+    @Override
+    public void migrate() {
+        normalizeLegacyQuantities();
+        dropDerivedDisplayStockFields();
+        backfillDisplayStock();
+    }
+
+    /**
+     * Los documentos antiguos guardan stock.quantity como String (conversión por defecto de BigDecimal),
+     * sobre los cuales $inc falla. Se normalizan a Decimal128 una sola vez al arrancar.
+     */
+    private void normalizeLegacyQuantities() {
+        try {
+            Query query = new Query(Criteria.where(QUANTITY_FIELD).type(JsonSchemaObject.Type.STRING));
+            AggregationUpdate update = AggregationUpdate.update()
+                    .set(QUANTITY_FIELD).toValue(ConvertOperators.valueOf(QUANTITY_FIELD).convertToDecimal());
+            UpdateResult result = mongoTemplate.updateMulti(query, update, Product.class);
+            if (result.getModifiedCount() > 0) {
+                log.info("StockServiceImpl -> {} productos migrados a stock.quantity Decimal128",
+                        result.getModifiedCount());
+                catalogCache.clear();
+            }
+        } catch (RuntimeException e) {
+            log.error("StockServiceImpl -> normalizeLegacyQuantities -> ERROR: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Los displayStock guardados antes de derivar la etiqueta al leer traen bultos, sobrante,
+     * etiqueta y computedAt de la cantidad de ese momento; se quitan para no confundirlos.
+     */
+    private void dropDerivedDisplayStockFields() {
+        try {
+            Query query = new Query(Criteria.where(DISPLAY_STOCK_FIELD + ".label").exists(true));
+            Update update = new Update()
+                    .unset(DISPLAY_STOCK_FIELD + ".packs")
+                    .unset(DISPLAY_STOCK_FIELD + ".remainder")
+                    .unset(DISPLAY_STOCK_FIELD + ".label")
+                    .unset(DISPLAY_STOCK_FIELD + ".computedAt");
+            UpdateResult result = mongoTemplate.updateMulti(query, update, Product.class);
+            if (result.getModifiedCount() > 0) {
+                log.info("StockServiceImpl -> dropDerivedDisplayStockFields: {} productos", result.getModifiedCount());
+                catalogCache.clear();
+            }
+        } catch (RuntimeException e) {
+            log.error("StockServiceImpl -> dropDerivedDisplayStockFields -> ERROR: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Los productos guardados antes de persistir displayStock no lo tienen; se calcula y guarda
+     * por lotes. Solo escribe si el campo sigue vacío, así no pisa el de una escritura concurrente.
+     */
+    private void backfillDisplayStock() {
+        try {
+            Query query = withProjection(new Query(Criteria.where(DISPLAY_STOCK_FIELD).exists(false)));
+            int[] filled = {0};
+            List<Product> batch = new ArrayList<>(BACKFILL_BATCH_SIZE);
+            try (Stream<Product> products = mongoTemplate.stream(query, Product.class)) {
+                products.forEach(product -> {
+                    batch.add(product);
+                    if (batch.size() == BACKFILL_BATCH_SIZE) {
+                        filled[0] += fillMissingDisplayStocks(batch);
+                        batch.clear();
+                    }
+                });
+            }
+            filled[0] += fillMissingDisplayStocks(batch);
+            if (filled[0] > 0) {
+                log.info("StockServiceImpl -> backfillDisplayStock: {} productos", filled[0]);
+            }
+        } catch (RuntimeException e) {
+            log.error("StockServiceImpl -> backfillDisplayStock -> ERROR: {}", e.getMessage(), e);
+        }
+    }
+
+    private int fillMissingDisplayStocks(List<Product> products) {
+        if (products.isEmpty()) {
+            return 0;
+        }
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class);
+        for (Product product : products) {
+            product.refreshDisplayStock();
+            Query missing = new Query(Criteria.where("_id").is(product.getId()).and(DISPLAY_STOCK_FIELD).exists(false));
+            bulk.updateOne(missing, new Update().set(DISPLAY_STOCK_FIELD, product.getDisplayStock()));
+        }
+        int modified = bulk.execute().getModifiedCount();
+        catalogCache.invalidateAll(products.stream().map(Product::getId).toList());
+        return modified;
+    }
+
+    /**
+     * Un solo findAndModify: el displayStock guardado no depende de la cantidad, así que el $inc
+     * no necesita otra escritura. La proyección no trae el producto completo: se descarta del
+     * catálogo en memoria.
+     */
+    private Product incrementQuantity(Query query, BigDecimal delta) {
+        Update update = new Update().inc(QUANTITY_FIELD, new Decimal128(delta));
+        Product product = mongoTemplate.findAndModify(withProjection(query), update,
+                FindAndModifyOptions.options().returnNew(true), Product.class);
+        if (product != null) {
+            invalidateCaches(List.of(product.getId()));
+        }
+        return product;
+    }
+
+    private void invalidateCaches(Collection<String> productIds) {
+        catalogCache.invalidateAll(productIds);
+        dashboardCache.invalidate();
+    }
+
+    private StockChange toChange(Product updated, BigDecimal delta) {
+        BigDecimal newQuantity = currentQuantity(updated);
+        return StockChange.builder()
+                .product(updated)
+                .previousQuantity(newQuantity.subtract(delta))
+                .newQuantity(newQuantity)
+                .build();
+    }
+
+    private static BigDecimal currentQuantity(Product product) {
+        return product.getStock() != null && product.getStock().getQuantity() != null
+                ? product.getStock().getQuantity() : BigDecimal.ZERO;
+    }
+
+    private static Query byId(String productId) {
+        return new Query(Criteria.where("_id").is(Objects.requireNonNull(productId)));
+    }
+
+    /** Excluye el historial de auditoría: solo viaja lo necesario para el movimiento. */
+    private static Query withProjection(Query query) {
+        query.fields()
+                .include("description", "productCode", "saleType", "category", "stock", "presentations");
+        return query;
+    }
+}
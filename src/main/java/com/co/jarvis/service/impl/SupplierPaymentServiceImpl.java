@@ -9,6 +9,7 @@ import org.springframework.data.domain.Sort;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
+import com.co.jarvis.service.CashLedgerService;
 import com.co.jarvis.service.SupplierPaymentService;
 import com.co.jarvis.util.exception.FieldsException;
 import com.co.jarvis.util.exception.ResourceNotFoundException;
@@ -44,6 +45,9 @@ public class SupplierPaymentServiceImpl implements SupplierPaymentService {
     @Autowired
     private MongoTemplate mongoTemplate;
 
+    @Autowired
+    private CashLedgerService cashLedgerService;
+
     private final GenericMapper<SupplierPayment, SupplierPaymentDto> mapper =
             new GenericMapper<>(SupplierPayment.class, SupplierPaymentDto.class);
 
@@ -81,6 +85,7 @@ public class SupplierPaymentServiceImpl implements SupplierPaymentService {
         }
 
         SupplierPayment saved = repository.save(entity);
+        cashLedgerService.recordSupplierPayment(saved);
         return mapper.mapToDto(saved);
     }
 
@@ -1,5 +1,6 @@
 package com.co.jarvis.service.impl;
 
+import com.co.jarvis.config.security.JwtProvider;
 import com.co.jarvis.dto.UserDto;
 import com.co.jarvis.entity.User;
 import com.co.jarvis.repository.UserRepository;
@@ -35,6 +36,9 @@ public class UserServiceImpl implements UserService {
     @Autowired
     private PasswordEncoder passwordEncoder;
 
+    @Autowired
+    private JwtProvider jwtProvider;
+
     GenericMapper<User, UserDto> mapper = new GenericMapper<>(User.class, UserDto.class);
 
     @Override
@@ -85,7 +89,9 @@ public class UserServiceImpl implements UserService {
     @Override
     public void deleteById(String id) {
         logger.info("UserServiceImpl -> deleteById");
+        Optional<User> user = repository.findById(id);
         repository.deleteById(id);
+        user.ifPresent(deleted -> jwtProvider.evictUser(deleted.getNumberIdentity()));
     }
 
     @Override
@@ -110,7 +116,9 @@ public class UserServiceImpl implements UserService {
             dto.setPassword(passwordEncoder.encode(dto.getPassword()));
             User userToUpdate = mapper.mapToEntity(dto);
             userToUpdate.setId(id);
-            return mapper.mapToDto(repository.save(userToUpdate));
+            UserDto updated = mapper.mapToDto(repository.save(userToUpdate));
+            jwtProvider.evictUser(entity.getNumberIdentity());
+            return updated;
         } catch (ResourceNotFoundException e) {
             log.error("UserServiceImpl -> update -> ERROR: {}", e.getMessage());
             throw new ResourceNotFoundException(e.getMessage());
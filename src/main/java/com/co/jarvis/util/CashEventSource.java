@@ -0,0 +1,15 @@
+package com.co.jarvis.util;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Fuente de movimientos de un día (ventas, abonos, gastos, traslados...). Cada fuente hace
+ * sus propias consultas y no depende de las demás, por eso {@link CashEventSourceExecutor}
+ * puede ejecutarlas en paralelo.
+ */
+@FunctionalInterface
+public interface CashEventSource<T> {
+
+    List<T> load(LocalDate date);
+}
@@ -0,0 +1,126 @@
+package com.co.jarvis.util;
+
+import com.co.jarvis.util.exception.GenericInternalException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Ejecuta en paralelo las fuentes de un resumen diario y une sus resultados en el orden en
+ * que se declararon, de modo que el resumen espera a la fuente más lenta y no a la suma de
+ * todas. Usa un pool acotado (jarvis.cash-events.pool-size) y cada fuente tiene un tiempo
+ * máximo (jarvis.cash-events.timeout-ms); si una falla o no responde a tiempo se cancelan
+ * las demás y el resumen falla completo, porque un arqueo con movimientos faltantes
+ * daría un esperado incorrecto. La duración de cada fuente queda en "jarvis.cash_events.source".
+ * Dentro de una transacción las fuentes se ejecutan en el hilo que llama, para que lean
+ * con la misma sesión.
+ */
+@Component
+@Slf4j
+public class CashEventSourceExecutor {
+
+    private final MeterRegistry meterRegistry;
+    private final ThreadPoolExecutor executor;
+    private final long timeoutMs;
+
+    public CashEventSourceExecutor(MeterRegistry meterRegistry,
+                                   @Value("${jarvis.cash-events.pool-size:8}") int poolSize,
+                                   @Value("${jarvis.cash-events.queue-capacity:64}") int queueCapacity,
+                                   @Value("${jarvis.cash-events.timeout-ms:5000}") long timeoutMs) {
+        this.meterRegistry = meterRegistry;
+        this.timeoutMs = timeoutMs;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "cash-events-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                // Con el pool saturado la fuente corre en el hilo de la petición en lugar de fallar
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    public <T> List<T> collect(String summary, LocalDate date, Map<String, CashEventSource<T>> sources) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            List<T> result = new ArrayList<>();
+            sources.forEach((name, source) -> result.addAll(load(summary, name, source, date)));
+            return result;
+        }
+
+        Map<String, Future<List<T>>> futures = new LinkedHashMap<>();
+        sources.forEach((name, source) ->
+                futures.put(name, executor.submit(() -> load(summary, name, source, date))));
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        List<T> result = new ArrayList<>();
+        try {
+            for (Map.Entry<String, Future<List<T>>> entry : futures.entrySet()) {
+                result.addAll(await(summary, entry.getKey(), entry.getValue(), deadline));
+            }
+            return result;
+        } finally {
+            futures.values().forEach(future -> future.cancel(true));
+        }
+    }
+
+    private <T> List<T> await(String summary, String name, Future<List<T>> future, long deadline) {
+        try {
+            return future.get(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            Timer.builder("jarvis.cash_events.source")
+                    .tag("summary", summary)
+                    .tag("source", name)
+                    .tag("outcome", "timeout")
+                    .register(meterRegistry)
+                    .record(timeoutMs, TimeUnit.MILLISECONDS);
+            log.error("CashEventSourceExecutor -> {}.{} no respondió en {} ms", summary, name, timeoutMs);
+            throw new GenericInternalException("La fuente " + name + " del resumen " + summary
+                    + " no respondió a tiempo", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new GenericInternalException("Error cargando la fuente " + name + " del resumen " + summary, cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GenericInternalException("Carga del resumen " + summary + " interrumpida", e);
+        }
+    }
+
+    private <T> List<T> load(String summary, String name, CashEventSource<T> source, LocalDate date) {
+        long start = System.nanoTime();
+        String outcome = "error";
+        try {
+            List<T> result = source.load(date);
+            outcome = "ok";
+            return result != null ? result : List.of();
+        } finally {
+            Timer.builder("jarvis.cash_events.source")
+                    .tag("summary", summary)
+                    .tag("source", name)
+                    .tag("outcome", outcome)
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,163 @@
+package com.co.jarvis.util;
+
+import com.co.jarvis.dto.DisplayStock;
+import com.co.jarvis.entity.Product;
+import com.co.jarvis.enums.ESale;
+import com.co.jarvis.enums.UnitMeasure;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.util.Comparator;
+
+import static java.lang.String.format;
+
+/**
+ * Calcula el stock legible de un producto (bultos/rollos + sobrante) a partir de su cantidad,
+ * tipo de venta y presentaciones. En el producto solo se guarda la forma (tipo, tamaño del
+ * bulto y unidad), que cambia con el tipo de venta o las presentaciones; bultos, sobrante y
+ * etiqueta dependen de stock.quantity y se derivan al leer, así un $inc de stock no necesita
+ * reescribir el displayStock.
+ */
+public final class DisplayStockCalculator {
+
+    private DisplayStockCalculator() {
+    }
+
+    public static DisplayStock compute(Product product) {
+        return withQuantity(shape(product), product);
+    }
+
+    /**
+     * Parte persistida del displayStock: tipo, packSize (mayor fixedAmount de las presentaciones
+     * con isFixedAmount=true) y unidad base. No depende de la cantidad.
+     */
+    public static DisplayStock shape(Product product) {
+        if (product == null || product.getStock() == null) {
+            return DisplayStock.builder().unit("").build();
+        }
+
+        String kind = determineKind(product.getSaleType());
+        String unitBase = determineBaseUnit(kind, product.getStock().getUnitMeasure());
+        BigDecimal packSize = kind != null ? findLargestPackSize(product, unitBase) : null;
+        if (packSize != null && packSize.compareTo(BigDecimal.ZERO) <= 0) {
+            packSize = null;
+        }
+        return DisplayStock.builder()
+            .kind(kind)
+            .packSize(packSize)
+            .unit(unitBase)
+            .build();
+    }
+
+    /**
+     * Completa la forma guardada con bultos, sobrante y etiqueta para la cantidad actual del
+     * producto. computedAt es el momento de este cálculo.
+     */
+    public static DisplayStock withQuantity(DisplayStock shape, Product product) {
+        if (shape == null || product == null || product.getStock() == null) {
+            return buildEmptyDisplayStock();
+        }
+
+        String kind = shape.getKind();
+        String unitBase = shape.getUnit();
+
+        // Convertir cantidad de stock a unidad base
+        BigDecimal qty = UnitConverter.toBase(
+            product.getStock().getQuantity() != null ? product.getStock().getQuantity() : BigDecimal.ZERO,
+            product.getStock().getUnitMeasure(),
+            unitBase
+        );
+        
+        // Si qty es negativo o cero, tratarlo como 0
+        if (qty.compareTo(BigDecimal.ZERO) < 0) {
+            qty = BigDecimal.ZERO;
+        }
+
+        BigDecimal packSize = shape.getPackSize();
+        // No es WEIGHT ni LONGITUDE, o no hay presentaciones fijas válidas: stock simple
+        if (kind == null || packSize == null || packSize.compareTo(BigDecimal.ZERO) <= 0) {
+            return DisplayStock.builder()
+                .kind(kind)
+                .packSize(null)
+                .packs(null)
+                .remainder(null)
+                .unit(unitBase)
+                .label(format("%s %s", qty.stripTrailingZeros().toPlainString(), unitBase))
+                .computedAt(Instant.now().toString())
+                .build();
+        }
+
+        // Calcular packs y remainder
+        int packs = qty.divide(packSize, 0, RoundingMode.DOWN).intValue();
+        BigDecimal remainder = qty.subtract(packSize.multiply(BigDecimal.valueOf(packs)));
+        remainder = UnitConverter.round(remainder, 3);
+
+        // Construir label
+        String noun = "WEIGHT".equals(kind) ? "bultos" : "rollos";
+        String label = format("%d %s + %s %s", 
+            packs, 
+            noun, 
+            remainder.stripTrailingZeros().toPlainString(), 
+            unitBase
+        );
+
+        return DisplayStock.builder()
+            .kind(kind)
+            .packSize(packSize)
+            .packs(packs)
+            .remainder(remainder)
+            .unit(unitBase)
+            .label(label)
+            .computedAt(Instant.now().toString())
+            .build();
+    }
+
+    private static String determineKind(ESale saleType) {
+        if (saleType == null) {
+            return null;
+        }
+        return switch (saleType) {
+            case WEIGHT -> "WEIGHT";
+            case LONGITUDE -> "LONGITUDE";
+            default -> null;
+        };
+    }
+
+    private static String determineBaseUnit(String kind, UnitMeasure stockUnit) {
+        if (kind == null) {
+            return stockUnit != null ? stockUnit.getSigma() : "";
+        }
+        return switch (kind) {
+            case "WEIGHT" -> "kg";
+            case "LONGITUDE" -> "cm";
+            default -> stockUnit != null ? stockUnit.getSigma() : "";
+        };
+    }
+
+    private static BigDecimal findLargestPackSize(Product product, String unitBase) {
+        if (product.getPresentations() == null || product.getPresentations().isEmpty()) {
+            return null;
+        }
+
+        return product.getPresentations().stream()
+            .filter(p -> Boolean.TRUE.equals(p.getIsFixedAmount()))
+            .filter(p -> p.getFixedAmount() != null && p.getFixedAmount().compareTo(BigDecimal.ZERO) > 0)
+            .map(p -> UnitConverter.toBase(p.getFixedAmount(), p.getUnitMeasure(), unitBase))
+            .filter(v -> v.compareTo(BigDecimal.ZERO) > 0)
+            .max(Comparator.naturalOrder())
+            .orElse(null);
+    }
+
+    private static DisplayStock buildEmptyDisplayStock() {
+        return DisplayStock.builder()
+            .kind(null)
+            .packSize(null)
+            .packs(null)
+            .remainder(null)
+            .unit("")
+            .label("0")
+            .computedAt(Instant.now().toString())
+            .build();
+    }
+}
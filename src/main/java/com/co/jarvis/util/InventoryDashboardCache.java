@@ -0,0 +1,129 @@
+package com.co.jarvis.util;
+
+import com.co.jarvis.dto.InventoryDashboardDto;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Último tablero de inventario calculado. Durante jarvis.inventory.dashboard.ttl-ms se sirve
+ * aunque haya cambiado el stock: cada cambio de stock de este nodo solo lo marca como
+ * desactualizado, y la siguiente petición lo devuelve y pide un recálculo en segundo plano.
+ * Con ventas continuas el tablero nunca quedaba guardado y cada petición lo recalculaba.
+ * Pasado el TTL (o sin tablero) la petición lo calcula y las demás esperan ese mismo cálculo.
+ * Los cambios de otros nodos se ven al vencer.
+ */
+@Slf4j
+@Component
+public class InventoryDashboardCache {
+
+    private record Entry(InventoryDashboardDto dashboard, long loadedAt, long generation) {
+    }
+
+    private final long ttlMs;
+    private final Executor refreshExecutor;
+    private final Object loadLock = new Object();
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private volatile Entry entry;
+
+    @Autowired
+    public InventoryDashboardCache(@Value("${jarvis.inventory.dashboard.ttl-ms:30000}") long ttlMs) {
+        this(ttlMs, refreshThread());
+    }
+
+    InventoryDashboardCache(long ttlMs, Executor refreshExecutor) {
+        this.ttlMs = ttlMs;
+        this.refreshExecutor = refreshExecutor;
+    }
+
+    public InventoryDashboardDto get(Supplier<InventoryDashboardDto> loader) {
+        Entry current = entry;
+        if (isFresh(current)) {
+            if (current.generation() != generation.get()) {
+                refreshAsync(loader);
+            }
+            return current.dashboard();
+        }
+        synchronized (loadLock) {
+            current = entry;
+            if (isFresh(current)) {
+                return current.dashboard();
+            }
+            return load(loader);
+        }
+    }
+
+    /** Marca el tablero como desactualizado; se sigue sirviendo hasta que termine el recálculo. */
+    public void invalidate() {
+        generation.incrementAndGet();
+    }
+
+    private boolean isFresh(Entry current) {
+        return current != null && System.currentTimeMillis() - current.loadedAt() < ttlMs;
+    }
+
+    /**
+     * Calcula y guarda el tablero con la generación en que empezó: si hubo un cambio de stock
+     * mientras se calculaba queda marcado como desactualizado y se vuelve a pedir.
+     */
+    private InventoryDashboardDto load(Supplier<InventoryDashboardDto> loader) {
+        long loadGeneration = generation.get();
+        InventoryDashboardDto dashboard = loader.get();
+        if (ttlMs > 0) {
+            entry = new Entry(dashboard, System.currentTimeMillis(), loadGeneration);
+        }
+        return dashboard;
+    }
+
+    private void refreshAsync(Supplier<InventoryDashboardDto> loader) {
+        if (!refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    synchronized (loadLock) {
+                        load(loader);
+                    }
+                } catch (RuntimeException e) {
+                    log.error("InventoryDashboardCache -> refreshAsync -> ERROR: {}", e.getMessage(), e);
+                } finally {
+                    refreshing.set(false);
+                }
+            });
+        } catch (RuntimeException e) {
+            refreshing.set(false);
+            log.warn("InventoryDashboardCache -> refreshAsync: no se pudo programar el recálculo: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (refreshExecutor instanceof ExecutorService executorService) {
+            executorService.shutdownNow();
+        }
+    }
+
+    private static ExecutorService refreshThread() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "inventory-dashboard-refresh");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
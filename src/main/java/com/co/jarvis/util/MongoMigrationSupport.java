@@ -0,0 +1,63 @@
+package com.co.jarvis.util;
+
+import com.mongodb.bulk.BulkWriteError;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.aggregation.ConvertOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.schema.JsonSchemaObject;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Pasos comunes de las migraciones que corren al arrancar. Todos se pueden repetir: si una
+ * migración se interrumpe, el siguiente arranque la termina.
+ */
+public final class MongoMigrationSupport {
+
+    private static final int DUPLICATE_KEY = 11000;
+
+    private MongoMigrationSupport() {
+    }
+
+    /**
+     * Convierte a Decimal128 los campos guardados como String (conversión por defecto de
+     * BigDecimal), sobre los cuales $inc falla. Devuelve cuántos documentos cambió.
+     */
+    public static long toDecimal128(MongoTemplate mongoTemplate, Class<?> entityClass, String... fields) {
+        Criteria[] legacy = Arrays.stream(fields)
+                .map(field -> Criteria.where(field).type(JsonSchemaObject.Type.STRING))
+                .toArray(Criteria[]::new);
+        AggregationUpdate update = AggregationUpdate.update();
+        for (String field : fields) {
+            update.set(field).toValue(ConvertOperators.valueOf(field).convertToDecimal());
+        }
+        return mongoTemplate.updateMulti(new Query(new Criteria().orOperator(legacy)), update, entityClass)
+                .getModifiedCount();
+    }
+
+    /**
+     * Inserta los documentos en un solo bulk desordenado. Los que ya existen (mismo _id, de una
+     * migración anterior que no terminó) se ignoran; cualquier otro error se propaga.
+     */
+    public static void insertIgnoringDuplicates(MongoTemplate mongoTemplate, Class<?> entityClass, List<?> documents) {
+        if (documents.isEmpty()) {
+            return;
+        }
+        try {
+            mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, entityClass)
+                    .insert(documents)
+                    .execute();
+        } catch (BulkOperationException e) {
+            for (BulkWriteError error : e.getErrors()) {
+                if (error.getCode() != DUPLICATE_KEY) {
+                    throw e;
+                }
+            }
+        }
+    }
+}
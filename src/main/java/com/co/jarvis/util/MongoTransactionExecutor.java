@@ -0,0 +1,165 @@
+package com.co.jarvis.util;
+
+import com.mongodb.MongoException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Ejecuta una unidad de trabajo dentro de una transacción de MongoDB.
+ * Reintenta la transacción completa solo cuando el servidor la marca con
+ * TransientTransactionError (elecciones del replica set, conflictos de escritura
+ * entre cajas): en ese caso no se aplicó nada. Entre intentos espera
+ * backoff·2^(intento-1) ms con jitter de ±50%, para que dos cajas que chocaron no vuelvan
+ * a chocar en el mismo instante. UnknownTransactionCommitResult no se reintenta aquí,
+ * porque el commit pudo haberse aplicado; ese commit lo reintenta el transaction manager
+ * sobre la misma sesión (MongoConfig).
+ * Métricas: "jarvis.tx.duration" con phase=attempt mide cada intento (trabajo + commit) y
+ * con phase=commit solo el commit; "jarvis.tx.total" mide la llamada completa con reintentos
+ * y esperas.
+ */
+@Component
+@Slf4j
+public class MongoTransactionExecutor {
+
+    private final PlatformTransactionManager transactionManager;
+    private final MeterRegistry meterRegistry;
+    private final int maxAttempts;
+    private final long backoffMs;
+
+    public MongoTransactionExecutor(PlatformTransactionManager transactionManager,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${jarvis.transactions.max-attempts:3}") int maxAttempts,
+                                    @Value("${jarvis.transactions.backoff-ms:10}") long backoffMs) {
+        this.transactionManager = transactionManager;
+        this.meterRegistry = meterRegistry;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.backoffMs = Math.max(0L, backoffMs);
+    }
+
+    public <T> T execute(String name, Supplier<T> work) {
+        long callStart = System.nanoTime();
+        String outcome = "failed";
+        int attempt = 1;
+        try {
+            while (true) {
+                long start = System.nanoTime();
+                try {
+                    T result = runOnce(name, work);
+                    record(name, "attempt", "committed", start);
+                    outcome = "committed";
+                    return result;
+                } catch (RuntimeException e) {
+                    boolean retryable = isRetryable(e);
+                    record(name, "attempt", retryable ? "retried" : "failed", start);
+                    if (!retryable || attempt >= maxAttempts) {
+                        throw e;
+                    }
+                    long delay = backoffMillis(attempt);
+                    log.warn("Transacción {} abortada por error transitorio (intento {}/{}), reintento en {} ms: {}",
+                            name, attempt, maxAttempts, delay, e.getMessage());
+                    Counter.builder("jarvis.tx.retries").tag("name", name).register(meterRegistry).increment();
+                    sleep(delay, e);
+                    attempt++;
+                }
+            }
+        } finally {
+            Timer.builder("jarvis.tx.total")
+                    .tag("name", name)
+                    .tag("outcome", outcome)
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - callStart, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Un intento: abre la transacción, ejecuta el trabajo y confirma, midiendo el commit aparte.
+     */
+    private <T> T runOnce(String name, Supplier<T> work) {
+        TransactionStatus status = transactionManager.getTransaction(TransactionDefinition.withDefaults());
+        T result;
+        try {
+            result = work.get();
+        } catch (RuntimeException | Error e) {
+            rollback(status, e);
+            throw e;
+        }
+        long commitStart = System.nanoTime();
+        try {
+            transactionManager.commit(status);
+        } catch (RuntimeException e) {
+            record(name, "commit", "failed", commitStart);
+            throw e;
+        }
+        record(name, "commit", "committed", commitStart);
+        return result;
+    }
+
+    private void rollback(TransactionStatus status, Throwable cause) {
+        try {
+            transactionManager.rollback(status);
+        } catch (RuntimeException e) {
+            log.error("MongoTransactionExecutor -> rollback: falló el rollback", e);
+            e.addSuppressed(cause);
+            throw e;
+        }
+    }
+
+    /**
+     * Espera antes del intento attempt+1: backoff·2^(attempt-1) ms, ±50% aleatorio.
+     */
+    long backoffMillis(int attempt) {
+        if (backoffMs == 0) {
+            return 0L;
+        }
+        long base = backoffMs << Math.min(attempt - 1, 10);
+        return base / 2 + ThreadLocalRandom.current().nextLong(base + 1);
+    }
+
+    private static void sleep(long millis, RuntimeException cause) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw cause;
+        }
+    }
+
+    private void record(String name, String phase, String outcome, long start) {
+        Timer.builder("jarvis.tx.duration")
+                .tag("name", name)
+                .tag("phase", phase)
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+    static boolean isRetryable(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof MongoException mongoException) {
+                if (mongoException.hasErrorLabel(MongoException.UNKNOWN_TRANSACTION_COMMIT_RESULT_LABEL)) {
+                    return false;
+                }
+                if (mongoException.hasErrorLabel(MongoException.TRANSIENT_TRANSACTION_ERROR_LABEL)) {
+                    return true;
+                }
+            }
+            if (t.getCause() == t) {
+                break;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,374 @@
+package com.co.jarvis.util;
+
+import com.co.jarvis.entity.Presentation;
+import com.co.jarvis.entity.Product;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonValue;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Catálogo de productos en memoria del nodo, indexado por id y por código de barras de
+ * presentación, para que el escaneo en caja no consulte Mongo. Se carga completo al arrancar
+ * (jarvis.catalog.cache.preload) y se mantiene con escritura directa desde ProductServiceImpl;
+ * los cambios de stock y las escrituras hechas dentro de una transacción solo invalidan la
+ * entrada (también al terminar la transacción), y la siguiente lectura la recarga.
+ * <p>
+ * Cada escritura incrementa un sello global y lo anota en el producto que tocó; una carga o
+ * escritura solo se guarda si ese producto no cambió desde que tomó el sello, así una lectura
+ * lenta no deja en el caché un producto viejo sin descartar las de otros productos.
+ * El caché guarda y entrega copias: quien modifique el producto leído no cambia el del caché.
+ * Con varias instancias, jarvis.catalog.cache.change-stream=true escucha el change stream de
+ * PRODUCTS (requiere replica set) e invalida lo que cambien los demás nodos.
+ * Aciertos y fallos quedan en "jarvis.catalog.cache.lookups" y la proporción en
+ * "jarvis.catalog.cache.hit.ratio".
+ */
+@Component
+@Slf4j
+public class ProductCatalogCache {
+
+    private static final String PRODUCTS_COLLECTION = "PRODUCTS";
+    private static final long CHANGE_STREAM_RETRY_MS = 5000L;
+
+    private final MongoTemplate mongoTemplate;
+    private final boolean enabled;
+    private final boolean preload;
+    private final boolean changeStream;
+
+    private final Map<String, Product> productsById = new ConcurrentHashMap<>();
+    private final Map<String, String> productIdsByBarcode = new ConcurrentHashMap<>();
+    private final Map<String, Long> writtenAt = new ConcurrentHashMap<>();
+    private final Object writeLock = new Object();
+    private volatile long stamp;
+    private volatile long clearedAt;
+
+    private final List<Consumer<String>> changeListeners = new CopyOnWriteArrayList<>();
+
+    private final Counter hits;
+    private final Counter misses;
+
+    private volatile boolean running = true;
+    private volatile MongoChangeStreamCursor<ChangeStreamDocument<org.bson.Document>> cursor;
+
+    public ProductCatalogCache(MongoTemplate mongoTemplate,
+                               MeterRegistry meterRegistry,
+                               @Value("${jarvis.catalog.cache.enabled:true}") boolean enabled,
+                               @Value("${jarvis.catalog.cache.preload:true}") boolean preload,
+                               @Value("${jarvis.catalog.cache.change-stream:false}") boolean changeStream) {
+        this.mongoTemplate = mongoTemplate;
+        this.enabled = enabled;
+        this.preload = preload;
+        this.changeStream = changeStream;
+        this.hits = Counter.builder("jarvis.catalog.cache.lookups").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("jarvis.catalog.cache.lookups").tag("result", "miss").register(meterRegistry);
+        Gauge.builder("jarvis.catalog.cache.size", productsById, Map::size).register(meterRegistry);
+        Gauge.builder("jarvis.catalog.cache.hit.ratio", this, ProductCatalogCache::hitRatio).register(meterRegistry);
+    }
+
+    /**
+     * Producto que tiene una presentación con ese código de barras. Si no está en el caché
+     * lo busca con loader y lo guarda.
+     */
+    public Product findByBarcode(String barcode, Function<String, Product> loader) {
+        if (!enabled || barcode == null) {
+            return loader.apply(barcode);
+        }
+        String productId = productIdsByBarcode.get(barcode);
+        Product product = productId != null ? productsById.get(productId) : null;
+        if (product != null) {
+            hits.increment();
+            return copy(product);
+        }
+        misses.increment();
+        long loadStamp = stamp;
+        product = loader.apply(barcode);
+        if (product != null) {
+            put(product, loadStamp);
+        }
+        return product;
+    }
+
+    public Product findById(String productId, Function<String, Product> loader) {
+        if (!enabled || productId == null) {
+            return loader.apply(productId);
+        }
+        Product product = productsById.get(productId);
+        if (product != null) {
+            hits.increment();
+            return copy(product);
+        }
+        misses.increment();
+        long loadStamp = stamp;
+        product = loader.apply(productId);
+        if (product != null) {
+            put(product, loadStamp);
+        }
+        return product;
+    }
+
+    /**
+     * Sello actual; se toma antes de leer o guardar el producto y se pasa a {@link #put}.
+     */
+    public long stamp() {
+        return stamp;
+    }
+
+    /**
+     * Guarda el producto recién leído o guardado. Si ese producto se escribió desde que se tomó
+     * el sello, o si hay una transacción en curso, solo invalida la entrada.
+     */
+    public void put(Product product, long expectedStamp) {
+        if (!enabled || product == null || product.getId() == null) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            invalidate(product.getId());
+            return;
+        }
+        synchronized (writeLock) {
+            if (changedSince(product.getId(), expectedStamp)) {
+                remove(product.getId());
+            } else {
+                store(copy(product));
+            }
+            writtenAt.put(product.getId(), ++stamp);
+        }
+    }
+
+    /**
+     * Descarta el producto; la siguiente lectura lo trae de Mongo. Dentro de una transacción
+     * se vuelve a descartar al terminarla, para no conservar lo leído antes del commit.
+     */
+    public void invalidate(String productId) {
+        if (!enabled || productId == null) {
+            return;
+        }
+        synchronized (writeLock) {
+            remove(productId);
+            writtenAt.put(productId, ++stamp);
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    invalidate(productId);
+                }
+            });
+        }
+    }
+
+    public void invalidateAll(Iterable<String> productIds) {
+        productIds.forEach(this::invalidate);
+    }
+
+    /**
+     * Registra quien deba enterarse de los cambios que llegan por el change stream (productos
+     * modificados en otros nodos). Recibe el id del producto, o null si se debe recargar todo.
+     */
+    public void addChangeListener(Consumer<String> listener) {
+        changeListeners.add(listener);
+    }
+
+    public void clear() {
+        synchronized (writeLock) {
+            productsById.clear();
+            productIdsByBarcode.clear();
+            writtenAt.clear();
+            clearedAt = ++stamp;
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        if (preload) {
+            load();
+        }
+        if (changeStream) {
+            Thread watcher = new Thread(this::watchProducts, "catalog-change-stream");
+            watcher.setDaemon(true);
+            watcher.start();
+        }
+    }
+
+    /**
+     * Carga todo el catálogo. Los productos escritos mientras se lee se saltan (lo leído podría
+     * ser anterior a esa escritura) y se cargan a demanda; el resto se sigue cargando.
+     */
+    private void load() {
+        long start = System.currentTimeMillis();
+        int count = 0;
+        int skipped = 0;
+        long loadStamp = stamp;
+        try (Stream<Product> products = mongoTemplate.stream(new Query(), Product.class)) {
+            Iterator<Product> iterator = products.iterator();
+            while (iterator.hasNext()) {
+                Product product = iterator.next();
+                synchronized (writeLock) {
+                    if (changedSince(product.getId(), loadStamp)) {
+                        skipped++;
+                        continue;
+                    }
+                    store(product);
+                }
+                count++;
+            }
+            log.info("ProductCatalogCache -> load: {} productos en {} ms ({} modificados durante la carga)",
+                    count, System.currentTimeMillis() - start, skipped);
+        } catch (RuntimeException e) {
+            log.error("ProductCatalogCache -> load -> ERROR: {}", e.getMessage(), e);
+        }
+    }
+
+    private void watchProducts() {
+        while (running) {
+            try (MongoChangeStreamCursor<ChangeStreamDocument<org.bson.Document>> changes =
+                         mongoTemplate.getCollection(PRODUCTS_COLLECTION).watch().cursor()) {
+                cursor = changes;
+                log.info("ProductCatalogCache -> watchProducts: escuchando cambios de {}", PRODUCTS_COLLECTION);
+                while (running && changes.hasNext()) {
+                    apply(changes.next());
+                }
+            } catch (RuntimeException e) {
+                if (!running) {
+                    return;
+                }
+                // Mientras no se escuchan cambios no se sabe qué quedó viejo: se descarta todo
+                log.error("ProductCatalogCache -> watchProducts -> ERROR: {}", e.getMessage());
+                clear();
+                notifyChange(null);
+                pause();
+            }
+        }
+    }
+
+    private void apply(ChangeStreamDocument<org.bson.Document> change) {
+        OperationType operation = change.getOperationType();
+        if (operation == OperationType.DROP || operation == OperationType.RENAME
+                || operation == OperationType.DROP_DATABASE || operation == OperationType.INVALIDATE) {
+            clear();
+            notifyChange(null);
+            return;
+        }
+        BsonValue id = change.getDocumentKey() != null ? change.getDocumentKey().get("_id") : null;
+        if (id == null) {
+            return;
+        }
+        String productId = id.isObjectId() ? id.asObjectId().getValue().toHexString()
+                : id.isString() ? id.asString().getValue() : null;
+        if (productId != null) {
+            invalidate(productId);
+            notifyChange(productId);
+        }
+    }
+
+    private void notifyChange(String productId) {
+        for (Consumer<String> listener : changeListeners) {
+            try {
+                listener.accept(productId);
+            } catch (RuntimeException e) {
+                log.error("ProductCatalogCache -> notifyChange -> ERROR {}: {}", productId, e.getMessage());
+            }
+        }
+    }
+
+    private void pause() {
+        try {
+            Thread.sleep(CHANGE_STREAM_RETRY_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        MongoChangeStreamCursor<ChangeStreamDocument<org.bson.Document>> current = cursor;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (RuntimeException e) {
+                log.debug("ProductCatalogCache -> shutdown: {}", e.getMessage());
+            }
+        }
+    }
+
+    private double hitRatio() {
+        double total = hits.count() + misses.count();
+        return total == 0 ? 0.0 : hits.count() / total;
+    }
+
+    /** Se llama con writeLock tomado. */
+    private boolean changedSince(String productId, long expectedStamp) {
+        return clearedAt > expectedStamp || writtenAt.getOrDefault(productId, 0L) > expectedStamp;
+    }
+
+    private void store(Product product) {
+        Product previous = productsById.put(product.getId(), product);
+        if (previous != null) {
+            barcodes(previous).forEach(barcode -> productIdsByBarcode.remove(barcode, product.getId()));
+        }
+        barcodes(product).forEach(barcode -> productIdsByBarcode.put(barcode, product.getId()));
+    }
+
+    private void remove(String productId) {
+        Product previous = productsById.remove(productId);
+        if (previous != null) {
+            barcodes(previous).forEach(barcode -> productIdsByBarcode.remove(barcode, productId));
+        }
+    }
+
+    private static List<String> barcodes(Product product) {
+        if (product.getPresentations() == null) {
+            return List.of();
+        }
+        return product.getPresentations().stream()
+                .map(Presentation::getBarcode)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    /**
+     * Copia con presentaciones, stock y displayStock propios; las entradas de auditoría se
+     * comparten porque no se modifican después de agregarlas.
+     */
+    private static Product copy(Product product) {
+        return product.toBuilder()
+                .presentations(product.getPresentations() == null ? null : product.getPresentations().stream()
+                        .map(presentation -> presentation.toBuilder().build())
+                        .collect(Collectors.toCollection(ArrayList::new)))
+                .stock(product.getStock() != null ? product.getStock().toBuilder().build() : null)
+                .displayStock(product.getDisplayStock() != null ? product.getDisplayStock().toBuilder().build() : null)
+                .auditTrail(product.getAuditTrail() != null ? new ArrayList<>(product.getAuditTrail()) : null)
+                .legacyAuditTrail(product.getLegacyAuditTrail() != null ? new ArrayList<>(product.getLegacyAuditTrail()) : null)
+                .build();
+    }
+}
@@ -0,0 +1,389 @@
+package com.co.jarvis.util;
+
+import com.co.jarvis.entity.Presentation;
+import com.co.jarvis.entity.Product;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Índice en memoria para la búsqueda de productos mientras se escribe. Descripción, código de
+ * producto y códigos de barras se normalizan (sin tildes, en minúscula) y se parten en palabras;
+ * cada palabra se indexa por sus prefijos y por trigramas, así una consulta encuentra tanto el
+ * inicio de una palabra como un fragmento intermedio sin recorrer la colección.
+ * <p>
+ * El orden favorece el código de barras exacto, luego el código de producto exacto, luego la
+ * descripción que empieza con la consulta y después las coincidencias por prefijo sobre las
+ * de fragmento. El índice solo guarda los campos de búsqueda: la página de resultados se arma
+ * con {@link ProductCatalogCache}. Se carga al arrancar y ProductServiceImpl lo actualiza al
+ * guardar o eliminar; los cambios de otros nodos llegan por el change stream del catálogo.
+ */
+@Component
+@Slf4j
+public class ProductSearchIndex {
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^a-z0-9]+");
+    private static final int MAX_PREFIX_LENGTH = 20;
+    private static final int GRAM_LENGTH = 3;
+
+    private static final int EXACT_BARCODE_SCORE = 1000;
+    private static final int EXACT_CODE_SCORE = 800;
+    private static final int DESCRIPTION_PREFIX_SCORE = 200;
+    private static final int FIRST_WORD_PREFIX_SCORE = 30;
+    private static final int WORD_PREFIX_SCORE = 20;
+    private static final int FRAGMENT_SCORE = 5;
+
+    private final MongoTemplate mongoTemplate;
+    private volatile Index index = new Index();
+    private volatile boolean ready;
+
+    // Cambios recibidos mientras se carga un índice nuevo (null si no hay carga en curso); se
+    // aplican al índice cargado antes de reemplazar el actual para no perderlos
+    private final Object writeLock = new Object();
+    private List<Change> pendingChanges;
+
+    public ProductSearchIndex(MongoTemplate mongoTemplate, ProductCatalogCache catalogCache) {
+        this.mongoTemplate = mongoTemplate;
+        catalogCache.addChangeListener(this::refresh);
+    }
+
+    /**
+     * Ids de la página pedida, ya ordenados por relevancia, y el total de coincidencias.
+     */
+    public record Result(List<String> productIds, long total) {
+    }
+
+    private record Entry(String id, String description, String productCode, Set<String> barcodes,
+                         List<String> words) {
+    }
+
+    private record Match(Entry entry, int score) {
+    }
+
+    /**
+     * Cambio de un producto: entry null es una eliminación.
+     */
+    private record Change(String productId, Entry entry) {
+    }
+
+    private static final Comparator<Match> RANKING = Comparator.comparingInt(Match::score).reversed()
+            .thenComparingInt(match -> match.entry().description().length())
+            .thenComparing(match -> match.entry().description())
+            .thenComparing(match -> match.entry().id());
+
+    /**
+     * Falso hasta terminar la primera carga; mientras tanto se usa la consulta en Mongo.
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    public Result search(String query, long offset, int limit) {
+        List<String> tokens = tokenize(query);
+        if (tokens.isEmpty()) {
+            return new Result(List.of(), 0);
+        }
+        Index current = index;
+        String folded = String.join(" ", tokens);
+        String compact = String.join("", tokens);
+
+        // Se parte de la palabra más larga (la más selectiva) y se verifican las demás
+        String seed = tokens.stream().max(Comparator.comparingInt(String::length)).orElseThrow();
+        List<Match> matches = new ArrayList<>();
+        for (String productId : current.candidates(seed)) {
+            Entry entry = current.entries.get(productId);
+            if (entry == null) {
+                continue;
+            }
+            int score = score(entry, tokens, folded, compact);
+            if (score > 0) {
+                matches.add(new Match(entry, score));
+            }
+        }
+
+        matches.sort(RANKING);
+        List<String> page = matches.stream()
+                .skip(offset)
+                .limit(limit)
+                .map(match -> match.entry().id())
+                .toList();
+        return new Result(page, matches.size());
+    }
+
+    public void index(Product product) {
+        if (product == null || product.getId() == null) {
+            return;
+        }
+        apply(new Change(product.getId(), toEntry(product)));
+    }
+
+    public void remove(String productId) {
+        if (productId != null) {
+            apply(new Change(productId, null));
+        }
+    }
+
+    private void apply(Change change) {
+        synchronized (writeLock) {
+            apply(index, change);
+            if (pendingChanges != null) {
+                pendingChanges.add(change);
+            }
+        }
+    }
+
+    private static void apply(Index target, Change change) {
+        if (change.entry() != null) {
+            target.put(change.entry());
+        } else {
+            target.remove(change.productId());
+        }
+    }
+
+    /**
+     * Carga el índice completo en uno nuevo y lo reemplaza. Lo que se guarde o elimine durante
+     * la carga se aplica al índice actual y se repite sobre el nuevo justo antes del cambio.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void load() {
+        long start = System.currentTimeMillis();
+        synchronized (writeLock) {
+            pendingChanges = new ArrayList<>();
+        }
+        try {
+            Index loaded = new Index();
+            try (Stream<Product> products = mongoTemplate.stream(searchFields(new Query()), Product.class)) {
+                products.forEach(product -> loaded.put(toEntry(product)));
+            }
+            int replayed;
+            synchronized (writeLock) {
+                replayed = pendingChanges.size();
+                pendingChanges.forEach(change -> apply(loaded, change));
+                index = loaded;
+            }
+            ready = true;
+            log.info("ProductSearchIndex -> load: {} productos en {} ms ({} cambios durante la carga)",
+                    loaded.entries.size(), System.currentTimeMillis() - start, replayed);
+        } catch (RuntimeException e) {
+            log.error("ProductSearchIndex -> load -> ERROR: {}", e.getMessage(), e);
+        } finally {
+            synchronized (writeLock) {
+                pendingChanges = null;
+            }
+        }
+    }
+
+    /**
+     * Producto cambiado en otro nodo: se vuelve a leer; null recarga el índice completo.
+     */
+    private void refresh(String productId) {
+        if (productId == null) {
+            load();
+            return;
+        }
+        Query query = searchFields(new Query(Criteria.where("_id").is(productId)));
+        Product product = mongoTemplate.findOne(query, Product.class);
+        if (product == null) {
+            remove(productId);
+        } else {
+            index(product);
+        }
+    }
+
+    private static Query searchFields(Query query) {
+        query.fields().include("description", "productCode", "presentations.barcode");
+        return query;
+    }
+
+    private static int score(Entry entry, List<String> tokens, String folded, String compact) {
+        int score = 0;
+        for (String token : tokens) {
+            int tokenScore = tokenScore(entry, token);
+            if (tokenScore == 0) {
+                return 0;
+            }
+            score += tokenScore;
+        }
+        if (entry.barcodes().contains(compact)) {
+            score += EXACT_BARCODE_SCORE;
+        }
+        if (compact.equals(entry.productCode())) {
+            score += EXACT_CODE_SCORE;
+        }
+        if (entry.description().startsWith(folded)) {
+            score += DESCRIPTION_PREFIX_SCORE;
+        }
+        return score;
+    }
+
+    private static int tokenScore(Entry entry, String token) {
+        List<String> words = entry.words();
+        int best = 0;
+        for (int i = 0; i < words.size(); i++) {
+            String word = words.get(i);
+            if (word.startsWith(token)) {
+                return i == 0 ? FIRST_WORD_PREFIX_SCORE : WORD_PREFIX_SCORE;
+            }
+            if (best == 0 && token.length() >= GRAM_LENGTH && word.contains(token)) {
+                best = FRAGMENT_SCORE;
+            }
+        }
+        return best;
+    }
+
+    private static Entry toEntry(Product product) {
+        List<String> descriptionWords = tokenize(product.getDescription());
+        String productCode = String.join("", tokenize(product.getProductCode()));
+        Set<String> barcodes = new LinkedHashSet<>();
+        if (product.getPresentations() != null) {
+            product.getPresentations().stream()
+                    .map(Presentation::getBarcode)
+                    .map(barcode -> String.join("", tokenize(barcode)))
+                    .filter(barcode -> !barcode.isEmpty())
+                    .forEach(barcodes::add);
+        }
+
+        Set<String> words = new LinkedHashSet<>(descriptionWords);
+        if (!productCode.isEmpty()) {
+            words.add(productCode);
+        }
+        words.addAll(barcodes);
+        return new Entry(product.getId(), String.join(" ", descriptionWords), productCode,
+                barcodes, List.copyOf(words));
+    }
+
+    static List<String> tokenize(String value) {
+        String folded = fold(value);
+        if (folded.isBlank()) {
+            return List.of();
+        }
+        return Arrays.stream(SEPARATORS.split(folded))
+                .filter(token -> !token.isEmpty())
+                .toList();
+    }
+
+    static String fold(String value) {
+        if (value == null) {
+            return "";
+        }
+        return MARKS.matcher(Normalizer.normalize(value, Normalizer.Form.NFD)).replaceAll("")
+                .toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Prefijos y trigramas de cada palabra hacia los ids de producto. Las escrituras de un
+     * mismo producto se serializan; las búsquedas leen sin bloquear.
+     */
+    private static final class Index {
+
+        private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+        private final Map<String, Set<String>> prefixes = new ConcurrentHashMap<>();
+        private final Map<String, Set<String>> grams = new ConcurrentHashMap<>();
+
+        synchronized void put(Entry entry) {
+            Entry previous = entries.put(entry.id(), entry);
+            if (previous != null) {
+                unlink(previous);
+            }
+            for (String word : entry.words()) {
+                for (String prefix : prefixes(word)) {
+                    prefixes.computeIfAbsent(prefix, key -> ConcurrentHashMap.newKeySet()).add(entry.id());
+                }
+                for (String gram : grams(word)) {
+                    grams.computeIfAbsent(gram, key -> ConcurrentHashMap.newKeySet()).add(entry.id());
+                }
+            }
+        }
+
+        synchronized void remove(String productId) {
+            Entry previous = entries.remove(productId);
+            if (previous != null) {
+                unlink(previous);
+            }
+        }
+
+        /**
+         * Ids que pueden contener la palabra: los que tienen una palabra con ese prefijo más,
+         * si la palabra alcanza un trigrama, los que tienen todos sus trigramas.
+         */
+        Set<String> candidates(String token) {
+            Set<String> result = new LinkedHashSet<>(
+                    prefixes.getOrDefault(prefixKey(token), Collections.emptySet()));
+            if (token.length() >= GRAM_LENGTH) {
+                List<Set<String>> postings = new ArrayList<>();
+                for (String gram : grams(token)) {
+                    postings.add(grams.getOrDefault(gram, Collections.emptySet()));
+                }
+                postings.sort(Comparator.comparingInt(Set::size));
+                Set<String> smallest = postings.get(0);
+                for (String productId : smallest) {
+                    if (postings.stream().allMatch(posting -> posting.contains(productId))) {
+                        result.add(productId);
+                    }
+                }
+            }
+            return result;
+        }
+
+        private void unlink(Entry entry) {
+            for (String word : entry.words()) {
+                for (String prefix : prefixes(word)) {
+                    detach(prefixes, prefix, entry.id());
+                }
+                for (String gram : grams(word)) {
+                    detach(grams, gram, entry.id());
+                }
+            }
+        }
+
+        private static void detach(Map<String, Set<String>> postings, String key, String productId) {
+            postings.computeIfPresent(key, (ignored, ids) -> {
+                ids.remove(productId);
+                return ids.isEmpty() ? null : ids;
+            });
+        }
+
+        private static String prefixKey(String token) {
+            return token.length() > MAX_PREFIX_LENGTH ? token.substring(0, MAX_PREFIX_LENGTH) : token;
+        }
+
+        private static List<String> prefixes(String word) {
+            int length = Math.min(word.length(), MAX_PREFIX_LENGTH);
+            List<String> result = new ArrayList<>(length);
+            for (int i = 1; i <= length; i++) {
+                result.add(word.substring(0, i));
+            }
+            return result;
+        }
+
+        private static Set<String> grams(String word) {
+            if (word.length() < GRAM_LENGTH) {
+                return Set.of();
+            }
+            Set<String> result = new LinkedHashSet<>();
+            for (int i = 0; i + GRAM_LENGTH <= word.length(); i++) {
+                result.add(word.substring(i, i + GRAM_LENGTH));
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.co.jarvis.util;
+
+/**
+ * Migración de datos que debe terminar antes de que el servidor web reciba peticiones, porque
+ * las rutas de escritura ya asumen el formato nuevo. La ejecuta {@link StartupMigrationRunner}.
+ */
+public interface StartupMigration {
+
+    void migrate();
+}
@@ -0,0 +1,52 @@
+package com.co.jarvis.util;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Ejecuta las {@link StartupMigration} al arrancar el contexto, en una fase anterior a la del
+ * servidor web: Tomcat empieza a aceptar peticiones solo cuando terminaron. ApplicationReadyEvent
+ * llega con el servidor ya abierto, y una escritura concurrente podía ver datos a medio migrar.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class StartupMigrationRunner implements SmartLifecycle {
+
+    // El servidor web arranca en SmartLifecycle.DEFAULT_PHASE - 2048
+    static final int PHASE = 0;
+
+    private final List<StartupMigration> migrations;
+
+    private volatile boolean running;
+
+    @Override
+    public void start() {
+        for (StartupMigration migration : migrations) {
+            long start = System.currentTimeMillis();
+            migration.migrate();
+            log.info("StartupMigrationRunner -> {} en {} ms", migration.getClass().getSimpleName(),
+                    System.currentTimeMillis() - start);
+        }
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+}
@@ -1,12 +1,14 @@
 package com.co.jarvis.util.mappers;
 
-import org.modelmapper.ModelMapper;
 import java.util.List;
 import java.util.stream.Collectors;
 
+/**
+ * Mapeo entidad ↔ DTO. Cada par de clases se resuelve una sola vez en un {@link MappingPlan}
+ * y los mapeos siguientes copian las propiedades sin reflexión.
+ */
 public class GenericMapper<Entity, Dto> {
 
-    private static final ModelMapper modelMapper = new ModelMapper();
     private final Class<Entity> entityClass;
     private final Class<Dto> dtoClass;
 
@@ -16,23 +18,22 @@ public class GenericMapper<Entity, Dto> {
     }
 
     public Dto mapToDto(Entity entity) {
-        return modelMapper.map(entity, dtoClass);
+        return MappingPlan.map(entity, dtoClass);
     }
 
     public Entity mapToEntity(Dto dto) {
-        return modelMapper.map(dto, entityClass);
+        return MappingPlan.map(dto, entityClass);
     }
 
     public List<Dto> mapToDtoList(List<Entity> entityList) {
         return entityList.stream()
-                .map(entity -> modelMapper.map(entity, dtoClass))
+                .map(entity -> MappingPlan.map(entity, dtoClass))
                 .collect(Collectors.toList());
     }
 
     public List<Entity> mapToEntityList(List<Dto> dtoList) {
         return dtoList.stream()
-                .map(dto -> modelMapper.map(dto, entityClass))
+                .map(dto -> MappingPlan.map(dto, entityClass))
                 .collect(Collectors.toList());
     }
 }
-
@@ -0,0 +1,333 @@
+package com.co.jarvis.util.mappers;
+
+import lombok.extern.slf4j.Slf4j;
+import org.modelmapper.ModelMapper;
+import org.modelmapper.TypeMap;
+import org.modelmapper.spi.Mapping;
+import org.modelmapper.spi.PropertyInfo;
+import org.modelmapper.spi.PropertyMapping;
+import org.springframework.core.ResolvableType;
+import org.springframework.util.ClassUtils;
+
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Copia precompilada entre un par de clases. La primera vez que se mapea un par se resuelven,
+ * con la misma coincidencia de nombres que hace ModelMapper, los getters y setters a copiar y
+ * se guardan como MethodHandle; los mapeos siguientes solo invocan esos handles, sin
+ * introspección. Conserva las reglas de ModelMapper: objetos de tipo asignable se copian por
+ * referencia, colecciones y mapas se crean nuevos, los beans de otro tipo se mapean
+ * recursivamente, los enums se convierten por nombre y cualquier destino String usa toString.
+ * Si ModelMapper resuelve el par con algo que el plan no reproduce (aplanamiento de
+ * propiedades, conversiones numéricas, arreglos...), ese par se sigue mapeando con ModelMapper.
+ */
+@Slf4j
+final class MappingPlan<S, D> {
+
+    private static final ModelMapper modelMapper = new ModelMapper();
+    private static final MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+    private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(Object.class);
+    private static final Map<Pair, MappingPlan<?, ?>> plans = new ConcurrentHashMap<>();
+
+    private record Pair(Class<?> source, Class<?> destination) {
+    }
+
+    @FunctionalInterface
+    private interface Converter {
+        Object convert(Object value) throws Throwable;
+    }
+
+    private record Step(MethodHandle getter, MethodHandle setter, Converter converter,
+                        boolean primitive) {
+    }
+
+    private final Class<S> sourceClass;
+    private final Class<D> destinationClass;
+    private final MethodHandle constructor;
+    private final List<Step> steps;
+
+    private MappingPlan(Class<S> sourceClass, Class<D> destinationClass, MethodHandle constructor, List<Step> steps) {
+        this.sourceClass = sourceClass;
+        this.destinationClass = destinationClass;
+        this.constructor = constructor;
+        this.steps = steps;
+    }
+
+    /**
+     * Mapea según la clase real del objeto, igual que ModelMapper.
+     */
+    @SuppressWarnings("unchecked")
+    static <D> D map(Object source, Class<D> destinationClass) {
+        if (source == null) {
+            throw new IllegalArgumentException("source cannot be null");
+        }
+        return of((Class<Object>) source.getClass(), destinationClass).apply(source);
+    }
+
+    @SuppressWarnings("unchecked")
+    static <S, D> MappingPlan<S, D> of(Class<S> sourceClass, Class<D> destinationClass) {
+        Pair key = new Pair(sourceClass, destinationClass);
+        MappingPlan<?, ?> plan = plans.get(key);
+        if (plan == null) {
+            // Los planes anidados se resuelven al usarse, así compilar no es recursivo
+            plan = compile(sourceClass, destinationClass);
+            MappingPlan<?, ?> existing = plans.putIfAbsent(key, plan);
+            if (existing != null) {
+                plan = existing;
+            }
+        }
+        return (MappingPlan<S, D>) plan;
+    }
+
+    D apply(S source) {
+        if (constructor == null) {
+            return modelMapper.map(source, destinationClass);
+        }
+        try {
+            @SuppressWarnings("unchecked")
+            D destination = (D) (Object) constructor.invokeExact();
+            for (Step step : steps) {
+                Object value = (Object) step.getter().invokeExact((Object) source);
+                if (value != null) {
+                    value = step.converter().convert(value);
+                } else if (step.primitive()) {
+                    continue;
+                }
+                step.setter().invokeExact((Object) destination, value);
+            }
+            return destination;
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("Error mapeando " + sourceClass.getSimpleName()
+                    + " a " + destinationClass.getSimpleName(), e);
+        }
+    }
+
+    private static <S, D> MappingPlan<S, D> compile(Class<S> sourceClass, Class<D> destinationClass) {
+        try {
+            List<Step> steps = compileSteps(sourceClass, destinationClass);
+            if (steps != null) {
+                MethodHandle constructor = lookup.findConstructor(destinationClass, MethodType.methodType(void.class))
+                        .asType(CONSTRUCTOR_TYPE);
+                return new MappingPlan<>(sourceClass, destinationClass, constructor, List.copyOf(steps));
+            }
+        } catch (ReflectiveOperationException | IntrospectionException | RuntimeException e) {
+            log.debug("MappingPlan -> compile {} -> {}: {}", sourceClass.getSimpleName(),
+                    destinationClass.getSimpleName(), e.getMessage());
+        }
+        log.info("MappingPlan -> {} -> {} se mapea con ModelMapper", sourceClass.getSimpleName(),
+                destinationClass.getSimpleName());
+        return new MappingPlan<>(sourceClass, destinationClass, null, List.of());
+    }
+
+    /**
+     * Pasos de copia en el orden de las propiedades que ModelMapper mapea para el par, o null
+     * si alguna de sus coincidencias no es nombre a nombre.
+     */
+    private static List<Step> compileSteps(Class<?> sourceClass, Class<?> destinationClass)
+            throws IntrospectionException, IllegalAccessException {
+        if (!isBean(destinationClass)) {
+            return null;
+        }
+        Set<String> mapped = new LinkedHashSet<>();
+        TypeMap<?, ?> typeMap = modelMapper.typeMap(sourceClass, destinationClass);
+        for (Mapping mapping : typeMap.getMappings()) {
+            if (!(mapping instanceof PropertyMapping propertyMapping)) {
+                return null;
+            }
+            List<String> destinationPath = names(mapping.getDestinationProperties());
+            if (!names(propertyMapping.getSourceProperties()).equals(destinationPath)) {
+                return null;
+            }
+            mapped.add(destinationPath.get(0));
+        }
+
+        Map<String, PropertyDescriptor> readable = new HashMap<>();
+        for (PropertyDescriptor property : Introspector.getBeanInfo(sourceClass).getPropertyDescriptors()) {
+            if (property.getReadMethod() != null) {
+                readable.put(property.getName(), property);
+            }
+        }
+        Map<String, PropertyDescriptor> writable = new HashMap<>();
+        for (PropertyDescriptor property : Introspector.getBeanInfo(destinationClass).getPropertyDescriptors()) {
+            if (property.getWriteMethod() != null) {
+                writable.put(property.getName(), property);
+            }
+        }
+
+        List<Step> steps = new ArrayList<>();
+        for (String name : mapped) {
+            PropertyDescriptor source = readable.get(name);
+            PropertyDescriptor destination = writable.get(name);
+            if (source == null || destination == null) {
+                return null;
+            }
+            Method getter = source.getReadMethod();
+            Method setter = destination.getWriteMethod();
+            Converter converter = converter(ResolvableType.forMethodReturnType(getter, sourceClass),
+                    ResolvableType.forMethodParameter(setter, 0, destinationClass));
+            if (converter == null) {
+                return null;
+            }
+            steps.add(new Step(
+                    lookup.unreflect(getter).asType(GETTER_TYPE),
+                    lookup.unreflect(setter).asType(SETTER_TYPE),
+                    converter,
+                    setter.getParameterTypes()[0].isPrimitive()));
+        }
+        return steps;
+    }
+
+    private static Converter converter(ResolvableType sourceType, ResolvableType destinationType) {
+        Class<?> source = sourceType.toClass();
+        Class<?> destination = destinationType.toClass();
+        if (source.isArray() || destination.isArray()) {
+            return null;
+        }
+        if (Collection.class.isAssignableFrom(destination)) {
+            Supplier<Collection<Object>> factory = collectionFactory(destination);
+            Converter element = Collection.class.isAssignableFrom(source)
+                    ? converter(sourceType.asCollection().getGeneric(0), destinationType.asCollection().getGeneric(0))
+                    : null;
+            if (factory == null || element == null) {
+                return null;
+            }
+            return value -> {
+                Collection<Object> result = factory.get();
+                for (Object item : (Collection<?>) value) {
+                    result.add(item != null ? element.convert(item) : null);
+                }
+                return result;
+            };
+        }
+        if (Map.class.isAssignableFrom(destination)) {
+            if (!Map.class.isAssignableFrom(source) || !destination.isInterface()) {
+                return null;
+            }
+            Converter key = converter(sourceType.asMap().getGeneric(0), destinationType.asMap().getGeneric(0));
+            Converter entry = converter(sourceType.asMap().getGeneric(1), destinationType.asMap().getGeneric(1));
+            if (key == null || entry == null) {
+                return null;
+            }
+            boolean sorted = SortedMap.class.isAssignableFrom(destination);
+            return value -> {
+                Map<Object, Object> result = sorted ? new TreeMap<>() : new HashMap<>();
+                for (Map.Entry<?, ?> item : ((Map<?, ?>) value).entrySet()) {
+                    result.put(item.getKey() != null ? key.convert(item.getKey()) : null,
+                            item.getValue() != null ? entry.convert(item.getValue()) : null);
+                }
+                return result;
+            };
+        }
+        if (ClassUtils.isAssignable(destination, source)) {
+            return value -> value;
+        }
+        if (destination == String.class) {
+            return Object::toString;
+        }
+        if (destination.isEnum() && (source == String.class || source.isEnum())) {
+            return value -> toEnum(destination, value);
+        }
+        if (isBean(source) && isBean(destination)) {
+            return nested(source, destination);
+        }
+        return null;
+    }
+
+    /**
+     * Bean de otro tipo: se mapea con el plan del par, que se resuelve en el primer uso.
+     */
+    private static Converter nested(Class<?> source, Class<?> destination) {
+        return new Converter() {
+            private volatile MappingPlan<Object, ?> plan;
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public Object convert(Object value) {
+                if (value.getClass() != source) {
+                    return map(value, destination);
+                }
+                MappingPlan<Object, ?> current = plan;
+                if (current == null) {
+                    current = (MappingPlan<Object, ?>) of((Class<Object>) source, destination);
+                    plan = current;
+                }
+                return current.apply(value);
+            }
+        };
+    }
+
+    /**
+     * Igual que el EnumConverter de ModelMapper: un nombre que no existe en el destino queda en null.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static Object toEnum(Class<?> destination, Object value) {
+        String name = value instanceof Enum<?> constant ? constant.name() : value.toString();
+        try {
+            return Enum.valueOf((Class) destination, name);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static Supplier<Collection<Object>> collectionFactory(Class<?> type) {
+        if (type.isInterface()) {
+            if (SortedSet.class.isAssignableFrom(type)) {
+                return TreeSet::new;
+            }
+            if (Set.class.isAssignableFrom(type)) {
+                return HashSet::new;
+            }
+            return List.class.isAssignableFrom(type) || type == Collection.class ? ArrayList::new : null;
+        }
+        return type == ArrayList.class ? ArrayList::new
+                : type == HashSet.class ? HashSet::new
+                : type == LinkedHashSet.class ? LinkedHashSet::new
+                : null;
+    }
+
+    private static boolean isBean(Class<?> type) {
+        if (type.isPrimitive() || type.isEnum() || type.isInterface() || type.isArray()
+                || Modifier.isAbstract(type.getModifiers()) || !Modifier.isPublic(type.getModifiers())
+                || type.getName().startsWith("java.")) {
+            return false;
+        }
+        try {
+            return Modifier.isPublic(type.getConstructor().getModifiers());
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private static List<String> names(List<? extends PropertyInfo> properties) {
+        List<String> names = new ArrayList<>(properties.size());
+        for (PropertyInfo property : properties) {
+            names.add(property.getName());
+        }
+        return names;
+    }
+}
@@ -2,14 +2,13 @@ package com.co.jarvis.util.mappers;
 
 
 import com.co.jarvis.dto.PaginationDto;
-import org.modelmapper.ModelMapper;
 import org.springframework.data.domain.Page;
 
 import java.util.List;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 public class PaginationMapper<Entity, Dto> {
-    private static final ModelMapper modelMapper = new ModelMapper();
     private final Class<Dto> dtoClass;
 
 
@@ -18,18 +17,28 @@ public class PaginationMapper<Entity, Dto> {
     }
 
     public PaginationDto<Dto> pageToPagination(Page<Entity> entity) {
+        return pageToPagination(entity, item -> MappingPlan.map(item, dtoClass));
+    }
+
+    /**
+     * Igual que {@link #pageToPagination(Page)} pero con un mapeo propio, para los servicios
+     * que completan el DTO con datos calculados de la entidad.
+     */
+    public PaginationDto<Dto> pageToPagination(Page<Entity> entity, Function<Entity, Dto> mapper) {
         PaginationDto<Dto> paginationDto = new PaginationDto<>();
         paginationDto.setPage(entity.getPageable().getPageNumber());
         paginationDto.setPageSize(entity.getPageable().getPageSize());
         paginationDto.setQuantityPage(entity.getTotalPages());
         paginationDto.setTotalElements(entity.getTotalElements());
-        paginationDto.setContent(mapToDtoList(entity.getContent()));
+        paginationDto.setContent(entity.getContent().stream()
+                .map(mapper)
+                .collect(Collectors.toList()));
         return paginationDto;
     }
 
     public List<Dto> mapToDtoList(List<Entity> entityList) {
         return entityList.stream()
-                .map(entity -> modelMapper.map(entity, dtoClass))
+                .map(entity -> MappingPlan.map(entity, dtoClass))
                 .collect(Collectors.toList());
     }
 
@@ -0,0 +1,204 @@
+package com.co.jarvis.util.reports;
+
+import com.co.jarvis.dto.SaleDetailDto;
+import com.co.jarvis.entity.Billing;
+import com.co.jarvis.entity.PaymentEntry;
+import com.co.jarvis.enums.EPaymentMethod;
+import com.co.jarvis.util.DateTimeUtil;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.text.DecimalFormat;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Genera el tiquete de venta como texto plano con comandos ESC/POS para impresoras
+ * térmicas de 80 mm (48 columnas con la fuente A). La impresora recibe los bytes tal
+ * cual, sin esperar ni rasterizar un PDF. Usa la página de códigos WPC1252 para las tildes.
+ */
+@Component
+public class EscPosTicketRenderer {
+
+    private static final byte ESC = 0x1B;
+    private static final byte GS = 0x1D;
+    private static final Charset CHARSET = Charset.forName("windows-1252");
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd/MM/yyyy hh:mm a");
+
+    private final int columns;
+
+    public EscPosTicketRenderer(@Value("${jarvis.reports.escpos.columns:48}") int columns) {
+        this.columns = columns;
+    }
+
+    public byte[] render(Billing billing) {
+        Ticket ticket = new Ticket();
+        ticket.command(ESC, '@');           // Inicializar impresora
+        ticket.command(ESC, 't', 16);       // Página de códigos WPC1252
+
+        ticket.command(ESC, 'a', 1);        // Centrado
+        if (billing.getCreationUser() != null && billing.getCreationUser().getCompany() != null) {
+            ticket.command(ESC, 'E', 1);
+            ticket.line(upper(billing.getCreationUser().getCompany().getBusinessName()));
+            ticket.command(ESC, 'E', 0);
+            ticket.text(billing.getCreationUser().getCompany().getFullDataCompany());
+        }
+        ticket.command(ESC, 'a', 0);        // Alineado a la izquierda
+
+        ticket.line("Factura de Venta No: " + nullToEmpty(billing.getBillNumber()));
+        if (billing.getDateTimeRecord() != null) {
+            ticket.line("Fecha: " + billing.getDateTimeRecord()
+                    .atZoneSameInstant(DateTimeUtil.getBogotaZone()).format(DATE_FORMAT));
+        }
+        if (billing.getClient() != null) {
+            ticket.text("Cliente: " + nullToEmpty(billing.getClient().getIdNumber())
+                    + "  -  " + nullToEmpty(billing.getClient().getFullName()));
+        }
+        if (billing.getCreationUser() != null) {
+            ticket.text("Facturado Por: " + nullToEmpty(billing.getCreationUser().getFullName()));
+        }
+        ticket.text("Forma de pago: " + paymentMethods(billing));
+
+        ticket.separator();
+        ticket.columns("Descripción", "Total");
+        ticket.separator();
+        DecimalFormat money = moneyFormat();
+        if (billing.getSaleDetails() != null) {
+            for (SaleDetailDto detail : billing.getSaleDetails()) {
+                String description = detail.getProduct() != null ? detail.getProduct().getDescription() : "";
+                ticket.text(nullToEmpty(description));
+                ticket.columns(plain(detail.getAmount()) + " x " + money(money, detail.getUnitPrice())
+                                + "  IVA " + money(money, detail.getTotalVat()),
+                        money(money, detail.getSubTotal()));
+            }
+        }
+        ticket.separator();
+
+        ticket.columns("Total IVA:", money(money, billing.getTotalIVAT()));
+        ticket.command(ESC, 'E', 1);
+        ticket.columns("Total a Pagar:", money(money, billing.getSubTotalSale()));
+        ticket.command(ESC, 'E', 0);
+        ticket.columns("Recibido:", money(money, billing.getReceivedValue()));
+        ticket.columns("Cambio:", money(money, billing.getReturnedValue()));
+
+        ticket.command(ESC, 'd', 4);        // Avanzar 4 líneas
+        ticket.command(GS, 'V', 66, 0);     // Corte parcial
+        return ticket.toByteArray();
+    }
+
+    private String paymentMethods(Billing billing) {
+        if (billing.getPayments() != null && !billing.getPayments().isEmpty()) {
+            return billing.getPayments().stream()
+                    .map(PaymentEntry::getMethod)
+                    .distinct()
+                    .collect(Collectors.joining(", "));
+        }
+        if (billing.getPaymentMethods() != null && !billing.getPaymentMethods().isEmpty()) {
+            return billing.getPaymentMethods().stream()
+                    .map(EPaymentMethod::name)
+                    .distinct()
+                    .collect(Collectors.joining(", "));
+        }
+        return "";
+    }
+
+    private static DecimalFormat moneyFormat() {
+        // Mismo patrón del ticket PDF; DecimalFormat no es seguro entre hilos
+        return new DecimalFormat("$ #,##0.##");
+    }
+
+    private static String money(DecimalFormat format, BigDecimal value) {
+        return value == null ? "" : format.format(value);
+    }
+
+    private static String plain(BigDecimal value) {
+        return value == null ? "0" : value.stripTrailingZeros().toPlainString();
+    }
+
+    private static String upper(String value) {
+        return value == null ? "" : value.toUpperCase();
+    }
+
+    private static String nullToEmpty(String value) {
+        return value == null ? "" : value;
+    }
+
+    private final class Ticket {
+
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(2048);
+
+        void command(int... bytes) {
+            for (int b : bytes) {
+                buffer.write(b);
+            }
+        }
+
+        void line(String value) {
+            buffer.writeBytes(value.getBytes(CHARSET));
+            buffer.write('\n');
+        }
+
+        /** Texto libre que puede traer saltos de línea; se parte al ancho del papel. */
+        void text(String value) {
+            if (value == null) {
+                return;
+            }
+            for (String paragraph : value.split("\\R")) {
+                wrap(paragraph).forEach(this::line);
+            }
+        }
+
+        /** Texto a la izquierda y valor alineado a la derecha en la misma línea. */
+        void columns(String left, String right) {
+            int space = columns - right.length() - 1;
+            List<String> lines = wrap(left, Math.max(1, space));
+            for (int i = 0; i < lines.size() - 1; i++) {
+                line(lines.get(i));
+            }
+            String last = lines.get(lines.size() - 1);
+            line(last + " ".repeat(Math.max(1, columns - last.length() - right.length())) + right);
+        }
+
+        void separator() {
+            line("-".repeat(columns));
+        }
+
+        byte[] toByteArray() {
+            return buffer.toByteArray();
+        }
+
+        private List<String> wrap(String value) {
+            return wrap(value, columns);
+        }
+
+        private List<String> wrap(String value, int width) {
+            List<String> lines = new ArrayList<>();
+            StringBuilder current = new StringBuilder();
+            for (String word : value.trim().split("\\s+")) {
+                while (word.length() > width) {
+                    if (!current.isEmpty()) {
+                        lines.add(current.toString());
+                        current.setLength(0);
+                    }
+                    lines.add(word.substring(0, width));
+                    word = word.substring(width);
+                }
+                if (!current.isEmpty() && current.length() + 1 + word.length() > width) {
+                    lines.add(current.toString());
+                    current.setLength(0);
+                }
+                if (!current.isEmpty()) {
+                    current.append(' ');
+                }
+                current.append(word);
+            }
+            lines.add(current.toString());
+            return lines;
+        }
+    }
+}
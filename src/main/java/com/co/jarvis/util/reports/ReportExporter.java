@@ -1,27 +1,68 @@
 package com.co.jarvis.util.reports;
 
 import net.sf.jasperreports.engine.JRException;
-import net.sf.jasperreports.engine.JasperExportManager;
 import net.sf.jasperreports.engine.JasperPrint;
+import net.sf.jasperreports.engine.export.JRPdfExporter;
+import net.sf.jasperreports.export.SimpleExporterInput;
+import net.sf.jasperreports.export.SimpleOutputStreamExporterOutput;
+import net.sf.jasperreports.export.SimplePdfExporterConfiguration;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.io.ByteArrayOutputStream;
 import java.io.FileNotFoundException;
+import java.io.OutputStream;
 import java.util.List;
 import java.util.Map;
 
 @Component
 public class ReportExporter {
 
+    @Autowired
+    private ReportTemplateRegistry templateRegistry;
+
+    /*
+     * Configuración del exportador compartida entre impresiones: solo se lee, así que es
+     * segura entre hilos. El JRPdfExporter no lo es, por eso se crea uno por exportación
+     * (es liviano, lo costoso era compilar la plantilla).
+     */
+    private final SimplePdfExporterConfiguration exporterConfiguration;
+
+    public ReportExporter(@Value("${jarvis.reports.pdf.compressed:true}") boolean compressed) {
+        this.exporterConfiguration = new SimplePdfExporterConfiguration();
+        this.exporterConfiguration.setCompressed(compressed);
+    }
+
     public byte[] exportToPdf(Object data, String reportName) throws JRException, FileNotFoundException {
-        ReportGenerator<?> reportGenerator = new ReportGenerator<>(reportName);
-        JasperPrint report;
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        exportToPdf(fill(data, reportName), output);
+        return output.toByteArray();
+    }
+
+    /**
+     * Llena el reporte y escribe el PDF directamente en el stream indicado, sin armar
+     * el documento completo en memoria.
+     */
+    public void exportToPdf(Object data, String reportName, OutputStream output) throws JRException, FileNotFoundException {
+        exportToPdf(fill(data, reportName), output);
+    }
+
+    public void exportToPdf(JasperPrint report, OutputStream output) throws JRException {
+        JRPdfExporter exporter = new JRPdfExporter();
+        exporter.setExporterInput(new SimpleExporterInput(report));
+        exporter.setExporterOutput(new SimpleOutputStreamExporterOutput(output));
+        exporter.setConfiguration(exporterConfiguration);
+        exporter.exportReport();
+    }
+
+    public JasperPrint fill(Object data, String reportName) throws JRException, FileNotFoundException {
+        ReportGenerator<?> reportGenerator = new ReportGenerator<>(reportName, templateRegistry);
         if (data instanceof List) {
-            report = reportGenerator.getReport((List<?>) data);
+            return reportGenerator.getReport((List<?>) data);
         } else if (data instanceof Map) {
-            report = reportGenerator.getReport((Map<?, ?>) data);
-        } else {
-            report = reportGenerator.getReport(data);
+            return reportGenerator.getReport((Map<?, ?>) data);
         }
-        return JasperExportManager.exportReportToPdf(report);
+        return reportGenerator.getReport(data);
     }
 }
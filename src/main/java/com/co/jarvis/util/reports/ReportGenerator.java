@@ -5,24 +5,21 @@ import net.sf.jasperreports.engine.*;
 import net.sf.jasperreports.engine.data.JRBeanCollectionDataSource;
 import net.sf.jasperreports.engine.data.JRMapCollectionDataSource;
 
-import java.io.*;
-import java.nio.charset.StandardCharsets;
+import java.io.FileNotFoundException;
+import java.io.Serializable;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-import static java.lang.String.format;
-import static java.util.Objects.requireNonNull;
-
 @Slf4j
 public class ReportGenerator<D extends Serializable> {
 
-    public static final String EXTENSION_REPORT = ".jrxml";
-    public static final String PATCH_SOURCE_REPORTS = "/reports/%s%s";
     private final String reportName;
+    private final ReportTemplateRegistry templateRegistry;
 
-    public ReportGenerator(String reportName) {
+    public ReportGenerator(String reportName, ReportTemplateRegistry templateRegistry) {
         this.reportName = reportName;
+        this.templateRegistry = templateRegistry;
     }
 
     // Método genérico para recibir una lista
@@ -40,35 +37,19 @@ public class ReportGenerator<D extends Serializable> {
         return getReport(List.of(object));
     }
 
-    // Método principal que genera el reporte usando cualquier JRDataSource
+    // Método principal que llena la plantilla ya compilada con cualquier JRDataSource
     private JasperPrint getReport(JRDataSource dataSource) throws FileNotFoundException, JRException {
         try {
             Map<String, Object> params = new HashMap<>();
             params.put("dataSource", dataSource);
-            InputStreamReader reportStream = new InputStreamReader(requireNonNull(getClass().getResourceAsStream(
-                    format(PATCH_SOURCE_REPORTS, this.reportName, EXTENSION_REPORT))), StandardCharsets.UTF_8);
-            InputStream reportInput = convertToInputStream(reportStream);
-            JasperReport jasperReport = JasperCompileManager.compileReport(reportInput);
+            JasperReport jasperReport = templateRegistry.get(this.reportName);
 
             return JasperFillManager.fillReport(jasperReport, params, dataSource);
 
-        } catch (JRException | IOException e) {
+        } catch (JRException e) {
             log.error(e.getMessage());
-            throw new JRException(e.getMessage());
-        }
-
-    }
-
-    private InputStream convertToInputStream(InputStreamReader reader) throws IOException {
-        // Lee el contenido de InputStreamReader y conviértelo en un String
-        StringBuilder sb = new StringBuilder();
-        char[] buffer = new char[1024];
-        int bytesRead;
-        while ((bytesRead = reader.read(buffer)) != -1) {
-            sb.append(buffer, 0, bytesRead);
+            throw e;
         }
 
-        // Convierte el String en bytes UTF-8 y crea un nuevo InputStream
-        return new ByteArrayInputStream(sb.toString().getBytes(StandardCharsets.UTF_8));
     }
 }
@@ -0,0 +1,151 @@
+package com.co.jarvis.util.reports;
+
+import lombok.extern.slf4j.Slf4j;
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JasperCompileManager;
+import net.sf.jasperreports.engine.JasperReport;
+import net.sf.jasperreports.engine.util.JRLoader;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.lang.String.format;
+
+/**
+ * Registro de plantillas Jasper compiladas, una por nombre de reporte.
+ * Carga el .jasper precompilado (o compila el .jrxml si no existe) una sola vez,
+ * así cada impresión solo paga el llenado y la exportación.
+ * Con jarvis.reports.hot-reload=true se compila siempre desde el .jrxml y se
+ * recompila cuando cambia la fecha de modificación del archivo (desarrollo).
+ */
+@Slf4j
+@Component
+public class ReportTemplateRegistry {
+
+    public static final String EXTENSION_SOURCE = ".jrxml";
+    public static final String EXTENSION_COMPILED = ".jasper";
+    public static final String PATH_REPORTS = "/reports/%s%s";
+
+    private final Map<String, CachedTemplate> templates = new ConcurrentHashMap<>();
+
+    @Value("${jarvis.reports.hot-reload:false}")
+    private boolean hotReload;
+
+    @Value("${jarvis.reports.preload:}")
+    private List<String> preload;
+
+    public JasperReport get(String reportName) throws JRException {
+        CachedTemplate cached = templates.get(reportName);
+        if (cached != null && (!hotReload || cached.sourceModified() == sourceModified(reportName))) {
+            return cached.report();
+        }
+        synchronized (this) {
+            cached = templates.get(reportName);
+            long modified = hotReload ? sourceModified(reportName) : 0L;
+            if (cached == null || (hotReload && cached.sourceModified() != modified)) {
+                cached = new CachedTemplate(load(reportName), modified);
+                templates.put(reportName, cached);
+            }
+            return cached.report();
+        }
+    }
+
+    /**
+     * Descarta las plantillas cargadas; la siguiente impresión las vuelve a cargar.
+     */
+    public void evictAll() {
+        templates.clear();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void preloadTemplates() {
+        for (String reportName : preload) {
+            if (reportName.isBlank()) {
+                continue;
+            }
+            try {
+                get(reportName.trim());
+            } catch (JRException | RuntimeException e) {
+                log.error("ReportTemplateRegistry -> preloadTemplates -> ERROR {}: {}", reportName, e.getMessage());
+            }
+        }
+    }
+
+    private JasperReport load(String reportName) throws JRException {
+        long start = System.nanoTime();
+        JasperReport report = null;
+        if (!hotReload) {
+            report = loadCompiled(reportName);
+        }
+        if (report == null) {
+            report = compileSource(reportName);
+        }
+        log.info("ReportTemplateRegistry -> plantilla {} cargada en {} ms", reportName, (System.nanoTime() - start) / 1_000_000);
+        return report;
+    }
+
+    private JasperReport loadCompiled(String reportName) {
+        try (InputStream input = getClass().getResourceAsStream(format(PATH_REPORTS, reportName, EXTENSION_COMPILED))) {
+            if (input == null) {
+                return null;
+            }
+            return (JasperReport) JRLoader.loadObject(input);
+        } catch (JRException | IOException | ClassCastException e) {
+            // Un .jasper de otra versión de Jasper no se puede deserializar: se compila el fuente
+            log.warn("ReportTemplateRegistry -> no se pudo cargar {}{}, se compila el fuente: {}",
+                    reportName, EXTENSION_COMPILED, e.getMessage());
+            return null;
+        }
+    }
+
+    private JasperReport compileSource(String reportName) throws JRException {
+        String path = format(PATH_REPORTS, reportName, EXTENSION_SOURCE);
+        try (InputStream input = sourceStream(path)) {
+            if (input == null) {
+                throw new JRException("No se encontró la plantilla del reporte " + path);
+            }
+            return JasperCompileManager.compileReport(input);
+        } catch (IOException e) {
+            throw new JRException(e.getMessage(), e);
+        }
+    }
+
+    private InputStream sourceStream(String path) throws IOException {
+        URL url = getClass().getResource(path);
+        if (url == null) {
+            return null;
+        }
+        URLConnection connection = url.openConnection();
+        // Sin caché de la conexión para leer siempre el archivo actual en hot reload
+        connection.setUseCaches(false);
+        return connection.getInputStream();
+    }
+
+    private long sourceModified(String reportName) {
+        URL url = getClass().getResource(format(PATH_REPORTS, reportName, EXTENSION_SOURCE));
+        if (url == null) {
+            return 0L;
+        }
+        try {
+            URLConnection connection = url.openConnection();
+            connection.setUseCaches(false);
+            long modified = connection.getLastModified();
+            connection.getInputStream().close();
+            return modified;
+        } catch (IOException e) {
+            return 0L;
+        }
+    }
+
+    private record CachedTemplate(JasperReport report, long sourceModified) {
+    }
+}
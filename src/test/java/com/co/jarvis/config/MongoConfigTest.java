@@ -0,0 +1,52 @@
+package com.co.jarvis.config;
+
+import com.mongodb.MongoException;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MongoConfigTest {
+
+    @Test
+    void retriesOnlyTheCommitOnUnknownCommitResult() {
+        AtomicInteger commits = new AtomicInteger();
+        MongoConfig.CommitRetryingTransactionManager.commitWithRetry(() -> {
+            if (commits.incrementAndGet() == 1) {
+                throw labelled(MongoException.UNKNOWN_TRANSACTION_COMMIT_RESULT_LABEL);
+            }
+        }, 3);
+
+        assertThat(commits).hasValue(2);
+    }
+
+    @Test
+    void givesUpAfterMaxCommitAttempts() {
+        AtomicInteger commits = new AtomicInteger();
+        assertThatThrownBy(() -> MongoConfig.CommitRetryingTransactionManager.commitWithRetry(() -> {
+            commits.incrementAndGet();
+            throw labelled(MongoException.UNKNOWN_TRANSACTION_COMMIT_RESULT_LABEL);
+        }, 3)).isInstanceOf(MongoException.class);
+
+        assertThat(commits).hasValue(3);
+    }
+
+    @Test
+    void doesNotRetryOtherCommitErrors() {
+        AtomicInteger commits = new AtomicInteger();
+        assertThatThrownBy(() -> MongoConfig.CommitRetryingTransactionManager.commitWithRetry(() -> {
+            commits.incrementAndGet();
+            throw labelled(MongoException.TRANSIENT_TRANSACTION_ERROR_LABEL);
+        }, 3)).isInstanceOf(MongoException.class);
+
+        assertThat(commits).hasValue(1);
+    }
+
+    private static MongoException labelled(String label) {
+        MongoException e = new MongoException(50, "commit");
+        e.addLabel(label);
+        return e;
+    }
+}
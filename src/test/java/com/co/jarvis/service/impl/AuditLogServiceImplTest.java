@@ -0,0 +1,113 @@
+package com.co.jarvis.service.impl;
+
+import com.co.jarvis.entity.AuditBucket;
+import com.co.jarvis.entity.AuditEntry;
+import com.co.jarvis.entity.SessionSnapshot;
+import com.co.jarvis.enums.EAuditEntityType;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import org.bson.BsonDocument;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AuditLogServiceImplTest {
+
+    private static final int BUCKET_SIZE = 4;
+    private static final LocalDateTime START = LocalDateTime.of(2025, 11, 20, 8, 0);
+
+    private MongoTemplate mongoTemplate;
+    private BulkOperations bulk;
+    private AuditLogServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        bulk = mock(BulkOperations.class);
+        when(mongoTemplate.bulkOps(any(BulkOperations.BulkMode.class), eq(AuditBucket.class))).thenReturn(bulk);
+        when(bulk.insert(anyList())).thenReturn(bulk);
+        service = new AuditLogServiceImpl(mongoTemplate);
+        ReflectionTestUtils.setField(service, "bucketSize", BUCKET_SIZE);
+    }
+
+    @Test
+    void legacyHistoryIsSplitIntoBucketsWithStableOrderedIds() {
+        List<AuditBucket> buckets = service.legacyBuckets(EAuditEntityType.PRODUCTO, "p1", "entries",
+                entries(10), AuditEntry::getTimestamp, AuditBucket::setEntries);
+
+        assertThat(buckets).extracting(AuditBucket::getId).containsExactly(
+                "legacy:PRODUCTO:p1:entries:0000",
+                "legacy:PRODUCTO:p1:entries:0001",
+                "legacy:PRODUCTO:p1:entries:0002");
+        assertThat(buckets).extracting(AuditBucket::getCount).containsExactly(4, 4, 2);
+        assertThat(buckets.get(0).getFirstAt()).isEqualTo(START);
+        assertThat(buckets.get(2).getLastAt()).isEqualTo(START.plusDays(9));
+        assertThat(buckets.get(2).getPeriod()).isEqualTo("2025-11");
+    }
+
+    @Test
+    void repeatingTheMigrationInsertsTheSameBuckets() {
+        List<AuditEntry> legacy = entries(6);
+        List<SessionSnapshot> snapshots = List.of(SessionSnapshot.builder().snapshotAt(START).build());
+
+        service.appendLegacy(EAuditEntityType.ARQUEO_CAJA, "s1", legacy, snapshots);
+        service.appendLegacy(EAuditEntityType.ARQUEO_CAJA, "s1", legacy, snapshots);
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<AuditBucket>> inserted = ArgumentCaptor.forClass(List.class);
+        verify(bulk, times(2)).insert(inserted.capture());
+        List<String> firstRun = inserted.getAllValues().get(0).stream().map(AuditBucket::getId).toList();
+        List<String> secondRun = inserted.getAllValues().get(1).stream().map(AuditBucket::getId).toList();
+        assertThat(firstRun).containsExactly(
+                "legacy:ARQUEO_CAJA:s1:entries:0000",
+                "legacy:ARQUEO_CAJA:s1:entries:0001",
+                "legacy:ARQUEO_CAJA:s1:snapshots:0000");
+        assertThat(secondRun).isEqualTo(firstRun);
+    }
+
+    @Test
+    void bucketsAlreadyCopiedByAnInterruptedRunAreSkipped() {
+        List<BulkWriteError> duplicates = List.of(
+                new BulkWriteError(11000, "duplicate key", new BsonDocument(), 0),
+                new BulkWriteError(11000, "duplicate key", new BsonDocument(), 1));
+        when(bulk.execute()).thenThrow(new BulkOperationException("duplicados", new MongoBulkWriteException(
+                BulkWriteResult.unacknowledged(), duplicates, null, new ServerAddress())));
+
+        service.appendLegacy(EAuditEntityType.PRODUCTO, "p1", entries(6), List.of());
+
+        verify(bulk).execute();
+    }
+
+    @Test
+    void emptyLegacyHistoryWritesNothing() {
+        service.appendLegacy(EAuditEntityType.PRODUCTO, "p1", List.of(), null);
+
+        verify(mongoTemplate, times(0)).bulkOps(any(BulkOperations.BulkMode.class), eq(AuditBucket.class));
+    }
+
+    private static List<AuditEntry> entries(int count) {
+        return new ArrayList<>(IntStream.range(0, count)
+                .mapToObj(i -> AuditEntry.builder().timestamp(START.plusDays(i)).details("e" + i).build())
+                .toList());
+    }
+}
@@ -0,0 +1,99 @@
+package com.co.jarvis.service.impl;
+
+import com.co.jarvis.entity.ClientCredit;
+import com.co.jarvis.entity.CreditTransaction;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ClientCreditServiceImplTest {
+
+    private static final String COLLECTION = "CLIENT_CREDITS";
+
+    private MongoTemplate mongoTemplate;
+    private BulkOperations bulk;
+    private ClientCreditServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        bulk = mock(BulkOperations.class);
+        MongoCustomConversions conversions = new MongoCustomConversions(List.of());
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        converter.setCustomConversions(conversions);
+        converter.afterPropertiesSet();
+        when(mongoTemplate.getConverter()).thenReturn(converter);
+        when(mongoTemplate.getCollectionName(ClientCredit.class)).thenReturn(COLLECTION);
+        when(mongoTemplate.updateMulti(any(Query.class), any(UpdateDefinition.class), eq(ClientCredit.class))).thenReturn(UpdateResult.acknowledged(0, 0L, null));
+        when(mongoTemplate.bulkOps(any(BulkOperations.BulkMode.class), eq(CreditTransaction.class))).thenReturn(bulk);
+        when(bulk.insert(anyList())).thenReturn(bulk);
+        service = new ClientCreditServiceImpl(null, null, null, mongoTemplate, null, null);
+    }
+
+    @Test
+    void interruptedMigrationIsRepeatedWithoutDuplicatingTransactions() {
+        // El primer arranque copió los movimientos pero no alcanzó a quitar el arreglo
+        when(mongoTemplate.stream(any(Query.class), eq(Document.class), eq(COLLECTION)))
+                .thenAnswer(invocation -> Stream.of(legacyCredit()));
+        service.migrate();
+
+        List<BulkWriteError> duplicates = List.of(
+                new BulkWriteError(11000, "duplicate key", new BsonDocument(), 0),
+                new BulkWriteError(11000, "duplicate key", new BsonDocument(), 1));
+        when(bulk.execute()).thenThrow(new BulkOperationException("duplicados", new MongoBulkWriteException(
+                BulkWriteResult.unacknowledged(), duplicates, null, new ServerAddress())));
+        service.migrate();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<CreditTransaction>> inserted = ArgumentCaptor.forClass(List.class);
+        verify(bulk, times(2)).insert(inserted.capture());
+        assertThat(inserted.getAllValues().get(0)).extracting(CreditTransaction::getId)
+                .containsExactly("tx-1", "c1-T1");
+        assertThat(inserted.getAllValues().get(1)).extracting(CreditTransaction::getId)
+                .containsExactly("tx-1", "c1-T1");
+        assertThat(inserted.getAllValues().get(1)).extracting(CreditTransaction::getCreditId)
+                .containsOnly("c1");
+        // Aunque todo estaba copiado, la segunda pasada sí quita el arreglo embebido
+        verify(mongoTemplate, times(2)).updateFirst(any(Query.class), any(Update.class), anyString());
+    }
+
+    private static Document legacyCredit() {
+        return new Document("_id", "c1")
+                .append("clientId", "cl1")
+                .append("transactions", List.of(
+                        new Document("_id", "tx-1").append("notes", "depósito"),
+                        new Document("notes", "sin id")));
+    }
+}
@@ -0,0 +1,116 @@
+package com.co.jarvis.service.impl;
+
+import com.co.jarvis.dto.InventoryDashboardDto;
+import com.co.jarvis.dto.ProductSummaryDto;
+import com.co.jarvis.dto.ProductUnitsSold;
+import com.co.jarvis.dto.StockLine;
+import com.co.jarvis.entity.InventoryMovement;
+import com.co.jarvis.entity.Presentation;
+import com.co.jarvis.entity.Product;
+import com.co.jarvis.entity.Stock;
+import com.co.jarvis.enums.ESale;
+import com.co.jarvis.repository.BillingRepository;
+import com.co.jarvis.repository.InventoryMovementRepository;
+import com.co.jarvis.service.StockService;
+import com.co.jarvis.util.InventoryDashboardCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class InventoryServiceImplTest {
+
+    private BillingRepository billingRepository;
+    private MongoTemplate mongoTemplate;
+    private StockService stockService;
+    private InventoryMovementRepository movementRepository;
+    private InventoryServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        billingRepository = mock(BillingRepository.class);
+        mongoTemplate = mock(MongoTemplate.class);
+        stockService = mock(StockService.class);
+        movementRepository = mock(InventoryMovementRepository.class);
+        service = new InventoryServiceImpl();
+        ReflectionTestUtils.setField(service, "stockService", stockService);
+        ReflectionTestUtils.setField(service, "movementRepository", movementRepository);
+        ReflectionTestUtils.setField(service, "billingRepository", billingRepository);
+        ReflectionTestUtils.setField(service, "mongoTemplate", mongoTemplate);
+        ReflectionTestUtils.setField(service, "dashboardCache", new InventoryDashboardCache(30000));
+        ReflectionTestUtils.setField(service, "rotationDays", 30);
+    }
+
+    @Test
+    void unitsSoldByFixedPresentationAreConvertedToTheBaseUnit() {
+        // 2 bultos de 40 kg y 15 kg sueltos = 95 kg
+        Product feed = Product.builder()
+                .id("feed")
+                .description("Concentrado")
+                .saleType(ESale.WEIGHT)
+                .stock(Stock.builder().quantity(new BigDecimal("400")).build())
+                .presentations(List.of(
+                        Presentation.builder().barcode("bulto").isFixedAmount(true).fixedAmount(new BigDecimal("40")).build(),
+                        Presentation.builder().barcode("kilo").isBulk(true).build()))
+                .build();
+        Product soap = Product.builder()
+                .id("soap")
+                .description("Jabón")
+                .saleType(ESale.UNIT)
+                .stock(Stock.builder().quantity(new BigDecimal("50")).build())
+                .presentations(List.of(
+                        Presentation.builder().barcode("caja").isFixedAmount(true).fixedAmount(new BigDecimal("12")).build()))
+                .build();
+        when(billingRepository.sumUnitsSoldByProduct(any(), any())).thenReturn(List.of(
+                new ProductUnitsSold("feed", "bulto", new BigDecimal("2")),
+                new ProductUnitsSold("feed", "kilo", new BigDecimal("15")),
+                new ProductUnitsSold("soap", "caja", new BigDecimal("3"))));
+        when(mongoTemplate.stream(any(Query.class), eq(Product.class))).thenAnswer(invocation -> Stream.of(feed, soap));
+
+        InventoryDashboardDto dashboard = service.getDashboard();
+
+        assertThat(dashboard.getTopSellingProducts())
+                .extracting(ProductSummaryDto::getProductId, ProductSummaryDto::getTotalSold)
+                .containsExactly(
+                        tuple("feed", 95.0),
+                        tuple("soap", 3.0));
+    }
+
+    @Test
+    void saleMovementsTakeStockFromTheQuantityAfterTheWrite() {
+        // El producto se cargó con 50, pero otra caja vendió 10 antes del $inc: quedan 40 - 3 - 2 = 35
+        Product soap = Product.builder()
+                .id("soap")
+                .stock(Stock.builder().quantity(new BigDecimal("50")).build())
+                .build();
+        when(stockService.applyDeltas(any())).thenReturn(Map.of("soap", new BigDecimal("35")));
+
+        service.registerSaleMovements("b1", List.of(
+                StockLine.builder().product(soap).presentationBarcode("u").quantity(3.0).build(),
+                StockLine.builder().product(soap).presentationBarcode("u").quantity(2.0).build()), "user");
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<InventoryMovement>> inserted = ArgumentCaptor.forClass(List.class);
+        verify(movementRepository).insert(inserted.capture());
+        assertThat(inserted.getValue())
+                .extracting(InventoryMovement::getPreviousStock, InventoryMovement::getNewStock)
+                .containsExactly(
+                        tuple(40.0, 37.0),
+                        tuple(37.0, 35.0));
+    }
+}
@@ -0,0 +1,91 @@
+package com.co.jarvis.service.impl;
+
+import com.co.jarvis.entity.PresentationCost;
+import com.co.jarvis.entity.PresentationCostEntry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class PresentationCostServiceImplTest {
+
+    private static final int HISTORY_SIZE = 20;
+    private static final LocalDate START = LocalDate.of(2026, 1, 1);
+
+    private PresentationCostServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        service = new PresentationCostServiceImpl(mock(MongoTemplate.class));
+        ReflectionTestUtils.setField(service, "historySize", HISTORY_SIZE);
+    }
+
+    @Test
+    void fullWindowWithNothingCutCoversEveryRange() {
+        PresentationCost cost = PresentationCost.builder().history(entries(0, HISTORY_SIZE)).build();
+
+        assertThat(service.covers(cost, null)).isTrue();
+        assertThat(service.covers(cost, START.minusYears(1))).isTrue();
+    }
+
+    @Test
+    void truncatedWindowDoesNotCoverOlderRangesAfterEntriesArePulled() {
+        // La ventana se recortó y después una factura editada retiró ítems: queda por debajo del límite
+        LocalDate truncatedThrough = START.plusDays(4);
+        PresentationCost cost = PresentationCost.builder()
+                .history(entries(10, 5))
+                .truncatedThrough(truncatedThrough)
+                .build();
+
+        assertThat(service.covers(cost, null)).isFalse();
+        assertThat(service.covers(cost, START)).isFalse();
+        assertThat(service.covers(cost, truncatedThrough)).isFalse();
+        assertThat(service.covers(cost, truncatedThrough.plusDays(1))).isTrue();
+    }
+
+    @Test
+    void rebuildWindowKeepsTheNewestEntriesAndRemembersWhatItCut() {
+        PresentationCostServiceImpl.CostWindow window = new PresentationCostServiceImpl.CostWindow(HISTORY_SIZE);
+        window.addAll(entries(0, 30));
+        window.addAll(entries(30, 25));
+
+        PresentationCost cost = window.toCost("770", OffsetDateTime.now());
+
+        assertThat(cost.getHistory()).hasSize(HISTORY_SIZE);
+        assertThat(cost.getHistory().get(0).getInvoiceDate()).isEqualTo(START.plusDays(54));
+        assertThat(cost.getHistory().get(HISTORY_SIZE - 1).getInvoiceDate()).isEqualTo(START.plusDays(35));
+        assertThat(cost.getTruncatedThrough()).isEqualTo(START.plusDays(34));
+    }
+
+    @Test
+    void rebuildWindowWithinTheLimitIsNotTruncated() {
+        PresentationCostServiceImpl.CostWindow window = new PresentationCostServiceImpl.CostWindow(HISTORY_SIZE);
+        window.addAll(entries(0, HISTORY_SIZE));
+
+        PresentationCost cost = window.toCost("770", OffsetDateTime.now());
+
+        assertThat(cost.getHistory()).hasSize(HISTORY_SIZE);
+        assertThat(cost.getTruncatedThrough()).isNull();
+    }
+
+    /**
+     * count compras de días consecutivos desde START + firstDay, de la más antigua a la más nueva.
+     */
+    private static List<PresentationCostEntry> entries(int firstDay, int count) {
+        return new ArrayList<>(IntStream.range(firstDay, firstDay + count)
+                .mapToObj(day -> PresentationCostEntry.builder()
+                        .invoiceId("inv-" + day)
+                        .invoiceDate(START.plusDays(day))
+                        .build())
+                .toList());
+    }
+}
@@ -0,0 +1,67 @@
+package com.co.jarvis.util;
+
+import com.co.jarvis.dto.InventoryDashboardDto;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InventoryDashboardCacheTest {
+
+    private final AtomicInteger loads = new AtomicInteger();
+    private final Supplier<InventoryDashboardDto> loader = () -> {
+        loads.incrementAndGet();
+        return new InventoryDashboardDto();
+    };
+
+    @Test
+    void aStockChangeServesTheLastDashboardAndRefreshesInTheBackground() {
+        List<Runnable> refreshes = new ArrayList<>();
+        InventoryDashboardCache cache = new InventoryDashboardCache(30000, refreshes::add);
+        InventoryDashboardDto first = cache.get(loader);
+
+        cache.invalidate();
+        InventoryDashboardDto served = cache.get(loader);
+        cache.get(loader);
+
+        assertThat(served).isSameAs(first);
+        assertThat(loads).hasValue(1);
+        // Un solo recálculo pendiente aunque lleguen varias peticiones
+        assertThat(refreshes).hasSize(1);
+
+        refreshes.get(0).run();
+        assertThat(loads).hasValue(2);
+        assertThat(cache.get(loader)).isNotSameAs(first);
+    }
+
+    @Test
+    void aChangeDuringTheRefreshTriggersAnotherOne() {
+        List<Runnable> refreshes = new ArrayList<>();
+        InventoryDashboardCache cache = new InventoryDashboardCache(30000, refreshes::add);
+        cache.get(loader);
+        cache.invalidate();
+
+        cache.get(() -> {
+            cache.invalidate();
+            return loader.get();
+        });
+        refreshes.get(0).run();
+        cache.get(loader);
+
+        assertThat(refreshes).hasSize(2);
+    }
+
+    @Test
+    void anExpiredDashboardIsComputedByTheRequest() {
+        InventoryDashboardCache cache = new InventoryDashboardCache(0, Runnable::run);
+
+        cache.get(loader);
+        cache.get(loader);
+
+        assertThat(loads).hasValue(2);
+    }
+}
@@ -0,0 +1,132 @@
+package com.co.jarvis.util;
+
+import com.mongodb.MongoException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionSystemException;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MongoTransactionExecutorTest {
+
+    private PlatformTransactionManager transactionManager;
+    private SimpleMeterRegistry meterRegistry;
+    private MongoTransactionExecutor executor;
+
+    @BeforeEach
+    void setUp() {
+        transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        meterRegistry = new SimpleMeterRegistry();
+        executor = new MongoTransactionExecutor(transactionManager, meterRegistry, 3, 1);
+    }
+
+    @Test
+    void transientTransactionErrorIsRetryable() {
+        assertThat(MongoTransactionExecutor.isRetryable(labelled(MongoException.TRANSIENT_TRANSACTION_ERROR_LABEL)))
+                .isTrue();
+        assertThat(MongoTransactionExecutor.isRetryable(new TransactionSystemException("commit",
+                labelled(MongoException.TRANSIENT_TRANSACTION_ERROR_LABEL)))).isTrue();
+    }
+
+    @Test
+    void unknownCommitResultIsNotRetryable() {
+        assertThat(MongoTransactionExecutor.isRetryable(labelled(MongoException.UNKNOWN_TRANSACTION_COMMIT_RESULT_LABEL)))
+                .isFalse();
+        assertThat(MongoTransactionExecutor.isRetryable(new TransactionSystemException("commit",
+                labelled(MongoException.UNKNOWN_TRANSACTION_COMMIT_RESULT_LABEL)))).isFalse();
+        assertThat(MongoTransactionExecutor.isRetryable(labelled(MongoException.TRANSIENT_TRANSACTION_ERROR_LABEL,
+                MongoException.UNKNOWN_TRANSACTION_COMMIT_RESULT_LABEL))).isFalse();
+    }
+
+    @Test
+    void otherErrorsAreNotRetryable() {
+        assertThat(MongoTransactionExecutor.isRetryable(new MongoException(11000, "duplicate key"))).isFalse();
+        assertThat(MongoTransactionExecutor.isRetryable(new IllegalStateException("stock insuficiente"))).isFalse();
+    }
+
+    @Test
+    void rerunsWorkAfterTransientError() {
+        AtomicInteger runs = new AtomicInteger();
+        String result = executor.execute("test", () -> {
+            if (runs.incrementAndGet() == 1) {
+                throw labelled(MongoException.TRANSIENT_TRANSACTION_ERROR_LABEL);
+            }
+            return "ok";
+        });
+
+        assertThat(result).isEqualTo("ok");
+        assertThat(runs).hasValue(2);
+    }
+
+    @Test
+    void doesNotRerunWorkAfterUnknownCommitResult() {
+        AtomicInteger runs = new AtomicInteger();
+        assertThatThrownBy(() -> executor.execute("test", () -> {
+            runs.incrementAndGet();
+            throw new TransactionSystemException("commit",
+                    labelled(MongoException.UNKNOWN_TRANSACTION_COMMIT_RESULT_LABEL));
+        })).isInstanceOf(TransactionSystemException.class);
+
+        assertThat(runs).hasValue(1);
+    }
+
+    @Test
+    void givesUpAfterMaxAttempts() {
+        AtomicInteger runs = new AtomicInteger();
+        assertThatThrownBy(() -> executor.execute("test", () -> {
+            runs.incrementAndGet();
+            throw labelled(MongoException.TRANSIENT_TRANSACTION_ERROR_LABEL);
+        })).isInstanceOf(MongoException.class);
+
+        assertThat(runs).hasValue(3);
+    }
+
+    @Test
+    void backoffGrowsExponentiallyWithJitter() {
+        MongoTransactionExecutor slow = new MongoTransactionExecutor(transactionManager, meterRegistry, 5, 10);
+        for (int i = 0; i < 50; i++) {
+            assertThat(slow.backoffMillis(1)).isBetween(5L, 15L);
+            assertThat(slow.backoffMillis(2)).isBetween(10L, 30L);
+            assertThat(slow.backoffMillis(3)).isBetween(20L, 60L);
+        }
+    }
+
+    @Test
+    void recordsEachAttemptAndCommitSeparately() {
+        AtomicInteger runs = new AtomicInteger();
+        executor.execute("test", () -> {
+            if (runs.incrementAndGet() == 1) {
+                throw labelled(MongoException.TRANSIENT_TRANSACTION_ERROR_LABEL);
+            }
+            return "ok";
+        });
+
+        assertThat(meterRegistry.get("jarvis.tx.duration").tag("phase", "attempt").tag("outcome", "retried")
+                .timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("jarvis.tx.duration").tag("phase", "attempt").tag("outcome", "committed")
+                .timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("jarvis.tx.duration").tag("phase", "commit").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("jarvis.tx.total").tag("outcome", "committed").timer().count()).isEqualTo(1);
+        verify(transactionManager).rollback(any());
+        verify(transactionManager).commit(any());
+    }
+
+    private static MongoException labelled(String... labels) {
+        MongoException e = new MongoException(112, "WriteConflict");
+        for (String label : labels) {
+            e.addLabel(label);
+        }
+        return e;
+    }
+}
@@ -0,0 +1,85 @@
+package com.co.jarvis.util;
+
+import com.co.jarvis.entity.Presentation;
+import com.co.jarvis.entity.Product;
+import com.co.jarvis.entity.Stock;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ProductCatalogCacheTest {
+
+    private MongoTemplate mongoTemplate;
+    private ProductCatalogCache cache;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        cache = new ProductCatalogCache(mongoTemplate, new SimpleMeterRegistry(), true, true, false);
+    }
+
+    @Test
+    void aWriteDuringALoadOnlyDiscardsThatProduct() {
+        long stamp = cache.stamp();
+        cache.invalidate("p2");
+
+        cache.put(product("p1", "7700001"), stamp);
+        cache.put(product("p2", "7700002"), stamp);
+
+        assertThat(cache.findById("p1", id -> null)).isNotNull();
+        assertThat(cache.findById("p2", id -> null)).isNull();
+    }
+
+    @Test
+    void startupLoadSkipsProductsWrittenWhileStreamingAndKeepsGoing() {
+        when(mongoTemplate.stream(any(Query.class), eq(Product.class))).thenAnswer(invocation ->
+                Stream.of(product("p1", "7700001"), product("p2", "7700002"), product("p3", "7700003"))
+                        .peek(loaded -> {
+                            if (loaded.getId().equals("p1")) {
+                                cache.invalidate("p2");
+                            }
+                        }));
+
+        cache.start();
+
+        assertThat(cache.findById("p1", id -> null)).isNotNull();
+        assertThat(cache.findById("p2", id -> null)).isNull();
+        assertThat(cache.findByBarcode("7700003", barcode -> null)).isNotNull();
+    }
+
+    @Test
+    void callersGetCopiesOfTheCachedProduct() {
+        cache.put(product("p1", "7700001"), cache.stamp());
+
+        Product read = cache.findByBarcode("7700001", barcode -> null);
+        read.getStock().setQuantity(BigDecimal.ONE);
+        read.getPresentations().get(0).setBarcode("9999");
+        read.getPresentations().clear();
+
+        Product again = cache.findById("p1", id -> null);
+        assertThat(again.getStock().getQuantity()).isEqualByComparingTo("10");
+        assertThat(again.getPresentations()).extracting(Presentation::getBarcode).containsExactly("7700001");
+    }
+
+    private static Product product(String id, String barcode) {
+        return Product.builder()
+                .id(id)
+                .description("Producto " + id)
+                .stock(Stock.builder().quantity(BigDecimal.TEN).build())
+                .presentations(new ArrayList<>(List.of(Presentation.builder().id(id + "-1").barcode(barcode).build())))
+                .build();
+    }
+}
@@ -0,0 +1,69 @@
+package com.co.jarvis.util;
+
+import com.co.jarvis.entity.Presentation;
+import com.co.jarvis.entity.Product;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ProductSearchIndexTest {
+
+    private MongoTemplate mongoTemplate;
+    private ProductSearchIndex searchIndex;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        searchIndex = new ProductSearchIndex(mongoTemplate, mock(ProductCatalogCache.class));
+    }
+
+    @Test
+    void changesMadeWhileLoadingSurviveTheSwap() {
+        searchIndex.index(product("p3", "Panela redonda", "7700003"));
+        // Mientras se recorre la colección otro hilo guarda p2 y elimina p3
+        when(mongoTemplate.stream(any(Query.class), eq(Product.class))).thenAnswer(invocation ->
+                Stream.of(product("p1", "Arroz blanco", "7700001"), product("p3", "Panela redonda", "7700003"))
+                        .peek(loaded -> {
+                            if (loaded.getId().equals("p1")) {
+                                searchIndex.index(product("p2", "Arroz integral", "7700002"));
+                                searchIndex.remove("p3");
+                            }
+                        }));
+
+        searchIndex.load();
+
+        assertThat(searchIndex.isReady()).isTrue();
+        assertThat(searchIndex.search("arroz", 0, 10).productIds()).containsExactlyInAnyOrder("p1", "p2");
+        assertThat(searchIndex.search("panela", 0, 10).total()).isZero();
+    }
+
+    @Test
+    void writesAfterTheLoadGoToTheNewIndex() {
+        when(mongoTemplate.stream(any(Query.class), eq(Product.class)))
+                .thenAnswer(invocation -> Stream.of(product("p1", "Arroz blanco", "7700001")));
+        searchIndex.load();
+
+        searchIndex.index(product("p2", "Arroz integral", "7700002"));
+        searchIndex.remove("p1");
+
+        assertThat(searchIndex.search("arroz", 0, 10).productIds()).containsExactly("p2");
+    }
+
+    private static Product product(String id, String description, String barcode) {
+        return Product.builder()
+                .id(id)
+                .description(description)
+                .presentations(List.of(Presentation.builder().barcode(barcode).build()))
+                .build();
+    }
+}
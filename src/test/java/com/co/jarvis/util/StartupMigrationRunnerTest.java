@@ -0,0 +1,40 @@
+package com.co.jarvis.util;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.context.SmartLifecycle;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StartupMigrationRunnerTest {
+
+    // Fase de WebServerStartStopLifecycle en Spring Boot
+    private static final int WEB_SERVER_PHASE = SmartLifecycle.DEFAULT_PHASE - 2048;
+
+    @Test
+    void migrationsRunBeforeTheWebServerStarts() {
+        StartupMigrationRunner runner = new StartupMigrationRunner(List.of());
+
+        assertThat(runner.getPhase()).isLessThan(WEB_SERVER_PHASE);
+        assertThat(runner.isAutoStartup()).isTrue();
+    }
+
+    @Test
+    void everyMigrationRunsInOrderBeforeTheRunnerReportsRunning() {
+        List<String> executed = new ArrayList<>();
+        StartupMigrationRunner[] runner = new StartupMigrationRunner[1];
+        runner[0] = new StartupMigrationRunner(List.of(
+                () -> {
+                    assertThat(runner[0].isRunning()).isFalse();
+                    executed.add("cuentas");
+                },
+                () -> executed.add("créditos")));
+
+        runner[0].start();
+
+        assertThat(executed).containsExactly("cuentas", "créditos");
+        assertThat(runner[0].isRunning()).isTrue();
+    }
+}
@@ -0,0 +1,244 @@
+package com.co.jarvis.util.mappers;
+
+import com.co.jarvis.dto.BillingDto;
+import com.co.jarvis.dto.CatalogDto;
+import com.co.jarvis.dto.ClientDto;
+import com.co.jarvis.dto.CompanyDto;
+import com.co.jarvis.dto.OrderDto;
+import com.co.jarvis.dto.PersonDto;
+import com.co.jarvis.dto.ProductDto;
+import com.co.jarvis.dto.ProductVatTypeDto;
+import com.co.jarvis.dto.PurchaseInvoiceDto;
+import com.co.jarvis.dto.PurchaseInvoiceItemDto;
+import com.co.jarvis.dto.SupplierDto;
+import com.co.jarvis.dto.SupplierPaymentDto;
+import com.co.jarvis.dto.UserDto;
+import com.co.jarvis.entity.Billing;
+import com.co.jarvis.entity.Catalog;
+import com.co.jarvis.entity.Client;
+import com.co.jarvis.entity.Company;
+import com.co.jarvis.entity.Order;
+import com.co.jarvis.entity.Person;
+import com.co.jarvis.entity.Product;
+import com.co.jarvis.entity.ProductVatType;
+import com.co.jarvis.entity.PurchaseInvoice;
+import com.co.jarvis.entity.PurchaseInvoiceItem;
+import com.co.jarvis.entity.Supplier;
+import com.co.jarvis.entity.SupplierPayment;
+import com.co.jarvis.entity.User;
+import com.co.jarvis.enums.EPaymentType;
+import com.co.jarvis.enums.ESale;
+import org.junit.jupiter.api.Test;
+import org.modelmapper.ModelMapper;
+import org.springframework.core.ResolvableType;
+
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * El plan debe producir lo mismo que ModelMapper para los pares que usan GenericMapper y
+ * PaginationMapper. Los objetos de origen se llenan por reflexión, con beans anidados,
+ * colecciones y enums, para que un campo nuevo en una entidad o DTO quede cubierto solo.
+ */
+class MappingPlanTest {
+
+    private static final int MAX_DEPTH = 3;
+
+    private static final List<Class<?>[]> PAIRS = List.of(
+            new Class<?>[]{Billing.class, BillingDto.class},
+            new Class<?>[]{Catalog.class, CatalogDto.class},
+            new Class<?>[]{Client.class, ClientDto.class},
+            new Class<?>[]{Company.class, CompanyDto.class},
+            new Class<?>[]{Order.class, OrderDto.class},
+            new Class<?>[]{Person.class, PersonDto.class},
+            new Class<?>[]{Product.class, ProductDto.class},
+            new Class<?>[]{PurchaseInvoice.class, PurchaseInvoiceDto.class},
+            new Class<?>[]{PurchaseInvoiceItem.class, PurchaseInvoiceItemDto.class},
+            new Class<?>[]{Supplier.class, SupplierDto.class},
+            new Class<?>[]{SupplierPayment.class, SupplierPaymentDto.class},
+            new Class<?>[]{User.class, UserDto.class},
+            new Class<?>[]{ProductVatType.class, ProductVatTypeDto.class});
+
+    private final ModelMapper modelMapper = new ModelMapper();
+
+    @Test
+    void entityToDtoMatchesModelMapper() throws Exception {
+        for (Class<?>[] pair : PAIRS) {
+            assertEquivalent(pair[0], pair[1]);
+        }
+    }
+
+    @Test
+    void dtoToEntityMatchesModelMapper() throws Exception {
+        for (Class<?>[] pair : PAIRS) {
+            assertEquivalent(pair[1], pair[0]);
+        }
+    }
+
+    @Test
+    void nestedBeansAreCopiedNotShared() throws Exception {
+        Billing billing = (Billing) fill(Billing.class, 0);
+
+        BillingDto dto = MappingPlan.map(billing, BillingDto.class);
+
+        assertThat(dto.getClient()).isInstanceOf(ClientDto.class);
+        assertThat(dto.getClient().getId()).isEqualTo(billing.getClient().getId());
+        assertThat(dto.getCreationUser()).isInstanceOf(UserDto.class);
+        assertThat(dto.getCreationUser().getCompany()).isInstanceOf(CompanyDto.class);
+        assertThat(dto.getSaleDetails()).isNotSameAs(billing.getSaleDetails()).isEqualTo(billing.getSaleDetails());
+        assertThat(dto.getBillingType()).isEqualTo(billing.getBillingType());
+    }
+
+    @Test
+    void enumConversionMatchesModelMapperEnumConverter() {
+        assertThat(MappingPlan.toEnum(EPaymentType.class, EPaymentType.values()[0].name()))
+                .isEqualTo(EPaymentType.values()[0]);
+        // Nombre que no existe en el destino: ModelMapper lo deja en null en lugar de fallar
+        assertThat(MappingPlan.toEnum(EPaymentType.class, "NO_EXISTE")).isNull();
+        assertThat(MappingPlan.toEnum(EPaymentType.class, ESale.values()[0])).isNull();
+    }
+
+    private void assertEquivalent(Class<?> sourceClass, Class<?> destinationClass) throws Exception {
+        Object source = fill(sourceClass, 0);
+        Object expected = modelMapper.map(source, destinationClass);
+        Object actual = MappingPlan.map(source, destinationClass);
+        assertThat(describe(actual))
+                .as("%s -> %s", sourceClass.getSimpleName(), destinationClass.getSimpleName())
+                .isEqualTo(describe(expected));
+    }
+
+    /**
+     * Árbol de los campos del objeto. Se leen los campos y no los getters ni equals/hashCode,
+     * porque algunas entidades calculan valores en ellos y fallan con propiedades sin llenar.
+     */
+    private static Object describe(Object value) throws IllegalAccessException {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof Collection<?> collection) {
+            List<Object> items = new ArrayList<>();
+            for (Object item : collection) {
+                items.add(describe(item));
+            }
+            return items;
+        }
+        if (value instanceof Map<?, ?> map) {
+            Map<Object, Object> entries = new HashMap<>();
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                entries.put(entry.getKey(), describe(entry.getValue()));
+            }
+            return entries;
+        }
+        if (value.getClass().isEnum() || !value.getClass().getName().startsWith("com.co.jarvis.")) {
+            return value;
+        }
+        Map<String, Object> fields = new TreeMap<>();
+        fields.put("@type", value.getClass().getName());
+        for (Class<?> type = value.getClass(); type != Object.class; type = type.getSuperclass()) {
+            for (Field field : type.getDeclaredFields()) {
+                if (!Modifier.isStatic(field.getModifiers())) {
+                    field.setAccessible(true);
+                    fields.put(field.getName(), describe(field.get(value)));
+                }
+            }
+        }
+        return fields;
+    }
+
+    /**
+     * Instancia con todas las propiedades escribibles llenas; los beans se anidan hasta MAX_DEPTH.
+     */
+    private static Object fill(Class<?> type, int depth) throws Exception {
+        Object bean = type.getDeclaredConstructor().newInstance();
+        for (PropertyDescriptor property : Introspector.getBeanInfo(type).getPropertyDescriptors()) {
+            if (property.getWriteMethod() == null) {
+                continue;
+            }
+            ResolvableType propertyType = ResolvableType.forMethodParameter(property.getWriteMethod(), 0, type);
+            Object value = sample(propertyType, property.getName(), depth);
+            if (value != null) {
+                property.getWriteMethod().invoke(bean, value);
+            }
+        }
+        return bean;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object sample(ResolvableType type, String name, int depth) throws Exception {
+        Class<?> raw = type.toClass();
+        if (raw == String.class) {
+            return name + "-" + depth;
+        }
+        if (raw == BigDecimal.class) {
+            return new BigDecimal("12.50");
+        }
+        if (raw == Integer.class || raw == int.class) {
+            return 7;
+        }
+        if (raw == Long.class || raw == long.class) {
+            return 7L;
+        }
+        if (raw == Double.class || raw == double.class) {
+            return 7.5;
+        }
+        if (raw == Boolean.class || raw == boolean.class) {
+            return Boolean.TRUE;
+        }
+        if (raw == LocalDate.class) {
+            return LocalDate.of(2024, 3, 15);
+        }
+        if (raw == LocalDateTime.class) {
+            return LocalDateTime.of(2024, 3, 15, 10, 30);
+        }
+        if (raw == OffsetDateTime.class) {
+            return OffsetDateTime.of(2024, 3, 15, 10, 30, 0, 0, ZoneOffset.ofHours(-5));
+        }
+        if (raw.isEnum()) {
+            Object[] constants = raw.getEnumConstants();
+            return constants.length > 0 ? constants[constants.length - 1] : null;
+        }
+        if (Collection.class.isAssignableFrom(raw)) {
+            Object element = sample(type.asCollection().getGeneric(0), name, depth);
+            if (element == null) {
+                return null;
+            }
+            Collection collection = Set.class.isAssignableFrom(raw) ? new HashSet<>() : new ArrayList<>();
+            collection.add(element);
+            return collection;
+        }
+        if (Map.class.isAssignableFrom(raw)) {
+            Object value = sample(type.asMap().getGeneric(1), name, depth);
+            if (value == null || type.asMap().getGeneric(0).toClass() != String.class) {
+                return null;
+            }
+            Map map = new HashMap<>();
+            map.put(name, value);
+            return map;
+        }
+        if (depth < MAX_DEPTH && raw.getName().startsWith("com.co.jarvis.")) {
+            try {
+                return fill(raw, depth + 1);
+            } catch (NoSuchMethodException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+}